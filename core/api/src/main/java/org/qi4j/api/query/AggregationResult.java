@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.api.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.qi4j.api.query.grammar.Aggregation;
+import org.qi4j.api.query.grammar.PropertyFunction;
+
+/**
+ * Aggregates of one group of results of an aggregate Query.
+ * <p>
+ * Rows are created by {@link Query#aggregate(PropertyFunction[], Aggregation[])}. Group values and aggregate
+ * values are in the order they were given, and can be looked up either by index or by the PropertyFunction or
+ * Aggregation used in the Query.
+ * </p>
+ */
+public final class AggregationResult
+{
+    private final List<PropertyFunction<?>> groupBy;
+    private final Object[] groupValues;
+    private final List<Aggregation<?>> aggregations;
+    private final Object[] values;
+
+    public AggregationResult( List<PropertyFunction<?>> groupBy,
+                              Object[] groupValues,
+                              List<Aggregation<?>> aggregations,
+                              Object[] values
+    )
+    {
+        if( groupBy.size() != groupValues.length || aggregations.size() != values.length )
+        {
+            throw new IllegalArgumentException( "Value count does not match group or aggregation count" );
+        }
+        this.groupBy = Collections.unmodifiableList( groupBy );
+        this.groupValues = groupValues;
+        this.aggregations = Collections.unmodifiableList( aggregations );
+        this.values = values;
+    }
+
+    public List<PropertyFunction<?>> groupBy()
+    {
+        return groupBy;
+    }
+
+    public List<Aggregation<?>> aggregations()
+    {
+        return aggregations;
+    }
+
+    /**
+     * @param index index of the grouping property
+     *
+     * @return value of the grouping property for this group, may be null
+     */
+    public Object groupValue( int index )
+    {
+        return groupValues[ index ];
+    }
+
+    /**
+     * @param property PropertyFunction that was used for grouping
+     * @param <V>      type of the property
+     *
+     * @return value of the grouping property for this group, may be null
+     *
+     * @throws IllegalArgumentException if the property was not used for grouping
+     */
+    @SuppressWarnings( "unchecked" )
+    public <V> V groupValue( PropertyFunction<V> property )
+    {
+        return (V) groupValues[ indexOf( groupBy, property ) ];
+    }
+
+    /**
+     * @param index index of the aggregation
+     *
+     * @return aggregated value, may be null
+     */
+    public Object get( int index )
+    {
+        return values[ index ];
+    }
+
+    /**
+     * @param aggregation Aggregation that was used in the Query
+     * @param <V>         type of the aggregated value
+     *
+     * @return aggregated value, may be null
+     *
+     * @throws IllegalArgumentException if the aggregation is not part of this result
+     */
+    @SuppressWarnings( "unchecked" )
+    public <V> V get( Aggregation<V> aggregation )
+    {
+        return (V) values[ indexOf( aggregations, aggregation ) ];
+    }
+
+    private static int indexOf( List<?> list, Object item )
+    {
+        int index = list.indexOf( item );
+        if( index == -1 )
+        {
+            // Same expression, other instance
+            String expression = item.toString();
+            for( int idx = 0; idx < list.size(); idx++ )
+            {
+                if( list.get( idx ).toString().equals( expression ) )
+                {
+                    return idx;
+                }
+            }
+            throw new IllegalArgumentException( item + " is not part of this result" );
+        }
+        return index;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AggregationResult{" + groupBy + "=" + Arrays.toString( groupValues ) + " "
+               + aggregations + "=" + Arrays.toString( values ) + '}';
+    }
+}
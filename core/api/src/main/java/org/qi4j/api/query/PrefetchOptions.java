@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.api.query;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Set instances of this in MetaInfo on UnitOfWork or the associated Usecase to control how
+ * entities are loaded while iterating Query results.
+ * <p>
+ * Options:
+ * </p>
+ * <p>
+ * "prefetchSize": how many identities are pulled from the EntityFinder at a time. Each chunk is loaded
+ * with a single bulk call to the EntityStore. A size of 1 or less loads entities one by one.
+ * </p>
+ * <p>
+ * "readAheadExecutor": if set, the next chunk is loaded on this Executor while the current one is consumed.
+ * Read-ahead is off unless an Executor is given; the caller owns the Executor and its threads.
+ * </p>
+ * <p>
+ * When no PrefetchOptions are set, {@link #DEFAULT} applies.
+ * </p>
+ */
+public final class PrefetchOptions
+{
+    public static final PrefetchOptions DEFAULT = new PrefetchOptions( 50 );
+    public static final PrefetchOptions NONE = new PrefetchOptions( 1 );
+
+    private final int prefetchSize;
+    private final Executor readAheadExecutor;
+
+    public PrefetchOptions( int prefetchSize )
+    {
+        this( prefetchSize, null );
+    }
+
+    public PrefetchOptions( int prefetchSize, Executor readAheadExecutor )
+    {
+        this.prefetchSize = prefetchSize;
+        this.readAheadExecutor = readAheadExecutor;
+    }
+
+    public int prefetchSize()
+    {
+        return prefetchSize;
+    }
+
+    public boolean readAhead()
+    {
+        return readAheadExecutor != null;
+    }
+
+    public Executor readAheadExecutor()
+    {
+        return readAheadExecutor;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.api.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.query.grammar.PropertyFunction;
+
+/**
+ * One row of a projection Query, holding the values of the projected properties of one result.
+ * <p>
+ * Rows are created by {@link Query#project(PropertyFunction[])}. Values are in the order the properties were
+ * given, and can be looked up either by index or by the PropertyFunction used in the projection.
+ * </p>
+ */
+public final class Projection
+{
+    private final EntityReference identity;
+    private final List<PropertyFunction<?>> properties;
+    private final Object[] values;
+
+    public Projection( EntityReference identity, List<PropertyFunction<?>> properties, Object[] values )
+    {
+        if( properties.size() != values.length )
+        {
+            throw new IllegalArgumentException( "Expected " + properties.size() + " values, got " + values.length );
+        }
+        this.identity = identity;
+        this.properties = Collections.unmodifiableList( properties );
+        this.values = values;
+    }
+
+    /**
+     * @return reference to the Entity this row was projected from, or null if the result is not an Entity
+     */
+    public EntityReference identity()
+    {
+        return identity;
+    }
+
+    public List<PropertyFunction<?>> properties()
+    {
+        return properties;
+    }
+
+    /**
+     * @param index index of the projected property
+     *
+     * @return value of the property, or null if the property is not set
+     */
+    public Object get( int index )
+    {
+        return values[ index ];
+    }
+
+    /**
+     * @param property PropertyFunction that was used in the projection
+     * @param <V>      type of the property
+     *
+     * @return value of the property, or null if the property is not set
+     *
+     * @throws IllegalArgumentException if the property was not projected
+     */
+    @SuppressWarnings( "unchecked" )
+    public <V> V get( PropertyFunction<V> property )
+    {
+        int index = properties.indexOf( property );
+        if( index == -1 )
+        {
+            // Same path, other PropertyFunction instance
+            String path = property.toString();
+            for( int idx = 0; idx < properties.size(); idx++ )
+            {
+                if( properties.get( idx ).toString().equals( path ) )
+                {
+                    index = idx;
+                    break;
+                }
+            }
+        }
+        if( index == -1 )
+        {
+            throw new IllegalArgumentException( "Property " + property + " is not part of this projection" );
+        }
+        return (V) values[ index ];
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Projection{" + identity + " " + properties + "=" + Arrays.toString( values ) + '}';
+    }
+}
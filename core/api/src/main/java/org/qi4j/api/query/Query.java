@@ -22,7 +22,9 @@ package org.qi4j.api.query;
 
 import java.io.Serializable;
 import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
 
 /**
  * This represents a Query in an indexing system. It is created from a
@@ -135,4 +137,61 @@ public interface Query<T>
      */
     long count()
         throws QueryExecutionException;
+
+    /**
+     * Get only the given properties of the results, without loading the results themselves.
+     * Ordering, paging and variables of this Query apply. The Query is executed when the
+     * returned Iterable is iterated.
+     * <p>
+     * Indexing that stores the properties returns them directly, otherwise only the projected
+     * properties are read from the stored state of each result.
+     * </p>
+     * <p>
+     * Example: {@code query.project( property( person.name() ), property( person.status() ) )}
+     * </p>
+     *
+     * @param properties the properties to project, see {@link QueryExpressions#property(Property)}
+     *
+     * @return projected rows, one per result
+     *
+     * @throws QueryExecutionException if the query fails
+     */
+    Iterable<Projection> project( PropertyFunction<?>... properties )
+        throws QueryExecutionException;
+
+    /**
+     * Compute an aggregate over all results of this Query. This executes the Query.
+     * Variables of this Query apply, ordering and paging do not.
+     * <p>
+     * Example: {@code long active = query.aggregate( count() );}
+     * </p>
+     *
+     * @param aggregation the aggregate, see {@link QueryExpressions#count()} and friends
+     * @param <V>         type of the aggregated value
+     *
+     * @return aggregated value
+     *
+     * @throws QueryExecutionException if the query fails
+     */
+    <V> V aggregate( Aggregation<V> aggregation )
+        throws QueryExecutionException;
+
+    /**
+     * Compute aggregates for each group of results of this Query having the same values for the grouping
+     * properties. Variables of this Query apply, ordering and paging do not. Groups are returned in ascending
+     * order of their values. The Query is executed when the returned Iterable is iterated.
+     * <p>
+     * Indexing that supports it computes the aggregates in the index, otherwise they are computed while
+     * streaming over the projected properties of the results, see {@link #project(PropertyFunction[])}.
+     * </p>
+     *
+     * @param groupBy      the grouping properties, may be empty
+     * @param aggregations the aggregates to compute for each group
+     *
+     * @return one row per group
+     *
+     * @throws QueryExecutionException if the query fails
+     */
+    Iterable<AggregationResult> aggregate( PropertyFunction<?>[] groupBy, Aggregation<?>... aggregations )
+        throws QueryExecutionException;
 }
\ No newline at end of file
@@ -45,6 +45,21 @@ public interface QueryBuilder<T>
      */
     QueryBuilder<T> where( Predicate<Composite> specification );
 
+    /**
+     * Prepare the Queries created from this builder.
+     * <p>
+     * The indexing system translates the where-clause and ordering of prepared Queries once, subsequent executions
+     * only bind variables and paging, in any UnitOfWork. Keep the returned builder around and use it for Queries
+     * that only differ by their variables. Adding a where-clause to it returns a builder that is not prepared.
+     * </p>
+     * <p>
+     * Indexing systems that cannot prepare Queries execute them as usual.
+     * </p>
+     *
+     * @return a new builder for prepared Queries
+     */
+    QueryBuilder<T> prepare();
+
     /**
      * Create a new query with the declared where-clauses that will be evaluated against the iterable entries.
      *
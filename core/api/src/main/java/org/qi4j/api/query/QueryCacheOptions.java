@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.api.query;
+
+/**
+ * Set instances of this in MetaInfo on UnitOfWork or the associated Usecase to control whether the results of
+ * Queries may be served from, and stored in, the query result cache.
+ * <p>
+ * The query result cache is opt-in and only applies to indexing services assembled with it, see
+ * {@code org.qi4j.spi.query.QueryCache}. When no QueryCacheOptions are set, {@link #ALWAYS} applies.
+ * </p>
+ * <p>
+ * Use {@link #NEVER} for Usecases that must read what the index contains at the time of the Query, or that run
+ * one-off Queries that would only evict useful entries from the cache.
+ * </p>
+ */
+public final class QueryCacheOptions
+{
+    public static final QueryCacheOptions ALWAYS = new QueryCacheOptions( true );
+    public static final QueryCacheOptions NEVER = new QueryCacheOptions( false );
+
+    private final boolean cacheResults;
+
+    public QueryCacheOptions( boolean cacheResults )
+    {
+        this.cacheResults = cacheResults;
+    }
+
+    public boolean cacheResults()
+    {
+        return cacheResults;
+    }
+}
@@ -38,6 +38,7 @@ import org.qi4j.api.entity.Identity;
 import org.qi4j.api.injection.scope.State;
 import org.qi4j.api.property.GenericPropertyInfo;
 import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.AndSpecification;
 import org.qi4j.api.query.grammar.AssociationFunction;
 import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
@@ -724,6 +725,86 @@ public final class QueryExpressions
         return new OrderBy( property( property ), order );
     }
 
+    // Aggregates ------------------------------------------------------------|
+    /**
+     * Create a new Query aggregate counting results.
+     *
+     * @return a new COUNT aggregate.
+     */
+    public static Aggregation<Long> count()
+    {
+        return new Aggregation<>( Aggregation.Function.COUNT, null );
+    }
+
+    /**
+     * Create a new Query aggregate counting results having a value for a Property.
+     *
+     * @param <T> type of the Property
+     * @param property a Property
+     *
+     * @return a new COUNT aggregate for a Property.
+     */
+    public static <T> Aggregation<Long> count( Property<T> property )
+    {
+        return new Aggregation<>( Aggregation.Function.COUNT, property( property ) );
+    }
+
+    /**
+     * Create a new Query aggregate summing the values of a Property.
+     * <p>
+     * Sums of integral properties are Longs and sums of floating point properties are Doubles, so that they do not
+     * overflow the property type. Sums of BigInteger and BigDecimal properties keep their type.
+     * </p>
+     *
+     * @param <T> type of the Property
+     * @param property a Property
+     *
+     * @return a new SUM aggregate for a Property.
+     */
+    public static <T extends Number> Aggregation<Number> sum( Property<T> property )
+    {
+        return new Aggregation<>( Aggregation.Function.SUM, property( property ) );
+    }
+
+    /**
+     * Create a new Query aggregate for the smallest value of a Property.
+     *
+     * @param <T> type of the Property
+     * @param property a Property
+     *
+     * @return a new MIN aggregate for a Property.
+     */
+    public static <T> Aggregation<T> min( Property<T> property )
+    {
+        return new Aggregation<>( Aggregation.Function.MIN, property( property ) );
+    }
+
+    /**
+     * Create a new Query aggregate for the largest value of a Property.
+     *
+     * @param <T> type of the Property
+     * @param property a Property
+     *
+     * @return a new MAX aggregate for a Property.
+     */
+    public static <T> Aggregation<T> max( Property<T> property )
+    {
+        return new Aggregation<>( Aggregation.Function.MAX, property( property ) );
+    }
+
+    /**
+     * Create a new Query aggregate averaging the values of a Property.
+     *
+     * @param <T> type of the Property
+     * @param property a Property
+     *
+     * @return a new AVG aggregate for a Property.
+     */
+    public static <T extends Number> Aggregation<Double> avg( Property<T> property )
+    {
+        return new Aggregation<>( Aggregation.Function.AVG, property( property ) );
+    }
+
     // Query Templates InvocationHandlers ------------------------------------|
 
     private static class TemplateHandler<T>
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.api.query.grammar;
+
+/**
+ * Query aggregate, computed over all results or over each group of results.
+ * <p>
+ * COUNT without a property counts results, with a property it counts results having a value for it, and
+ * yields a Long. SUM yields a Long for integral properties, a Double for floating point ones, and a value of the
+ * property type for BigInteger and BigDecimal ones. MIN and MAX yield a value of the property type. AVG yields a
+ * Double. Results without a value for the property are ignored, and SUM, MIN, MAX and AVG yield null if there are
+ * none left.
+ * </p>
+ *
+ * @param <V> type of the aggregated value
+ */
+public class Aggregation<V>
+{
+    /**
+     * Aggregate function.
+     */
+    public enum Function
+    {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private final Function function;
+    private final PropertyFunction<?> propertyReference;
+
+    /**
+     * Constructor.
+     *
+     * @param function          aggregate function; cannot be null
+     * @param propertyReference aggregated property; can only be null for COUNT
+     *
+     * @throws IllegalArgumentException - If function is null, or property is null for other functions than COUNT
+     */
+    public Aggregation( final Function function, final PropertyFunction<?> propertyReference )
+    {
+        if( function == null )
+        {
+            throw new IllegalArgumentException( "Aggregate function cannot be null" );
+        }
+        if( propertyReference == null && function != Function.COUNT )
+        {
+            throw new IllegalArgumentException( "Aggregated property cannot be null for " + function );
+        }
+        this.function = function;
+        this.propertyReference = propertyReference;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return aggregate function; cannot be null
+     */
+    public Function function()
+    {
+        return function;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return aggregated property, or null when counting results
+     */
+    public PropertyFunction<?> property()
+    {
+        return propertyReference;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuilder()
+            .append( function )
+            .append( "(" )
+            .append( propertyReference == null ? "*" : propertyReference )
+            .append( ")" )
+            .toString();
+    }
+}
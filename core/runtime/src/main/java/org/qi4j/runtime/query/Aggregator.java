@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.runtime.query;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.grammar.Aggregation;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.spi.query.Aggregations;
+import org.qi4j.spi.query.Projections;
+
+/**
+ * Computes aggregates while streaming over projections of query results.
+ * <p>
+ * Feed it projections of {@link #properties()}; only one accumulator per group and aggregate is kept in memory.
+ * </p>
+ */
+public final class Aggregator
+{
+    private final List<PropertyFunction<?>> groupBy;
+    private final List<Aggregation<?>> aggregations;
+    private final PropertyFunction<?>[] properties;
+    private final int[] valueIndexes;
+    private final Map<List<Object>, Accumulator[]> groups = new HashMap<>();
+
+    public Aggregator( PropertyFunction<?>[] groupBy, Aggregation<?>[] aggregations )
+    {
+        this.groupBy = Arrays.<PropertyFunction<?>>asList( groupBy );
+        this.aggregations = Arrays.<Aggregation<?>>asList( aggregations );
+
+        // Grouping properties first, then the aggregated ones
+        List<PropertyFunction<?>> projected = new ArrayList<>( this.groupBy );
+        valueIndexes = new int[ aggregations.length ];
+        for( int idx = 0; idx < aggregations.length; idx++ )
+        {
+            if( aggregations[ idx ].property() == null )
+            {
+                valueIndexes[ idx ] = -1;
+            }
+            else
+            {
+                valueIndexes[ idx ] = projected.size();
+                projected.add( aggregations[ idx ].property() );
+            }
+        }
+        properties = projected.toArray( new PropertyFunction<?>[ projected.size() ] );
+    }
+
+    /**
+     * @return the properties to project the results on
+     */
+    public PropertyFunction<?>[] properties()
+    {
+        return properties;
+    }
+
+    public void add( Projection projection )
+    {
+        List<Object> group = new ArrayList<>( groupBy.size() );
+        for( int idx = 0; idx < groupBy.size(); idx++ )
+        {
+            group.add( projection.get( idx ) );
+        }
+        Accumulator[] accumulators = groups.get( group );
+        if( accumulators == null )
+        {
+            accumulators = newAccumulators();
+            groups.put( group, accumulators );
+        }
+        for( int idx = 0; idx < accumulators.length; idx++ )
+        {
+            accumulators[ idx ].add( valueIndexes[ idx ] == -1 ? null : projection.get( valueIndexes[ idx ] ) );
+        }
+    }
+
+    public Aggregator addAll( Iterator<Projection> projections )
+    {
+        while( projections.hasNext() )
+        {
+            add( projections.next() );
+        }
+        return this;
+    }
+
+    /**
+     * @return one row per group, in ascending order of group values
+     */
+    public List<AggregationResult> results()
+    {
+        if( groups.isEmpty() && groupBy.isEmpty() )
+        {
+            // Aggregates over no results at all
+            groups.put( new ArrayList<>(), newAccumulators() );
+        }
+
+        List<List<Object>> keys = new ArrayList<>( groups.keySet() );
+        keys.sort( Aggregations.GROUP_ORDER );
+        List<AggregationResult> results = new ArrayList<>( keys.size() );
+        for( List<Object> key : keys )
+        {
+            Accumulator[] accumulators = groups.get( key );
+            Object[] values = new Object[ accumulators.length ];
+            for( int idx = 0; idx < accumulators.length; idx++ )
+            {
+                values[ idx ] = accumulators[ idx ].result();
+            }
+            results.add( new AggregationResult( groupBy, key.toArray(), aggregations, values ) );
+        }
+        return results;
+    }
+
+    private Accumulator[] newAccumulators()
+    {
+        Accumulator[] accumulators = new Accumulator[ aggregations.size() ];
+        for( int idx = 0; idx < accumulators.length; idx++ )
+        {
+            accumulators[ idx ] = new Accumulator( aggregations.get( idx ) );
+        }
+        return accumulators;
+    }
+
+    private static class Accumulator
+    {
+        private final Aggregation<?> aggregation;
+        private long count;
+        private BigDecimal sum;
+        private Object extreme;
+
+        private Accumulator( Aggregation<?> aggregation )
+        {
+            this.aggregation = aggregation;
+        }
+
+        @SuppressWarnings( { "raw", "unchecked" } )
+        private void add( Object value )
+        {
+            if( aggregation.property() != null && value == null )
+            {
+                return;
+            }
+            count++;
+            switch( aggregation.function() )
+            {
+                case SUM:
+                case AVG:
+                    BigDecimal number = value instanceof BigDecimal
+                                        ? (BigDecimal) value
+                                        : new BigDecimal( value.toString() );
+                    sum = sum == null ? number : sum.add( number );
+                    break;
+                case MIN:
+                    if( extreme == null || ( (Comparable) value ).compareTo( extreme ) < 0 )
+                    {
+                        extreme = value;
+                    }
+                    break;
+                case MAX:
+                    if( extreme == null || ( (Comparable) value ).compareTo( extreme ) > 0 )
+                    {
+                        extreme = value;
+                    }
+                    break;
+                default:
+            }
+        }
+
+        private Object result()
+        {
+            switch( aggregation.function() )
+            {
+                case COUNT:
+                    return count;
+                case SUM:
+                    return sum == null ? null : Projections.coerce( sum, Aggregations.resultType( aggregation ) );
+                case AVG:
+                    return sum == null ? null : sum.divide( BigDecimal.valueOf( count ), MathContext.DECIMAL64 ).doubleValue();
+                default:
+                    return extreme;
+            }
+        }
+    }
+}
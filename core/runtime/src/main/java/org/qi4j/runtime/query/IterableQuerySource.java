@@ -14,26 +14,47 @@
 
 package org.qi4j.runtime.query;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.property.Property;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
 import org.qi4j.api.util.Classes;
 import org.qi4j.functional.Iterables;
 import org.qi4j.functional.Specifications;
 import org.qi4j.spi.query.QuerySource;
 
 /**
- * JAVADOC
+ * QuerySource evaluating queries by iterating over an Iterable.
+ * <p>
+ * Unordered results are streamed from the source. Ordered results with maxResults set are selected keeping
+ * only firstResult + maxResults items in memory. Collections at least as large as the
+ * {@value #PARALLEL_THRESHOLD_PROPERTY} system property have their where clause evaluated in parallel. This is off
+ * by default, as the where clause must then be safe to evaluate from several threads.
+ * </p>
  */
 public class IterableQuerySource
     implements QuerySource
 {
+    public static final String PARALLEL_THRESHOLD_PROPERTY = "qi4j.query.parallelThreshold";
+
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger( PARALLEL_THRESHOLD_PROPERTY, 0 );
+
     private final Iterable iterable;
 
     /**
@@ -73,7 +94,10 @@ public class IterableQuerySource
                            Map<String, Object> variables
     )
     {
-        return list( resultType, whereClause, orderBySegments, firstResult, maxResults, variables ).size();
+        long count = Iterables.count( filter( resultType, whereClause, variables ) );
+        long first = firstResult == null ? 0 : Math.max( firstResult, 0 );
+        count = Math.max( count - first, 0 );
+        return maxResults == null ? count : Math.min( count, Math.max( maxResults, 0 ) );
     }
 
     @Override
@@ -85,10 +109,52 @@ public class IterableQuerySource
                                      Map<String, Object> variables
     )
     {
-        return list( resultType, whereClause, orderBySegments, firstResult, maxResults, variables ).iterator();
+        return results( resultType, whereClause, orderBySegments, firstResult, maxResults, variables ).iterator();
+    }
+
+    @Override
+    public <T> Iterator<Projection> project( Class<T> resultType,
+                                             Predicate<Composite> whereClause,
+                                             Iterable<OrderBy> orderBySegments,
+                                             Integer firstResult,
+                                             Integer maxResults,
+                                             Map<String, Object> variables,
+                                             PropertyFunction<?>[] properties
+    )
+    {
+        List<PropertyFunction<?>> projected = Arrays.asList( properties );
+        List<T> list = list( resultType, whereClause, orderBySegments, firstResult, maxResults, variables );
+        List<Projection> projections = new ArrayList<>( list.size() );
+        for( T item : list )
+        {
+            Object[] values = new Object[ properties.length ];
+            for( int idx = 0; idx < properties.length; idx++ )
+            {
+                Property<?> property = properties[ idx ].apply( (Composite) item );
+                values[ idx ] = property == null ? null : property.get();
+            }
+            EntityReference identity = item instanceof EntityComposite
+                                       ? EntityReference.entityReferenceFor( item )
+                                       : null;
+            projections.add( new Projection( identity, projected, values ) );
+        }
+        return projections.iterator();
+    }
+
+    @Override
+    public <T> Iterator<AggregationResult> aggregate( Class<T> resultType,
+                                                      Predicate<Composite> whereClause,
+                                                      Map<String, Object> variables,
+                                                      PropertyFunction<?>[] groupBy,
+                                                      Aggregation<?>[] aggregations
+    )
+    {
+        Aggregator aggregator = new Aggregator( groupBy, aggregations );
+        Iterator<Projection> projections = project( resultType, whereClause, null, null, null, variables,
+                                                    aggregator.properties() );
+        return aggregator.addAll( projections ).results().iterator();
     }
 
-    @SuppressWarnings( {"raw", "unchecked"} )
     private <T> List<T> list( Class<T> resultType,
                               Predicate<Composite> whereClause,
                               Iterable<OrderBy> orderBySegments,
@@ -97,65 +163,106 @@ public class IterableQuerySource
                               Map<String, Object> variables
     )
     {
-        // Ensure it's a list first
-        List<T> list = filter( resultType, whereClause );
+        return Iterables.toList( results( resultType, whereClause, orderBySegments, firstResult, maxResults, variables ) );
+    }
 
-        // Order list
-        if( orderBySegments != null )
+    private <T> Iterable<T> results( Class<T> resultType,
+                                     Predicate<Composite> whereClause,
+                                     Iterable<OrderBy> orderBySegments,
+                                     Integer firstResult,
+                                     Integer maxResults,
+                                     Map<String, Object> variables
+    )
+    {
+        int first = firstResult == null ? 0 : Math.max( firstResult, 0 );
+        if( maxResults != null && maxResults <= 0 )
         {
-            // Sort it
-            Collections.sort( list, new OrderByComparator( orderBySegments ) );
+            return Collections.emptyList();
         }
 
-        // Cut results
-        if( firstResult != null )
+        Iterable<T> filtered = filter( resultType, whereClause, variables );
+        if( orderBySegments == null )
         {
-            if( firstResult > list.size() )
-            {
-                return Collections.emptyList();
-            }
+            // Unordered, stream through the source
+            Iterable<T> results = first == 0 ? filtered : Iterables.skip( first, filtered );
+            return maxResults == null ? results : Iterables.limit( maxResults, results );
+        }
 
-            int toIdx;
-            if( maxResults != null )
-            {
-                toIdx = Math.min( firstResult + maxResults, list.size() );
-            }
-            else
+        SortKeys<T> sortKeys = new SortKeys<>( orderBySegments );
+        List<SortKeys.Sorted<T>> sorted;
+        if( maxResults != null && (long) first + maxResults < Integer.MAX_VALUE )
+        {
+            sorted = topK( sortKeys, filtered, first + maxResults );
+        }
+        else
+        {
+            sorted = new ArrayList<>();
+            for( T item : filtered )
             {
-                toIdx = list.size();
+                sorted.add( sortKeys.sorted( item ) );
             }
+            Collections.sort( sorted, sortKeys );
+        }
 
-            list = list.subList( firstResult, toIdx );
+        // Cut results
+        if( first >= sorted.size() )
+        {
+            return Collections.emptyList();
         }
-        else
+        int toIdx = maxResults == null ? sorted.size() : (int) Math.min( (long) first + maxResults, sorted.size() );
+        List<T> list = new ArrayList<>( toIdx - first );
+        for( SortKeys.Sorted<T> item : sorted.subList( first, toIdx ) )
         {
-            int toIdx;
-            if( maxResults != null )
+            list.add( item.item );
+        }
+        return list;
+    }
+
+    /**
+     * Select the k first items in order, keeping no more than k items on the heap.
+     */
+    private static <T> List<SortKeys.Sorted<T>> topK( SortKeys<T> sortKeys, Iterable<T> items, int k )
+    {
+        Comparator<SortKeys.Sorted<T>> reversed = Collections.reverseOrder( sortKeys );
+        PriorityQueue<SortKeys.Sorted<T>> heap = new PriorityQueue<>( Math.min( k, 1024 ), reversed );
+        for( T item : items )
+        {
+            SortKeys.Sorted<T> sorted = sortKeys.sorted( item );
+            if( heap.size() < k )
             {
-                toIdx = Math.min( maxResults, list.size() );
+                heap.add( sorted );
             }
-            else
+            else if( sortKeys.compare( sorted, heap.peek() ) < 0 )
             {
-                toIdx = list.size();
+                heap.poll();
+                heap.add( sorted );
             }
-
-            list = list.subList( 0, toIdx );
         }
-
+        List<SortKeys.Sorted<T>> list = new ArrayList<>( heap );
+        Collections.sort( list, sortKeys );
         return list;
     }
 
     @SuppressWarnings( {"raw", "unchecked"} )
-    private <T> List<T> filter( Class<T> resultType, Predicate whereClause )
+    private <T> Iterable<T> filter( Class<T> resultType,
+                                    Predicate<Composite> whereClause,
+                                    Map<String, Object> variables
+    )
     {
-        if( whereClause == null )
-        {
-            return Iterables.toList( Iterables.filter( Classes.instanceOf( resultType ), iterable ) );
-        }
-        else
+        Predicate compiled = PredicateCompiler.compile( whereClause, variables );
+        Predicate<Object> matches = compiled == null
+                                    ? Classes.instanceOf( resultType )
+                                    : Specifications.and( Classes.instanceOf( resultType ), compiled );
+        if( PARALLEL_THRESHOLD > 0
+            && iterable instanceof Collection
+            && ( (Collection) iterable ).size() >= PARALLEL_THRESHOLD )
         {
-            return Iterables.toList( Iterables.filter( Specifications.and( Classes.instanceOf( resultType ), whereClause ), iterable ) );
+            // Evaluate the where clause concurrently, keeping the source order
+            return (List<T>) ( (Collection<Object>) iterable ).parallelStream()
+                .filter( matches )
+                .collect( Collectors.toList() );
         }
+        return Iterables.filter( matches, iterable );
     }
 
     @Override
@@ -164,76 +271,93 @@ public class IterableQuerySource
         return "IterableQuerySource{" + iterable + '}';
     }
 
-    private static class OrderByComparator<T extends Composite>
-        implements Comparator<T>
+    /**
+     * Extracts the values to order on once per item, instead of once per comparison.
+     * Items with equal values keep their source order.
+     */
+    private static class SortKeys<T>
+        implements Comparator<SortKeys.Sorted<T>>
     {
+        private static final Object FAILED = new Object();
 
-        private final Iterable<OrderBy> orderBySegments;
+        private final PropertyFunction<?>[] properties;
+        private final boolean[] descending;
+        private long sequence;
 
-        private OrderByComparator( Iterable<OrderBy> orderBySegments )
+        private SortKeys( Iterable<OrderBy> orderBySegments )
         {
-            this.orderBySegments = orderBySegments;
+            List<OrderBy> segments = Iterables.toList( orderBySegments );
+            properties = new PropertyFunction<?>[ segments.size() ];
+            descending = new boolean[ segments.size() ];
+            for( int idx = 0; idx < properties.length; idx++ )
+            {
+                properties[ idx ] = segments.get( idx ).property();
+                descending[ idx ] = segments.get( idx ).order() == OrderBy.Order.DESCENDING;
+            }
+        }
+
+        private Sorted<T> sorted( T item )
+        {
+            Object[] keys = new Object[ properties.length ];
+            for( int idx = 0; idx < keys.length; idx++ )
+            {
+                try
+                {
+                    Property<?> property = properties[ idx ].apply( (Composite) item );
+                    keys[ idx ] = property == null ? null : property.get();
+                }
+                catch( Exception e )
+                {
+                    keys[ idx ] = FAILED;
+                }
+            }
+            return new Sorted<>( item, keys, sequence++ );
         }
 
         @Override
         @SuppressWarnings( {"raw", "unchecked"} )
-        public int compare( T o1, T o2 )
+        public int compare( Sorted<T> o1, Sorted<T> o2 )
         {
-            for( OrderBy orderBySegment : orderBySegments )
+            for( int idx = 0; idx < properties.length; idx++ )
             {
-                try
+                Object value1 = o1.keys[ idx ];
+                Object value2 = o2.keys[ idx ];
+                if( value1 == FAILED || value2 == FAILED )
                 {
-                    final Property prop1 = orderBySegment.property().apply( o1 );
-                    final Property prop2 = orderBySegment.property().apply( o2 );
-                    if( prop1 == null || prop2 == null )
-                    {
-                        if( prop1 == null && prop2 == null )
-                        {
-                            return 0;
-                        }
-                        else if( prop1 != null )
-                        {
-                            return 1;
-                        }
-                        return -1;
-                    }
-                    final Object value1 = prop1.get();
-                    final Object value2 = prop2.get();
-                    if( value1 == null || value2 == null )
-                    {
-                        if( value1 == null && value2 == null )
-                        {
-                            return 0;
-                        }
-                        else if( value1 != null )
-                        {
-                            return 1;
-                        }
-                        return -1;
-                    }
-                    if( value1 instanceof Comparable )
+                    break;
+                }
+                if( value1 == null || value2 == null )
+                {
+                    if( value1 == null && value2 == null )
                     {
-                        int result = ( (Comparable) value1 ).compareTo( value2 );
-                        if( result != 0 )
-                        {
-                            if( orderBySegment.order() == OrderBy.Order.ASCENDING )
-                            {
-                                return result;
-                            }
-                            else
-                            {
-                                return -result;
-                            }
-                        }
+                        continue;
                     }
+                    return value1 != null ? 1 : -1;
                 }
-                catch( Exception e )
+                if( value1 instanceof Comparable )
                 {
-                    return 0;
+                    int result = ( (Comparable) value1 ).compareTo( value2 );
+                    if( result != 0 )
+                    {
+                        return descending[ idx ] ? -result : result;
+                    }
                 }
             }
+            return Long.compare( o1.sequence, o2.sequence );
+        }
+
+        private static final class Sorted<T>
+        {
+            private final T item;
+            private final Object[] keys;
+            private final long sequence;
 
-            return 0;
+            private Sorted( T item, Object[] keys, long sequence )
+            {
+                this.item = item;
+                this.keys = keys;
+                this.sequence = sequence;
+            }
         }
     }
-}
\ No newline at end of file
+}
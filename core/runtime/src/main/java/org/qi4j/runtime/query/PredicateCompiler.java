@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.runtime.query;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.composite.CompositeInstance;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.runtime.entity.EntityInstance;
+import org.qi4j.runtime.entity.EntityModel;
+import org.qi4j.spi.entity.EntityStatus;
+import org.qi4j.spi.query.AbstractPredicateCompiler;
+
+/**
+ * Compiles where clauses built with {@link org.qi4j.api.query.QueryExpressions} for in-memory evaluation.
+ * <p>
+ * The compiled Predicate evaluates like the where clause itself, but works from a flat tree of operands where
+ * Variables are bound, regular expressions are compiled and property lookups are resolved once per entity type.
+ * Entity property values are read from the EntityState without instantiating Property instances. Parts of the
+ * where clause that are not known to the compiler are evaluated as is.
+ * </p>
+ */
+public final class PredicateCompiler
+    extends AbstractPredicateCompiler<Composite>
+{
+    /**
+     * Compile a where clause.
+     *
+     * @param whereClause where clause, may be null
+     * @param variables   query variables, may be null
+     *
+     * @return the compiled where clause, or null if the where clause was null
+     */
+    public static Predicate<Composite> compile( Predicate<Composite> whereClause, Map<String, Object> variables )
+    {
+        if( whereClause == null )
+        {
+            return null;
+        }
+        return new PredicateCompiler( variables ).compile( whereClause );
+    }
+
+    private PredicateCompiler( Map<String, Object> variables )
+    {
+        super( variables );
+    }
+
+    @Override
+    protected Predicate<Composite> comparison( PropertyFunction<?> property, final Operator operator,
+                                               final Object value )
+    {
+        final PropertyValue propertyValue = new PropertyValue( property );
+        return new Predicate<Composite>()
+        {
+            @Override
+            public boolean test( Composite item )
+            {
+                Object actual;
+                try
+                {
+                    actual = propertyValue.valueOf( item );
+                }
+                catch( IllegalArgumentException e )
+                {
+                    return false;
+                }
+                return actual != null && compare( operator, actual, value );
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<Composite> isNull( PropertyFunction<?> property, final boolean isNull )
+    {
+        final PropertyValue propertyValue = new PropertyValue( property );
+        return new Predicate<Composite>()
+        {
+            @Override
+            public boolean test( Composite item )
+            {
+                return ( propertyValue.valueOf( item ) == null ) == isNull;
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<Composite> matches( PropertyFunction<?> property, final Pattern pattern )
+    {
+        final PropertyValue propertyValue = new PropertyValue( property );
+        return new Predicate<Composite>()
+        {
+            @Override
+            public boolean test( Composite item )
+            {
+                Object value = propertyValue.valueOf( item );
+                return value != null && pattern.matcher( (String) value ).matches();
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<Composite> contains( PropertyFunction<?> collectionProperty, final List<Object> values )
+    {
+        final PropertyValue propertyValue = new PropertyValue( collectionProperty );
+        return new Predicate<Composite>()
+        {
+            @Override
+            public boolean test( Composite item )
+            {
+                Collection<?> collection = (Collection<?>) propertyValue.valueOf( item );
+                return collection != null && collection.containsAll( values );
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<Composite> other( Predicate<Composite> predicate )
+    {
+        // Evaluate as is
+        return predicate;
+    }
+
+    /**
+     * Value of a property, like {@link PropertyFunction#apply(Composite)} followed by {@link Property#get()}.
+     */
+    private static final class PropertyValue
+    {
+        private final PropertyFunction<?> function;
+        private final PropertyValue traversedProperty;
+        private final AccessibleObject accessor;
+
+        // Last resolved entity type, as entities in a query are most often of the same type
+        private volatile ResolvedName resolved;
+
+        private PropertyValue( PropertyFunction<?> function )
+        {
+            this.function = function;
+            this.traversedProperty = function.traversedProperty() == null
+                                     ? null
+                                     : new PropertyValue( function.traversedProperty() );
+            this.accessor = function.accessor();
+        }
+
+        private Object valueOf( Composite item )
+        {
+            if( function.traversedAssociation() != null
+                || function.traversedManyAssociation() != null
+                || function.traversedNamedAssociation() != null )
+            {
+                Property<?> property = function.apply( item );
+                return property == null ? null : property.get();
+            }
+
+            try
+            {
+                Object target = item;
+                if( traversedProperty != null )
+                {
+                    target = traversedProperty.valueOf( item );
+                    if( target == null )
+                    {
+                        return null;
+                    }
+                }
+
+                InvocationHandler handler = Proxy.getInvocationHandler( target );
+                if( handler instanceof EntityInstance )
+                {
+                    EntityInstance entity = (EntityInstance) handler;
+                    QualifiedName name = nameFor( entity.entityModel() );
+                    if( name != null
+                        && entity.status() != EntityStatus.REMOVED
+                        && entity.unitOfWork().isOpen() )
+                    {
+                        return entity.entityState().propertyValueOf( name );
+                    }
+                }
+                Property<?> property = ( (CompositeInstance) handler ).state().propertyFor( accessor );
+                return property.get();
+            }
+            catch( IllegalArgumentException e )
+            {
+                throw e;
+            }
+            catch( Throwable e )
+            {
+                throw new IllegalArgumentException( e );
+            }
+        }
+
+        private QualifiedName nameFor( EntityModel model )
+        {
+            ResolvedName last = resolved;
+            if( last == null || last.model != model )
+            {
+                QualifiedName name;
+                try
+                {
+                    name = model.state().propertyModelFor( accessor ).qualifiedName();
+                }
+                catch( IllegalArgumentException e )
+                {
+                    // Not a persistent property of this entity type
+                    name = null;
+                }
+                last = new ResolvedName( model, name );
+                resolved = last;
+            }
+            return last.name;
+        }
+    }
+
+    private static final class ResolvedName
+    {
+        private final EntityModel model;
+        private final QualifiedName name;
+
+        private ResolvedName( EntityModel model, QualifiedName name )
+        {
+            this.model = model;
+            this.name = name;
+        }
+    }
+}
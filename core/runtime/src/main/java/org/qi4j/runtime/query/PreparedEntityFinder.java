@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.runtime.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.grammar.Aggregation;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.spi.query.AggregationFinder;
+import org.qi4j.spi.query.EntityFinder;
+import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.PreparedQuery;
+import org.qi4j.spi.query.PreparedQueryFinder;
+import org.qi4j.spi.query.ProjectionFinder;
+
+/**
+ * EntityFinder of the Queries of a prepared QueryBuilder.
+ * <p>
+ * Holds the plans prepared by the indexing system for the where clause of the builder, one per ordering, and
+ * executes Queries through them. Projections, aggregations and Queries that cannot be prepared go to the
+ * indexing system as usual.
+ * </p>
+ */
+final class PreparedEntityFinder
+    implements EntityFinder, ProjectionFinder, AggregationFinder
+{
+    private static final PreparedQuery NOT_PREPARED = new PreparedQuery()
+    {
+        @Override
+        public Iterable<EntityReference> findEntities( Integer firstResult,
+                                                       Integer maxResults,
+                                                       Map<String, Object> variables )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EntityReference findEntity( Map<String, Object> variables )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long countEntities( Map<String, Object> variables )
+        {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private final EntityFinder delegate;
+    private final Class<?> resultType;
+    private final Predicate<Composite> whereClause;
+    private final Map<List<Object>, PreparedQuery> plans = new ConcurrentHashMap<>();
+
+    PreparedEntityFinder( EntityFinder delegate, Class<?> resultType, Predicate<Composite> whereClause )
+    {
+        this.delegate = delegate;
+        this.resultType = resultType;
+        this.whereClause = whereClause;
+    }
+
+    EntityFinder delegate()
+    {
+        return delegate;
+    }
+
+    @Override
+    public Iterable<EntityReference> findEntities( Class<?> resultType,
+                                                   Predicate<Composite> whereClause,
+                                                   OrderBy[] orderBySegments,
+                                                   Integer firstResult,
+                                                   Integer maxResults,
+                                                   Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        PreparedQuery plan = planFor( resultType, whereClause, orderBySegments );
+        if( plan == NOT_PREPARED )
+        {
+            return delegate.findEntities( resultType, whereClause, orderBySegments, firstResult, maxResults,
+                                          variables );
+        }
+        return plan.findEntities( firstResult, maxResults, variables );
+    }
+
+    @Override
+    public EntityReference findEntity( Class<?> resultType,
+                                       Predicate<Composite> whereClause,
+                                       Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        PreparedQuery plan = planFor( resultType, whereClause, null );
+        if( plan == NOT_PREPARED )
+        {
+            return delegate.findEntity( resultType, whereClause, variables );
+        }
+        return plan.findEntity( variables );
+    }
+
+    @Override
+    public long countEntities( Class<?> resultType,
+                               Predicate<Composite> whereClause,
+                               Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        PreparedQuery plan = planFor( resultType, whereClause, null );
+        if( plan == NOT_PREPARED )
+        {
+            return delegate.countEntities( resultType, whereClause, variables );
+        }
+        return plan.countEntities( variables );
+    }
+
+    @Override
+    public Iterable<Projection> findProjections( Class<?> resultType,
+                                                Predicate<Composite> whereClause,
+                                                OrderBy[] orderBySegments,
+                                                Integer firstResult,
+                                                Integer maxResults,
+                                                Map<String, Object> variables,
+                                                PropertyFunction<?>[] properties )
+        throws EntityFinderException
+    {
+        if( delegate instanceof ProjectionFinder )
+        {
+            return ( (ProjectionFinder) delegate ).findProjections( resultType, whereClause, orderBySegments,
+                                                                    firstResult, maxResults, variables, properties );
+        }
+        return null;
+    }
+
+    @Override
+    public Iterable<AggregationResult> findAggregations( Class<?> resultType,
+                                                        Predicate<Composite> whereClause,
+                                                        Map<String, Object> variables,
+                                                        PropertyFunction<?>[] groupBy,
+                                                        Aggregation<?>[] aggregations )
+        throws EntityFinderException
+    {
+        if( delegate instanceof AggregationFinder )
+        {
+            return ( (AggregationFinder) delegate ).findAggregations( resultType, whereClause, variables,
+                                                                      groupBy, aggregations );
+        }
+        return null;
+    }
+
+    private PreparedQuery planFor( Class<?> resultType,
+                                   Predicate<Composite> whereClause,
+                                   OrderBy[] orderBySegments )
+        throws EntityFinderException
+    {
+        if( resultType != this.resultType || whereClause != this.whereClause
+            || !( delegate instanceof PreparedQueryFinder ) )
+        {
+            return NOT_PREPARED;
+        }
+        List<Object> key = keyOf( orderBySegments );
+        PreparedQuery plan = plans.get( key );
+        if( plan == null )
+        {
+            // Concurrent first executions may prepare twice, the last one wins
+            plan = ( (PreparedQueryFinder) delegate ).prepare( resultType, whereClause, orderBySegments );
+            if( plan == null )
+            {
+                plan = NOT_PREPARED;
+            }
+            plans.put( key, plan );
+        }
+        return plan;
+    }
+
+    private static List<Object> keyOf( OrderBy[] orderBySegments )
+    {
+        if( orderBySegments == null || orderBySegments.length == 0 )
+        {
+            return Collections.emptyList();
+        }
+        List<Object> key = new ArrayList<>( orderBySegments.length );
+        for( OrderBy segment : orderBySegments )
+        {
+            // OrderBy has no equality, the accessor and the traversal path identify the property
+            key.add( Arrays.asList( segment.property().accessor(), segment.property().toString(), segment.order() ) );
+        }
+        return key;
+    }
+}
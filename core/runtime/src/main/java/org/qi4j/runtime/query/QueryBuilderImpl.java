@@ -77,7 +77,21 @@ final class QueryBuilderImpl<T>
         {
             specification = QueryExpressions.and( this.whereClause, specification );
         }
-        return new QueryBuilderImpl<>( entityFinder, resultType, specification );
+        EntityFinder finder = entityFinder instanceof PreparedEntityFinder
+                              ? ( (PreparedEntityFinder) entityFinder ).delegate()
+                              : entityFinder;
+        return new QueryBuilderImpl<>( finder, resultType, specification );
+    }
+
+    @Override
+    public QueryBuilder<T> prepare()
+    {
+        if( entityFinder == null || entityFinder instanceof PreparedEntityFinder )
+        {
+            return this;
+        }
+        return new QueryBuilderImpl<>( new PreparedEntityFinder( entityFinder, resultType, whereClause ),
+                                       resultType, whereClause );
     }
 
     @Override
@@ -92,4 +106,10 @@ final class QueryBuilderImpl<T>
     {
         return new QueryImpl<>( resultType, whereClause, querySource );
     }
+
+    @Override
+    public EntityFinder preparedEntityFinder()
+    {
+        return entityFinder instanceof PreparedEntityFinder ? entityFinder : null;
+    }
 }
\ No newline at end of file
@@ -24,10 +24,14 @@ import java.util.Map;
 import java.util.function.Predicate;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.property.Property;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.Projection;
 import org.qi4j.api.query.Query;
 import org.qi4j.api.query.QueryExecutionException;
 import org.qi4j.api.query.QueryExpressions;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
 import org.qi4j.functional.Iterables;
 import org.qi4j.spi.query.QuerySource;
 
@@ -197,6 +201,47 @@ import org.qi4j.spi.query.QuerySource;
         return querySource.iterator( resultType, whereClause, orderBySegments, firstResult, maxResults, variables );
     }
 
+    @Override
+    public Iterable<Projection> project( final PropertyFunction<?>... properties )
+        throws QueryExecutionException
+    {
+        return new Iterable<Projection>()
+        {
+            @Override
+            public Iterator<Projection> iterator()
+            {
+                return querySource.project( resultType, whereClause, orderBySegments, firstResult, maxResults,
+                                            variables, properties );
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <V> V aggregate( Aggregation<V> aggregation )
+        throws QueryExecutionException
+    {
+        Iterator<AggregationResult> results = querySource.aggregate( resultType, whereClause, variables,
+                                                                     new PropertyFunction<?>[ 0 ],
+                                                                     new Aggregation<?>[]{ aggregation } );
+        return results.hasNext() ? (V) results.next().get( 0 ) : null;
+    }
+
+    @Override
+    public Iterable<AggregationResult> aggregate( final PropertyFunction<?>[] groupBy,
+                                                  final Aggregation<?>... aggregations )
+        throws QueryExecutionException
+    {
+        return new Iterable<AggregationResult>()
+        {
+            @Override
+            public Iterator<AggregationResult> iterator()
+            {
+                return querySource.aggregate( resultType, whereClause, variables, groupBy, aggregations );
+            }
+        };
+    }
+
     @Override
     public String toString()
     {
@@ -26,10 +26,15 @@ import org.qi4j.api.entity.EntityComposite;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.entity.IdentityGenerator;
 import org.qi4j.api.entity.LifecycleException;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.PrefetchOptions;
+import org.qi4j.api.query.Projection;
 import org.qi4j.api.query.Query;
 import org.qi4j.api.query.QueryBuilder;
 import org.qi4j.api.query.QueryExecutionException;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
 import org.qi4j.api.service.NoSuchServiceException;
 import org.qi4j.api.unitofwork.ConcurrentEntityModificationException;
 import org.qi4j.api.unitofwork.EntityTypeNotFoundException;
@@ -42,12 +47,15 @@ import org.qi4j.api.usecase.Usecase;
 import org.qi4j.functional.Iterables;
 import org.qi4j.runtime.entity.EntityInstance;
 import org.qi4j.runtime.entity.EntityModel;
+import org.qi4j.runtime.query.Aggregator;
 import org.qi4j.runtime.unitofwork.EntityBuilderInstance;
 import org.qi4j.runtime.unitofwork.UnitOfWorkInstance;
 import org.qi4j.spi.entity.EntityStatus;
 import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.query.AggregationFinder;
 import org.qi4j.spi.query.EntityFinder;
 import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.ProjectionFinder;
 import org.qi4j.spi.query.QueryBuilderSPI;
 import org.qi4j.spi.query.QuerySource;
 
@@ -115,7 +123,7 @@ public class ModuleUnitOfWork
     {
         QueryBuilderSPI queryBuilderSPI = (QueryBuilderSPI) queryBuilder;
 
-        return queryBuilderSPI.newQuery( new UoWQuerySource( this ) );
+        return queryBuilderSPI.newQuery( new UoWQuerySource( this, queryBuilderSPI.preparedEntityFinder() ) );
     }
 
     @Override
@@ -314,10 +322,12 @@ public class ModuleUnitOfWork
     private static class UoWQuerySource implements QuerySource
     {
         private final ModuleUnitOfWork moduleUnitOfWork;
+        private final EntityFinder preparedEntityFinder;
 
-        private UoWQuerySource( ModuleUnitOfWork moduleUnitOfWork )
+        private UoWQuerySource( ModuleUnitOfWork moduleUnitOfWork, EntityFinder preparedEntityFinder )
         {
             this.moduleUnitOfWork = moduleUnitOfWork;
+            this.preparedEntityFinder = preparedEntityFinder;
         }
 
         @Override
@@ -329,7 +339,7 @@ public class ModuleUnitOfWork
                            Map<String, Object> variables
         )
         {
-            final EntityFinder entityFinder = moduleUnitOfWork.module().findService( EntityFinder.class ).get();
+            final EntityFinder entityFinder = entityFinder();
 
             try
             {
@@ -364,7 +374,7 @@ public class ModuleUnitOfWork
                                Map<String, Object> variables
         )
         {
-            final EntityFinder entityFinder = moduleUnitOfWork.module().findService( EntityFinder.class ).get();
+            final EntityFinder entityFinder = entityFinder();
 
             try
             {
@@ -386,7 +396,7 @@ public class ModuleUnitOfWork
                                          Map<String, Object> variables
         )
         {
-            final EntityFinder entityFinder = moduleUnitOfWork.module().findService( EntityFinder.class ).get();
+            final EntityFinder entityFinder = entityFinder();
 
             try
             {
@@ -399,6 +409,12 @@ public class ModuleUnitOfWork
                                                                                                .<String, Object>emptyMap() : variables )
                     .iterator();
 
+                PrefetchOptions prefetchOptions = prefetchOptions();
+                if( prefetchOptions.prefetchSize() > 1 )
+                {
+                    return new PrefetchingQueryIterator<>( moduleUnitOfWork, resultType, foundEntities, prefetchOptions );
+                }
+
                 return new Iterator<T>()
                 {
                     @Override
@@ -435,6 +451,102 @@ public class ModuleUnitOfWork
             }
         }
 
+        @Override
+        public <T> Iterator<Projection> project( Class<T> resultType,
+                                                 Predicate<Composite> whereClause,
+                                                 Iterable<OrderBy> orderBySegments,
+                                                 Integer firstResult,
+                                                 Integer maxResults,
+                                                 Map<String, Object> variables,
+                                                 PropertyFunction<?>[] properties
+        )
+        {
+            final EntityFinder entityFinder = entityFinder();
+            OrderBy[] orderBy = Iterables.toArray( OrderBy.class, orderBySegments );
+            Map<String, Object> vars = variables == null ? Collections.<String, Object>emptyMap() : variables;
+
+            try
+            {
+                if( entityFinder instanceof ProjectionFinder )
+                {
+                    Iterable<Projection> projections = ( (ProjectionFinder) entityFinder ).findProjections(
+                        resultType, whereClause, orderBy, firstResult, maxResults, vars, properties );
+                    if( projections != null )
+                    {
+                        return projections.iterator();
+                    }
+                }
+
+                // Index cannot supply the properties, read them from the EntityStore
+                final Iterator<EntityReference> foundEntities = entityFinder.findEntities( resultType,
+                                                                                           whereClause,
+                                                                                           orderBy,
+                                                                                           firstResult,
+                                                                                           maxResults,
+                                                                                           vars ).iterator();
+                return new ProjectingQueryIterator( moduleUnitOfWork, resultType, foundEntities, properties,
+                                                    prefetchOptions().prefetchSize() );
+            }
+            catch( EntityFinderException e )
+            {
+                throw new QueryExecutionException( "Query '" + toString() + "' could not be executed", e );
+            }
+        }
+
+        @Override
+        public <T> Iterator<AggregationResult> aggregate( Class<T> resultType,
+                                                          Predicate<Composite> whereClause,
+                                                          Map<String, Object> variables,
+                                                          PropertyFunction<?>[] groupBy,
+                                                          Aggregation<?>[] aggregations
+        )
+        {
+            final EntityFinder entityFinder = entityFinder();
+            Map<String, Object> vars = variables == null ? Collections.<String, Object>emptyMap() : variables;
+
+            if( entityFinder instanceof AggregationFinder )
+            {
+                try
+                {
+                    Iterable<AggregationResult> results = ( (AggregationFinder) entityFinder ).findAggregations(
+                        resultType, whereClause, vars, groupBy, aggregations );
+                    if( results != null )
+                    {
+                        return results.iterator();
+                    }
+                }
+                catch( EntityFinderException e )
+                {
+                    throw new QueryExecutionException( "Query '" + toString() + "' could not be executed", e );
+                }
+            }
+
+            // Index cannot aggregate, stream over projections
+            Aggregator aggregator = new Aggregator( groupBy, aggregations );
+            Iterator<Projection> projections = project( resultType, whereClause, null, null, null, vars,
+                                                        aggregator.properties() );
+            return aggregator.addAll( projections ).results().iterator();
+        }
+
+        private EntityFinder entityFinder()
+        {
+            if( preparedEntityFinder != null )
+            {
+                return preparedEntityFinder;
+            }
+            return moduleUnitOfWork.module().findService( EntityFinder.class ).get();
+        }
+
+        private PrefetchOptions prefetchOptions()
+        {
+            PrefetchOptions prefetchOptions = moduleUnitOfWork.metaInfo( PrefetchOptions.class );
+            if( prefetchOptions == null )
+            {
+                prefetchOptions = moduleUnitOfWork.usecase().metaInfo( PrefetchOptions.class );
+            }
+            return prefetchOptions == null ? PrefetchOptions.DEFAULT : prefetchOptions;
+        }
+
         @Override
         public String toString()
         {
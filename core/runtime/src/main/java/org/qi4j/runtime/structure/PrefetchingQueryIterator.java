@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.runtime.structure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.query.PrefetchOptions;
+import org.qi4j.api.unitofwork.NoSuchEntityException;
+import org.qi4j.runtime.entity.EntityInstance;
+import org.qi4j.runtime.entity.EntityModel;
+
+/**
+ * Iterator over query results that loads entities in chunks.
+ * <p>
+ * Identities are pulled from the EntityFinder result {@link PrefetchOptions#prefetchSize()} at a time and each
+ * chunk is loaded into the UnitOfWork with one bulk call per EntityStore. With {@link PrefetchOptions#readAhead()}
+ * the following chunk is loaded on {@link PrefetchOptions#readAheadExecutor()} while the current one is consumed.
+ * </p>
+ * <p>
+ * Prefetching is an optimization only: if it fails, entities are loaded one by one on access, which reports
+ * any error the regular way.
+ * </p>
+ */
+/* package */ final class PrefetchingQueryIterator<T>
+    implements Iterator<T>
+{
+    private final ModuleUnitOfWork moduleUnitOfWork;
+    private final Class<T> resultType;
+    private final Iterator<EntityReference> foundEntities;
+    private final Iterable<ModelModule<EntityModel>> potentialModels;
+    private final int prefetchSize;
+    private final Executor readAheadExecutor;
+
+    private Iterator<EntityReference> current = Collections.emptyIterator();
+    private List<EntityReference> pendingChunk;
+    private CompletableFuture<List<EntityInstance>> pendingFetch;
+
+    /* package */ PrefetchingQueryIterator( ModuleUnitOfWork moduleUnitOfWork,
+                                            Class<T> resultType,
+                                            Iterator<EntityReference> foundEntities,
+                                            PrefetchOptions options
+    )
+    {
+        this.moduleUnitOfWork = moduleUnitOfWork;
+        this.resultType = resultType;
+        this.foundEntities = foundEntities;
+        this.potentialModels = moduleUnitOfWork.module().typeLookup().lookupEntityModels( resultType );
+        this.prefetchSize = options.prefetchSize();
+        this.readAheadExecutor = options.readAheadExecutor();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if( !current.hasNext() )
+        {
+            advance();
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public T next()
+    {
+        if( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        EntityReference foundEntity = current.next();
+        try
+        {
+            return moduleUnitOfWork.get( resultType, foundEntity.identity() );
+        }
+        catch( NoSuchEntityException e )
+        {
+            // Index is out of sync - entity has been removed
+            return null;
+        }
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    private void advance()
+    {
+        List<EntityReference> chunk;
+        if( pendingChunk != null )
+        {
+            chunk = pendingChunk;
+            addPrefetched( pendingFetch.join() );
+            pendingChunk = null;
+            pendingFetch = null;
+        }
+        else
+        {
+            chunk = nextChunk();
+            if( !chunk.isEmpty() )
+            {
+                addPrefetched( runPrefetch( prefetchTask( chunk ) ) );
+            }
+        }
+        current = chunk.iterator();
+
+        if( readAheadExecutor != null && !chunk.isEmpty() )
+        {
+            List<EntityReference> following = nextChunk();
+            if( !following.isEmpty() )
+            {
+                final Callable<List<EntityInstance>> task = prefetchTask( following );
+                pendingChunk = following;
+                try
+                {
+                    pendingFetch = CompletableFuture.supplyAsync( () -> runPrefetch( task ), readAheadExecutor );
+                }
+                catch( RejectedExecutionException e )
+                {
+                    // Fall back to loading on access
+                    pendingFetch = CompletableFuture.completedFuture( Collections.<EntityInstance>emptyList() );
+                }
+            }
+        }
+    }
+
+    private List<EntityReference> nextChunk()
+    {
+        List<EntityReference> chunk = new ArrayList<>( prefetchSize );
+        while( chunk.size() < prefetchSize && foundEntities.hasNext() )
+        {
+            chunk.add( foundEntities.next() );
+        }
+        return chunk;
+    }
+
+    private Callable<List<EntityInstance>> prefetchTask( List<EntityReference> chunk )
+    {
+        return moduleUnitOfWork.instance().prefetch( chunk, moduleUnitOfWork, potentialModels );
+    }
+
+    private static List<EntityInstance> runPrefetch( Callable<List<EntityInstance>> task )
+    {
+        try
+        {
+            return task.call();
+        }
+        catch( Exception e )
+        {
+            // Fall back to loading on access
+            return Collections.emptyList();
+        }
+    }
+
+    private void addPrefetched( List<EntityInstance> instances )
+    {
+        if( moduleUnitOfWork.isOpen() )
+        {
+            moduleUnitOfWork.instance().addPrefetched( instances );
+        }
+    }
+}
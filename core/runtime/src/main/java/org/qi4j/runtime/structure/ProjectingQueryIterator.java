@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.runtime.structure;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.composite.CompositeInstance;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.unitofwork.NoSuchEntityException;
+import org.qi4j.runtime.entity.EntityModel;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.query.Projections;
+
+/**
+ * Iterator computing projections from EntityStates, for EntityFinders that cannot supply them.
+ * <p>
+ * States are fetched in chunks with one bulk call per EntityStore, and only the projected properties are read.
+ * No entity instances are created, except to follow associations in a projected property path.
+ * Entities that can no longer be found are skipped.
+ * </p>
+ */
+/* package */ final class ProjectingQueryIterator
+    implements Iterator<Projection>
+{
+    private final ModuleUnitOfWork moduleUnitOfWork;
+    private final Class<?> resultType;
+    private final Iterator<EntityReference> foundEntities;
+    private final Iterable<ModelModule<EntityModel>> potentialModels;
+    private final PropertyFunction<?>[] properties;
+    private final List<PropertyFunction<?>> projected;
+    private final int chunkSize;
+
+    private Iterator<Projection> current = Collections.emptyIterator();
+
+    /* package */ ProjectingQueryIterator( ModuleUnitOfWork moduleUnitOfWork,
+                                           Class<?> resultType,
+                                           Iterator<EntityReference> foundEntities,
+                                           PropertyFunction<?>[] properties,
+                                           int chunkSize
+    )
+    {
+        this.moduleUnitOfWork = moduleUnitOfWork;
+        this.resultType = resultType;
+        this.foundEntities = foundEntities;
+        this.potentialModels = moduleUnitOfWork.module().typeLookup().lookupEntityModels( resultType );
+        this.properties = properties;
+        this.projected = Arrays.asList( properties );
+        this.chunkSize = Math.max( 1, chunkSize );
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while( !current.hasNext() && foundEntities.hasNext() )
+        {
+            current = nextChunk().iterator();
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public Projection next()
+    {
+        if( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    private List<Projection> nextChunk()
+    {
+        List<EntityReference> chunk = new ArrayList<>( chunkSize );
+        while( chunk.size() < chunkSize && foundEntities.hasNext() )
+        {
+            chunk.add( foundEntities.next() );
+        }
+
+        Map<EntityReference, EntityState> states = moduleUnitOfWork.instance().entityStatesOf( chunk, potentialModels );
+        List<Projection> projections = new ArrayList<>( states.size() );
+        for( Map.Entry<EntityReference, EntityState> entry : states.entrySet() )
+        {
+            try
+            {
+                Object[] values = new Object[ properties.length ];
+                for( int idx = 0; idx < properties.length; idx++ )
+                {
+                    values[ idx ] = valueOf( entry.getValue(), properties[ idx ] );
+                }
+                projections.add( new Projection( entry.getKey(), projected, values ) );
+            }
+            catch( NoSuchEntityException e )
+            {
+                // Index is out of sync - entity has been removed
+            }
+        }
+        return projections;
+    }
+
+    private Object valueOf( EntityState state, PropertyFunction<?> property )
+    {
+        if( Projections.isDirect( property ) )
+        {
+            return state.propertyValueOf( QualifiedName.fromAccessor( property.accessor() ) );
+        }
+
+        if( property.traversedProperty() != null )
+        {
+            Object value = valueOf( state, property.traversedProperty() );
+            if( value == null )
+            {
+                return null;
+            }
+            CompositeInstance handler = (CompositeInstance) Proxy.getInvocationHandler( value );
+            return handler.state().propertyFor( property.accessor() ).get();
+        }
+
+        // Traversing associations needs the entities
+        Composite entity = (Composite) moduleUnitOfWork.get( resultType, state.identity().identity() );
+        Property<?> value = property.apply( entity );
+        return value == null ? null : value.get();
+    }
+}
@@ -20,9 +20,14 @@ package org.qi4j.runtime.unitofwork;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import org.qi4j.api.common.MetaInfo;
 import org.qi4j.api.entity.EntityComposite;
@@ -188,6 +193,178 @@ public final class UnitOfWorkInstance
         return entityInstance.proxy();
     }
 
+    /**
+     * Prepare bulk loading of entities that are not yet in this UnitOfWork.
+     * <p>
+     * The returned task fetches the missing states with one {@link EntityStoreUnitOfWork#entityStatesOf(Iterable)}
+     * call per EntityStore, resolving models the same way as {@link #get(EntityReference, ModuleUnitOfWork, Iterable, Class)}.
+     * It does not touch the instance cache, so it may be run on another thread. Hand its result to
+     * {@link #addPrefetched(Iterable)} on the thread using this UnitOfWork.
+     * </p>
+     *
+     * @param identities      identities of the entities to load
+     * @param uow             ModuleUnitOfWork the loaded instances will belong to
+     * @param potentialModels models the entities may have
+     *
+     * @return task loading the entity instances
+     */
+    public Callable<List<EntityInstance>> prefetch( Iterable<EntityReference> identities,
+                                                    final ModuleUnitOfWork uow,
+                                                    Iterable<ModelModule<EntityModel>> potentialModels
+    )
+    {
+        checkOpen();
+
+        final List<EntityReference> missing = new ArrayList<>();
+        for( EntityReference identity : identities )
+        {
+            if( !instanceCache.containsKey( identity ) )
+            {
+                missing.add( identity );
+            }
+        }
+
+        // Resolve EntityStore UnitOfWorks here, as the storeUnitOfWork map is not thread-safe
+        final List<ModelModule<EntityModel>> models = new ArrayList<>();
+        final List<EntityStoreUnitOfWork> storeUows = new ArrayList<>();
+        for( ModelModule<EntityModel> potentialModel : potentialModels )
+        {
+            models.add( potentialModel );
+            storeUows.add( getEntityStoreUnitOfWork( potentialModel.module().entityStore(), potentialModel.module() ) );
+        }
+
+        return new Callable<List<EntityInstance>>()
+        {
+            @Override
+            public List<EntityInstance> call()
+            {
+                List<EntityInstance> instances = new ArrayList<>();
+                if( missing.isEmpty() )
+                {
+                    return instances;
+                }
+
+                Map<EntityStoreUnitOfWork, Map<EntityReference, EntityState>> fetched = new IdentityHashMap<>();
+                Map<EntityReference, Integer> foundIn = fetchStates( missing, storeUows, fetched );
+                for( Map.Entry<EntityReference, Integer> found : foundIn.entrySet() )
+                {
+                    ModuleInstance module = models.get( found.getValue() ).module();
+                    EntityState entityState = fetched.get( storeUows.get( found.getValue() ) ).get( found.getKey() );
+                    EntityModel model = (EntityModel) entityState.entityDescriptor();
+                    instances.add( new EntityInstance( uow, module, model, entityState ) );
+                }
+                return instances;
+            }
+        };
+    }
+
+    /**
+     * Get the states of the given entities without creating entity instances, for reading a few properties.
+     * <p>
+     * Entities already in this UnitOfWork are read from their instance, so changes made in this UnitOfWork
+     * are visible. The others are fetched with one {@link EntityStoreUnitOfWork#entityStatesOf(Iterable)} call
+     * per EntityStore and are not added to this UnitOfWork. Entities that are not found, or that have been
+     * removed in this UnitOfWork, are left out.
+     * </p>
+     *
+     * @param identities      identities of the entities
+     * @param potentialModels models the entities may have
+     *
+     * @return states of the found entities, in the order of the given identities
+     */
+    public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities,
+                                                             Iterable<ModelModule<EntityModel>> potentialModels
+    )
+    {
+        checkOpen();
+
+        List<EntityReference> missing = new ArrayList<>();
+        for( EntityReference identity : identities )
+        {
+            if( !instanceCache.containsKey( identity ) )
+            {
+                missing.add( identity );
+            }
+        }
+
+        Map<EntityStoreUnitOfWork, Map<EntityReference, EntityState>> fetched = new IdentityHashMap<>();
+        List<EntityStoreUnitOfWork> storeUows = new ArrayList<>();
+        Map<EntityReference, Integer> foundIn = Collections.emptyMap();
+        if( !missing.isEmpty() )
+        {
+            for( ModelModule<EntityModel> potentialModel : potentialModels )
+            {
+                storeUows.add( getEntityStoreUnitOfWork( potentialModel.module().entityStore(), potentialModel.module() ) );
+            }
+            foundIn = fetchStates( missing, storeUows, fetched );
+        }
+
+        Map<EntityReference, EntityState> states = new LinkedHashMap<>();
+        for( EntityReference identity : identities )
+        {
+            EntityInstance instance = instanceCache.get( identity );
+            if( instance != null )
+            {
+                if( instance.status() != EntityStatus.REMOVED )
+                {
+                    states.put( identity, instance.entityState() );
+                }
+            }
+            else if( foundIn.containsKey( identity ) )
+            {
+                states.put( identity, fetched.get( storeUows.get( foundIn.get( identity ) ) ).get( identity ) );
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Fetch states with one call per distinct EntityStore UnitOfWork.
+     *
+     * @return index of the EntityStore UnitOfWork holding each found entity; the last one wins, as in get()
+     */
+    private static Map<EntityReference, Integer> fetchStates( List<EntityReference> identities,
+                                                              List<EntityStoreUnitOfWork> storeUows,
+                                                              Map<EntityStoreUnitOfWork, Map<EntityReference, EntityState>> fetched
+    )
+    {
+        Map<EntityReference, Integer> foundIn = new LinkedHashMap<>();
+        for( int idx = 0; idx < storeUows.size(); idx++ )
+        {
+            EntityStoreUnitOfWork storeUow = storeUows.get( idx );
+            Map<EntityReference, EntityState> states = fetched.get( storeUow );
+            if( states == null )
+            {
+                states = storeUow.entityStatesOf( identities );
+                fetched.put( storeUow, states );
+            }
+            for( EntityReference identity : states.keySet() )
+            {
+                foundIn.put( identity, idx );
+            }
+        }
+        return foundIn;
+    }
+
+    /**
+     * Add instances loaded by a {@link #prefetch(Iterable, ModuleUnitOfWork, Iterable)} task.
+     * Instances that were loaded into this UnitOfWork in the meantime are kept.
+     *
+     * @param instances prefetched instances
+     */
+    public void addPrefetched( Iterable<EntityInstance> instances )
+    {
+        checkOpen();
+
+        for( EntityInstance instance : instances )
+        {
+            if( !instanceCache.containsKey( instance.identity() ) )
+            {
+                instanceCache.put( instance.identity(), instance );
+            }
+        }
+    }
+
     public Usecase usecase()
     {
         return usecase;
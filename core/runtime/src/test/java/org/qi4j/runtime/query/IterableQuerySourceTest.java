@@ -50,6 +50,7 @@ import org.qi4j.runtime.query.model.values.ContactsValue;
 import org.qi4j.spi.query.EntityFinderException;
 import org.qi4j.test.EntityTestAssembler;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.qi4j.api.query.QueryExpressions.eq;
@@ -64,6 +65,7 @@ import static org.qi4j.api.query.QueryExpressions.or;
 import static org.qi4j.api.query.QueryExpressions.orderBy;
 import static org.qi4j.api.query.QueryExpressions.property;
 import static org.qi4j.api.query.QueryExpressions.templateFor;
+import static org.qi4j.api.query.QueryExpressions.variable;
 
 public class IterableQuerySourceTest
 {
@@ -420,6 +422,37 @@ public class IterableQuerySourceTest
         );
     }
 
+    @Test
+    public void givenOrderDescendingAndFirstAndMaxResultsQueryWhenExecutedThenReturnCorrect()
+        throws EntityFinderException
+    {
+        QueryBuilder<Nameable> qb = qbf.newQueryBuilder( Nameable.class );
+        // should return the 2nd to 4th entities in descending order of name
+        Nameable nameable = templateFor( Nameable.class );
+        Query<Nameable> query = qb.newQuery( Network.nameables() );
+        query.orderBy( orderBy( nameable.name(), OrderBy.Order.DESCENDING ) );
+        query.firstResult( 1 );
+        query.maxResults( 3 );
+        verifyOrderedResults(
+            query,
+            "Programming", "Penang", "Kuala Lumpur"
+        );
+    }
+
+    @Test
+    public void givenFirstAndMaxResultsQueryWhenCountedThenReturnCorrect()
+        throws EntityFinderException
+    {
+        QueryBuilder<Nameable> qb = qbf.newQueryBuilder( Nameable.class );
+        Query<Nameable> query = qb.newQuery( Network.nameables() );
+        assertEquals( 10, query.count() );
+        query.firstResult( 8 );
+        query.maxResults( 3 );
+        assertEquals( 2, query.count() );
+        query.firstResult( 12 );
+        assertEquals( 0, query.count() );
+    }
+
     @Test
     public void givenOrderByOnMixinTypeQueryWhenExecutedThenReturnCorrect()
         throws EntityFinderException
@@ -495,6 +528,23 @@ public class IterableQuerySourceTest
         );
     }
 
+    @Test
+    public void givenEqQueryOnVariableWhenExecutedThenReturnCorrect()
+        throws EntityFinderException
+    {
+        QueryBuilder<Nameable> qb = qbf.newQueryBuilder( Nameable.class );
+        Nameable nameable = templateFor( Nameable.class );
+        // should return Gaming
+        Query<Nameable> query = qb.where(
+            eq( nameable.name(), variable( "name" ) )
+        ).newQuery( Network.nameables() );
+        query.setVariable( "name", "Gaming" );
+        verifyUnorderedResults(
+            query,
+            "Gaming"
+        );
+    }
+
     // TODO solve ManyAssociation filtering for iterables
     // @Test
     public void givenOneOfQueryWhenExecutedThenReturnCorrect()
@@ -17,11 +17,19 @@
  */
 package org.qi4j.spi.cache;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Interface to interact with Cache implementations.
  * The Cache interface has the simple put/get/remove method to make implementations very easy and straight forward.
  * The key is always a String, since it is intended to be used for the EntityComposite's identity, and not totally
  * generic.
+ * <p>
+ * Bulk operations, per-entry time to live and statistics have default implementations built on the single key
+ * methods, implementations backed by a cache product should override them with its native counterparts.
+ * </p>
  *
  * @param <T> The Value type to be stored in the cache.
  */
@@ -34,4 +42,73 @@ public interface Cache<T>
     void put( String key, T value );
 
     boolean exists( String key );
+
+    /**
+     * Put a value that expires after the given time to live, regardless of the cache wide expiration settings.
+     * The default implementation ignores the time to live.
+     *
+     * @param key        The key of the value
+     * @param value      The value
+     * @param timeToLive Time to live of this entry, zero or less means the cache default
+     * @param unit       Unit of timeToLive
+     */
+    default void put( String key, T value, long timeToLive, TimeUnit unit )
+    {
+        put( key, value );
+    }
+
+    /**
+     * Get many values at once.
+     *
+     * @param keys The keys of the values
+     *
+     * @return The cached values by key, keys not in the cache are absent
+     */
+    default Map<String, T> getAll( Iterable<String> keys )
+    {
+        Map<String, T> values = new LinkedHashMap<>();
+        for( String key : keys )
+        {
+            T value = get( key );
+            if( value != null )
+            {
+                values.put( key, value );
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Put many values at once.
+     *
+     * @param values The values by key
+     */
+    default void putAll( Map<String, ? extends T> values )
+    {
+        for( Map.Entry<String, ? extends T> entry : values.entrySet() )
+        {
+            put( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    /**
+     * Remove many values at once.
+     *
+     * @param keys The keys of the values
+     */
+    default void removeAll( Iterable<String> keys )
+    {
+        for( String key : keys )
+        {
+            remove( key );
+        }
+    }
+
+    /**
+     * @return Hit, miss and eviction counts of this cache, {@link CacheStatistics#UNAVAILABLE} by default
+     */
+    default CacheStatistics statistics()
+    {
+        return CacheStatistics.UNAVAILABLE;
+    }
 }
@@ -50,6 +50,22 @@ public interface CachePool
      */
     <T> Cache<T> fetchCache( String cacheId, Class<T> valueType );
 
+    /**
+     * Fetches a cache from the pool, sized for the expected number of entries.
+     * The size hint is only used when the cache is created and implementations may ignore it, the default one does.
+     *
+     * @param cacheId   The identity of the cache.
+     * @param valueType
+     * @param sizeHint  Expected number of entries in the cache, zero or less if unknown.
+     * @param <T>
+     *
+     * @return The cache fetched from the pool.
+     */
+    default <T> Cache<T> fetchCache( String cacheId, Class<T> valueType, int sizeHint )
+    {
+        return fetchCache( cacheId, valueType );
+    }
+
     /**
      * Returns the cache back to the pool.
      * The reference count for the cache must then be decreased and if the count reaches zero, the Cache should be
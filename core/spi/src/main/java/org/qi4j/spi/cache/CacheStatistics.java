@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.cache;
+
+/**
+ * Snapshot of the statistics of a {@link Cache}.
+ * <p>
+ * Counts that the underlying cache does not maintain are -1.
+ * </p>
+ */
+public final class CacheStatistics
+{
+    public static final CacheStatistics UNAVAILABLE = new CacheStatistics( -1, -1, -1, -1 );
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+
+    public CacheStatistics( long hits, long misses, long evictions, long size )
+    {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long hits()
+    {
+        return hits;
+    }
+
+    public long misses()
+    {
+        return misses;
+    }
+
+    public long evictions()
+    {
+        return evictions;
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * @return Ratio of hits to lookups, or -1 if unknown
+     */
+    public double hitRatio()
+    {
+        if( hits < 0 || misses < 0 )
+        {
+            return -1;
+        }
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size;
+    }
+}
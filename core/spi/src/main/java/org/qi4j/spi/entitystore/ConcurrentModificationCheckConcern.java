@@ -26,7 +26,9 @@ import org.qi4j.api.usecase.Usecase;
 import org.qi4j.spi.entity.EntityState;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -63,7 +65,7 @@ public abstract class ConcurrentModificationCheckConcern
         private Module module;
         private Instant currentTime;
 
-        private List<EntityState> loaded = new ArrayList<EntityState>();
+        private List<EntityState> loaded = Collections.synchronizedList( new ArrayList<EntityState>() );
 
         private ReentrantReadWriteLock lock = new ReentrantReadWriteLock(  );
 
@@ -175,5 +177,26 @@ public abstract class ConcurrentModificationCheckConcern
                lock.readLock().unlock();
             }
         }
+
+        @Override
+        public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities )
+            throws EntityStoreException
+        {
+            lock.readLock().lock();
+
+            try
+            {
+               Map<EntityReference, EntityState> entityStates = uow.entityStatesOf( identities );
+               for( EntityState entityState : entityStates.values() )
+               {
+                   versions.rememberVersion( entityState.identity(), entityState.version() );
+                   loaded.add( entityState );
+               }
+               return entityStates;
+            } finally
+            {
+               lock.readLock().unlock();
+            }
+        }
     }
 }
@@ -15,7 +15,11 @@
 package org.qi4j.spi.entitystore;
 
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.structure.Module;
@@ -31,7 +35,7 @@ public final class DefaultEntityStoreUnitOfWork
     private EntityStoreSPI entityStoreSPI;
     private String identity;
     private Module module;
-    private HashMap<EntityReference, EntityState> states = new HashMap<>();
+    private ConcurrentHashMap<EntityReference, EntityState> states = new ConcurrentHashMap<>();
     private Usecase usecase;
     private Instant currentTime;
 
@@ -98,8 +102,41 @@ public final class DefaultEntityStoreUnitOfWork
             return entityState;
         }
         entityState = entityStoreSPI.entityStateOf( this, anIdentity );
-        states.put( anIdentity, entityState );
-        return entityState;
+        EntityState existing = states.putIfAbsent( anIdentity, entityState );
+        return existing == null ? entityState : existing;
+    }
+
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities )
+        throws EntityStoreException
+    {
+        Map<EntityReference, EntityState> result = new LinkedHashMap<>();
+        List<EntityReference> missing = new ArrayList<>();
+        for( EntityReference identity : identities )
+        {
+            EntityState entityState = states.get( identity );
+            result.put( identity, entityState );
+            if( entityState == null )
+            {
+                missing.add( identity );
+            }
+        }
+        if( !missing.isEmpty() )
+        {
+            Map<EntityReference, EntityState> loaded = entityStoreSPI.entityStatesOf( this, missing );
+            for( EntityReference identity : missing )
+            {
+                EntityState entityState = loaded.get( identity );
+                if( entityState == null )
+                {
+                    result.remove( identity );
+                    continue;
+                }
+                EntityState existing = states.putIfAbsent( identity, entityState );
+                result.put( identity, existing == null ? entityState : existing );
+            }
+        }
+        return result;
     }
 
     @Override
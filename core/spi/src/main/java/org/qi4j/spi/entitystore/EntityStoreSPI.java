@@ -14,6 +14,7 @@
 
 package org.qi4j.spi.entitystore;
 
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.spi.entity.EntityState;
@@ -29,6 +30,18 @@ public interface EntityStoreSPI
 
     EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, EntityReference identity );
 
+    /**
+     * Load the EntityStates of many entities at once. Missing entities are left out of the returned map.
+     *
+     * @param unitOfWork the EntityStore UnitOfWork
+     * @param identities identities of the entities to load
+     *
+     * @return EntityStates of the found entities, by identity, ordered as the given identities
+     */
+    Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                      Iterable<EntityReference> identities
+    );
+
     StateCommitter applyChanges( EntityStoreUnitOfWork unitOfWork, Iterable<EntityState> state
     );
 }
@@ -15,6 +15,8 @@
 package org.qi4j.spi.entitystore;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.spi.entity.EntityState;
@@ -58,6 +60,41 @@ public interface EntityStoreUnitOfWork
     EntityState entityStateOf( EntityReference anIdentity )
         throws EntityStoreException, EntityNotFoundException;
 
+    /**
+     * Get the EntityStates for a batch of identities.
+     * <p>
+     * Identities that cannot be found are left out of the returned map, which is ordered as the given identities.
+     * The default implementation calls {@link #entityStateOf(EntityReference)} once per identity, stores that can
+     * load many entities in one round trip should override it.
+     * </p>
+     * <p>
+     * This may be called from another thread than the one using the UnitOfWork, to read ahead of a query
+     * iteration, so implementations must not assume single threaded access in this method.
+     * </p>
+     * @param identities The entity identities.
+     *
+     * @return EntityStates of the found entities, by identity.
+     *
+     * @throws EntityStoreException thrown if retrieval failed.
+     */
+    default Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> identities )
+        throws EntityStoreException
+    {
+        Map<EntityReference, EntityState> states = new LinkedHashMap<>();
+        for( EntityReference identity : identities )
+        {
+            try
+            {
+                states.put( identity, entityStateOf( identity ) );
+            }
+            catch( EntityNotFoundException e )
+            {
+                // Skip missing entities
+            }
+        }
+        return states;
+    }
+
     StateCommitter applyChanges()
         throws EntityStoreException;
 
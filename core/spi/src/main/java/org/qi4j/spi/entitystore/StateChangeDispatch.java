@@ -0,0 +1,624 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.entitystore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.qi4j.api.activation.ActivatorAdapter;
+import org.qi4j.api.activation.Activators;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceDescriptor;
+import org.qi4j.api.service.ServiceReference;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entity.EntityStatus;
+import org.qi4j.spi.entity.ManyAssociationState;
+import org.qi4j.spi.entity.NamedAssociationState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous notification of a StateChangeListener.
+ * <p>
+ * The dispatch is opt-in. It is added to a StateChangeListener service, typically an indexing service, after it
+ * has been assembled:
+ * </p>
+ * <pre><code>
+ * module.services( MyIndexingService.class )
+ *     .withTypes( StateChangeDispatch.class )
+ *     .withConcerns( StateChangeDispatchConcern.class );
+ * </code></pre>
+ * <p>
+ * Committing UnitOfWorks then only queue their changes, a thread per listener notifies them in batches. EntityStores
+ * using {@link StateChangeNotificationConcern} queue changes once they are committed, so the changes of a UnitOfWork
+ * failing to commit are never notified. Their place is reserved before committing, changes to an Entity are notified
+ * in commit order. Successive
+ * changes to an Entity are coalesced, the listener is notified of its last state only, with a status summing up the
+ * coalesced changes. Changes cancelling each other out, like creating then removing an Entity, are not notified.
+ * Entities that were only loaded are not notified either.
+ * </p>
+ * <p>
+ * The queue is in memory and bounded by {@link StateChangeDispatchLimits} set in the service MetaInfo, committing
+ * UnitOfWorks wait before committing when it is full. Changes still queued when the service is passivated are notified first.
+ * Use {@link #awaitNotified(long, TimeUnit)} to read your own writes. The number of pending changes and the
+ * notification lag are reported to the MetricsProvider, if any.
+ * </p>
+ */
+@Mixins( StateChangeDispatch.Mixin.class )
+@Activators( StateChangeDispatch.Activator.class )
+public interface StateChangeDispatch
+{
+    /**
+     * Queue changes, waiting if the queue is full.
+     *
+     * @param changedStates changed Entities
+     */
+    void enqueue( Iterable<EntityState> changedStates );
+
+    /**
+     * Reserve the place of changes about to be committed, waiting if the queue is full. Changes queued after the
+     * reservation are not notified until it is queued or cancelled.
+     *
+     * @return reservation to pass to {@link #enqueue(long, Iterable)} once committed, or to {@link #cancel(long)}
+     */
+    long reserve();
+
+    /**
+     * Queue committed changes in their reserved place.
+     *
+     * @param reservation   reservation made before committing
+     * @param changedStates changed Entities
+     */
+    void enqueue( long reservation, Iterable<EntityState> changedStates );
+
+    /**
+     * Cancel a reservation, the changes have not been committed.
+     *
+     * @param reservation reservation made before committing
+     */
+    void cancel( long reservation );
+
+    /**
+     * @return true in the thread notifying the listener, and once the dispatch is closed, when changes must be
+     *         passed on to the listener instead of being queued
+     */
+    boolean isDispatching();
+
+    /**
+     * Wait until the changes queued before this call have been notified.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    time unit of the timeout
+     *
+     * @return true if the changes have been notified, false if the timeout elapsed first
+     */
+    boolean awaitNotified( long timeout, TimeUnit unit );
+
+    /**
+     * @return number of changed Entities waiting to be notified
+     */
+    int pendingChanges();
+
+    /**
+     * @return time in milliseconds the oldest change waiting to be notified has been waiting, 0 if none
+     */
+    long lag();
+
+    StateChangeDispatchLimits limits();
+
+    /**
+     * Notify the queued changes and stop.
+     */
+    void close();
+
+    class Activator
+        extends ActivatorAdapter<ServiceReference<StateChangeDispatch>>
+    {
+        @Override
+        public void beforePassivation( ServiceReference<StateChangeDispatch> passivating )
+            throws Exception
+        {
+            passivating.get().close();
+        }
+    }
+
+    class Mixin
+        implements StateChangeDispatch
+    {
+        private static final Logger LOGGER = LoggerFactory.getLogger( StateChangeDispatch.class );
+
+        @This
+        private StateChangeListener listener;
+
+        private final String identity;
+        private final StateChangeDispatchLimits limits;
+        private final MetricsCounter notifiedCounter;
+        private final Map<String, PendingChange> pending = new LinkedHashMap<>();
+        private final TreeSet<Long> reserved = new TreeSet<>();
+        private Thread worker;
+        private boolean closed;
+        private long reservations;
+        private long lastEnqueued;
+        private long notifyingFrom = Long.MAX_VALUE;
+
+        public Mixin( @Uses ServiceDescriptor descriptor, @Service @Optional MetricsProvider metrics )
+        {
+            identity = descriptor.identity();
+            StateChangeDispatchLimits limits = descriptor.metaInfo( StateChangeDispatchLimits.class );
+            this.limits = limits == null ? StateChangeDispatchLimits.DEFAULT : limits;
+
+            if( metrics != null )
+            {
+                MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+                gauges.registerGauge( StateChangeDispatch.class, identity + " pending changes", new MetricsGauge<Integer>()
+                {
+                    @Override
+                    public Integer value()
+                    {
+                        return pendingChanges();
+                    }
+                } );
+                gauges.registerGauge( StateChangeDispatch.class, identity + " lag", new MetricsGauge<Long>()
+                {
+                    @Override
+                    public Long value()
+                    {
+                        return lag();
+                    }
+                } );
+                MetricsCounterFactory counters = metrics.createFactory( MetricsCounterFactory.class );
+                notifiedCounter = counters.createCounter( StateChangeDispatch.class, identity + " notified changes" );
+            }
+            else
+            {
+                notifiedCounter = null;
+            }
+        }
+
+        @Override
+        public void enqueue( Iterable<EntityState> changedStates )
+        {
+            enqueue( reserve(), changedStates );
+        }
+
+        @Override
+        public synchronized long reserve()
+        {
+            while( !closed && pending.size() >= limits.maxPending() )
+            {
+                try
+                {
+                    wait();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new EntityStoreException( "Interrupted while queuing changes for " + identity );
+                }
+            }
+            reservations++;
+            reserved.add( reservations );
+            return reservations;
+        }
+
+        @Override
+        public synchronized void enqueue( long reservation, Iterable<EntityState> changedStates )
+        {
+            reserved.remove( reservation );
+            if( closed )
+            {
+                // Late changes, notified right away
+                notifyAll();
+                listener.notifyChanges( changedStates );
+                return;
+            }
+            if( worker == null )
+            {
+                worker = new Thread( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        work();
+                    }
+                }, "state-change-dispatch-" + identity );
+                worker.setDaemon( true );
+                worker.start();
+            }
+            long now = System.currentTimeMillis();
+            for( EntityState state : changedStates )
+            {
+                if( state.status() == EntityStatus.LOADED )
+                {
+                    // Read but not changed
+                    continue;
+                }
+                String id = state.identity().identity();
+                PendingChange previous = pending.get( id );
+                if( previous == null )
+                {
+                    pending.put( id, new PendingChange( state, state.status(), reservation, reservation, now ) );
+                }
+                else
+                {
+                    EntityState last;
+                    EntityStatus status;
+                    if( previous.reservation < reservation )
+                    {
+                        last = state;
+                        status = coalesce( previous.status, state.status() );
+                    }
+                    else
+                    {
+                        // Committed before the queued change, queued after it
+                        last = previous.state;
+                        status = coalesce( state.status(), previous.status );
+                    }
+                    if( status == null )
+                    {
+                        pending.remove( id );
+                    }
+                    else
+                    {
+                        // Keep the place and age of the first change, so that lag is not underestimated
+                        pending.put( id, new PendingChange( last, status, Math.max( previous.reservation, reservation ),
+                                                            Math.min( previous.firstReservation, reservation ),
+                                                            previous.since ) );
+                    }
+                }
+            }
+            lastEnqueued = Math.max( lastEnqueued, reservation );
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel( long reservation )
+        {
+            reserved.remove( reservation );
+            notifyAll();
+        }
+
+        @Override
+        public synchronized boolean isDispatching()
+        {
+            return closed || Thread.currentThread() == worker;
+        }
+
+        @Override
+        public synchronized boolean awaitNotified( long timeout, TimeUnit unit )
+        {
+            long target = lastEnqueued;
+            long deadline = System.currentTimeMillis() + unit.toMillis( timeout );
+            while( notifiedBelow() <= target && worker.isAlive() )
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if( remaining <= 0 )
+                {
+                    return false;
+                }
+                try
+                {
+                    wait( remaining );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized int pendingChanges()
+        {
+            return pending.size();
+        }
+
+        @Override
+        public synchronized long lag()
+        {
+            Iterator<PendingChange> changes = pending.values().iterator();
+            return changes.hasNext() ? System.currentTimeMillis() - changes.next().since : 0;
+        }
+
+        @Override
+        public StateChangeDispatchLimits limits()
+        {
+            return limits;
+        }
+
+        @Override
+        public void close()
+        {
+            Thread worker;
+            synchronized( this )
+            {
+                closed = true;
+                worker = this.worker;
+                notifyAll();
+            }
+            if( worker != null )
+            {
+                try
+                {
+                    worker.join();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void work()
+        {
+            while( true )
+            {
+                List<EntityState> batch;
+                synchronized( this )
+                {
+                    while( !closed && !hasNotifiable() )
+                    {
+                        try
+                        {
+                            wait();
+                        }
+                        catch( InterruptedException e )
+                        {
+                            // Keep on notifying until closed
+                        }
+                    }
+                    if( pending.isEmpty() )
+                    {
+                        return;
+                    }
+                    long notifiableBelow = notifiableBelow();
+                    batch = new ArrayList<>( Math.min( pending.size(), limits.maxBatch() ) );
+                    Iterator<PendingChange> changes = pending.values().iterator();
+                    while( changes.hasNext() && batch.size() < limits.maxBatch() )
+                    {
+                        PendingChange change = changes.next();
+                        if( change.reservation < notifiableBelow )
+                        {
+                            batch.add( change.notifiedState() );
+                            notifyingFrom = Math.min( notifyingFrom, change.firstReservation );
+                            changes.remove();
+                        }
+                    }
+                    // Room for waiting UnitOfWorks
+                    notifyAll();
+                }
+                try
+                {
+                    listener.notifyChanges( batch );
+                }
+                catch( Throwable e )
+                {
+                    // Nobody to throw to, the UnitOfWorks have already been committed
+                    LOGGER.error( "Notification of " + batch.size() + " changes to " + identity + " failed", e );
+                }
+                finally
+                {
+                    if( notifiedCounter != null )
+                    {
+                        notifiedCounter.increment( batch.size() );
+                    }
+                    synchronized( this )
+                    {
+                        notifyingFrom = Long.MAX_VALUE;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Changes are notified once the reservations made before theirs are queued or cancelled, so that a change
+         * committed earlier is never notified after them. Once closed, everything is notified.
+         *
+         * @return reservation below which queued changes can be notified
+         */
+        private long notifiableBelow()
+        {
+            return closed || reserved.isEmpty() ? Long.MAX_VALUE : reserved.first();
+        }
+
+        /**
+         * Watermark of the notified changes. Reservations whose changes were all coalesced away, only loaded, or
+         * cancelled count as notified.
+         *
+         * @return reservation below which all queued changes have been notified
+         */
+        private long notifiedBelow()
+        {
+            long below = Math.min( reservations + 1, notifyingFrom );
+            if( !reserved.isEmpty() )
+            {
+                below = Math.min( below, reserved.first() );
+            }
+            for( PendingChange change : pending.values() )
+            {
+                below = Math.min( below, change.firstReservation );
+            }
+            return below;
+        }
+
+        private boolean hasNotifiable()
+        {
+            long notifiableBelow = notifiableBelow();
+            for( PendingChange change : pending.values() )
+            {
+                if( change.reservation < notifiableBelow )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return status summing up two successive changes to an Entity, null if they cancel each other out
+         */
+        private static EntityStatus coalesce( EntityStatus previous, EntityStatus next )
+        {
+            if( previous == EntityStatus.NEW )
+            {
+                return next == EntityStatus.REMOVED ? null : EntityStatus.NEW;
+            }
+            if( next == EntityStatus.NEW )
+            {
+                // Removed then created again, the notified state must be replaced
+                return EntityStatus.UPDATED;
+            }
+            return next;
+        }
+
+        /**
+         * Last state of a changed Entity, with the status of the coalesced changes.
+         */
+        private static final class PendingChange
+        {
+            private final EntityState state;
+            private final EntityStatus status;
+            private final long reservation;
+            private final long firstReservation;
+            private final long since;
+
+            private PendingChange( EntityState state, EntityStatus status, long reservation, long firstReservation,
+                                   long since )
+            {
+                this.state = state;
+                this.status = status;
+                this.reservation = reservation;
+                this.firstReservation = firstReservation;
+                this.since = since;
+            }
+
+            private EntityState notifiedState()
+            {
+                return status == state.status() ? state : new CoalescedEntityState( state, status );
+            }
+        }
+
+        /**
+         * EntityState with the status of coalesced changes.
+         */
+        private static final class CoalescedEntityState
+            implements EntityState
+        {
+            private final EntityState state;
+            private final EntityStatus status;
+
+            private CoalescedEntityState( EntityState state, EntityStatus status )
+            {
+                this.state = state;
+                this.status = status;
+            }
+
+            @Override
+            public EntityReference identity()
+            {
+                return state.identity();
+            }
+
+            @Override
+            public String version()
+            {
+                return state.version();
+            }
+
+            @Override
+            public Instant lastModified()
+            {
+                return state.lastModified();
+            }
+
+            @Override
+            public void remove()
+            {
+                state.remove();
+            }
+
+            @Override
+            public EntityStatus status()
+            {
+                return status;
+            }
+
+            @Override
+            public boolean isAssignableTo( Class<?> type )
+            {
+                return state.isAssignableTo( type );
+            }
+
+            @Override
+            public EntityDescriptor entityDescriptor()
+            {
+                return state.entityDescriptor();
+            }
+
+            @Override
+            public Object propertyValueOf( QualifiedName stateName )
+            {
+                return state.propertyValueOf( stateName );
+            }
+
+            @Override
+            public void setPropertyValue( QualifiedName stateName, Object json )
+            {
+                state.setPropertyValue( stateName, json );
+            }
+
+            @Override
+            public EntityReference associationValueOf( QualifiedName stateName )
+            {
+                return state.associationValueOf( stateName );
+            }
+
+            @Override
+            public void setAssociationValue( QualifiedName stateName, EntityReference newEntity )
+            {
+                state.setAssociationValue( stateName, newEntity );
+            }
+
+            @Override
+            public ManyAssociationState manyAssociationValueOf( QualifiedName stateName )
+            {
+                return state.manyAssociationValueOf( stateName );
+            }
+
+            @Override
+            public NamedAssociationState namedAssociationValueOf( QualifiedName stateName )
+            {
+                return state.namedAssociationValueOf( stateName );
+            }
+        }
+    }
+}
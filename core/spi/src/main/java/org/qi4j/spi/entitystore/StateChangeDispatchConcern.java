@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.entitystore;
+
+import org.qi4j.api.concern.ConcernOf;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.spi.entity.EntityState;
+
+/**
+ * Queue changes notified to a StateChangeListener in its {@link StateChangeDispatch} instead of notifying them
+ * in the committing thread.
+ * <p>
+ * EntityStores using {@link StateChangeNotificationConcern} do not notify the listener while committing, they queue
+ * the changes in the StateChangeDispatch themselves once committed.
+ * </p>
+ */
+public class StateChangeDispatchConcern
+    extends ConcernOf<StateChangeListener>
+    implements StateChangeListener
+{
+    @This
+    private StateChangeDispatch dispatch;
+
+    @Override
+    public void notifyChanges( Iterable<EntityState> changedStates )
+    {
+        if( dispatch.isDispatching() )
+        {
+            next.notifyChanges( changedStates );
+        }
+        else
+        {
+            dispatch.enqueue( changedStates );
+        }
+    }
+}
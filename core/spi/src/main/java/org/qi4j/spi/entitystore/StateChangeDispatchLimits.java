@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.entitystore;
+
+/**
+ * Set an instance of this in the MetaInfo of a StateChangeListener assembled with the {@link StateChangeDispatch}
+ * to bound it.
+ * <p>
+ * "maxPending": how many changed Entities can wait to be notified, committing UnitOfWorks wait when it is reached.
+ * </p>
+ * <p>
+ * "maxBatch": how many changed Entities are notified at once.
+ * </p>
+ * <p>
+ * When no StateChangeDispatchLimits are set, {@link #DEFAULT} applies.
+ * </p>
+ */
+public final class StateChangeDispatchLimits
+{
+    public static final StateChangeDispatchLimits DEFAULT = new StateChangeDispatchLimits( 10000, 1000 );
+
+    private final int maxPending;
+    private final int maxBatch;
+
+    public StateChangeDispatchLimits( int maxPending, int maxBatch )
+    {
+        this.maxPending = maxPending;
+        this.maxBatch = maxBatch;
+    }
+
+    public int maxPending()
+    {
+        return maxPending;
+    }
+
+    public int maxBatch()
+    {
+        return maxBatch;
+    }
+}
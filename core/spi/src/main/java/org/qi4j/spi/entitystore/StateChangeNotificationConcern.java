@@ -14,12 +14,18 @@
 
 package org.qi4j.spi.entitystore;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.qi4j.api.concern.ConcernOf;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.spi.entity.EntityState;
 
 /**
  * State change notification Concern.
+ * <p>
+ * StateChangeListeners are notified before the changes are committed. Listeners dispatched asynchronously by a
+ * {@link StateChangeDispatch} get the changes queued once committed instead.
+ * </p>
  */
 public abstract class StateChangeNotificationConcern
     extends ConcernOf<EntityStoreSPI>
@@ -39,11 +45,42 @@ public abstract class StateChangeNotificationConcern
             @Override
             public void commit()
             {
-                for( StateChangeListener listener : listeners )
+                List<StateChangeDispatch> dispatches = new ArrayList<>();
+                List<Long> reservations = new ArrayList<>();
+                boolean committed = false;
+                try
                 {
-                    listener.notifyChanges( state );
+                    for( StateChangeListener listener : listeners )
+                    {
+                        if( listener instanceof StateChangeDispatch )
+                        {
+                            // Queued once committed, changes failing to commit must never be dispatched
+                            StateChangeDispatch dispatch = (StateChangeDispatch) listener;
+                            reservations.add( dispatch.reserve() );
+                            dispatches.add( dispatch );
+                        }
+                        else
+                        {
+                            listener.notifyChanges( state );
+                        }
+                    }
+                    committer.commit();
+                    committed = true;
+                }
+                finally
+                {
+                    for( int idx = 0; idx < dispatches.size(); idx++ )
+                    {
+                        if( committed )
+                        {
+                            dispatches.get( idx ).enqueue( reservations.get( idx ), state );
+                        }
+                        else
+                        {
+                            dispatches.get( idx ).cancel( reservations.get( idx ) );
+                        }
+                    }
                 }
-                committer.commit();
             }
 
             @Override
@@ -25,9 +25,13 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -196,6 +200,64 @@ public class JSONMapEntityStoreMixin
         return loadedState;
     }
 
+    @Override
+    public synchronized Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                                          Iterable<EntityReference> identities
+    )
+    {
+        DefaultEntityStoreUnitOfWork uow = (DefaultEntityStoreUnitOfWork) unitOfWork;
+        boolean cacheOnRead = doCacheOnRead( uow );
+        List<String> keys = new ArrayList<>();
+        for( EntityReference identity : identities )
+        {
+            keys.add( identity.identity() );
+        }
+        Map<String, CacheState> cached = cache.getAll( keys );
+        List<EntityReference> missed = new ArrayList<>();
+        for( EntityReference identity : identities )
+        {
+            if( !cached.containsKey( identity.identity() ) )
+            {
+                missed.add( identity );
+            }
+        }
+        Map<EntityReference, Reader> readers = missed.isEmpty()
+                                               ? Collections.<EntityReference, Reader>emptyMap()
+                                               : mapEntityStore.get( missed );
+        Map<String, CacheState> loaded = new LinkedHashMap<>();
+        Map<EntityReference, EntityState> states = new LinkedHashMap<>();
+        for( EntityReference identity : identities )
+        {
+            CacheState cacheState = cached.get( identity.identity() );
+            EntityState state;
+            if( cacheState != null )
+            {
+                state = cachedState( identity, cacheState, uow );
+            }
+            else
+            {
+                Reader in = readers.get( identity );
+                if( in == null )
+                {
+                    // Skip missing entities
+                    continue;
+                }
+                JSONEntityState loadedState = readEntityState( uow, in );
+                if( cacheOnRead )
+                {
+                    loaded.put( identity.identity(), new CacheState( loadedState.state() ) );
+                }
+                state = loadedState;
+            }
+            states.put( identity, state );
+        }
+        if( !loaded.isEmpty() )
+        {
+            cache.putAll( loaded );
+        }
+        return states;
+    }
+
     @Override
     public StateCommitter applyChanges( final EntityStoreUnitOfWork unitOfWork, final Iterable<EntityState> state
     )
@@ -221,6 +283,8 @@ public class JSONMapEntityStoreMixin
                                 options = CacheOptions.ALWAYS;
                             }
 
+                            Map<String, CacheState> cached = new LinkedHashMap<>();
+                            List<String> removed = new ArrayList<>();
                             for( EntityState entityState : state )
                             {
                                 JSONEntityState state = (JSONEntityState) entityState;
@@ -232,7 +296,7 @@ public class JSONMapEntityStoreMixin
                                     }
                                     if( options.cacheOnNew() )
                                     {
-                                        cache.put( state.identity().identity(), new CacheState( state.state() ) );
+                                        cached.put( state.identity().identity(), new CacheState( state.state() ) );
                                     }
                                 }
                                 else if( state.status().equals( EntityStatus.UPDATED ) )
@@ -243,15 +307,23 @@ public class JSONMapEntityStoreMixin
                                     }
                                     if( options.cacheOnWrite() )
                                     {
-                                        cache.put( state.identity().identity(), new CacheState( state.state() ) );
+                                        cached.put( state.identity().identity(), new CacheState( state.state() ) );
                                     }
                                 }
                                 else if( state.status().equals( EntityStatus.REMOVED ) )
                                 {
                                     changer.removeEntity( state.identity(), state.entityDescriptor() );
-                                    cache.remove( state.identity().identity() );
+                                    removed.add( state.identity().identity() );
                                 }
                             }
+                            if( !cached.isEmpty() )
+                            {
+                                cache.putAll( cached );
+                            }
+                            if( !removed.isEmpty() )
+                            {
+                                cache.removeAll( removed );
+                            }
                         }
                     } );
                 }
@@ -476,22 +548,29 @@ public class JSONMapEntityStoreMixin
         CacheState cacheState = cache.get( identity.identity() );
         if( cacheState != null )
         {
-            JSONObject data = cacheState.json;
-            try
-            {
-                String type = data.getString( JSONKeys.TYPE );
-                EntityDescriptor entityDescriptor = unitOfWork.module().entityDescriptor( type );
-                return new JSONEntityState( unitOfWork, valueSerialization, identity, entityDescriptor, data );
-            }
-            catch( JSONException e )
-            {
-                // Should not be able to happen, unless internal error in the cache system.
-                throw new EntityStoreException( e );
-            }
+            return cachedState( identity, cacheState, unitOfWork );
         }
         return null;
     }
 
+    private EntityState cachedState( EntityReference identity, CacheState cacheState,
+                                     DefaultEntityStoreUnitOfWork unitOfWork
+    )
+    {
+        JSONObject data = cacheState.json;
+        try
+        {
+            String type = data.getString( JSONKeys.TYPE );
+            EntityDescriptor entityDescriptor = unitOfWork.module().entityDescriptor( type );
+            return new JSONEntityState( unitOfWork, valueSerialization, identity, entityDescriptor, data );
+        }
+        catch( JSONException e )
+        {
+            // Should not be able to happen, unless internal error in the cache system.
+            throw new EntityStoreException( e );
+        }
+    }
+
     private boolean doCacheOnRead( DefaultEntityStoreUnitOfWork unitOfWork )
     {
         CacheOptions cacheOptions = unitOfWork.usecase().metaInfo( CacheOptions.class );
@@ -503,7 +582,8 @@ public class JSONMapEntityStoreMixin
     {
         public JSONObject json;
 
-        private CacheState()
+        // Required by Externalizable, for caches holding serialized states
+        public CacheState()
         {
         }
 
@@ -516,7 +596,10 @@ public class JSONMapEntityStoreMixin
         public void writeExternal( ObjectOutput out )
             throws IOException
         {
-            out.writeUTF( json.toString() );
+            // Not writeUTF, limited to 64KB
+            byte[] bytes = json.toString().getBytes( StandardCharsets.UTF_8 );
+            out.writeInt( bytes.length );
+            out.write( bytes );
         }
 
         @Override
@@ -525,7 +608,9 @@ public class JSONMapEntityStoreMixin
         {
             try
             {
-                json = new JSONObject( in.readUTF() );
+                byte[] bytes = new byte[ in.readInt() ];
+                in.readFully( bytes );
+                json = new JSONObject( new String( bytes, StandardCharsets.UTF_8 ) );
             }
             catch( JSONException e )
             {
@@ -16,6 +16,8 @@ package org.qi4j.spi.entitystore.helpers;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.io.Input;
@@ -35,6 +37,33 @@ public interface MapEntityStore
     Reader get( EntityReference entityReference )
         throws EntityStoreException;
 
+    /**
+     * Get the state of several entities at once.
+     * <p>
+     * The default implementation calls {@link #get(EntityReference)} for each reference, stores able to fetch many
+     * entries in a single round-trip should override it.
+     * </p>
+     * @param entityReferences The references to the entities that we want to get.
+     * @return Entity state Readers by reference, entities not found are left out
+     */
+    default Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        Map<EntityReference, Reader> readers = new LinkedHashMap<>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            try
+            {
+                readers.put( entityReference, get( entityReference ) );
+            }
+            catch( EntityNotFoundException e )
+            {
+                // Skip missing entities
+            }
+        }
+        return readers;
+    }
+
     /**
      * @return All entities state Readers
      */
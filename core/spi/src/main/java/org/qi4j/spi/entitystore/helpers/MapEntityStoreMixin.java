@@ -141,6 +141,20 @@ public class MapEntityStoreMixin
         return readEntityState( unitOfWork, in );
     }
 
+    @Override
+    public synchronized Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitofwork,
+                                                                          Iterable<EntityReference> identities
+    )
+    {
+        DefaultEntityStoreUnitOfWork unitOfWork = (DefaultEntityStoreUnitOfWork) unitofwork;
+        Map<EntityReference, EntityState> states = new LinkedHashMap<>();
+        for( Map.Entry<EntityReference, Reader> entry : mapEntityStore.get( identities ).entrySet() )
+        {
+            states.put( entry.getKey(), readEntityState( unitOfWork, entry.getValue() ) );
+        }
+        return states;
+    }
+
     @Override
     public StateCommitter applyChanges( final EntityStoreUnitOfWork unitofwork, final Iterable<EntityState> state
     )
@@ -0,0 +1,267 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.query.grammar.AndSpecification;
+import org.qi4j.api.query.grammar.ComparisonSpecification;
+import org.qi4j.api.query.grammar.ContainsAllSpecification;
+import org.qi4j.api.query.grammar.ContainsSpecification;
+import org.qi4j.api.query.grammar.EqSpecification;
+import org.qi4j.api.query.grammar.GeSpecification;
+import org.qi4j.api.query.grammar.GtSpecification;
+import org.qi4j.api.query.grammar.LeSpecification;
+import org.qi4j.api.query.grammar.LtSpecification;
+import org.qi4j.api.query.grammar.MatchesSpecification;
+import org.qi4j.api.query.grammar.NeSpecification;
+import org.qi4j.api.query.grammar.NotSpecification;
+import org.qi4j.api.query.grammar.OrSpecification;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.query.grammar.PropertyNotNullSpecification;
+import org.qi4j.api.query.grammar.PropertyNullSpecification;
+import org.qi4j.api.query.grammar.Variable;
+
+/**
+ * Compiles where clauses built with {@link org.qi4j.api.query.QueryExpressions} into Predicates over what a query
+ * is evaluated against, eg. Entities or index snapshots.
+ * <p>
+ * Boolean operators are compiled here, Variables are bound and regular expressions are compiled once. Property
+ * comparisons and lookups are left to subclasses, as is everything not known to the compiler.
+ * </p>
+ *
+ * @param <T> type of what the compiled Predicates test
+ */
+public abstract class AbstractPredicateCompiler<T>
+{
+    /**
+     * Comparison operators.
+     */
+    public enum Operator
+    {
+        EQ, NE, GT, GE, LT, LE
+    }
+
+    private final Map<String, Object> variables;
+
+    protected AbstractPredicateCompiler( Map<String, Object> variables )
+    {
+        this.variables = variables;
+    }
+
+    /**
+     * @param predicate where clause
+     *
+     * @return the compiled where clause
+     */
+    @SuppressWarnings( { "raw", "unchecked" } )
+    public Predicate<T> compile( Predicate<Composite> predicate )
+    {
+        if( predicate instanceof AndSpecification )
+        {
+            final List<Predicate<T>> operands = compile( ( (AndSpecification) predicate ).operands() );
+            return new Predicate<T>()
+            {
+                @Override
+                public boolean test( T item )
+                {
+                    for( Predicate<T> operand : operands )
+                    {
+                        if( !operand.test( item ) )
+                        {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            };
+        }
+        else if( predicate instanceof OrSpecification )
+        {
+            final List<Predicate<T>> operands = compile( ( (OrSpecification) predicate ).operands() );
+            return new Predicate<T>()
+            {
+                @Override
+                public boolean test( T item )
+                {
+                    for( Predicate<T> operand : operands )
+                    {
+                        if( operand.test( item ) )
+                        {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+        else if( predicate instanceof NotSpecification )
+        {
+            return compile( ( (NotSpecification) predicate ).operand() ).negate();
+        }
+        else if( predicate instanceof ComparisonSpecification )
+        {
+            ComparisonSpecification<?> comparison = (ComparisonSpecification<?>) predicate;
+            Operator operator = operatorOf( comparison );
+            if( operator != null )
+            {
+                return comparison( comparison.property(), operator, bind( comparison.value() ) );
+            }
+        }
+        else if( predicate instanceof PropertyNullSpecification )
+        {
+            return isNull( ( (PropertyNullSpecification<?>) predicate ).property(), true );
+        }
+        else if( predicate instanceof PropertyNotNullSpecification )
+        {
+            return isNull( ( (PropertyNotNullSpecification<?>) predicate ).property(), false );
+        }
+        else if( predicate instanceof MatchesSpecification )
+        {
+            MatchesSpecification matches = (MatchesSpecification) predicate;
+            Object regexp = bind( matches.value() );
+            if( regexp instanceof String )
+            {
+                return matches( matches.property(), Pattern.compile( (String) regexp ) );
+            }
+        }
+        else if( predicate instanceof ContainsSpecification )
+        {
+            ContainsSpecification<?> contains = (ContainsSpecification<?>) predicate;
+            List<Object> values = new ArrayList<>( 1 );
+            values.add( bind( contains.value() ) );
+            return contains( contains.collectionProperty(), values );
+        }
+        else if( predicate instanceof ContainsAllSpecification )
+        {
+            ContainsAllSpecification<?> containsAll = (ContainsAllSpecification<?>) predicate;
+            List<Object> values = new ArrayList<>();
+            for( Object value : containsAll.containedValues() )
+            {
+                values.add( bind( value ) );
+            }
+            return contains( containsAll.collectionProperty(), values );
+        }
+        return other( predicate );
+    }
+
+    /**
+     * @param value value, or Variable
+     *
+     * @return the value, or the value bound to the Variable
+     */
+    public Object bind( Object value )
+    {
+        if( value instanceof Variable && variables != null )
+        {
+            String name = ( (Variable) value ).variableName();
+            if( variables.containsKey( name ) )
+            {
+                return variables.get( name );
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param operator      comparison operator
+     * @param propertyValue value of the property, not null
+     * @param value         compared value
+     *
+     * @return the result of the comparison, as {@link ComparisonSpecification} subclasses compute it
+     */
+    @SuppressWarnings( { "raw", "unchecked" } )
+    public static boolean compare( Operator operator, Object propertyValue, Object value )
+    {
+        switch( operator )
+        {
+            case EQ:
+                return propertyValue.equals( value );
+            case NE:
+                return !propertyValue.equals( value );
+            case GT:
+                return ( (Comparable) propertyValue ).compareTo( value ) > 0;
+            case GE:
+                return ( (Comparable) propertyValue ).compareTo( value ) >= 0;
+            case LT:
+                return ( (Comparable) propertyValue ).compareTo( value ) < 0;
+            default:
+                return ( (Comparable) propertyValue ).compareTo( value ) <= 0;
+        }
+    }
+
+    protected abstract Predicate<T> comparison( PropertyFunction<?> property, Operator operator, Object value );
+
+    protected abstract Predicate<T> isNull( PropertyFunction<?> property, boolean isNull );
+
+    protected abstract Predicate<T> matches( PropertyFunction<?> property, Pattern pattern );
+
+    /**
+     * @param collectionProperty a Collection property
+     * @param values             values the Collection must all contain
+     *
+     * @return Predicate
+     */
+    protected abstract Predicate<T> contains( PropertyFunction<?> collectionProperty, List<Object> values );
+
+    /**
+     * @param predicate part of a where clause not known to the compiler, or whose Variables are not all bound
+     *
+     * @return Predicate
+     */
+    protected abstract Predicate<T> other( Predicate<Composite> predicate );
+
+    private List<Predicate<T>> compile( Iterable<Predicate<Composite>> operands )
+    {
+        List<Predicate<T>> compiled = new ArrayList<>();
+        for( Predicate<Composite> operand : operands )
+        {
+            compiled.add( compile( operand ) );
+        }
+        return compiled;
+    }
+
+    private static Operator operatorOf( ComparisonSpecification<?> comparison )
+    {
+        Class<?> type = comparison.getClass();
+        if( type == EqSpecification.class )
+        {
+            return Operator.EQ;
+        }
+        else if( type == NeSpecification.class )
+        {
+            return Operator.NE;
+        }
+        else if( type == GtSpecification.class )
+        {
+            return Operator.GT;
+        }
+        else if( type == GeSpecification.class )
+        {
+            return Operator.GE;
+        }
+        else if( type == LtSpecification.class )
+        {
+            return Operator.LT;
+        }
+        else if( type == LeSpecification.class )
+        {
+            return Operator.LE;
+        }
+        // Subclassed comparison
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.Map;
+import java.util.function.Predicate;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.grammar.Aggregation;
+import org.qi4j.api.query.grammar.PropertyFunction;
+
+/**
+ * Optional extension of {@link EntityFinder} for indexes that can compute aggregates themselves.
+ * <p>
+ * If the EntityFinder service does not implement this, or returns null, aggregates are computed by
+ * streaming over projections of the matching entities, see {@link ProjectionFinder}.
+ * </p>
+ */
+public interface AggregationFinder
+{
+    /**
+     * Compute aggregates over the entities matching the query criterion, grouped by the given properties.
+     *
+     * @param resultType   Type that the entities must have.
+     * @param whereClause  Where clause specification.
+     * @param variables    Query variables
+     * @param groupBy      Grouping properties, may be empty.
+     * @param aggregations Aggregates to compute for each group.
+     *
+     * @return One row per group, in ascending order of group values, or null if this index cannot compute
+     *         the given aggregates.
+     */
+    Iterable<AggregationResult> findAggregations( Class<?> resultType,
+                                                  @Optional Predicate<Composite> whereClause,
+                                                  Map<String, Object> variables,
+                                                  PropertyFunction<?>[] groupBy,
+                                                  Aggregation<?>[] aggregations
+    )
+        throws EntityFinderException;
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.List;
+import org.qi4j.api.query.grammar.Aggregation;
+import org.qi4j.api.util.Classes;
+
+/**
+ * Utilities for {@link AggregationFinder} implementations.
+ */
+public final class Aggregations
+{
+    /**
+     * Orders group values ascending, nulls first.
+     */
+    public static final Comparator<Object> GROUP_VALUE_ORDER = new Comparator<Object>()
+    {
+        @Override
+        @SuppressWarnings( { "raw", "unchecked" } )
+        public int compare( Object value1, Object value2 )
+        {
+            if( value1 == null || value2 == null )
+            {
+                return value1 == null ? ( value2 == null ? 0 : -1 ) : 1;
+            }
+            if( value1 instanceof Comparable && value1.getClass().isInstance( value2 ) )
+            {
+                return ( (Comparable) value1 ).compareTo( value2 );
+            }
+            return value1.toString().compareTo( value2.toString() );
+        }
+    };
+
+    /**
+     * Orders lists of group values, see {@link #GROUP_VALUE_ORDER}.
+     */
+    public static final Comparator<List<Object>> GROUP_ORDER = new Comparator<List<Object>>()
+    {
+        @Override
+        public int compare( List<Object> group1, List<Object> group2 )
+        {
+            for( int idx = 0; idx < group1.size(); idx++ )
+            {
+                int result = GROUP_VALUE_ORDER.compare( group1.get( idx ), group2.get( idx ) );
+                if( result != 0 )
+                {
+                    return result;
+                }
+            }
+            return 0;
+        }
+    };
+
+    /**
+     * @param aggregation an Aggregation
+     *
+     * @return true if the aggregated value can be restored from what an index computes, see
+     *         {@link #coerce(Aggregation, Object)}
+     */
+    public static boolean isScalar( Aggregation<?> aggregation )
+    {
+        return aggregation.property() == null
+               || Projections.isScalar( Projections.propertyType( aggregation.property() ) );
+    }
+
+    /**
+     * @param aggregation a scalar Aggregation, see {@link #isScalar(Aggregation)}
+     *
+     * @return type of the values the Aggregation yields: Long for COUNT and for SUM of integral properties, Double
+     *         for AVG and for SUM of floating point properties, the property type otherwise
+     */
+    public static Class<?> resultType( Aggregation<?> aggregation )
+    {
+        switch( aggregation.function() )
+        {
+            case COUNT:
+                return Long.class;
+            case AVG:
+                return Double.class;
+            case SUM:
+                Class<?> type = Projections.propertyType( aggregation.property() );
+                if( BigInteger.class.equals( type ) || BigDecimal.class.equals( type ) )
+                {
+                    return type;
+                }
+                type = (Class<?>) Classes.wrapperClass( type );
+                if( Double.class.equals( type ) || Float.class.equals( type ) )
+                {
+                    return Double.class;
+                }
+                // Sums of Integer, Short or Byte values would overflow their type
+                return Long.class;
+            default:
+                return Projections.propertyType( aggregation.property() );
+        }
+    }
+
+    /**
+     * Convert an aggregated value computed by an index to the type of the Aggregation.
+     *
+     * @param aggregation a scalar Aggregation, see {@link #isScalar(Aggregation)}
+     * @param value       computed value, may be null
+     *
+     * @return the converted value, see {@link #resultType(Aggregation)}
+     */
+    public static Object coerce( Aggregation<?> aggregation, Object value )
+    {
+        if( value == null && aggregation.function() == Aggregation.Function.COUNT )
+        {
+            return 0L;
+        }
+        return Projections.coerce( value, resultType( aggregation ) );
+    }
+
+    private Aggregations()
+    {
+    }
+}
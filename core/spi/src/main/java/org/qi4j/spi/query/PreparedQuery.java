@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.Map;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.entity.EntityReference;
+
+/**
+ * Plan of a Query prepared by a {@link PreparedQueryFinder}.
+ * <p>
+ * Plans are shared by all the executions of a prepared Query and must be thread-safe.
+ * </p>
+ */
+public interface PreparedQuery
+{
+    /**
+     * @param firstResult Index of the first returned entity.
+     * @param maxResults  Maximum returned entities.
+     * @param variables   Query variables
+     *
+     * @return entities matching the Query
+     *
+     * @throws EntityFinderException if the Query fails
+     * @see EntityFinder#findEntities
+     */
+    Iterable<EntityReference> findEntities( @Optional Integer firstResult,
+                                            @Optional Integer maxResults,
+                                            Map<String, Object> variables
+    )
+        throws EntityFinderException;
+
+    /**
+     * @param variables Query variables
+     *
+     * @return a single entity matching the Query, or null
+     *
+     * @throws EntityFinderException if the Query fails
+     * @see EntityFinder#findEntity
+     */
+    EntityReference findEntity( Map<String, Object> variables )
+        throws EntityFinderException;
+
+    /**
+     * @param variables Query variables
+     *
+     * @return count of entities matching the Query, regardless of ordering
+     *
+     * @throws EntityFinderException if the Query fails
+     * @see EntityFinder#countEntities
+     */
+    long countEntities( Map<String, Object> variables )
+        throws EntityFinderException;
+}
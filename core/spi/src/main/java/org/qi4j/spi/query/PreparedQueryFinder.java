@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.function.Predicate;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.query.grammar.OrderBy;
+
+/**
+ * Optional extension of {@link EntityFinder} for indexing systems able to translate a Query once and execute it
+ * many times with different variables.
+ * <p>
+ * The runtime checks whether the EntityFinder service implements this interface when a prepared Query is first
+ * executed, and keeps the returned plan for the following executions.
+ * </p>
+ */
+public interface PreparedQueryFinder
+{
+    /**
+     * Prepare a Query.
+     *
+     * @param resultType      Type that the entities must have.
+     * @param whereClause     Where clause specification, may contain Variables.
+     * @param orderBySegments Ordering
+     *
+     * @return the plan of the Query, or null if it cannot be prepared, in which case it is executed through the
+     *         EntityFinder methods
+     *
+     * @throws EntityFinderException if the Query cannot be translated
+     */
+    PreparedQuery prepare( Class<?> resultType,
+                           @Optional Predicate<Composite> whereClause,
+                           @Optional OrderBy[] orderBySegments
+    )
+        throws EntityFinderException;
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.Map;
+import java.util.function.Predicate;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
+
+/**
+ * Optional extension of {@link EntityFinder} for indexes that store property values and can return them
+ * without the Entities being loaded.
+ * <p>
+ * If the EntityFinder service does not implement this, or returns null, projections are computed from the
+ * EntityStore instead.
+ * </p>
+ */
+public interface ProjectionFinder
+{
+    /**
+     * Find the given properties of the entities matching the query criterion.
+     *
+     * @param resultType      Type that the entities must have.
+     * @param whereClause     Where clause specification.
+     * @param orderBySegments Ordering
+     * @param firstResult     Index of the first returned entity.
+     * @param maxResults      Maximum returned entities.
+     * @param variables       Query variables
+     * @param properties      Projected properties
+     *
+     * @return Projected rows, or null if this index cannot supply all the given properties.
+     */
+    Iterable<Projection> findProjections( Class<?> resultType,
+                                          @Optional Predicate<Composite> whereClause,
+                                          @Optional OrderBy[] orderBySegments,
+                                          @Optional Integer firstResult,
+                                          @Optional Integer maxResults,
+                                          Map<String, Object> variables,
+                                          PropertyFunction<?>[] properties
+    )
+        throws EntityFinderException;
+}
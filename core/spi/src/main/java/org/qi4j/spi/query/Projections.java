@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import org.qi4j.api.property.GenericPropertyInfo;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.util.Classes;
+
+/**
+ * Utilities for {@link ProjectionFinder} implementations.
+ */
+public final class Projections
+{
+    /**
+     * @param property a PropertyFunction
+     *
+     * @return true if the property is declared on the queried entity itself, i.e. not reached through another
+     *         property or an association
+     */
+    public static boolean isDirect( PropertyFunction<?> property )
+    {
+        return property.traversedProperty() == null
+               && property.traversedAssociation() == null
+               && property.traversedManyAssociation() == null
+               && property.traversedNamedAssociation() == null;
+    }
+
+    /**
+     * @param property a PropertyFunction
+     *
+     * @return the raw type of the property
+     */
+    public static Class<?> propertyType( PropertyFunction<?> property )
+    {
+        Type type = GenericPropertyInfo.propertyTypeOf( property.accessor() );
+        return type == null ? Object.class : Classes.RAW_CLASS.apply( type );
+    }
+
+    /**
+     * Scalar types are those that indexes store as plain strings, numbers or booleans, and that can be restored
+     * from such a value with {@link #coerce(Object, Class)}.
+     *
+     * @param type a property type
+     *
+     * @return true if the type is a scalar type
+     */
+    public static boolean isScalar( Class<?> type )
+    {
+        type = (Class<?>) Classes.wrapperClass( type );
+        return type.equals( String.class )
+               || type.equals( Boolean.class )
+               || type.equals( Character.class )
+               || type.equals( Integer.class )
+               || type.equals( Long.class )
+               || type.equals( Short.class )
+               || type.equals( Byte.class )
+               || type.equals( Double.class )
+               || type.equals( Float.class )
+               || type.equals( BigInteger.class )
+               || type.equals( BigDecimal.class );
+    }
+
+    /**
+     * Convert a scalar value read from an index to the property type.
+     *
+     * @param value value read from the index, may be null
+     * @param type  scalar property type, see {@link #isScalar(Class)}
+     *
+     * @return the converted value
+     *
+     * @throws IllegalArgumentException if the value cannot be converted
+     */
+    public static Object coerce( Object value, Class<?> type )
+    {
+        type = (Class<?>) Classes.wrapperClass( type );
+        if( value == null || type.isInstance( value ) )
+        {
+            return value;
+        }
+        if( type.equals( String.class ) )
+        {
+            return value.toString();
+        }
+        if( type.equals( Boolean.class ) )
+        {
+            return value instanceof Number ? ( (Number) value ).intValue() != 0 : Boolean.valueOf( value.toString() );
+        }
+        if( type.equals( Character.class ) )
+        {
+            String string = value.toString();
+            if( string.length() != 1 )
+            {
+                throw new IllegalArgumentException( "Not a Character: " + string );
+            }
+            return string.charAt( 0 );
+        }
+        BigDecimal number = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal( value.toString() );
+        if( type.equals( Integer.class ) )
+        {
+            return number.intValue();
+        }
+        if( type.equals( Long.class ) )
+        {
+            return number.longValue();
+        }
+        if( type.equals( Short.class ) )
+        {
+            return number.shortValue();
+        }
+        if( type.equals( Byte.class ) )
+        {
+            return number.byteValue();
+        }
+        if( type.equals( Double.class ) )
+        {
+            return number.doubleValue();
+        }
+        if( type.equals( Float.class ) )
+        {
+            return number.floatValue();
+        }
+        if( type.equals( BigInteger.class ) )
+        {
+            return number.toBigInteger();
+        }
+        if( type.equals( BigDecimal.class ) )
+        {
+            return number;
+        }
+        throw new IllegalArgumentException( "Not a scalar type: " + type.getName() );
+    }
+
+    private Projections()
+    {
+    }
+}
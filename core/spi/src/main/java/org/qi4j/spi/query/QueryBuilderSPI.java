@@ -8,4 +8,9 @@ import org.qi4j.api.query.Query;
 public interface QueryBuilderSPI<T>
 {
     Query<T> newQuery( QuerySource querySource );
+
+    /**
+     * @return the EntityFinder holding the plans of prepared Queries, or null if this builder is not prepared
+     */
+    EntityFinder preparedEntityFinder();
 }
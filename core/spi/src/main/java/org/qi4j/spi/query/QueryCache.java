@@ -0,0 +1,312 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceDescriptor;
+import org.qi4j.spi.entity.EntityState;
+
+/**
+ * Query result cache of an indexing service.
+ * <p>
+ * The cache is opt-in. It is added to an indexing service that is both an {@link EntityFinder} and a
+ * {@link org.qi4j.spi.entitystore.StateChangeListener}, after it has been assembled:
+ * </p>
+ * <pre><code>
+ * module.services( MyIndexQueryService.class )
+ *     .withTypes( QueryCache.class )
+ *     .withConcerns( QueryCacheConcern.class, QueryCacheInvalidationConcern.class );
+ * </code></pre>
+ * <p>
+ * Results are invalidated by entity type when the indexing service is notified of changes: a change to an Entity
+ * invalidates the results of queries whose result type it is assignable to, and the results of all queries
+ * traversing associations. Results computed while changes were being indexed are not cached.
+ * </p>
+ * <p>
+ * The cache is bounded by {@link QueryCacheLimits} set in the service MetaInfo. UnitOfWorks and Usecases can
+ * opt-out with {@link org.qi4j.api.query.QueryCacheOptions}. Hits and misses are reported to the MetricsProvider,
+ * if any.
+ * </p>
+ */
+@Mixins( QueryCache.Mixin.class )
+public interface QueryCache
+{
+    long hits();
+
+    long misses();
+
+    /**
+     * @return hits over lookups, 0 if there was no lookup yet
+     */
+    double hitRate();
+
+    int size();
+
+    void clear();
+
+    QueryCacheLimits limits();
+
+    /**
+     * @return the current generation, to be passed to {@link #put(QueryCacheKey, Object, long)}
+     */
+    long generation();
+
+    /**
+     * @param key query key
+     *
+     * @return the cached result, or null
+     */
+    Object get( QueryCacheKey key );
+
+    /**
+     * Cache a result, unless changes were notified since the given generation.
+     *
+     * @param key        query key
+     * @param result     query result
+     * @param generation generation read before running the query
+     */
+    void put( QueryCacheKey key, Object result, long generation );
+
+    /**
+     * Invalidate the results that may depend on the changed Entities.
+     *
+     * @param changedStates changed Entities
+     */
+    void invalidate( Iterable<EntityState> changedStates );
+
+    class Mixin
+        implements QueryCache
+    {
+        private final QueryCacheLimits limits;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final MetricsCounter hitsCounter;
+        private final MetricsCounter missesCounter;
+        private final Map<QueryCacheKey, Object> results;
+        private final Map<Class<?>, Set<QueryCacheKey>> keysByType = new HashMap<>();
+        private final Set<QueryCacheKey> traversingKeys = new HashSet<>();
+        private long generation;
+
+        public Mixin( @Uses ServiceDescriptor descriptor, @Service @Optional MetricsProvider metrics )
+        {
+            QueryCacheLimits limits = descriptor.metaInfo( QueryCacheLimits.class );
+            this.limits = limits == null ? QueryCacheLimits.DEFAULT : limits;
+            final int maxEntries = this.limits.maxEntries();
+            this.results = new LinkedHashMap<QueryCacheKey, Object>( 16, 0.75f, true )
+            {
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<QueryCacheKey, Object> eldest )
+                {
+                    if( size() > maxEntries )
+                    {
+                        unlink( eldest.getKey() );
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+            if( metrics != null )
+            {
+                MetricsCounterFactory counters = metrics.createFactory( MetricsCounterFactory.class );
+                hitsCounter = counters.createCounter( QueryCache.class, descriptor.identity() + " hits" );
+                missesCounter = counters.createCounter( QueryCache.class, descriptor.identity() + " misses" );
+                MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+                gauges.registerGauge( QueryCache.class, descriptor.identity() + " hit rate", new MetricsGauge<Double>()
+                {
+                    @Override
+                    public Double value()
+                    {
+                        return hitRate();
+                    }
+                } );
+            }
+            else
+            {
+                hitsCounter = null;
+                missesCounter = null;
+            }
+        }
+
+        @Override
+        public long hits()
+        {
+            return hits.get();
+        }
+
+        @Override
+        public long misses()
+        {
+            return misses.get();
+        }
+
+        @Override
+        public double hitRate()
+        {
+            long hits = this.hits.get();
+            long lookups = hits + misses.get();
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public synchronized int size()
+        {
+            return results.size();
+        }
+
+        @Override
+        public synchronized void clear()
+        {
+            results.clear();
+            keysByType.clear();
+            traversingKeys.clear();
+            generation++;
+        }
+
+        @Override
+        public QueryCacheLimits limits()
+        {
+            return limits;
+        }
+
+        @Override
+        public synchronized long generation()
+        {
+            return generation;
+        }
+
+        @Override
+        public Object get( QueryCacheKey key )
+        {
+            Object result;
+            synchronized( this )
+            {
+                result = results.get( key );
+            }
+            if( result == null )
+            {
+                misses.incrementAndGet();
+                if( missesCounter != null )
+                {
+                    missesCounter.increment();
+                }
+            }
+            else
+            {
+                hits.incrementAndGet();
+                if( hitsCounter != null )
+                {
+                    hitsCounter.increment();
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public synchronized void put( QueryCacheKey key, Object result, long generation )
+        {
+            if( generation != this.generation )
+            {
+                // Changes were notified while the query was running
+                return;
+            }
+            if( results.put( key, result ) == null )
+            {
+                if( key.traverses() )
+                {
+                    traversingKeys.add( key );
+                }
+                else
+                {
+                    Set<QueryCacheKey> keys = keysByType.get( key.resultType() );
+                    if( keys == null )
+                    {
+                        keys = new HashSet<>();
+                        keysByType.put( key.resultType(), keys );
+                    }
+                    keys.add( key );
+                }
+            }
+        }
+
+        @Override
+        public synchronized void invalidate( Iterable<EntityState> changedStates )
+        {
+            Set<EntityDescriptor> changedTypes = new HashSet<>();
+            for( EntityState state : changedStates )
+            {
+                changedTypes.add( state.entityDescriptor() );
+            }
+            if( changedTypes.isEmpty() )
+            {
+                return;
+            }
+            generation++;
+
+            for( QueryCacheKey key : traversingKeys )
+            {
+                results.remove( key );
+            }
+            traversingKeys.clear();
+
+            Iterator<Map.Entry<Class<?>, Set<QueryCacheKey>>> types = keysByType.entrySet().iterator();
+            while( types.hasNext() )
+            {
+                Map.Entry<Class<?>, Set<QueryCacheKey>> type = types.next();
+                for( EntityDescriptor changedType : changedTypes )
+                {
+                    if( changedType.isAssignableTo( type.getKey() ) )
+                    {
+                        for( QueryCacheKey key : type.getValue() )
+                        {
+                            results.remove( key );
+                        }
+                        types.remove();
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void unlink( QueryCacheKey key )
+        {
+            if( key.traverses() )
+            {
+                traversingKeys.remove( key );
+            }
+            else
+            {
+                Set<QueryCacheKey> keys = keysByType.get( key.resultType() );
+                if( keys != null )
+                {
+                    keys.remove( key );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.concern.ConcernOf;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.injection.scope.Structure;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.query.QueryCacheOptions;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkFactory;
+import org.qi4j.functional.Iterables;
+
+/**
+ * Serve EntityFinder results from the {@link QueryCache}.
+ */
+public class QueryCacheConcern
+    extends ConcernOf<EntityFinder>
+    implements EntityFinder
+{
+    private static final Object NOT_FOUND = new Object();
+
+    @This
+    private QueryCache cache;
+
+    @Structure
+    private UnitOfWorkFactory uowf;
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public Iterable<EntityReference> findEntities( Class<?> resultType,
+                                                   Predicate<Composite> whereClause,
+                                                   OrderBy[] orderBySegments,
+                                                   Integer firstResult,
+                                                   Integer maxResults,
+                                                   Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        QueryCacheKey key = cacheResults()
+                            ? QueryCacheKey.forEntities( resultType, whereClause, orderBySegments,
+                                                         firstResult, maxResults, variables )
+                            : null;
+        if( key == null )
+        {
+            return next.findEntities( resultType, whereClause, orderBySegments, firstResult, maxResults, variables );
+        }
+        Object cached = cache.get( key );
+        if( cached != null )
+        {
+            return (List<EntityReference>) cached;
+        }
+
+        long generation = cache.generation();
+        final Iterator<EntityReference> found = next.findEntities( resultType, whereClause, orderBySegments,
+                                                             firstResult, maxResults, variables ).iterator();
+        int maxReferences = cache.limits().maxReferences();
+        List<EntityReference> references = new ArrayList<>();
+        while( found.hasNext() )
+        {
+            if( references.size() >= maxReferences )
+            {
+                // Too large to be cached, hand out the rest as it comes
+                return Iterables.flatten( references, new Iterable<EntityReference>()
+                {
+                    @Override
+                    public Iterator<EntityReference> iterator()
+                    {
+                        return found;
+                    }
+                } );
+            }
+            references.add( found.next() );
+        }
+        List<EntityReference> result = Collections.unmodifiableList( references );
+        cache.put( key, result, generation );
+        return result;
+    }
+
+    @Override
+    public EntityReference findEntity( Class<?> resultType,
+                                       Predicate<Composite> whereClause,
+                                       Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        QueryCacheKey key = cacheResults() ? QueryCacheKey.forEntity( resultType, whereClause, variables ) : null;
+        if( key == null )
+        {
+            return next.findEntity( resultType, whereClause, variables );
+        }
+        Object cached = cache.get( key );
+        if( cached != null )
+        {
+            return cached == NOT_FOUND ? null : (EntityReference) cached;
+        }
+
+        long generation = cache.generation();
+        EntityReference found = next.findEntity( resultType, whereClause, variables );
+        cache.put( key, found == null ? NOT_FOUND : found, generation );
+        return found;
+    }
+
+    @Override
+    public long countEntities( Class<?> resultType,
+                               Predicate<Composite> whereClause,
+                               Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        QueryCacheKey key = cacheResults() ? QueryCacheKey.forCount( resultType, whereClause, variables ) : null;
+        if( key == null )
+        {
+            return next.countEntities( resultType, whereClause, variables );
+        }
+        Object cached = cache.get( key );
+        if( cached != null )
+        {
+            return (Long) cached;
+        }
+
+        long generation = cache.generation();
+        long count = next.countEntities( resultType, whereClause, variables );
+        cache.put( key, count, generation );
+        return count;
+    }
+
+    private boolean cacheResults()
+    {
+        if( !uowf.isUnitOfWorkActive() )
+        {
+            return true;
+        }
+        UnitOfWork uow = uowf.currentUnitOfWork();
+        QueryCacheOptions options = uow.metaInfo( QueryCacheOptions.class );
+        if( options == null )
+        {
+            options = uow.usecase().metaInfo( QueryCacheOptions.class );
+        }
+        return options == null || options.cacheResults();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import org.qi4j.api.concern.ConcernOf;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entitystore.StateChangeListener;
+
+/**
+ * Invalidate the {@link QueryCache} when the indexing service is notified of changes.
+ * <p>
+ * Results are invalidated both before and after the index is updated, so that queries running concurrently with
+ * the update cannot leave stale results behind.
+ * </p>
+ */
+public class QueryCacheInvalidationConcern
+    extends ConcernOf<StateChangeListener>
+    implements StateChangeListener
+{
+    @This
+    private QueryCache cache;
+
+    @Override
+    public void notifyChanges( Iterable<EntityState> changedStates )
+    {
+        cache.invalidate( changedStates );
+        try
+        {
+            next.notifyChanges( changedStates );
+        }
+        finally
+        {
+            cache.invalidate( changedStates );
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.query.grammar.AssociationFunction;
+import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
+import org.qi4j.api.query.grammar.AssociationNullSpecification;
+import org.qi4j.api.query.grammar.BinarySpecification;
+import org.qi4j.api.query.grammar.ComparisonSpecification;
+import org.qi4j.api.query.grammar.ContainsAllSpecification;
+import org.qi4j.api.query.grammar.ContainsSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationContainsSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationFunction;
+import org.qi4j.api.query.grammar.MatchesSpecification;
+import org.qi4j.api.query.grammar.NamedAssociationContainsNameSpecification;
+import org.qi4j.api.query.grammar.NamedAssociationContainsSpecification;
+import org.qi4j.api.query.grammar.NamedAssociationFunction;
+import org.qi4j.api.query.grammar.NotSpecification;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.query.grammar.PropertyNotNullSpecification;
+import org.qi4j.api.query.grammar.PropertyNullSpecification;
+import org.qi4j.api.query.grammar.Variable;
+
+/**
+ * Key of a query result in the {@link QueryCache}.
+ * <p>
+ * Specifications do not implement equality, so the key holds a structural signature of the where clause and of the
+ * ordering: specification types, accessors, values, variable names. Keys also record whether the where clause
+ * traverses associations, in which case the result depends on Entities of other types than the result type.
+ * </p>
+ */
+public final class QueryCacheKey
+{
+    /**
+     * @return the key, or null if the where clause cannot be cached, eg. native queries
+     */
+    public static QueryCacheKey forEntities( Class<?> resultType,
+                                             Predicate<Composite> whereClause,
+                                             OrderBy[] orderBySegments,
+                                             Integer firstResult,
+                                             Integer maxResults,
+                                             Map<String, Object> variables )
+    {
+        Signature signature = new Signature();
+        Object where = signature.of( whereClause );
+        List<Object> orderBy = new ArrayList<>();
+        if( orderBySegments != null )
+        {
+            for( OrderBy segment : orderBySegments )
+            {
+                orderBy.add( Arrays.asList( signature.of( segment.property() ), segment.order() ) );
+            }
+        }
+        return signature.cacheable
+               ? new QueryCacheKey( "findEntities", resultType,
+                                    Arrays.asList( where, orderBy, firstResult, maxResults ),
+                                    variables, signature.traverses )
+               : null;
+    }
+
+    /**
+     * @return the key, or null if the where clause cannot be cached, eg. native queries
+     */
+    public static QueryCacheKey forEntity( Class<?> resultType,
+                                           Predicate<Composite> whereClause,
+                                           Map<String, Object> variables )
+    {
+        Signature signature = new Signature();
+        Object where = signature.of( whereClause );
+        return signature.cacheable
+               ? new QueryCacheKey( "findEntity", resultType, where, variables, signature.traverses )
+               : null;
+    }
+
+    /**
+     * @return the key, or null if the where clause cannot be cached, eg. native queries
+     */
+    public static QueryCacheKey forCount( Class<?> resultType,
+                                          Predicate<Composite> whereClause,
+                                          Map<String, Object> variables )
+    {
+        Signature signature = new Signature();
+        Object where = signature.of( whereClause );
+        return signature.cacheable
+               ? new QueryCacheKey( "countEntities", resultType, where, variables, signature.traverses )
+               : null;
+    }
+
+    private final String finder;
+    private final Class<?> resultType;
+    private final Object signature;
+    private final Map<String, Object> variables;
+    private final boolean traverses;
+    private final int hashCode;
+
+    private QueryCacheKey( String finder,
+                           Class<?> resultType,
+                           Object signature,
+                           Map<String, Object> variables,
+                           boolean traverses )
+    {
+        this.finder = finder;
+        this.resultType = resultType;
+        this.signature = signature;
+        this.variables = variables == null || variables.isEmpty()
+                         ? Collections.<String, Object>emptyMap()
+                         : new HashMap<>( variables );
+        this.traverses = traverses;
+        this.hashCode = ( ( finder.hashCode() * 31 + resultType.hashCode() ) * 31 + signature.hashCode() ) * 31
+                        + this.variables.hashCode();
+    }
+
+    public Class<?> resultType()
+    {
+        return resultType;
+    }
+
+    /**
+     * @return true if the result may change when Entities of other types than the result type change
+     */
+    public boolean traverses()
+    {
+        return traverses;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if( this == o )
+        {
+            return true;
+        }
+        if( !( o instanceof QueryCacheKey ) )
+        {
+            return false;
+        }
+        QueryCacheKey other = (QueryCacheKey) o;
+        return hashCode == other.hashCode
+               && finder.equals( other.finder )
+               && resultType.equals( other.resultType )
+               && signature.equals( other.signature )
+               && variables.equals( other.variables );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return finder + "( " + resultType.getName() + ", " + signature + ", " + variables + " )";
+    }
+
+    private static final class Signature
+    {
+        private boolean cacheable = true;
+        private boolean traverses;
+
+        private Object of( Predicate<Composite> predicate )
+        {
+            if( predicate == null )
+            {
+                return Collections.emptyList();
+            }
+            else if( predicate instanceof BinarySpecification )
+            {
+                List<Object> operands = new ArrayList<>();
+                operands.add( predicate.getClass() );
+                for( Predicate<Composite> operand : ( (BinarySpecification) predicate ).operands() )
+                {
+                    operands.add( of( operand ) );
+                }
+                return operands;
+            }
+            else if( predicate instanceof NotSpecification )
+            {
+                return Arrays.asList( predicate.getClass(), of( ( (NotSpecification) predicate ).operand() ) );
+            }
+            else if( predicate instanceof ComparisonSpecification )
+            {
+                ComparisonSpecification<?> comparison = (ComparisonSpecification<?>) predicate;
+                return Arrays.asList( predicate.getClass(), of( comparison.property() ), value( comparison.value() ) );
+            }
+            else if( predicate instanceof PropertyNullSpecification )
+            {
+                return Arrays.asList( predicate.getClass(),
+                                      of( ( (PropertyNullSpecification<?>) predicate ).property() ) );
+            }
+            else if( predicate instanceof PropertyNotNullSpecification )
+            {
+                return Arrays.asList( predicate.getClass(),
+                                      of( ( (PropertyNotNullSpecification<?>) predicate ).property() ) );
+            }
+            else if( predicate instanceof AssociationNullSpecification )
+            {
+                return Arrays.asList( predicate.getClass(),
+                                      of( ( (AssociationNullSpecification<?>) predicate ).association() ) );
+            }
+            else if( predicate instanceof AssociationNotNullSpecification )
+            {
+                return Arrays.asList( predicate.getClass(),
+                                      of( ( (AssociationNotNullSpecification<?>) predicate ).association() ) );
+            }
+            else if( predicate instanceof MatchesSpecification )
+            {
+                MatchesSpecification matches = (MatchesSpecification) predicate;
+                return Arrays.asList( predicate.getClass(), of( matches.property() ), value( matches.value() ) );
+            }
+            else if( predicate instanceof ContainsSpecification )
+            {
+                ContainsSpecification<?> contains = (ContainsSpecification<?>) predicate;
+                return Arrays.asList( predicate.getClass(), of( contains.collectionProperty() ),
+                                      value( contains.value() ) );
+            }
+            else if( predicate instanceof ContainsAllSpecification )
+            {
+                ContainsAllSpecification<?> contains = (ContainsAllSpecification<?>) predicate;
+                List<Object> values = new ArrayList<>();
+                for( Object value : contains.containedValues() )
+                {
+                    values.add( value( value ) );
+                }
+                return Arrays.asList( predicate.getClass(), of( contains.collectionProperty() ), values );
+            }
+            else if( predicate instanceof ManyAssociationContainsSpecification )
+            {
+                ManyAssociationContainsSpecification<?> contains = (ManyAssociationContainsSpecification<?>) predicate;
+                return Arrays.asList( predicate.getClass(), of( contains.manyAssociation() ),
+                                      value( contains.value() ) );
+            }
+            else if( predicate instanceof NamedAssociationContainsSpecification )
+            {
+                NamedAssociationContainsSpecification<?> contains =
+                    (NamedAssociationContainsSpecification<?>) predicate;
+                return Arrays.asList( predicate.getClass(), of( contains.namedAssociation() ),
+                                      value( contains.value() ) );
+            }
+            else if( predicate instanceof NamedAssociationContainsNameSpecification )
+            {
+                NamedAssociationContainsNameSpecification<?> contains =
+                    (NamedAssociationContainsNameSpecification<?>) predicate;
+                return Arrays.asList( predicate.getClass(), of( contains.namedAssociation() ), contains.name() );
+            }
+            // Native queries and custom predicates have no known structure
+            cacheable = false;
+            return null;
+        }
+
+        private Object of( PropertyFunction<?> property )
+        {
+            if( property == null )
+            {
+                return null;
+            }
+            if( property.traversedAssociation() != null
+                || property.traversedManyAssociation() != null
+                || property.traversedNamedAssociation() != null )
+            {
+                traverses = true;
+            }
+            return Arrays.asList( property.accessor(),
+                                  of( property.traversedProperty() ),
+                                  of( property.traversedAssociation() ),
+                                  of( property.traversedManyAssociation() ),
+                                  of( property.traversedNamedAssociation() ) );
+        }
+
+        private Object of( AssociationFunction<?> association )
+        {
+            if( association == null )
+            {
+                return null;
+            }
+            return associationOf( association.accessor(),
+                                  association.traversedAssociation(),
+                                  association.traversedManyAssociation(),
+                                  association.traversedNamedAssociation() );
+        }
+
+        private Object of( ManyAssociationFunction<?> association )
+        {
+            if( association == null )
+            {
+                return null;
+            }
+            return associationOf( association.accessor(),
+                                  association.traversedAssociation(),
+                                  association.traversedManyAssociation(),
+                                  association.traversedNamedAssociation() );
+        }
+
+        private Object of( NamedAssociationFunction<?> association )
+        {
+            if( association == null )
+            {
+                return null;
+            }
+            return associationOf( association.accessor(),
+                                  association.traversedAssociation(),
+                                  association.traversedManyAssociation(),
+                                  association.traversedNamedAssociation() );
+        }
+
+        private Object associationOf( Object accessor,
+                                      AssociationFunction<?> traversedAssociation,
+                                      ManyAssociationFunction<?> traversedManyAssociation,
+                                      NamedAssociationFunction<?> traversedNamedAssociation )
+        {
+            if( traversedAssociation != null || traversedManyAssociation != null || traversedNamedAssociation != null )
+            {
+                traverses = true;
+            }
+            return Arrays.asList( accessor,
+                                  of( traversedAssociation ),
+                                  of( traversedManyAssociation ),
+                                  of( traversedNamedAssociation ) );
+        }
+
+        private static Object value( Object value )
+        {
+            if( value instanceof Variable )
+            {
+                // Bound values are part of the key through the variables
+                return Arrays.asList( Variable.class, ( (Variable) value ).variableName() );
+            }
+            if( value instanceof EntityComposite )
+            {
+                return EntityReference.entityReferenceFor( value );
+            }
+            return value;
+        }
+    }
+}
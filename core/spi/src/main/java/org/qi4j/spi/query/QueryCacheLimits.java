@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.query;
+
+/**
+ * Set an instance of this in the MetaInfo of an indexing service assembled with the {@link QueryCache} to bound it.
+ * <p>
+ * "maxEntries": how many query results are kept, least recently used ones are evicted first.
+ * </p>
+ * <p>
+ * "maxReferences": results of findEntities holding more EntityReferences than this are not cached.
+ * </p>
+ * <p>
+ * When no QueryCacheLimits are set, {@link #DEFAULT} applies.
+ * </p>
+ */
+public final class QueryCacheLimits
+{
+    public static final QueryCacheLimits DEFAULT = new QueryCacheLimits( 1000, 1000 );
+
+    private final int maxEntries;
+    private final int maxReferences;
+
+    public QueryCacheLimits( int maxEntries, int maxReferences )
+    {
+        this.maxEntries = maxEntries;
+        this.maxReferences = maxReferences;
+    }
+
+    public int maxEntries()
+    {
+        return maxEntries;
+    }
+
+    public int maxReferences()
+    {
+        return maxReferences;
+    }
+}
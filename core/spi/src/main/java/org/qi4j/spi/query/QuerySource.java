@@ -4,7 +4,11 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.function.Predicate;
 import org.qi4j.api.composite.Composite;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
 
 /**
  * Query Source, used in QueryBuilder SPI.
@@ -34,4 +38,20 @@ public interface QuerySource
                               Integer maxResults,
                               Map<String, Object> variables
     );
+
+    <T> Iterator<Projection> project( Class<T> resultType,
+                                      Predicate<Composite> whereClause,
+                                      Iterable<OrderBy> orderBySegments,
+                                      Integer firstResult,
+                                      Integer maxResults,
+                                      Map<String, Object> variables,
+                                      PropertyFunction<?>[] properties
+    );
+
+    <T> Iterator<AggregationResult> aggregate( Class<T> resultType,
+                                               Predicate<Composite> whereClause,
+                                               Map<String, Object> variables,
+                                               PropertyFunction<?>[] groupBy,
+                                               Aggregation<?>[] aggregations
+    );
 }
@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.spi.entitystore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StateChangeDispatchTest
+    extends AbstractQi4jTest
+{
+    private static volatile CountDownLatch gate;
+    private static final QualifiedName THING_NAME = QualifiedName.fromClass( Thing.class, "name" );
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        module.services( RecordingListener.class )
+            .withTypes( StateChangeDispatch.class )
+            .withConcerns( StateChangeDispatchConcern.class );
+        module.services( RefusingListener.class );
+        module.entities( Thing.class );
+    }
+
+    @Before
+    public void closeGate()
+    {
+        gate = new CountDownLatch( 1 );
+    }
+
+    @Test
+    public void givenSlowListenerWhenCommittingThenChangesAreCoalesced()
+        throws Exception
+    {
+        StateChangeDispatch dispatch = module.findService( StateChangeDispatch.class ).get();
+        RecordingListener listener = module.findService( RecordingListener.class ).get();
+
+        // Keep the listener busy with a first change
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            uow.newEntity( Thing.class, "first" );
+            uow.complete();
+        }
+        while( dispatch.pendingChanges() > 0 )
+        {
+            Thread.sleep( 10 );
+        }
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            uow.newEntity( Thing.class, "created" ).name().set( "foo" );
+            uow.newEntity( Thing.class, "transient" );
+            uow.complete();
+        }
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            uow.get( Thing.class, "created" ).name().set( "bar" );
+            uow.remove( uow.get( Thing.class, "transient" ) );
+            uow.complete();
+        }
+        assertThat( dispatch.pendingChanges(), equalTo( 1 ) );
+
+        gate.countDown();
+        assertTrue( dispatch.awaitNotified( 10, TimeUnit.SECONDS ) );
+        assertThat( dispatch.pendingChanges(), equalTo( 0 ) );
+        assertThat( listener.notified().toString(), equalTo( "[first NEW, created NEW bar]" ) );
+    }
+
+    @Test
+    public void givenFailingCommitWhenCompletingThenChangesAreNotDispatched()
+        throws Exception
+    {
+        gate.countDown();
+        StateChangeDispatch dispatch = module.findService( StateChangeDispatch.class ).get();
+        RecordingListener listener = module.findService( RecordingListener.class ).get();
+
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            uow.newEntity( Thing.class, "committed" );
+            uow.complete();
+        }
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            uow.newEntity( Thing.class, "refused" );
+            uow.complete();
+            fail( "Commit should have failed" );
+        }
+        catch( EntityStoreException expected )
+        {
+            // Refused before the EntityStore committed
+        }
+
+        assertTrue( dispatch.awaitNotified( 10, TimeUnit.SECONDS ) );
+        assertThat( listener.notified().toString(), equalTo( "[committed NEW]" ) );
+    }
+
+    @Mixins( RecordingListener.Mixin.class )
+    public interface RecordingListener
+        extends StateChangeListener, ServiceComposite
+    {
+        List<String> notified();
+
+        abstract class Mixin
+            implements RecordingListener
+        {
+            private final List<String> notified = new ArrayList<>();
+
+            @Override
+            public void notifyChanges( Iterable<EntityState> changedStates )
+            {
+                try
+                {
+                    gate.await();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized( notified )
+                {
+                    for( EntityState state : changedStates )
+                    {
+                        Object name = state.propertyValueOf( THING_NAME );
+                        notified.add( state.identity() + " " + state.status() + ( name == null ? "" : " " + name ) );
+                    }
+                }
+            }
+
+            @Override
+            public List<String> notified()
+            {
+                synchronized( notified )
+                {
+                    return new ArrayList<>( notified );
+                }
+            }
+        }
+    }
+
+    /**
+     * Notified synchronously after the RecordingListener, fails the commit of Entities named "refused".
+     */
+    @Mixins( RefusingListener.Mixin.class )
+    public interface RefusingListener
+        extends StateChangeListener, ServiceComposite
+    {
+        class Mixin
+            implements StateChangeListener
+        {
+            @Override
+            public void notifyChanges( Iterable<EntityState> changedStates )
+            {
+                for( EntityState state : changedStates )
+                {
+                    if( "refused".equals( state.identity().identity() ) )
+                    {
+                        throw new EntityStoreException( "Refused " + state.identity() );
+                    }
+                }
+            }
+        }
+    }
+
+    public interface Thing
+        extends EntityComposite
+    {
+        @Optional
+        Property<String> name();
+    }
+}
@@ -17,18 +17,24 @@
  */
 package org.qi4j.test.cache;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.qi4j.api.constraint.ConstraintViolation;
 import org.qi4j.api.constraint.ConstraintViolationException;
 import org.qi4j.api.util.NullArgumentException;
 import org.qi4j.spi.cache.Cache;
 import org.qi4j.spi.cache.CachePool;
+import org.qi4j.spi.cache.CacheStatistics;
 import org.qi4j.test.AbstractQi4jTest;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -122,4 +128,47 @@ public abstract class AbstractCachePoolTest
         assertNull( "Value not missing", cache.get( "Habba" ) );
     }
 
+    @Test
+    public void givenCacheWithValuesWhenGettingAllExpectFoundValuesOnly()
+    {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put( "Habba", "Zout" );
+        values.put( "Foo", "Bar" );
+        cache.putAll( values );
+        Map<String, String> found = cache.getAll( Arrays.asList( "Habba", "Missing", "Foo" ) );
+        assertEquals( values, found );
+    }
+
+    @Test
+    public void givenCacheWithValuesWhenRemovingAllExpectThemGone()
+    {
+        cache.put( "Habba", "Zout" );
+        cache.put( "Foo", "Bar" );
+        cache.put( "Kept", "Value" );
+        cache.removeAll( Arrays.asList( "Habba", "Foo", "Missing" ) );
+        assertNull( cache.get( "Habba" ) );
+        assertNull( cache.get( "Foo" ) );
+        assertEquals( "Value", cache.get( "Kept" ) );
+    }
+
+    @Test
+    public void givenValuePutWithTimeToLiveWhenRequestingItBeforeExpiryExpectItBack()
+    {
+        cache.put( "Habba", "Zout", 1, TimeUnit.HOURS );
+        assertEquals( "Zout", cache.get( "Habba" ) );
+    }
+
+    @Test
+    public void givenHitAndMissWhenReadingStatisticsExpectThemCounted()
+    {
+        cache.put( "Habba", "Zout" );
+        cache.get( "Habba" );
+        cache.get( "Missing" );
+        CacheStatistics statistics = cache.statistics();
+        if( statistics.hits() >= 0 )
+        {
+            assertTrue( "Hits not counted", statistics.hits() >= 1 );
+            assertTrue( "Misses not counted", statistics.misses() >= 1 );
+        }
+    }
 }
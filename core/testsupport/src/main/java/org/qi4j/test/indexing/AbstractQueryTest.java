@@ -25,14 +25,27 @@ import java.math.BigInteger;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.query.AggregationResult;
 import org.qi4j.api.query.NotQueryableException;
+import org.qi4j.api.query.PrefetchOptions;
+import org.qi4j.api.query.Projection;
 import org.qi4j.api.query.Query;
 import org.qi4j.api.query.QueryBuilder;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
 import org.qi4j.spi.query.EntityFinderException;
 import org.qi4j.spi.query.IndexExporter;
 import org.qi4j.test.indexing.model.Account;
@@ -50,6 +63,7 @@ import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.qi4j.api.query.QueryExpressions.and;
 import static org.qi4j.api.query.QueryExpressions.contains;
+import static org.qi4j.api.query.QueryExpressions.count;
 import static org.qi4j.api.query.QueryExpressions.containsName;
 import static org.qi4j.api.query.QueryExpressions.eq;
 import static org.qi4j.api.query.QueryExpressions.ge;
@@ -58,12 +72,17 @@ import static org.qi4j.api.query.QueryExpressions.isNotNull;
 import static org.qi4j.api.query.QueryExpressions.isNull;
 import static org.qi4j.api.query.QueryExpressions.lt;
 import static org.qi4j.api.query.QueryExpressions.matches;
+import static org.qi4j.api.query.QueryExpressions.max;
+import static org.qi4j.api.query.QueryExpressions.min;
 import static org.qi4j.api.query.QueryExpressions.ne;
 import static org.qi4j.api.query.QueryExpressions.not;
 import static org.qi4j.api.query.QueryExpressions.oneOf;
 import static org.qi4j.api.query.QueryExpressions.or;
 import static org.qi4j.api.query.QueryExpressions.orderBy;
+import static org.qi4j.api.query.QueryExpressions.property;
+import static org.qi4j.api.query.QueryExpressions.sum;
 import static org.qi4j.api.query.QueryExpressions.templateFor;
+import static org.qi4j.api.query.QueryExpressions.variable;
 import static org.qi4j.test.indexing.NameableAssert.verifyOrderedResults;
 import static org.qi4j.test.indexing.NameableAssert.verifyUnorderedResults;
 
@@ -828,4 +847,180 @@ public abstract class AbstractQueryTest
 
         verifyUnorderedResults( query, "Jack Doe", "Joe Doe" );
     }
+
+    @Test
+    public void script53_PrefetchedIteration()
+    {
+        // Chunks of 2 with read-ahead, so results span several bulk loads
+        ExecutorService readAhead = Executors.newSingleThreadExecutor();
+        try
+        {
+            unitOfWork.setMetaInfo( new PrefetchOptions( 2, readAhead ) );
+            QueryBuilder<Nameable> qb = this.module.newQueryBuilder( Nameable.class );
+            Nameable nameable = templateFor( Nameable.class );
+            Query<Nameable> query = unitOfWork.newQuery( qb );
+            query.orderBy( orderBy( nameable.name() ) );
+            System.out.println( "*** script53_PrefetchedIteration: " + query );
+
+            verifyOrderedResults( query, "Ann Doe", "Cars", "Cooking", "Gaming", "Jack Doe", "Joe Doe", "Kuala Lumpur",
+                                  "Penang", "Programming" );
+        }
+        finally
+        {
+            readAhead.shutdown();
+        }
+    }
+
+    @Test
+    public void script54_ProjectedProperties()
+    {
+        QueryBuilder<Person> qb = this.module.newQueryBuilder( Person.class );
+        Person person = templateFor( Person.class );
+        Query<Person> query = unitOfWork.newQuery( qb );
+        query.orderBy( orderBy( person.name() ) );
+        PropertyFunction<String> name = property( person.name() );
+        PropertyFunction<Integer> yearOfBirth = property( person.yearOfBirth() );
+        System.out.println( "*** script54_ProjectedProperties: " + query );
+
+        List<String> rows = new ArrayList<>();
+        for( Projection projection : query.project( name, yearOfBirth ) )
+        {
+            assertThat( projection.get( 0 ), equalTo( (Object) projection.get( name ) ) );
+            rows.add( projection.get( name ) + " " + projection.get( yearOfBirth ) );
+        }
+        assertThat( rows, equalTo( Arrays.asList( "Ann Doe 1975", "Jack Doe 1970", "Joe Doe 1990" ) ) );
+    }
+
+    @Test
+    public void script55_AggregatedProperties()
+    {
+        QueryBuilder<Person> qb = this.module.newQueryBuilder( Person.class );
+        Person person = templateFor( Person.class );
+        Query<Person> query = unitOfWork.newQuery( qb );
+        System.out.println( "*** script55_AggregatedProperties: " + query );
+
+        assertThat( query.aggregate( count() ), equalTo( 3L ) );
+        assertThat( query.aggregate( sum( person.yearOfBirth() ) ), equalTo( (Number) 5935L ) );
+        assertThat( query.aggregate( min( person.yearOfBirth() ) ), equalTo( 1970 ) );
+        assertThat( query.aggregate( max( person.yearOfBirth() ) ), equalTo( 1990 ) );
+
+        Aggregation<Integer> latest = max( person.yearOfBirth() );
+        List<String> rows = new ArrayList<>();
+        for( AggregationResult result : query.aggregate( new PropertyFunction<?>[]{ property( person.name() ) },
+                                                         count(), latest ) )
+        {
+            rows.add( result.groupValue( 0 ) + " " + result.get( 0 ) + " " + result.get( latest ) );
+        }
+        assertThat( rows, equalTo( Arrays.asList( "Ann Doe 1 1975", "Jack Doe 1 1970", "Joe Doe 1 1990" ) ) );
+    }
+
+    @Test
+    public void script56_PreparedQuery()
+    {
+        QueryBuilder<Nameable> qb = this.module.newQueryBuilder( Nameable.class );
+        Nameable nameable = templateFor( Nameable.class );
+        qb = qb.where( eq( nameable.name(), variable( "name" ) ) ).prepare();
+
+        Query<Nameable> query = unitOfWork.newQuery( qb );
+        query.setVariable( "name", "Gaming" );
+        System.out.println( "*** script56_PreparedQuery: " + query );
+        verifyUnorderedResults( query, "Gaming" );
+
+        // Same plan, other variables
+        query = unitOfWork.newQuery( qb );
+        query.setVariable( "name", "Penang" );
+        verifyUnorderedResults( query, "Penang" );
+        assertThat( query.count(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void script57_SequentialPages()
+    {
+        Nameable nameable = templateFor( Nameable.class );
+        for( OrderBy.Order order : OrderBy.Order.values() )
+        {
+            Query<Nameable> all = unitOfWork.newQuery( this.module.newQueryBuilder( Nameable.class ) );
+            all.orderBy( orderBy( nameable.name(), order ) );
+            List<String> expected = new ArrayList<>();
+            for( Nameable each : all )
+            {
+                expected.add( each.name().get() );
+            }
+
+            // Each page follows the previous one
+            List<String> paged = new ArrayList<>();
+            for( int first = 0; first < expected.size(); first += 2 )
+            {
+                Query<Nameable> page = unitOfWork.newQuery( this.module.newQueryBuilder( Nameable.class ) );
+                page.orderBy( orderBy( nameable.name(), order ) );
+                page.firstResult( first );
+                page.maxResults( 2 );
+                for( Nameable each : page )
+                {
+                    paged.add( each.name().get() );
+                }
+            }
+            System.out.println( "*** script57_SequentialPages: " + order + " " + paged );
+            assertThat( paged, equalTo( expected ) );
+        }
+    }
+
+    @Test
+    public void script58_PagesAfterChanges()
+        throws UnitOfWorkCompletionException
+    {
+        Nameable nameable = templateFor( Nameable.class );
+        Query<Nameable> first = unitOfWork.newQuery( this.module.newQueryBuilder( Nameable.class ) );
+        first.orderBy( orderBy( nameable.name() ) );
+        first.firstResult( 0 );
+        first.maxResults( 2 );
+        for( Nameable each : first )
+        {
+            each.name().get();
+        }
+
+        // An entity is added before the end of the first page
+        try( UnitOfWork uow = this.module.newUnitOfWork() )
+        {
+            EntityBuilder<Domain> builder = uow.newEntityBuilder( Domain.class, "Added" );
+            builder.instance().name().set( "0 Added" );
+            builder.instance().description().set( "Added domain" );
+            builder.newInstance();
+            uow.complete();
+        }
+        try
+        {
+            try( UnitOfWork uow = this.module.newUnitOfWork() )
+            {
+                Query<Nameable> all = uow.newQuery( this.module.newQueryBuilder( Nameable.class ) );
+                all.orderBy( orderBy( nameable.name() ) );
+                List<String> expected = new ArrayList<>();
+                for( Nameable each : all )
+                {
+                    expected.add( each.name().get() );
+                }
+
+                // The second page is at its offset in the changed index
+                Query<Nameable> second = uow.newQuery( this.module.newQueryBuilder( Nameable.class ) );
+                second.orderBy( orderBy( nameable.name() ) );
+                second.firstResult( 2 );
+                second.maxResults( 2 );
+                List<String> paged = new ArrayList<>();
+                for( Nameable each : second )
+                {
+                    paged.add( each.name().get() );
+                }
+                System.out.println( "*** script58_PagesAfterChanges: " + paged );
+                assertThat( paged, equalTo( expected.subList( 2, 4 ) ) );
+            }
+        }
+        finally
+        {
+            try( UnitOfWork uow = this.module.newUnitOfWork() )
+            {
+                uow.remove( uow.get( Domain.class, "Added" ) );
+                uow.complete();
+            }
+        }
+    }
 }
@@ -17,8 +17,16 @@
  */
 package org.qi4j.cache.ehcache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.statistics.StatisticsGateway;
 import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CacheStatistics;
 
 public class EhCacheImpl<T>
     implements Cache<T>
@@ -49,9 +57,12 @@ public class EhCacheImpl<T>
     @Override
     public T remove( String key )
     {
-        T old = valueType.cast( backingCache.get( key ).getObjectValue() );
-        backingCache.remove( key );
-        return old;
+        Element old = backingCache.removeAndReturnElement( key );
+        if( old == null )
+        {
+            return null;
+        }
+        return valueType.cast( old.getObjectValue() );
     }
 
     @Override
@@ -67,6 +78,80 @@ public class EhCacheImpl<T>
         return backingCache.isKeyInCache( key );
     }
 
+    @Override
+    public void put( String key, T value, long timeToLive, TimeUnit unit )
+    {
+        Element element = new Element( key, value );
+        if( timeToLive > 0 )
+        {
+            element.setTimeToLive( toSeconds( timeToLive, unit ) );
+        }
+        backingCache.put( element );
+    }
+
+    @Override
+    public Map<String, T> getAll( Iterable<String> keys )
+    {
+        Map<Object, Element> elements = backingCache.getAll( toCollection( keys ) );
+        Map<String, T> values = new LinkedHashMap<>();
+        for( Element element : elements.values() )
+        {
+            if( element != null )
+            {
+                values.put( (String) element.getObjectKey(), valueType.cast( element.getObjectValue() ) );
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll( Map<String, ? extends T> values )
+    {
+        List<Element> elements = new ArrayList<>( values.size() );
+        for( Map.Entry<String, ? extends T> entry : values.entrySet() )
+        {
+            elements.add( new Element( entry.getKey(), entry.getValue() ) );
+        }
+        backingCache.putAll( elements );
+    }
+
+    @Override
+    public void removeAll( Iterable<String> keys )
+    {
+        backingCache.removeAll( toCollection( keys ) );
+    }
+
+    @Override
+    public CacheStatistics statistics()
+    {
+        StatisticsGateway statistics = backingCache.getStatistics();
+        return new CacheStatistics( statistics.cacheHitCount(),
+                                    statistics.cacheMissCount(),
+                                    statistics.cacheEvictedCount(),
+                                    backingCache.getSize() );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static Collection<String> toCollection( Iterable<String> keys )
+    {
+        if( keys instanceof Collection )
+        {
+            return (Collection<String>) keys;
+        }
+        List<String> collection = new ArrayList<>();
+        for( String key : keys )
+        {
+            collection.add( key );
+        }
+        return collection;
+    }
+
+    private static int toSeconds( long timeToLive, TimeUnit unit )
+    {
+        // Ehcache expires elements with a granularity of one second
+        return (int) Math.min( Integer.MAX_VALUE, Math.max( 1, unit.toSeconds( timeToLive ) ) );
+    }
+
     synchronized void decRefCount()
     {
         refCount--;
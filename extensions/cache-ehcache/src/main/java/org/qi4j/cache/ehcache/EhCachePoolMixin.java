@@ -40,6 +40,13 @@ public abstract class EhCachePoolMixin
     @Override
     @SuppressWarnings( "unchecked" )
     public <T> Cache<T> fetchCache( String cacheId, Class<T> valueType )
+    {
+        return fetchCache( cacheId, valueType, 0 );
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> Cache<T> fetchCache( String cacheId, Class<T> valueType, int sizeHint )
     {
         // Note: Small bug in Ehcache; If the cache name is an empty String it will actually work until
         //       you try to remove the Cache instance from the CacheManager, at which point it is silently
@@ -48,16 +55,16 @@ public abstract class EhCachePoolMixin
         EhCacheImpl<?> cache = caches.get( cacheId );
         if( cache == null )
         {
-            cache = createNewCache( cacheId, valueType );
+            cache = createNewCache( cacheId, valueType, sizeHint );
             caches.put( cacheId, cache );
         }
         cache.incRefCount();
         return (Cache<T>) cache;
     }
 
-    private <T> EhCacheImpl<T> createNewCache( String cacheId, Class<T> valueType )
+    private <T> EhCacheImpl<T> createNewCache( String cacheId, Class<T> valueType, int sizeHint )
     {
-        CacheConfiguration cc = createCacheConfiguration( cacheId );
+        CacheConfiguration cc = createCacheConfiguration( cacheId, sizeHint );
 
         // TODO: We also need all the other Configurations that are possible, like cacheLoaderFactoryConfiguration
         net.sf.ehcache.Cache cache = new net.sf.ehcache.Cache( cc );
@@ -84,7 +91,7 @@ public abstract class EhCachePoolMixin
     {
         net.sf.ehcache.config.Configuration configuration = new net.sf.ehcache.config.Configuration();
         configureEhCache( configuration );
-        CacheConfiguration cc = createCacheConfiguration( "qi4j.ehcache.config.default" );
+        CacheConfiguration cc = createCacheConfiguration( "qi4j.ehcache.config.default", 0 );
         configuration.setDefaultCacheConfiguration( cc );
         cacheManager = CacheManager.newInstance( configuration );
     }
@@ -120,13 +127,13 @@ public abstract class EhCachePoolMixin
         }
     }
 
-    private CacheConfiguration createCacheConfiguration( String cacheId )
+    private CacheConfiguration createCacheConfiguration( String cacheId, int sizeHint )
     {
         EhCacheConfiguration conf = config.get();
         Integer maxElementsInMemory = conf.maxElementsInMemory().get();
         if( maxElementsInMemory <= 0 )
         {
-            maxElementsInMemory = 10000;
+            maxElementsInMemory = sizeHint > 0 ? sizeHint : 10000;
         }
         CacheConfiguration cacheConfig = new CacheConfiguration( cacheId, maxElementsInMemory );
         String transactionalMode = conf.transactionalMode().get();
@@ -17,25 +17,38 @@
  */
 package org.qi4j.cache.memcache;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import net.spy.memcached.MemcachedClient;
 import net.spy.memcached.transcoders.SerializingTranscoder;
 import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CacheStatistics;
 
 /**
  * Memcache Implementation.
  * Use Java Serialization under the hood.
+ * Bulk gets are sent as a single multi-get, bulk puts and removes are pipelined by the client.
+ * Statistics only count hits and misses of this instance, evictions and size are server wide and not available.
  * @param <T> Parameterized Type of cached entries
  */
 /* package */ class MemcacheImpl<T>
     implements Cache<T>
 {
     private static final AtomicInteger INSTANCES = new AtomicInteger();
+    // Memcached reads expirations longer than 30 days as absolute unix time
+    private static final long MAX_RELATIVE_EXPIRATION = TimeUnit.DAYS.toSeconds( 30 );
     private final MemcachedClient client;
     private final String cacheId;
     private final String cachePrefix;
     private final Class<T> valueType;
     private final int expiration;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
     private int refCount;
 
     /* package */ MemcacheImpl( MemcachedClient client, String cacheId, Class<T> valueType, int expiration )
@@ -54,8 +67,10 @@ import org.qi4j.spi.cache.Cache;
         client.touch( prefix( key ), expiration );
         if( value == null )
         {
+            misses.incrementAndGet();
             return null;
         }
+        hits.incrementAndGet();
         return valueType.cast( value );
     }
 
@@ -83,6 +98,64 @@ import org.qi4j.spi.cache.Cache;
         return client.get( prefix( key ) ) != null;
     }
 
+    @Override
+    public void put( String key, T value, long timeToLive, TimeUnit unit )
+    {
+        int entryExpiration = timeToLive > 0
+                              ? (int) Math.min( MAX_RELATIVE_EXPIRATION, Math.max( 1, unit.toSeconds( timeToLive ) ) )
+                              : expiration;
+        client.set( prefix( key ), entryExpiration, value, new SerializingTranscoder() );
+    }
+
+    @Override
+    public Map<String, T> getAll( Iterable<String> keys )
+    {
+        List<String> prefixedKeys = new ArrayList<>();
+        for( String key : keys )
+        {
+            prefixedKeys.add( prefix( key ) );
+        }
+        Map<String, Object> found = client.getBulk( prefixedKeys, new SerializingTranscoder() );
+        Map<String, T> values = new LinkedHashMap<>();
+        for( String prefixedKey : prefixedKeys )
+        {
+            Object value = found.get( prefixedKey );
+            if( value != null )
+            {
+                client.touch( prefixedKey, expiration );
+                values.put( prefixedKey.substring( cachePrefix.length() ), valueType.cast( value ) );
+            }
+        }
+        hits.addAndGet( values.size() );
+        misses.addAndGet( prefixedKeys.size() - values.size() );
+        return values;
+    }
+
+    @Override
+    public void putAll( Map<String, ? extends T> values )
+    {
+        SerializingTranscoder transcoder = new SerializingTranscoder();
+        for( Map.Entry<String, ? extends T> entry : values.entrySet() )
+        {
+            client.set( prefix( entry.getKey() ), expiration, entry.getValue(), transcoder );
+        }
+    }
+
+    @Override
+    public void removeAll( Iterable<String> keys )
+    {
+        for( String key : keys )
+        {
+            client.delete( prefix( key ) );
+        }
+    }
+
+    @Override
+    public CacheStatistics statistics()
+    {
+        return new CacheStatistics( hits.get(), misses.get(), -1, -1 );
+    }
+
     private String prefix( String key )
     {
         return cachePrefix + key;
@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate use frequency of cache keys.
+ * <p>
+ * A Count-Min sketch of 4-bit counters, four rows packed in each long. All counters are halved once the number of
+ * increments reaches ten times the table length, so that frequencies reflect recent use. Increments are lock-free,
+ * concurrent ones may be lost which only lowers the estimate.
+ * </p>
+ */
+/* package */ final class FrequencySketch
+{
+    private static final long[] SEEDS =
+        {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_LENGTH = 1 << 24;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /* package */ FrequencySketch( long expectedEntries )
+    {
+        int length = 64;
+        while( length < expectedEntries && length < MAX_LENGTH )
+        {
+            length <<= 1;
+        }
+        table = new AtomicLongArray( length );
+        tableMask = length - 1;
+        sampleSize = 10 * length;
+    }
+
+    /* package */ int frequency( int hashCode )
+    {
+        int hash = spread( hashCode );
+        int frequency = 15;
+        for( int row = 0; row < 4; row++ )
+        {
+            long value = table.get( indexOf( hash, row ) );
+            frequency = Math.min( frequency, (int) ( ( value >>> offsetOf( hash, row ) ) & 0xfL ) );
+        }
+        return frequency;
+    }
+
+    /* package */ void increment( int hashCode )
+    {
+        int hash = spread( hashCode );
+        boolean added = false;
+        for( int row = 0; row < 4; row++ )
+        {
+            added |= incrementAt( indexOf( hash, row ), offsetOf( hash, row ) );
+        }
+        if( added && additions.incrementAndGet() >= sampleSize )
+        {
+            reset();
+        }
+    }
+
+    private boolean incrementAt( int index, int offset )
+    {
+        long mask = 0xfL << offset;
+        for( ; ; )
+        {
+            long value = table.get( index );
+            if( ( value & mask ) == mask )
+            {
+                return false;
+            }
+            if( table.compareAndSet( index, value, value + ( 1L << offset ) ) )
+            {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void reset()
+    {
+        if( additions.get() < sampleSize )
+        {
+            // Already reset by another thread
+            return;
+        }
+        for( int index = 0; index < table.length(); index++ )
+        {
+            long value;
+            do
+            {
+                value = table.get( index );
+            }
+            while( !table.compareAndSet( index, value, ( value >>> 1 ) & RESET_MASK ) );
+        }
+        additions.set( additions.get() / 2 );
+    }
+
+    private int indexOf( int hash, int row )
+    {
+        long h = ( hash + SEEDS[ row ] ) * SEEDS[ row ];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private static int offsetOf( int hash, int row )
+    {
+        // Each row uses its own group of four counters in a long
+        return ( ( row << 2 ) + ( ( hash >>> ( row << 3 ) ) & 3 ) ) << 2;
+    }
+
+    private static int spread( int x )
+    {
+        x = ( ( x >>> 16 ) ^ x ) * 0x45d9f3b;
+        x = ( ( x >>> 16 ) ^ x ) * 0x45d9f3b;
+        return ( x >>> 16 ) ^ x;
+    }
+}
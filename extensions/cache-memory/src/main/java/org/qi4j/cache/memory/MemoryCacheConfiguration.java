@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.property.Property;
+
+/**
+ * In-Memory CachePool Configuration.
+ */
+// START SNIPPET: config
+public interface MemoryCacheConfiguration
+    extends Configuration<MemoryCachePoolService>
+{
+    /**
+     * Maximum weight of each cache, that is the sum of the serialized size of its entries, in bytes.
+     * Defaulted to 64MB.
+     * @return Maximum weight configuration property
+     */
+    @Optional
+    Property<Long> maxWeight();
+
+    /**
+     * Cached items expiration in seconds, unless put with their own time to live.
+     * Defaulted to none, cached items are only evicted.
+     * @return Cached items expiration configuration property
+     */
+    @Optional
+    Property<Long> expiration();
+}
+// END SNIPPET: config
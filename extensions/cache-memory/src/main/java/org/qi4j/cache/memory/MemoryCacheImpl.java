@@ -0,0 +1,406 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CacheStatistics;
+
+/**
+ * In-Memory Cache Implementation.
+ * <p>
+ * Entries are weighted by their serialized size. New entries are added to a window holding 1% of the maximum
+ * weight. Entries leaving the window compete with the eviction victim of the main space and are admitted only when
+ * used more often, according to a {@link FrequencySketch}. The main space is split between probation and protected
+ * queues, entries used while on probation are promoted to the protected one.
+ * </p>
+ * <p>
+ * Reads only go through the ConcurrentHashMap, record the use in the sketch and flag the entry as referenced; queues
+ * are only reordered by writes, under a lock, looking at the referenced flags.
+ * </p>
+ * @param <T> Parameterized Type of cached entries
+ */
+/* package */ final class MemoryCacheImpl<T>
+    implements Cache<T>
+{
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final String cacheId;
+    private final Class<T> valueType;
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final long expiration;
+    private final ConcurrentHashMap<String, Node<T>> data = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Guarded by lock
+    private final Object lock = new Object();
+    private final Queue<T>[] queues;
+
+    private int refCount;
+
+    /**
+     * @param maxWeight       Maximum sum of the serialized size of the entries, in bytes
+     * @param expiration      Default time to live of the entries in milliseconds, zero or less for none
+     * @param expectedEntries Expected number of entries, zero or less if unknown
+     */
+    @SuppressWarnings( "unchecked" )
+    /* package */ MemoryCacheImpl( String cacheId, Class<T> valueType, long maxWeight, long expiration,
+                                   long expectedEntries )
+    {
+        this.cacheId = cacheId;
+        this.valueType = valueType;
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max( 1, maxWeight / 100 );
+        this.protectedMaxWeight = ( maxWeight - windowMaxWeight ) * 8 / 10;
+        this.expiration = expiration;
+        // Without hint, assume entities serialize to about 1KB
+        this.sketch = new FrequencySketch( expectedEntries > 0 ? expectedEntries : maxWeight / 1024 );
+        this.queues = new Queue[]{ new Queue<T>(), new Queue<T>(), new Queue<T>() };
+    }
+
+    @Override
+    public T get( String key )
+    {
+        sketch.increment( key.hashCode() );
+        Node<T> node = data.get( key );
+        if( node == null || node.isExpired() )
+        {
+            if( node != null )
+            {
+                removeNode( node );
+            }
+            misses.increment();
+            return null;
+        }
+        node.referenced = true;
+        hits.increment();
+        return node.value;
+    }
+
+    @Override
+    public T remove( String key )
+    {
+        Node<T> node;
+        synchronized( lock )
+        {
+            node = data.remove( key );
+            if( node == null )
+            {
+                return null;
+            }
+            unlink( node );
+        }
+        return node.isExpired() ? null : node.value;
+    }
+
+    @Override
+    public void put( String key, T value )
+    {
+        put( key, value, 0, TimeUnit.MILLISECONDS );
+    }
+
+    @Override
+    public boolean exists( String key )
+    {
+        Node<T> node = data.get( key );
+        return node != null && !node.isExpired();
+    }
+
+    @Override
+    public void put( String key, T value, long timeToLive, TimeUnit unit )
+    {
+        long weight = weigh( value );
+        if( weight > maxWeight )
+        {
+            // Would evict everything else
+            remove( key );
+            return;
+        }
+        long timeToLiveMillis = timeToLive > 0 ? unit.toMillis( timeToLive ) : expiration;
+        long expiresAt = timeToLiveMillis > 0 ? System.currentTimeMillis() + timeToLiveMillis : 0;
+        Node<T> node = new Node<>( key, valueType.cast( value ), weight, expiresAt );
+        sketch.increment( key.hashCode() );
+        synchronized( lock )
+        {
+            Node<T> old = data.put( key, node );
+            if( old != null )
+            {
+                // Replaced values keep their place
+                unlink( old );
+                node.queue = old.queue;
+                node.referenced = true;
+            }
+            link( node );
+            evict();
+        }
+    }
+
+    @Override
+    public CacheStatistics statistics()
+    {
+        return new CacheStatistics( hits.sum(), misses.sum(), evictions.sum(), data.size() );
+    }
+
+    /* package */ long weight()
+    {
+        synchronized( lock )
+        {
+            return queues[ WINDOW ].weight + queues[ PROBATION ].weight + queues[ PROTECTED ].weight;
+        }
+    }
+
+    private void removeNode( Node<T> node )
+    {
+        synchronized( lock )
+        {
+            if( data.remove( node.key, node ) )
+            {
+                unlink( node );
+            }
+        }
+    }
+
+    private void evict()
+    {
+        while( queues[ WINDOW ].weight > windowMaxWeight )
+        {
+            Node<T> candidate = queues[ WINDOW ].first;
+            unlink( candidate );
+            admit( candidate );
+        }
+        // Replaced values may have grown the main space
+        while( mainWeight() > maxWeight - windowMaxWeight )
+        {
+            Node<T> victim = mainVictim();
+            unlink( victim );
+            discard( victim );
+        }
+    }
+
+    private void admit( Node<T> candidate )
+    {
+        long mainMaxWeight = maxWeight - windowMaxWeight;
+        if( candidate.weight > mainMaxWeight )
+        {
+            discard( candidate );
+            return;
+        }
+        int candidateFrequency = sketch.frequency( candidate.key.hashCode() );
+        while( mainWeight() + candidate.weight > mainMaxWeight )
+        {
+            Node<T> victim = mainVictim();
+            if( candidateFrequency > sketch.frequency( victim.key.hashCode() ) )
+            {
+                unlink( victim );
+                discard( victim );
+            }
+            else
+            {
+                discard( candidate );
+                return;
+            }
+        }
+        candidate.queue = PROBATION;
+        link( candidate );
+    }
+
+    private Node<T> mainVictim()
+    {
+        // Give entries used while on probation a second chance, bounded as readers may flag them meanwhile
+        int chances = queues[ PROBATION ].size;
+        Node<T> node = queues[ PROBATION ].first;
+        while( node != null && node.referenced && chances-- > 0 )
+        {
+            node.referenced = false;
+            unlink( node );
+            node.queue = PROTECTED;
+            link( node );
+            demoteProtected();
+            node = queues[ PROBATION ].first;
+        }
+        return node != null ? node : queues[ PROTECTED ].first;
+    }
+
+    private void demoteProtected()
+    {
+        int chances = queues[ PROTECTED ].size;
+        while( queues[ PROTECTED ].weight > protectedMaxWeight )
+        {
+            Node<T> node = queues[ PROTECTED ].first;
+            unlink( node );
+            if( !node.referenced || chances-- <= 0 )
+            {
+                node.queue = PROBATION;
+            }
+            node.referenced = false;
+            link( node );
+        }
+    }
+
+    private void discard( Node<T> node )
+    {
+        data.remove( node.key, node );
+        evictions.increment();
+    }
+
+    private long mainWeight()
+    {
+        return queues[ PROBATION ].weight + queues[ PROTECTED ].weight;
+    }
+
+    private void link( Node<T> node )
+    {
+        Queue<T> queue = queues[ node.queue ];
+        node.prev = queue.last;
+        node.next = null;
+        if( queue.last == null )
+        {
+            queue.first = node;
+        }
+        else
+        {
+            queue.last.next = node;
+        }
+        queue.last = node;
+        queue.weight += node.weight;
+        queue.size++;
+    }
+
+    private void unlink( Node<T> node )
+    {
+        Queue<T> queue = queues[ node.queue ];
+        if( node.prev == null )
+        {
+            queue.first = node.next;
+        }
+        else
+        {
+            node.prev.next = node.next;
+        }
+        if( node.next == null )
+        {
+            queue.last = node.prev;
+        }
+        else
+        {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        queue.weight -= node.weight;
+        queue.size--;
+    }
+
+    private static long weigh( Object value )
+    {
+        if( !( value instanceof Serializable ) )
+        {
+            return 1;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        try( ObjectOutputStream out = new ObjectOutputStream( counter ) )
+        {
+            out.writeObject( value );
+        }
+        catch( IOException e )
+        {
+            // Not serializable after all, weigh it like an empty value
+            return 1;
+        }
+        return counter.count;
+    }
+
+    synchronized void decRefCount()
+    {
+        refCount--;
+    }
+
+    synchronized void incRefCount()
+    {
+        refCount++;
+    }
+
+    synchronized boolean isNotUsed()
+    {
+        return refCount == 0;
+    }
+
+    public String cacheId()
+    {
+        return cacheId;
+    }
+
+    private static final class Node<T>
+    {
+        private final String key;
+        private final T value;
+        private final long weight;
+        private final long expiresAt;
+        private volatile boolean referenced;
+        // Guarded by lock
+        private int queue = WINDOW;
+        private Node<T> prev;
+        private Node<T> next;
+
+        private Node( String key, T value, long weight, long expiresAt )
+        {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired()
+        {
+            return expiresAt != 0 && System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private static final class Queue<T>
+    {
+        private Node<T> first;
+        private Node<T> last;
+        private long weight;
+        private int size;
+    }
+
+    private static final class CountingOutputStream
+        extends OutputStream
+    {
+        private long count;
+
+        @Override
+        public void write( int b )
+        {
+            count++;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+        {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.spi.cache.Cache;
+
+import static org.qi4j.api.util.NullArgumentException.validateNotEmpty;
+
+/**
+ * In-Memory CachePool Mixin.
+ * <p>
+ * Hits, misses, evictions, size and weight of each Cache are reported to the MetricsProvider, if any.
+ * </p>
+ */
+public class MemoryCachePoolMixin
+    implements MemoryCachePoolService
+{
+    private static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+    private final Map<String, MemoryCacheImpl<?>> caches = new HashMap<>();
+    @This @Optional
+    private Configuration<MemoryCacheConfiguration> configuration;
+    @Service @Optional
+    private MetricsProvider metrics;
+    private long maxWeight;
+    private long expiration;
+
+    @Override
+    public void activateService()
+        throws Exception
+    {
+        maxWeight = DEFAULT_MAX_WEIGHT;
+        expiration = 0;
+        if( configuration != null )
+        {
+            MemoryCacheConfiguration config = configuration.get();
+            if( config.maxWeight().get() != null && config.maxWeight().get() > 0 )
+            {
+                maxWeight = config.maxWeight().get();
+            }
+            if( config.expiration().get() != null )
+            {
+                expiration = config.expiration().get() * 1000;
+            }
+        }
+    }
+
+    @Override
+    public void passivateService()
+        throws Exception
+    {
+        synchronized( caches )
+        {
+            caches.clear();
+        }
+    }
+
+    @Override
+    public <T> Cache<T> fetchCache( String cacheId, Class<T> valueType )
+    {
+        return fetchCache( cacheId, valueType, 0 );
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> Cache<T> fetchCache( String cacheId, Class<T> valueType, int sizeHint )
+    {
+        validateNotEmpty( "cacheId", cacheId );
+        synchronized( caches )
+        {
+            MemoryCacheImpl<?> cache = caches.get( cacheId );
+            if( cache == null )
+            {
+                cache = new MemoryCacheImpl<>( cacheId, valueType, maxWeight, expiration, sizeHint );
+                caches.put( cacheId, cache );
+                registerMetrics( cache );
+            }
+            cache.incRefCount();
+            return (Cache<T>) cache;
+        }
+    }
+
+    @Override
+    public void returnCache( Cache<?> cache )
+    {
+        MemoryCacheImpl<?> memoryCache = (MemoryCacheImpl<?>) cache;
+        memoryCache.decRefCount();
+        synchronized( caches )
+        {
+            if( memoryCache.isNotUsed() )
+            {
+                caches.remove( memoryCache.cacheId() );
+            }
+        }
+    }
+
+    private void registerMetrics( final MemoryCacheImpl<?> cache )
+    {
+        if( metrics == null )
+        {
+            return;
+        }
+        MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+        String prefix = "Cache " + cache.cacheId() + " ";
+        gauges.registerGauge( MemoryCachePoolService.class, prefix + "hits", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().hits();
+            }
+        } );
+        gauges.registerGauge( MemoryCachePoolService.class, prefix + "misses", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().misses();
+            }
+        } );
+        gauges.registerGauge( MemoryCachePoolService.class, prefix + "evictions", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().evictions();
+            }
+        } );
+        gauges.registerGauge( MemoryCachePoolService.class, prefix + "size", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().size();
+            }
+        } );
+        gauges.registerGauge( MemoryCachePoolService.class, prefix + "weight", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.weight();
+            }
+        } );
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.property.Property;
+
+/**
+ * Off-Heap CachePool Configuration.
+ */
+// START SNIPPET: config
+public interface OffHeapCacheConfiguration
+    extends Configuration<OffHeapCachePoolService>
+{
+    /**
+     * Maximum off-heap size of each cache, in bytes.
+     * Defaulted to 256MB.
+     * @return Maximum size configuration property
+     */
+    @Optional
+    Property<Long> maxSize();
+
+    /**
+     * Size of the pages allocated by the caches, in bytes, which is also the maximum serialized size of a cached item.
+     * Defaulted to 1MB.
+     * @return Page size configuration property
+     */
+    @Optional
+    Property<Integer> pageSize();
+
+    /**
+     * Directory of the files holding the pages.
+     * When set, pages are memory-mapped from files in this directory, otherwise they are direct buffers.
+     * @return Directory configuration property
+     */
+    @Optional
+    Property<String> directory();
+
+    /**
+     * Cached items expiration in seconds, unless put with their own time to live.
+     * Defaulted to none, cached items are only evicted.
+     * @return Cached items expiration configuration property
+     */
+    @Optional
+    Property<Long> expiration();
+}
+// END SNIPPET: config
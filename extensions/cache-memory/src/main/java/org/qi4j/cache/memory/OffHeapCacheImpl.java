@@ -0,0 +1,612 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CacheStatistics;
+
+/**
+ * Off-Heap Cache Implementation.
+ * <p>
+ * Values are serialized into pages of direct, or memory-mapped, buffers and deserialized on each access, only
+ * their keys and locations stay on heap. Pages are allocated on demand up to the maximum size, and split in chunks
+ * of a slab class. Slab classes have chunk sizes growing by 25%, each value is stored in the smallest chunk it fits
+ * in. Values larger than a page are not cached.
+ * </p>
+ * <p>
+ * When a slab class has no free chunk and no page can be allocated, one of its chunks is evicted by a clock hand
+ * sweeping over them, skipping the ones read since it last passed. A slab class without any page takes one from the
+ * slab class holding the most.
+ * </p>
+ * <p>
+ * Reads copy bytes out of the buffers under a shared lock, writes and evictions take it exclusively.
+ * </p>
+ * @param <T> Parameterized Type of cached entries
+ */
+/* package */ final class OffHeapCacheImpl<T>
+    implements Cache<T>
+{
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private final String cacheId;
+    private final Class<T> valueType;
+    private final int pageSize;
+    private final int maxPages;
+    private final long expiration;
+    private final File file;
+    private final ConcurrentHashMap<String, Entry> index = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Guarded by lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SlabClass[] slabClasses;
+    private final List<Page> pages = new ArrayList<>();
+    private RandomAccessFile mapped;
+
+    private int refCount;
+
+    /**
+     * @param maxSize    Maximum size of the pages, in bytes
+     * @param pageSize   Size of each page, in bytes, which is also the maximum serialized size of a value
+     * @param expiration Default time to live of the entries in milliseconds, zero or less for none
+     * @param directory  Directory of the file holding the memory-mapped pages, null for direct buffers
+     */
+    /* package */ OffHeapCacheImpl( String cacheId, Class<T> valueType, long maxSize, int pageSize, long expiration,
+                                    File directory )
+        throws IOException
+    {
+        this.cacheId = cacheId;
+        this.valueType = valueType;
+        this.pageSize = pageSize;
+        this.maxPages = (int) Math.min( Integer.MAX_VALUE, maxSize / pageSize );
+        this.expiration = expiration;
+        List<SlabClass> classes = new ArrayList<>();
+        int chunkSize = MIN_CHUNK_SIZE;
+        while( chunkSize < pageSize / 2 )
+        {
+            classes.add( new SlabClass( chunkSize ) );
+            // Multiple of 8 bytes
+            chunkSize = ( (int) ( chunkSize * GROWTH_FACTOR ) + 7 ) & ~7;
+        }
+        classes.add( new SlabClass( pageSize ) );
+        this.slabClasses = classes.toArray( new SlabClass[ classes.size() ] );
+        if( directory != null )
+        {
+            directory.mkdirs();
+            file = File.createTempFile( "qi4j-cache-", ".pages", directory );
+            file.deleteOnExit();
+            mapped = new RandomAccessFile( file, "rw" );
+        }
+        else
+        {
+            file = null;
+        }
+    }
+
+    @Override
+    public T get( String key )
+    {
+        Entry entry = index.get( key );
+        byte[] bytes = entry == null ? null : read( entry );
+        if( bytes == null )
+        {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return deserialize( bytes );
+    }
+
+    @Override
+    public T remove( String key )
+    {
+        Entry entry = index.get( key );
+        if( entry == null )
+        {
+            return null;
+        }
+        byte[] bytes;
+        lock.writeLock().lock();
+        try
+        {
+            bytes = entry.page == null || entry.isExpired() ? null : copy( entry );
+            if( index.remove( key, entry ) )
+            {
+                free( entry );
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        return bytes == null ? null : deserialize( bytes );
+    }
+
+    @Override
+    public void put( String key, T value )
+    {
+        put( key, value, 0, TimeUnit.MILLISECONDS );
+    }
+
+    @Override
+    public boolean exists( String key )
+    {
+        Entry entry = index.get( key );
+        return entry != null && !entry.isExpired();
+    }
+
+    @Override
+    public void put( String key, T value, long timeToLive, TimeUnit unit )
+    {
+        byte[] bytes = serialize( value );
+        if( bytes.length > pageSize )
+        {
+            remove( key );
+            return;
+        }
+        long timeToLiveMillis = timeToLive > 0 ? unit.toMillis( timeToLive ) : expiration;
+        long expiresAt = timeToLiveMillis > 0 ? System.currentTimeMillis() + timeToLiveMillis : 0;
+        lock.writeLock().lock();
+        try
+        {
+            Entry old = index.remove( key );
+            if( old != null )
+            {
+                free( old );
+            }
+            Entry entry = allocate( slabClassOf( bytes.length ), key, bytes.length, expiresAt );
+            if( entry != null )
+            {
+                ByteBuffer buffer = entry.page.buffer.duplicate();
+                buffer.position( entry.offset );
+                buffer.put( bytes );
+                index.put( key, entry );
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CacheStatistics statistics()
+    {
+        return new CacheStatistics( hits.sum(), misses.sum(), evictions.sum(), index.size() );
+    }
+
+    /**
+     * @return Size of the allocated pages, in bytes
+     */
+    /* package */ long allocatedSize()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return (long) pages.size() * pageSize;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Release the pages. Direct buffers are only freed once garbage collected.
+     */
+    /* package */ void close()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            index.clear();
+            pages.clear();
+            for( SlabClass slabClass : slabClasses )
+            {
+                slabClass.pages.clear();
+                slabClass.pagesWithFreeChunks.clear();
+            }
+            if( mapped != null )
+            {
+                mapped.close();
+                mapped = null;
+                file.delete();
+            }
+        }
+        catch( IOException e )
+        {
+            // Only leaves a temporary file behind
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] read( Entry entry )
+    {
+        lock.readLock().lock();
+        try
+        {
+            if( entry.page == null )
+            {
+                // Evicted meanwhile
+                return null;
+            }
+            if( entry.isExpired() )
+            {
+                return null;
+            }
+            entry.referenced = true;
+            return copy( entry );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private byte[] copy( Entry entry )
+    {
+        byte[] bytes = new byte[ entry.length ];
+        ByteBuffer buffer = entry.page.buffer.duplicate();
+        buffer.position( entry.offset );
+        buffer.get( bytes );
+        return bytes;
+    }
+
+    private SlabClass slabClassOf( int length )
+    {
+        int low = 0;
+        int high = slabClasses.length - 1;
+        while( low < high )
+        {
+            int middle = ( low + high ) >>> 1;
+            if( slabClasses[ middle ].chunkSize < length )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return slabClasses[ low ];
+    }
+
+    private Entry allocate( SlabClass slabClass, String key, int length, long expiresAt )
+    {
+        Page page = slabClass.pagesWithFreeChunks.peek();
+        if( page == null )
+        {
+            page = newPage();
+            if( page == null && slabClass.pages.isEmpty() )
+            {
+                page = takePage();
+            }
+            if( page != null )
+            {
+                page.format( slabClass );
+                slabClass.pages.add( page );
+                slabClass.pagesWithFreeChunks.add( page );
+            }
+        }
+        int chunk;
+        if( page != null )
+        {
+            chunk = page.freeChunks[ --page.freeCount ];
+            if( page.freeCount == 0 )
+            {
+                slabClass.pagesWithFreeChunks.remove( page );
+            }
+        }
+        else if( !slabClass.pages.isEmpty() )
+        {
+            evictAtHand( slabClass );
+            page = slabClass.hand();
+            chunk = slabClass.handChunk;
+            slabClass.advance();
+        }
+        else
+        {
+            // No page at all, maximum size lower than a page
+            return null;
+        }
+        Entry entry = new Entry( key, page, chunk * slabClass.chunkSize, length, expiresAt );
+        page.entries[ chunk ] = entry;
+        return entry;
+    }
+
+    /**
+     * Evict the entry of the chunk at the clock hand, after moving it past the referenced ones.
+     */
+    private void evictAtHand( SlabClass slabClass )
+    {
+        // Referenced flags are only set under the read lock, at most two sweeps are needed
+        for( ; ; )
+        {
+            Page page = slabClass.hand();
+            Entry entry = page.entries[ slabClass.handChunk ];
+            if( entry != null && entry.referenced && !entry.isExpired() )
+            {
+                entry.referenced = false;
+                slabClass.advance();
+                continue;
+            }
+            if( entry != null )
+            {
+                index.remove( entry.key, entry );
+                entry.page = null;
+                evictions.increment();
+            }
+            page.entries[ slabClass.handChunk ] = null;
+            return;
+        }
+    }
+
+    private Page newPage()
+    {
+        if( pages.size() >= maxPages )
+        {
+            return null;
+        }
+        ByteBuffer buffer;
+        if( mapped != null )
+        {
+            try
+            {
+                buffer = mapped.getChannel().map( FileChannel.MapMode.READ_WRITE,
+                                                  (long) pages.size() * pageSize, pageSize );
+            }
+            catch( IOException e )
+            {
+                return null;
+            }
+        }
+        else
+        {
+            buffer = ByteBuffer.allocateDirect( pageSize );
+        }
+        Page page = new Page( buffer );
+        pages.add( page );
+        return page;
+    }
+
+    private Page takePage()
+    {
+        SlabClass donor = null;
+        for( SlabClass slabClass : slabClasses )
+        {
+            if( donor == null || slabClass.pages.size() > donor.pages.size() )
+            {
+                donor = slabClass;
+            }
+        }
+        if( donor == null || donor.pages.isEmpty() )
+        {
+            return null;
+        }
+        Page page = donor.pages.remove( donor.pages.size() - 1 );
+        donor.pagesWithFreeChunks.remove( page );
+        donor.resetHand();
+        for( Entry entry : page.entries )
+        {
+            if( entry != null )
+            {
+                index.remove( entry.key, entry );
+                entry.page = null;
+                evictions.increment();
+            }
+        }
+        return page;
+    }
+
+    private void free( Entry entry )
+    {
+        Page page = entry.page;
+        int chunk = entry.offset / page.slabClass.chunkSize;
+        page.entries[ chunk ] = null;
+        page.freeChunks[ page.freeCount++ ] = chunk;
+        if( page.freeCount == 1 )
+        {
+            page.slabClass.pagesWithFreeChunks.add( page );
+        }
+        entry.page = null;
+    }
+
+    private byte[] serialize( T value )
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+        {
+            out.writeObject( value );
+        }
+        catch( IOException e )
+        {
+            throw new IllegalArgumentException( "Unable to serialize value of " + cacheId + " cache", e );
+        }
+        return bytes.toByteArray();
+    }
+
+    private T deserialize( byte[] bytes )
+    {
+        try( ObjectInputStream in = new ValueInputStream( new ByteArrayInputStream( bytes ) ) )
+        {
+            return valueType.cast( in.readObject() );
+        }
+        catch( IOException | ClassNotFoundException e )
+        {
+            throw new IllegalStateException( "Unable to deserialize value of " + cacheId + " cache", e );
+        }
+    }
+
+    synchronized void decRefCount()
+    {
+        refCount--;
+    }
+
+    synchronized void incRefCount()
+    {
+        refCount++;
+    }
+
+    synchronized boolean isNotUsed()
+    {
+        return refCount == 0;
+    }
+
+    public String cacheId()
+    {
+        return cacheId;
+    }
+
+    private final class ValueInputStream
+        extends ObjectInputStream
+    {
+        private ValueInputStream( InputStream in )
+            throws IOException
+        {
+            super( in );
+        }
+
+        @Override
+        protected Class<?> resolveClass( ObjectStreamClass desc )
+            throws IOException, ClassNotFoundException
+        {
+            // Values may be of classes only visible from the cache value type
+            ClassLoader loader = valueType.getClassLoader();
+            if( loader != null )
+            {
+                try
+                {
+                    return Class.forName( desc.getName(), false, loader );
+                }
+                catch( ClassNotFoundException e )
+                {
+                    // Fall back to the default resolution
+                }
+            }
+            return super.resolveClass( desc );
+        }
+    }
+
+    private static final class Entry
+    {
+        private final String key;
+        private final int offset;
+        private final int length;
+        private final long expiresAt;
+        private volatile boolean referenced;
+        // Null once freed or evicted, guarded by lock
+        private Page page;
+
+        private Entry( String key, Page page, int offset, int length, long expiresAt )
+        {
+            this.key = key;
+            this.page = page;
+            this.offset = offset;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired()
+        {
+            return expiresAt != 0 && System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private static final class Page
+    {
+        private final ByteBuffer buffer;
+        private SlabClass slabClass;
+        private Entry[] entries;
+        private int[] freeChunks;
+        private int freeCount;
+
+        private Page( ByteBuffer buffer )
+        {
+            this.buffer = buffer;
+        }
+
+        private void format( SlabClass slabClass )
+        {
+            this.slabClass = slabClass;
+            int chunks = buffer.capacity() / slabClass.chunkSize;
+            entries = new Entry[ chunks ];
+            freeChunks = new int[ chunks ];
+            for( int chunk = 0; chunk < chunks; chunk++ )
+            {
+                // Handed out from the start of the page
+                freeChunks[ chunk ] = chunks - 1 - chunk;
+            }
+            freeCount = chunks;
+        }
+    }
+
+    private static final class SlabClass
+    {
+        private final int chunkSize;
+        private final List<Page> pages = new ArrayList<>();
+        private final ArrayDeque<Page> pagesWithFreeChunks = new ArrayDeque<>();
+        private int handPage;
+        private int handChunk;
+
+        private SlabClass( int chunkSize )
+        {
+            this.chunkSize = chunkSize;
+        }
+
+        private Page hand()
+        {
+            return pages.get( handPage );
+        }
+
+        private void advance()
+        {
+            handChunk++;
+            if( handChunk == hand().entries.length )
+            {
+                handChunk = 0;
+                handPage = ( handPage + 1 ) % pages.size();
+            }
+        }
+
+        private void resetHand()
+        {
+            handPage = 0;
+            handChunk = 0;
+        }
+    }
+}
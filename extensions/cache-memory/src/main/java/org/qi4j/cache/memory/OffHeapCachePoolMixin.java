@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.spi.cache.Cache;
+
+import static org.qi4j.api.util.NullArgumentException.validateNotEmpty;
+
+/**
+ * Off-Heap CachePool Mixin.
+ * <p>
+ * Hits, misses, evictions, size and allocated off-heap bytes of each Cache are reported to the MetricsProvider, if any.
+ * </p>
+ */
+public class OffHeapCachePoolMixin
+    implements OffHeapCachePoolService
+{
+    private static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 1024 * 1024;
+
+    private final Map<String, OffHeapCacheImpl<?>> caches = new HashMap<>();
+    @This @Optional
+    private Configuration<OffHeapCacheConfiguration> configuration;
+    @Service @Optional
+    private MetricsProvider metrics;
+    private long maxSize;
+    private int pageSize;
+    private File directory;
+    private long expiration;
+
+    @Override
+    public void activateService()
+        throws Exception
+    {
+        maxSize = DEFAULT_MAX_SIZE;
+        pageSize = DEFAULT_PAGE_SIZE;
+        directory = null;
+        expiration = 0;
+        if( configuration != null )
+        {
+            OffHeapCacheConfiguration config = configuration.get();
+            if( config.maxSize().get() != null && config.maxSize().get() > 0 )
+            {
+                maxSize = config.maxSize().get();
+            }
+            if( config.pageSize().get() != null && config.pageSize().get() > 0 )
+            {
+                pageSize = config.pageSize().get();
+            }
+            if( config.directory().get() != null && !config.directory().get().isEmpty() )
+            {
+                directory = new File( config.directory().get() );
+            }
+            if( config.expiration().get() != null )
+            {
+                expiration = config.expiration().get() * 1000;
+            }
+        }
+    }
+
+    @Override
+    public void passivateService()
+        throws Exception
+    {
+        synchronized( caches )
+        {
+            for( OffHeapCacheImpl<?> cache : caches.values() )
+            {
+                cache.close();
+            }
+            caches.clear();
+        }
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> Cache<T> fetchCache( String cacheId, Class<T> valueType )
+    {
+        validateNotEmpty( "cacheId", cacheId );
+        synchronized( caches )
+        {
+            OffHeapCacheImpl<?> cache = caches.get( cacheId );
+            if( cache == null )
+            {
+                try
+                {
+                    cache = new OffHeapCacheImpl<>( cacheId, valueType, maxSize, pageSize, expiration, directory );
+                }
+                catch( IOException e )
+                {
+                    throw new IllegalStateException( "Unable to create the " + cacheId + " cache", e );
+                }
+                caches.put( cacheId, cache );
+                registerMetrics( cache );
+            }
+            cache.incRefCount();
+            return (Cache<T>) cache;
+        }
+    }
+
+    @Override
+    public void returnCache( Cache<?> cache )
+    {
+        OffHeapCacheImpl<?> offHeapCache = (OffHeapCacheImpl<?>) cache;
+        offHeapCache.decRefCount();
+        synchronized( caches )
+        {
+            if( offHeapCache.isNotUsed() )
+            {
+                caches.remove( offHeapCache.cacheId() );
+                offHeapCache.close();
+            }
+        }
+    }
+
+    private void registerMetrics( final OffHeapCacheImpl<?> cache )
+    {
+        if( metrics == null )
+        {
+            return;
+        }
+        MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+        String prefix = "Cache " + cache.cacheId() + " ";
+        gauges.registerGauge( OffHeapCachePoolService.class, prefix + "hits", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().hits();
+            }
+        } );
+        gauges.registerGauge( OffHeapCachePoolService.class, prefix + "misses", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().misses();
+            }
+        } );
+        gauges.registerGauge( OffHeapCachePoolService.class, prefix + "evictions", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().evictions();
+            }
+        } );
+        gauges.registerGauge( OffHeapCachePoolService.class, prefix + "size", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.statistics().size();
+            }
+        } );
+        gauges.registerGauge( OffHeapCachePoolService.class, prefix + "allocated bytes", new MetricsGauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return cache.allocatedSize();
+            }
+        } );
+    }
+}
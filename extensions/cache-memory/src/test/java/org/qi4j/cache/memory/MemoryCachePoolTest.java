@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import org.junit.Test;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CacheStatistics;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.cache.AbstractCachePoolTest;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * In-Memory CachePool Test.
+ */
+public class MemoryCachePoolTest
+    extends AbstractCachePoolTest
+{
+    private static final long MAX_WEIGHT = 64 * 1024;
+
+    @Override
+    // START SNIPPET: assembly
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        // END SNIPPET: assembly
+        ModuleAssembly confModule = module.layer().module( "confModule" );
+        new EntityTestAssembler().visibleIn( Visibility.layer ).assemble( confModule );
+        // START SNIPPET: assembly
+        new MemoryCacheAssembler().
+            visibleIn( Visibility.module ).
+            withConfig( confModule, Visibility.layer ).
+            assemble( module );
+        // END SNIPPET: assembly
+        confModule.forMixin( MemoryCacheConfiguration.class ).declareDefaults().maxWeight().set( MAX_WEIGHT );
+        // START SNIPPET: assembly
+    }
+    // END SNIPPET: assembly
+
+    @Test
+    public void givenFrequentlyUsedValuesWhenScanningManyOthersExpectFrequentlyUsedValuesKept()
+    {
+        Cache<String> scanned = cachePool.fetchCache( "scanned", String.class, 1000 );
+        StringBuilder value = new StringBuilder();
+        for( int idx = 0; idx < 100; idx++ )
+        {
+            value.append( 'v' );
+        }
+        for( int hot = 0; hot < 20; hot++ )
+        {
+            scanned.put( "hot" + hot, value.toString() );
+            for( int read = 0; read < 5; read++ )
+            {
+                scanned.get( "hot" + hot );
+            }
+        }
+
+        // Each frequently used value is read once every 1000 scanned ones, far more than the cache holds
+        for( int idx = 0; idx < 5000; idx++ )
+        {
+            if( scanned.get( "scan" + idx ) == null )
+            {
+                scanned.put( "scan" + idx, value.toString() );
+            }
+            if( idx % 50 == 0 )
+            {
+                scanned.get( "hot" + ( idx / 50 ) % 20 );
+            }
+        }
+
+        for( int hot = 0; hot < 20; hot++ )
+        {
+            assertTrue( "hot" + hot + " evicted", scanned.exists( "hot" + hot ) );
+        }
+        CacheStatistics statistics = scanned.statistics();
+        assertTrue( "Nothing evicted", statistics.evictions() > 0 );
+        assertTrue( "Weight exceeded", ( (MemoryCacheImpl<?>) scanned ).weight() <= MAX_WEIGHT );
+        cachePool.returnCache( scanned );
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.cache.memory;
+
+import org.junit.Test;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.test.cache.AbstractCachePoolTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Off-Heap CachePool Test.
+ */
+public class OffHeapCachePoolTest
+    extends AbstractCachePoolTest
+{
+    private static final long MAX_SIZE = 1024 * 1024;
+
+    @Override
+    // START SNIPPET: assembly
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        // END SNIPPET: assembly
+        ModuleAssembly confModule = module.layer().module( "confModule" );
+        new EntityTestAssembler().visibleIn( Visibility.layer ).assemble( confModule );
+        // START SNIPPET: assembly
+        new OffHeapCacheAssembler().
+            visibleIn( Visibility.module ).
+            withConfig( confModule, Visibility.layer ).
+            assemble( module );
+        // END SNIPPET: assembly
+        OffHeapCacheConfiguration config = confModule.forMixin( OffHeapCacheConfiguration.class ).declareDefaults();
+        config.maxSize().set( MAX_SIZE );
+        config.pageSize().set( 64 * 1024 );
+        // START SNIPPET: assembly
+    }
+    // END SNIPPET: assembly
+
+    @Test
+    public void givenFullCacheWhenPuttingValuesOfAnotherSizeExpectSizeBoundedAndLatestValuesKept()
+    {
+        Cache<String> sized = cachePool.fetchCache( "sized", String.class );
+        for( int idx = 0; idx < 2000; idx++ )
+        {
+            sized.put( "small" + idx, value( "small" + idx, 1000 ) );
+        }
+        // Values of another slab class take pages from the one holding them all
+        for( int idx = 0; idx < 200; idx++ )
+        {
+            sized.put( "large" + idx, value( "large" + idx, 10000 ) );
+        }
+        assertEquals( value( "large199", 10000 ), sized.get( "large199" ) );
+        assertEquals( value( "small1999", 1000 ), sized.get( "small1999" ) );
+        assertTrue( "Nothing evicted", sized.statistics().evictions() > 0 );
+        assertTrue( "Size exceeded", ( (OffHeapCacheImpl<?>) sized ).allocatedSize() <= MAX_SIZE );
+        cachePool.returnCache( sized );
+    }
+
+    private static String value( String key, int length )
+    {
+        StringBuilder value = new StringBuilder( key ).append( ':' );
+        while( value.length() < length )
+        {
+            value.append( 'v' );
+        }
+        return value.toString();
+    }
+}
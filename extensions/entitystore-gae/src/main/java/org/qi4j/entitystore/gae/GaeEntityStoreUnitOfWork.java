@@ -20,7 +20,11 @@ package org.qi4j.entitystore.gae;
 
 import com.google.appengine.api.datastore.*;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.structure.Module;
@@ -74,7 +78,10 @@ public class GaeEntityStoreUnitOfWork
     {
         Key key = KeyFactory.createKey( "qi4j-entity", anIdentity.identity() );
         GaeEntityState state = new GaeEntityState( this, valueSerialization, key, entityDescriptor, module );
-        states.add( state );
+        synchronized( states )
+        {
+            states.add( state );
+        }
         return state;
     }
 
@@ -87,7 +94,10 @@ public class GaeEntityStoreUnitOfWork
         {
             Entity entity = datastore.get( key );
             GaeEntityState state = new GaeEntityState( this, valueSerialization, entity, module );
-            states.add( state );
+            synchronized( states )
+            {
+                states.add( state );
+            }
             return state;
         }
         catch( com.google.appengine.api.datastore.EntityNotFoundException e )
@@ -96,6 +106,34 @@ public class GaeEntityStoreUnitOfWork
         }
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( Iterable<EntityReference> references )
+        throws EntityStoreException
+    {
+        List<Key> keys = new ArrayList<Key>();
+        for( EntityReference reference : references )
+        {
+            keys.add( KeyFactory.createKey( "qi4j-entity", reference.identity() ) );
+        }
+        // Batch get, missing entities are not part of the returned map
+        Map<Key, Entity> entities = datastore.get( keys );
+        Map<EntityReference, EntityState> result = new LinkedHashMap<EntityReference, EntityState>();
+        for( Key key : keys )
+        {
+            Entity entity = entities.get( key );
+            if( entity != null )
+            {
+                GaeEntityState state = new GaeEntityState( this, valueSerialization, entity, module );
+                synchronized( states )
+                {
+                    states.add( state );
+                }
+                result.put( new EntityReference( key.getName() ), state );
+            }
+        }
+        return result;
+    }
+
     @Override
     public StateCommitter applyChanges()
         throws EntityStoreException
@@ -224,6 +224,26 @@ public class PreferencesEntityStoreMixin
         return new DefaultEntityState( (DefaultEntityStoreUnitOfWork) unitOfWork, identity, entityDescriptor );
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                             Iterable<EntityReference> identities
+    )
+    {
+        Map<EntityReference, EntityState> states = new LinkedHashMap<>();
+        for( EntityReference identity : identities )
+        {
+            try
+            {
+                states.put( identity, entityStateOf( unitOfWork, identity ) );
+            }
+            catch( NoSuchEntityException e )
+            {
+                // Skip missing entities
+            }
+        }
+        return states;
+    }
+
     @Override
     public EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, EntityReference identity )
     {
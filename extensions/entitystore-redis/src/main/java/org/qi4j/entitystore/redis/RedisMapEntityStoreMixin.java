@@ -22,6 +22,10 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.qi4j.api.configuration.Configuration;
 import org.qi4j.api.entity.EntityDescriptor;
@@ -103,6 +107,46 @@ public class RedisMapEntityStoreMixin
         }
     }
 
+    @Override
+    public Map<EntityReference, Reader> get( Iterable<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        List<EntityReference> references = new ArrayList<>();
+        for( EntityReference entityReference : entityReferences )
+        {
+            references.add( entityReference );
+        }
+        Map<EntityReference, Reader> readers = new LinkedHashMap<>();
+        if( references.isEmpty() )
+        {
+            return readers;
+        }
+        String[] keys = new String[ references.size() ];
+        for( int idx = 0; idx < keys.length; idx++ )
+        {
+            keys[ idx ] = references.get( idx ).identity();
+        }
+        Jedis jedis = pool.getResource();
+        try
+        {
+            // Single MGET round-trip, values come back in key order
+            List<String> jsonStates = jedis.mget( keys );
+            for( int idx = 0; idx < keys.length; idx++ )
+            {
+                String jsonState = jsonStates.get( idx );
+                if( !notFound( jsonState ) )
+                {
+                    readers.put( references.get( idx ), new StringReader( jsonState ) );
+                }
+            }
+            return readers;
+        }
+        finally
+        {
+            pool.returnResource( jedis );
+        }
+    }
+
     @Override
     public void applyChanges( MapChanges changes )
         throws IOException
@@ -59,6 +59,7 @@ import org.qi4j.entitystore.sql.internal.DatabaseSQLService;
 import org.qi4j.entitystore.sql.internal.DatabaseSQLService.EntityValueResult;
 import org.qi4j.entitystore.sql.internal.SQLEntityState;
 import org.qi4j.entitystore.sql.internal.SQLEntityState.DefaultSQLEntityState;
+import org.qi4j.entitystore.sql.internal.SQLs;
 import org.qi4j.functional.Visitor;
 import org.qi4j.io.Input;
 import org.qi4j.io.Output;
@@ -240,6 +241,78 @@ public class SQLEntityStoreMixin
                                           valueResult.getEntityOptimisticLock() );
     }
 
+    @Override
+    public Map<EntityReference, EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork,
+                                                             Iterable<EntityReference> entityRefs )
+    {
+        Map<EntityReference, EntityState> states = new LinkedHashMap<>();
+        Connection connection = null;
+        try
+        {
+            // One connection for the whole batch, one IN query per chunk of identities
+            connection = database.getConnection();
+            List<EntityReference> chunk = new ArrayList<>( SQLs.SELECT_ENTITIES_CHUNK_SIZE );
+            for( EntityReference entityRef : entityRefs )
+            {
+                chunk.add( entityRef );
+                if( chunk.size() == SQLs.SELECT_ENTITIES_CHUNK_SIZE )
+                {
+                    loadEntityStates( connection, (DefaultEntityStoreUnitOfWork) unitOfWork, chunk, states );
+                    chunk.clear();
+                }
+            }
+            if( !chunk.isEmpty() )
+            {
+                loadEntityStates( connection, (DefaultEntityStoreUnitOfWork) unitOfWork, chunk, states );
+            }
+            return states;
+        }
+        catch( SQLException sqle )
+        {
+            throw new EntityStoreException( "Unable to get Entities " + entityRefs, sqle );
+        }
+        finally
+        {
+            SQLUtil.closeQuietly( connection );
+        }
+    }
+
+    private void loadEntityStates( Connection connection, DefaultEntityStoreUnitOfWork unitOfWork,
+                                   List<EntityReference> entityRefs, Map<EntityReference, EntityState> states )
+        throws SQLException
+    {
+        Map<String, EntityValueResult> found = new HashMap<>();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try
+        {
+            ps = database.prepareGetEntitiesStatement( connection, entityRefs.size() );
+            database.populateGetEntitiesStatement( ps, entityRefs );
+            rs = ps.executeQuery();
+            while( rs.next() )
+            {
+                found.put( rs.getString( SQLs.ENTITY_IDENTITY_COLUMN_NAME ), database.getEntityValue( rs ) );
+            }
+        }
+        finally
+        {
+            SQLUtil.closeQuietly( rs );
+            SQLUtil.closeQuietly( ps );
+        }
+        // Keep the requested order, missing entities are left out
+        for( EntityReference entityRef : entityRefs )
+        {
+            EntityValueResult valueResult = found.get( entityRef.identity() );
+            if( valueResult != null )
+            {
+                states.put( entityRef,
+                            new DefaultSQLEntityState( readEntityState( unitOfWork, valueResult.getReader() ),
+                                                       valueResult.getEntityPK(),
+                                                       valueResult.getEntityOptimisticLock() ) );
+            }
+        }
+    }
+
     @Override
     public EntityState newEntityState( EntityStoreUnitOfWork unitOfWork, EntityReference entityRef, EntityDescriptor entityDescriptor )
     {
@@ -20,6 +20,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
+import java.util.List;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.service.ServiceComposite;
 
@@ -86,6 +87,9 @@ public interface DatabaseSQLService
     PreparedStatement prepareGetEntityStatement( Connection connection )
         throws SQLException;
 
+    PreparedStatement prepareGetEntitiesStatement( Connection connection, int count )
+        throws SQLException;
+
     PreparedStatement prepareGetAllEntitiesStatement( Connection connection )
         throws SQLException;
 
@@ -101,6 +105,9 @@ public interface DatabaseSQLService
     void populateGetEntityStatement( PreparedStatement ps, EntityReference ref )
         throws SQLException;
 
+    void populateGetEntitiesStatement( PreparedStatement ps, List<EntityReference> refs )
+        throws SQLException;
+
     void populateGetAllEntitiesStatement( PreparedStatement ps )
         throws SQLException;
 
@@ -18,6 +18,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.Instant;
+import java.util.List;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.This;
 
@@ -45,6 +46,13 @@ public abstract class DatabaseSQLServiceStatementsMixin
         return connection.prepareStatement( sqlStrings.buildSQLForSelectEntityStatement() );
     }
 
+    @Override
+    public PreparedStatement prepareGetEntitiesStatement( Connection connection, int count )
+            throws SQLException
+    {
+        return connection.prepareStatement( sqlStrings.buildSQLForSelectEntitiesStatement( count ) );
+    }
+
     @Override
     public PreparedStatement prepareInsertEntityStatement( Connection connection )
             throws SQLException
@@ -83,6 +91,17 @@ public abstract class DatabaseSQLServiceStatementsMixin
         ps.setString( 1, ref.identity() );
     }
 
+    @Override
+    public void populateGetEntitiesStatement( PreparedStatement ps, List<EntityReference> refs )
+            throws SQLException
+    {
+        int index = 1;
+        for( EntityReference ref : refs )
+        {
+            ps.setString( index++, ref.identity() );
+        }
+    }
+
     @Override
     public void populateInsertEntityStatement( PreparedStatement ps, EntityReference ref, String entity, Instant lastModified )
             throws SQLException
@@ -19,6 +19,7 @@ import java.util.List;
 import org.qi4j.api.injection.scope.This;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sql.generation.api.grammar.builders.booleans.InBuilder;
 import org.sql.generation.api.grammar.builders.modification.DeleteBySearchBuilder;
 import org.sql.generation.api.grammar.builders.modification.UpdateBySearchBuilder;
 import org.sql.generation.api.grammar.common.SQLStatement;
@@ -48,6 +49,12 @@ public interface DatabaseSQLStringsBuilder
 
     String buildSQLForSelectEntityStatement();
 
+    /**
+     * @param count number of identities bound to the {@code IN} clause of the statement
+     * @return SQL selecting every entity whose identity is one of {@code count} parameters
+     */
+    String buildSQLForSelectEntitiesStatement( int count );
+
     String buildSQLForInsertEntityStatement();
 
     String buildSQLForUpdateEntityStatement();
@@ -78,6 +85,8 @@ public interface DatabaseSQLStringsBuilder
 
         private String selectEntitySQL;
 
+        private String selectEntitiesChunkSQL;
+
         private String insertEntitySQL;
 
         private String updateEntitySQL;
@@ -106,6 +115,9 @@ public interface DatabaseSQLStringsBuilder
             this.selectEntitySQL = this.vendor.toString( this.createSelectEntityStatement( this.vendor ) );
             LOGGER.trace( "SQL for select entity: {}", this.selectEntitySQL );
 
+            this.selectEntitiesChunkSQL = this.vendor.toString( this.createSelectEntitiesStatement( this.vendor, SQLs.SELECT_ENTITIES_CHUNK_SIZE ) );
+            LOGGER.trace( "SQL for select entities: {}", this.selectEntitiesChunkSQL );
+
             this.insertEntitySQL = this.vendor.toString( this.createInsertEntityStatement( this.vendor ) );
             LOGGER.trace( "SQL for insert entity: {}", this.insertEntitySQL );
 
@@ -227,6 +239,30 @@ public interface DatabaseSQLStringsBuilder
             // @formatter:on
         }
 
+        protected SQLStatement createSelectEntitiesStatement( SQLVendor vendor, int count )
+        {
+            QueryFactory q = vendor.getQueryFactory();
+            TableReferenceFactory t = vendor.getTableReferenceFactory();
+            BooleanFactory b = vendor.getBooleanFactory();
+            ColumnsFactory c = vendor.getColumnsFactory();
+            LiteralFactory l = vendor.getLiteralFactory();
+
+            InBuilder in = b.inBuilder( c.colName( SQLs.ENTITY_IDENTITY_COLUMN_NAME ) );
+            for( int i = 0; i < count; ++i )
+            {
+                in.addValues( l.param() );
+            }
+
+            // @formatter:off
+            return q.simpleQueryBuilder()
+                .select( SQLs.ENTITY_PK_COLUMN_NAME, SQLs.ENTITY_OPTIMISTIC_LOCK_COLUMN_NAME, SQLs.ENTITY_STATE_COLUMN_NAME,
+                         SQLs.ENTITY_IDENTITY_COLUMN_NAME )
+                .from( t.tableName( this.schemaName, SQLs.TABLE_NAME ) )
+                .where( in.createExpression() )
+                .createExpression();
+            // @formatter:on
+        }
+
         protected SQLStatement createInsertEntityStatement( SQLVendor vendor )
         {
             ModificationFactory m = vendor.getModificationFactory();
@@ -345,6 +381,16 @@ public interface DatabaseSQLStringsBuilder
             return this.selectEntitySQL;
         }
 
+        @Override
+        public String buildSQLForSelectEntitiesStatement( int count )
+        {
+            if( count == SQLs.SELECT_ENTITIES_CHUNK_SIZE )
+            {
+                return this.selectEntitiesChunkSQL;
+            }
+            return this.vendor.toString( this.createSelectEntitiesStatement( this.vendor, count ) );
+        }
+
         @Override
         public String buildSQLForInsertEntityStatement()
         {
@@ -31,4 +31,9 @@ public interface SQLs
 
     String ENTITY_LAST_MODIFIED_COLUMN_NAME = "entity_last_modified";
 
+    /**
+     * Maximum number of identities bound to a single {@code IN} clause when several entities are read at once.
+     */
+    int SELECT_ENTITIES_CHUNK_SIZE = 100;
+
 }
@@ -46,5 +46,57 @@ public interface ElasticSearchConfiguration
      */
     @UseDefaults Property<Boolean> indexNonAggregatedAssociations();
 
+    /**
+     * When indexed changes become visible to queries.
+     * Defaults to 'IMMEDIATE'.
+     */
+    @Optional Property<RefreshPolicy> refreshPolicy();
+
+    /**
+     * Index refresh interval in milliseconds, used by the INTERVAL refresh policy.
+     * Defaults to '1000'.
+     */
+    @Optional Property<Long> refreshInterval();
+
+    /**
+     * Set to true to index changes asynchronously, in bulk requests coalescing changes from many UnitOfWorks.
+     * Defaults to 'FALSE'.
+     */
+    @UseDefaults Property<Boolean> asyncIndexing();
+
+    /**
+     * Maximum number of actions in one asynchronous bulk request.
+     * Defaults to '1000'.
+     */
+    @Optional Property<Integer> bulkActions();
+
+    /**
+     * Maximum time in milliseconds a change waits before its asynchronous bulk request is sent.
+     * Defaults to '1000'.
+     */
+    @Optional Property<Long> bulkFlushInterval();
+
+    /**
+     * Maximum number of actions waiting to be indexed asynchronously, committing UnitOfWorks wait when reached.
+     * Defaults to '10000'.
+     */
+    @Optional Property<Integer> bulkQueueCapacity();
+
+    enum RefreshPolicy
+    {
+        /**
+         * Refresh the index after each bulk request, changes are visible as soon as they are indexed.
+         */
+        IMMEDIATE,
+        /**
+         * Let ElasticSearch refresh the index periodically, see {@link #refreshInterval()}.
+         */
+        INTERVAL,
+        /**
+         * Never refresh the index, use {@link ElasticSearchIndexer#refresh()} to make changes visible.
+         */
+        NONE
+    }
+
 }
 // END SNIPPET: config
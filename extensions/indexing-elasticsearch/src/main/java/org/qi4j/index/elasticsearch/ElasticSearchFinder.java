@@ -17,7 +17,10 @@
  */
 package org.qi4j.index.elasticsearch;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -25,16 +28,32 @@ import org.elasticsearch.action.count.CountRequestBuilder;
 import org.elasticsearch.action.count.CountResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.AndFilterBuilder;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.OrFilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.missing.Missing;
+import org.elasticsearch.search.aggregations.bucket.missing.MissingBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsBuilder;
+import org.elasticsearch.search.aggregations.metrics.avg.Avg;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCount;
 import org.elasticsearch.search.sort.SortOrder;
+import org.qi4j.api.common.QualifiedName;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.This;
 import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.AndSpecification;
 import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
 import org.qi4j.api.query.grammar.AssociationNullSpecification;
@@ -55,14 +74,21 @@ import org.qi4j.api.query.grammar.NeSpecification;
 import org.qi4j.api.query.grammar.NotSpecification;
 import org.qi4j.api.query.grammar.OrSpecification;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
 import org.qi4j.api.query.grammar.PropertyNotNullSpecification;
 import org.qi4j.api.query.grammar.PropertyNullSpecification;
 import org.qi4j.api.query.grammar.QuerySpecification;
+import org.qi4j.api.util.Classes;
 import org.qi4j.api.value.ValueComposite;
 import org.qi4j.functional.Iterables;
 import org.qi4j.index.elasticsearch.ElasticSearchFinderSupport.ComplexTypeSupport;
+import org.qi4j.index.elasticsearch.internal.SearchHitsScroll;
+import org.qi4j.spi.query.AggregationFinder;
+import org.qi4j.spi.query.Aggregations;
 import org.qi4j.spi.query.EntityFinder;
 import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.ProjectionFinder;
+import org.qi4j.spi.query.Projections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,13 +106,15 @@ import static org.qi4j.index.elasticsearch.ElasticSearchFinderSupport.resolveVar
 
 @Mixins( ElasticSearchFinder.Mixin.class )
 public interface ElasticSearchFinder
-    extends EntityFinder
+    extends EntityFinder, ProjectionFinder, AggregationFinder
 {
     class Mixin
-        implements EntityFinder
+        implements EntityFinder, ProjectionFinder, AggregationFinder
     {
         private static final Logger LOGGER = LoggerFactory.getLogger( ElasticSearchFinder.class );
         private static final Map<Class<?>, ComplexTypeSupport> COMPLEX_TYPE_SUPPORTS = new HashMap<>( 0 );
+        private static final int SCROLL_PAGE_SIZE = 1000;
+        private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes( 1 );
 
         @This
         private ElasticSearchSupport support;
@@ -99,49 +127,164 @@ public interface ElasticSearchFinder
                                                        Map<String, Object> variables )
             throws EntityFinderException
         {
-            // Prepare request
-            SearchRequestBuilder request = support.client().prepareSearch( support.index() );
+            Function<SearchHit, EntityReference> toReference = new Function<SearchHit, EntityReference>()
+            {
+                @Override
+                public EntityReference apply( SearchHit from )
+                {
+                    return EntityReference.parseEntityReference( from.id() );
+                }
 
-            AndFilterBuilder filterBuilder = baseFilters( resultType );
-            QueryBuilder queryBuilder = processWhereSpecification( filterBuilder, whereClause, variables );
+            };
 
-            request.setQuery( filteredQuery( queryBuilder, filterBuilder ) );
-            if( firstResult != null )
+            if( maxResults == null )
             {
-                request.setFrom( firstResult );
+                // Prepare request, pages are fetched as the result is iterated
+                SearchRequestBuilder request = prepareSearch( resultType, whereClause, orderBySegments,
+                                                              null, null, variables );
+
+                // Log
+                LOGGER.debug( "Will scroll Entities: {}", request );
+
+                return Iterables.map( toReference, scroll( request, firstResult ) );
             }
-            if( maxResults != null )
+
+            // Prepare request
+            SearchRequestBuilder request = prepareSearch( resultType, whereClause, orderBySegments,
+                                                          firstResult, maxResults, variables );
+
+            // Log
+            LOGGER.debug( "Will search Entities: {}", request );
+
+            // Execute
+            SearchResponse response = request.execute().actionGet();
+
+            return Iterables.map( toReference, response.getHits() );
+        }
+
+        @Override
+        public Iterable<Projection> findProjections( Class<?> resultType,
+                                                     Predicate<Composite> whereClause,
+                                                     OrderBy[] orderBySegments,
+                                                     Integer firstResult, Integer maxResults,
+                                                     Map<String, Object> variables,
+                                                     final PropertyFunction<?>[] properties )
+            throws EntityFinderException
+        {
+            // Only scalar properties of the indexed entity itself are stored as-is in the source document
+            final String[] names = new String[ properties.length ];
+            final Class<?>[] types = new Class<?>[ properties.length ];
+            for( int idx = 0; idx < properties.length; idx++ )
             {
-                request.setSize( maxResults );
+                types[ idx ] = Projections.propertyType( properties[ idx ] );
+                if( !Projections.isDirect( properties[ idx ] ) || !Projections.isScalar( types[ idx ] ) )
+                {
+                    return null;
+                }
+                names[ idx ] = QualifiedName.fromAccessor( properties[ idx ].accessor() ).name();
             }
-            else
+
+            // Prepare request
+            boolean unbounded = maxResults == null;
+            SearchRequestBuilder request = unbounded
+                                           ? prepareSearch( resultType, whereClause, orderBySegments,
+                                                            null, null, variables )
+                                           : prepareSearch( resultType, whereClause, orderBySegments,
+                                                            firstResult, maxResults, variables );
+            request.setFetchSource( names, null );
+
+            // Log
+            LOGGER.debug( "Will search projections: {}", request );
+
+            // Execute, or scroll as the result is iterated
+            Iterable<SearchHit> hits = unbounded
+                                       ? scroll( request, firstResult )
+                                       : request.execute().actionGet().getHits();
+
+            final List<PropertyFunction<?>> projected = Arrays.asList( properties );
+            return Iterables.map( new Function<SearchHit, Projection>()
             {
-                //request.setSize( Integer.MAX_VALUE ); // TODO Use scrolls?
+                @Override
+                public Projection apply( SearchHit from )
+                {
+                    Map<String, Object> source = from.getSource();
+                    Object[] values = new Object[ names.length ];
+                    for( int idx = 0; idx < names.length; idx++ )
+                    {
+                        values[ idx ] = Projections.coerce( source == null ? null : source.get( names[ idx ] ),
+                                                            types[ idx ] );
+                    }
+                    return new Projection( EntityReference.parseEntityReference( from.id() ), projected, values );
+                }
+            }, hits );
+        }
+
+        @Override
+        public Iterable<AggregationResult> findAggregations( Class<?> resultType,
+                                                            Predicate<Composite> whereClause,
+                                                            Map<String, Object> variables,
+                                                            PropertyFunction<?>[] groupBy,
+                                                            Aggregation<?>[] aggregations )
+            throws EntityFinderException
+        {
+            // Group on scalar properties of the indexed entity, metrics aggregations are numeric only
+            String[] groupNames = new String[ groupBy.length ];
+            Class<?>[] groupTypes = new Class<?>[ groupBy.length ];
+            for( int idx = 0; idx < groupBy.length; idx++ )
+            {
+                groupTypes[ idx ] = Projections.propertyType( groupBy[ idx ] );
+                if( !Projections.isDirect( groupBy[ idx ] )
+                    || !Projections.isScalar( groupTypes[ idx ] )
+                    || Boolean.class.equals( Classes.wrapperClass( groupTypes[ idx ] ) ) )
+                {
+                    return null;
+                }
+                groupNames[ idx ] = QualifiedName.fromAccessor( groupBy[ idx ].accessor() ).name();
             }
-            if( orderBySegments != null )
+            String[] aggregatedNames = new String[ aggregations.length ];
+            for( int idx = 0; idx < aggregations.length; idx++ )
             {
-                for( OrderBy order : orderBySegments )
+                PropertyFunction<?> property = aggregations[ idx ].property();
+                if( property == null )
                 {
-                    request.addSort( order.property().toString(),
-                                     order.order() == OrderBy.Order.ASCENDING ? SortOrder.ASC : SortOrder.DESC );
+                    continue;
                 }
+                Class<?> type = (Class<?>) Classes.wrapperClass( Projections.propertyType( property ) );
+                if( !Projections.isDirect( property ) || !Projections.isScalar( type )
+                    || ( aggregations[ idx ].function() != Aggregation.Function.COUNT
+                         && !Number.class.isAssignableFrom( type ) ) )
+                {
+                    return null;
+                }
+                aggregatedNames[ idx ] = QualifiedName.fromAccessor( property.accessor() ).name();
+            }
+
+            // Prepare request
+            SearchRequestBuilder request = prepareSearch( resultType, whereClause, null, null, 0, variables );
+            for( AbstractAggregationBuilder builder : aggregationBuilders( 0, groupNames, aggregations, aggregatedNames ) )
+            {
+                request.addAggregation( builder );
             }
 
             // Log
-            LOGGER.debug( "Will search Entities: {}", request );
+            LOGGER.debug( "Will aggregate Entities: {}", request );
 
             // Execute
             SearchResponse response = request.execute().actionGet();
 
-            return Iterables.map( new Function<SearchHit, EntityReference>()
+            Map<List<Object>, Object[]> groups = new HashMap<>();
+            collectAggregations( response.getAggregations(), response.getHits().totalHits(), new ArrayList<>(),
+                                 groupTypes, aggregations, groups );
+            List<List<Object>> keys = new ArrayList<>( groups.keySet() );
+            keys.sort( Aggregations.GROUP_ORDER );
+            List<PropertyFunction<?>> groupByList = Arrays.<PropertyFunction<?>>asList( groupBy );
+            List<Aggregation<?>> aggregationList = Arrays.<Aggregation<?>>asList( aggregations );
+            List<AggregationResult> results = new ArrayList<>( keys.size() );
+            for( List<Object> key : keys )
             {
-                @Override
-                public EntityReference apply( SearchHit from )
-                {
-                    return EntityReference.parseEntityReference( from.id() );
-                }
-
-            }, response.getHits() );
+                results.add( new AggregationResult( groupByList, key.toArray(), aggregationList, groups.get( key ) ) );
+            }
+            return results;
         }
 
         @Override
@@ -196,6 +339,168 @@ public interface ElasticSearchFinder
             return count.getCount();
         }
 
+        /**
+         * Queries without maxResults are scrolled, otherwise ElasticSearch would only return its default page size.
+         * Bounded queries are fetched at once using from and size.
+         */
+        private Iterable<SearchHit> scroll( SearchRequestBuilder request, Integer firstResult )
+        {
+            return new SearchHitsScroll( support.client(), request, SCROLL_PAGE_SIZE, SCROLL_KEEP_ALIVE,
+                                         firstResult );
+        }
+
+        private SearchRequestBuilder prepareSearch( Class<?> resultType,
+                                                    Predicate<Composite> whereClause,
+                                                    OrderBy[] orderBySegments,
+                                                    Integer firstResult, Integer maxResults,
+                                                    Map<String, Object> variables )
+            throws EntityFinderException
+        {
+            SearchRequestBuilder request = support.client().prepareSearch( support.index() );
+
+            AndFilterBuilder filterBuilder = baseFilters( resultType );
+            QueryBuilder queryBuilder = processWhereSpecification( filterBuilder, whereClause, variables );
+
+            request.setQuery( filteredQuery( queryBuilder, filterBuilder ) );
+            if( firstResult != null )
+            {
+                request.setFrom( firstResult );
+            }
+            if( maxResults != null )
+            {
+                request.setSize( maxResults );
+            }
+            if( orderBySegments != null )
+            {
+                for( OrderBy order : orderBySegments )
+                {
+                    request.addSort( order.property().toString(),
+                                     order.order() == OrderBy.Order.ASCENDING ? SortOrder.ASC : SortOrder.DESC );
+                }
+            }
+
+            return request;
+        }
+
+        /**
+         * One terms and one missing bucket aggregation per grouping level, metrics below the last level.
+         */
+        private static List<AbstractAggregationBuilder> aggregationBuilders( int level,
+                                                                              String[] groupNames,
+                                                                              Aggregation<?>[] aggregations,
+                                                                              String[] aggregatedNames )
+        {
+            List<AbstractAggregationBuilder> builders = new ArrayList<>();
+            if( level < groupNames.length )
+            {
+                TermsBuilder terms = AggregationBuilders.terms( "group" ).field( groupNames[ level ] ).size( 0 );
+                MissingBuilder missing = AggregationBuilders.missing( "missing" ).field( groupNames[ level ] );
+                for( AbstractAggregationBuilder sub : aggregationBuilders( level + 1, groupNames,
+                                                                           aggregations, aggregatedNames ) )
+                {
+                    terms.subAggregation( sub );
+                    missing.subAggregation( sub );
+                }
+                builders.add( terms );
+                builders.add( missing );
+                return builders;
+            }
+            for( int idx = 0; idx < aggregations.length; idx++ )
+            {
+                String field = aggregatedNames[ idx ];
+                if( field == null )
+                {
+                    continue;
+                }
+                builders.add( AggregationBuilders.count( "count" + idx ).field( field ) );
+                switch( aggregations[ idx ].function() )
+                {
+                    case SUM:
+                        builders.add( AggregationBuilders.sum( "value" + idx ).field( field ) );
+                        break;
+                    case MIN:
+                        builders.add( AggregationBuilders.min( "value" + idx ).field( field ) );
+                        break;
+                    case MAX:
+                        builders.add( AggregationBuilders.max( "value" + idx ).field( field ) );
+                        break;
+                    case AVG:
+                        builders.add( AggregationBuilders.avg( "value" + idx ).field( field ) );
+                        break;
+                    default:
+                }
+            }
+            return builders;
+        }
+
+        private static void collectAggregations( org.elasticsearch.search.aggregations.Aggregations buckets,
+                                                 long docCount,
+                                                 List<Object> group,
+                                                 Class<?>[] groupTypes,
+                                                 Aggregation<?>[] aggregations,
+                                                 Map<List<Object>, Object[]> groups )
+        {
+            int level = group.size();
+            if( level < groupTypes.length )
+            {
+                Terms terms = buckets.get( "group" );
+                for( Terms.Bucket bucket : terms.getBuckets() )
+                {
+                    List<Object> next = new ArrayList<>( group );
+                    next.add( Projections.coerce( bucket.getKey(), groupTypes[ level ] ) );
+                    collectAggregations( bucket.getAggregations(), bucket.getDocCount(), next,
+                                         groupTypes, aggregations, groups );
+                }
+                Missing missing = buckets.get( "missing" );
+                if( missing.getDocCount() > 0 )
+                {
+                    List<Object> next = new ArrayList<>( group );
+                    next.add( null );
+                    collectAggregations( missing.getAggregations(), missing.getDocCount(), next,
+                                         groupTypes, aggregations, groups );
+                }
+                return;
+            }
+
+            Object[] values = new Object[ aggregations.length ];
+            for( int idx = 0; idx < aggregations.length; idx++ )
+            {
+                if( aggregations[ idx ].property() == null )
+                {
+                    values[ idx ] = docCount;
+                    continue;
+                }
+                long count = buckets.<ValueCount>get( "count" + idx ).getValue();
+                Double value = null;
+                switch( aggregations[ idx ].function() )
+                {
+                    case SUM:
+                        value = buckets.<Sum>get( "value" + idx ).getValue();
+                        break;
+                    case MIN:
+                        value = buckets.<Min>get( "value" + idx ).getValue();
+                        break;
+                    case MAX:
+                        value = buckets.<Max>get( "value" + idx ).getValue();
+                        break;
+                    case AVG:
+                        value = buckets.<Avg>get( "value" + idx ).getValue();
+                        break;
+                    default:
+                }
+                if( aggregations[ idx ].function() == Aggregation.Function.COUNT )
+                {
+                    values[ idx ] = count;
+                }
+                else
+                {
+                    // Metrics over no values are 0, NaN or infinite
+                    values[ idx ] = count == 0 ? null : Aggregations.coerce( aggregations[ idx ], value );
+                }
+            }
+            groups.put( group, values );
+        }
+
         private static AndFilterBuilder baseFilters( Class<?> resultType )
         {
             return andFilter( termFilter( "_types", resultType.getName() ) );
@@ -43,6 +43,8 @@ import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.api.value.ValueSerializer;
 import org.qi4j.api.value.ValueSerializer.Options;
 import org.qi4j.functional.Iterables;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration.RefreshPolicy;
+import org.qi4j.index.elasticsearch.internal.BulkIndexingPipeline;
 import org.qi4j.spi.entity.EntityState;
 import org.qi4j.spi.entity.EntityStatus;
 import org.qi4j.spi.entity.ManyAssociationState;
@@ -63,8 +65,14 @@ public interface ElasticSearchIndexer
     extends StateChangeListener
 {
 
+    /**
+     * Wait for the changes being indexed asynchronously, if any, and refresh the index so that all indexed changes
+     * are visible to queries.
+     */
+    void refresh();
+
     class Mixin
-        implements StateChangeListener
+        implements ElasticSearchIndexer
     {
 
         private static final Logger LOGGER = LoggerFactory.getLogger( ElasticSearchIndexer.class );
@@ -83,6 +91,17 @@ public interface ElasticSearchIndexer
             support.client().admin().indices().prepareDelete( support.index() ).execute().actionGet();
         }
 
+        @Override
+        public void refresh()
+        {
+            BulkIndexingPipeline pipeline = support.bulkPipeline();
+            if( pipeline != null )
+            {
+                pipeline.flush();
+            }
+            support.client().admin().indices().prepareRefresh( support.index() ).execute().actionGet();
+        }
+
         @Override
         public void notifyChanges( Iterable<EntityState> changedStates )
         {
@@ -141,6 +160,13 @@ public interface ElasticSearchIndexer
 
             if( bulkBuilder.numberOfActions() > 0 )
             {
+                BulkIndexingPipeline pipeline = support.bulkPipeline();
+                if( pipeline != null )
+                {
+                    // Sent and refreshed asynchronously
+                    pipeline.add( bulkBuilder.request().requests() );
+                    return;
+                }
 
                 // Execute bulk actions
                 BulkResponse bulkResponse = bulkBuilder.execute().actionGet();
@@ -154,7 +180,10 @@ public interface ElasticSearchIndexer
                 LOGGER.debug( "Indexing changed Entity states took {}ms", bulkResponse.getTookInMillis() );
 
                 // Refresh index
-                support.client().admin().indices().prepareRefresh( support.index() ).execute().actionGet();
+                if( support.refreshPolicy() == RefreshPolicy.IMMEDIATE )
+                {
+                    support.client().admin().indices().prepareRefresh( support.index() ).execute().actionGet();
+                }
 
             }
         }
@@ -19,6 +19,8 @@ package org.qi4j.index.elasticsearch;
 
 import org.elasticsearch.client.Client;
 import org.qi4j.api.service.ServiceActivation;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration.RefreshPolicy;
+import org.qi4j.index.elasticsearch.internal.BulkIndexingPipeline;
 
 public interface ElasticSearchSupport
         extends ServiceActivation
@@ -32,4 +34,11 @@ public interface ElasticSearchSupport
 
     boolean indexNonAggregatedAssociations();
 
+    RefreshPolicy refreshPolicy();
+
+    /**
+     * @return the asynchronous bulk indexing pipeline, or null if indexing is synchronous
+     */
+    BulkIndexingPipeline bulkPipeline();
+
 }
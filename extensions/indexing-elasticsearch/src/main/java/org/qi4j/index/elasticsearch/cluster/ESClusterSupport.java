@@ -41,8 +41,7 @@ public class ESClusterSupport
         ElasticSearchClusterConfiguration config = configuration.get();
 
         String clusterName = config.clusterName().get() == null ? DEFAULT_CLUSTER_NAME : config.clusterName().get();
-        index = config.index().get() == null ? DEFAULT_INDEX_NAME : config.index().get();
-        indexNonAggregatedAssociations = config.indexNonAggregatedAssociations().get();
+        configureIndexing( config );
 
         String[] nodes = config.nodes().get() == null ? new String[]{ "localhost:9300" } : config.nodes().get().split( "," );
         boolean clusterSniff = config.clusterSniff().get();
@@ -20,6 +20,11 @@ package org.qi4j.index.elasticsearch.internal;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration.RefreshPolicy;
 import org.qi4j.index.elasticsearch.ElasticSearchSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,12 +41,35 @@ public abstract class AbstractElasticSearchSupport
 
     protected static final String ENTITIES_TYPE = "qi4j_entities";
 
+    /**
+     * ElasticSearch default refresh interval, restored unless the refresh policy says otherwise.
+     */
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+
     protected Client client;
 
     protected String index;
 
     protected boolean indexNonAggregatedAssociations;
 
+    protected RefreshPolicy refreshPolicy;
+
+    protected long refreshInterval;
+
+    protected boolean asyncIndexing;
+
+    protected int bulkActions;
+
+    protected long bulkFlushInterval;
+
+    protected int bulkQueueCapacity;
+
+    @Service
+    @Optional
+    private MetricsProvider metrics;
+
+    private BulkIndexingPipeline bulkPipeline;
+
     @Override
     public final void activateService()
             throws Exception
@@ -75,9 +103,48 @@ public abstract class AbstractElasticSearchSupport
             LOGGER.info( "Index '{}' created.", index );
         }
 
+        // Always set, so that a policy changed since the index was created applies to it
+        String interval;
+        switch( refreshPolicy )
+        {
+            case INTERVAL:
+                interval = refreshInterval + "ms";
+                break;
+            case NONE:
+                interval = "-1";
+                break;
+            default:
+                interval = DEFAULT_REFRESH_INTERVAL;
+        }
+        client.admin().indices().prepareUpdateSettings( index ).
+                setSettings( ImmutableSettings.settingsBuilder().put( "index.refresh_interval", interval ) ).
+                execute().
+                actionGet();
+        if( asyncIndexing )
+        {
+            bulkPipeline = new BulkIndexingPipeline( client, index, refreshPolicy,
+                                                     bulkActions, bulkFlushInterval, bulkQueueCapacity,
+                                                     metrics );
+        }
+
         LOGGER.info( "Index/Query connected to Elastic Search" );
     }
 
+    /**
+     * Read the indexing settings shared by all ElasticSearch Index/Query services.
+     */
+    protected final void configureIndexing( ElasticSearchConfiguration config )
+    {
+        index = config.index().get() == null ? DEFAULT_INDEX_NAME : config.index().get();
+        indexNonAggregatedAssociations = config.indexNonAggregatedAssociations().get();
+        refreshPolicy = config.refreshPolicy().get() == null ? RefreshPolicy.IMMEDIATE : config.refreshPolicy().get();
+        refreshInterval = config.refreshInterval().get() == null ? 1000L : config.refreshInterval().get();
+        asyncIndexing = config.asyncIndexing().get();
+        bulkActions = config.bulkActions().get() == null ? 1000 : config.bulkActions().get();
+        bulkFlushInterval = config.bulkFlushInterval().get() == null ? 1000L : config.bulkFlushInterval().get();
+        bulkQueueCapacity = config.bulkQueueCapacity().get() == null ? 10000 : config.bulkQueueCapacity().get();
+    }
+
     protected abstract void activateElasticSearch()
             throws Exception;
 
@@ -85,6 +152,12 @@ public abstract class AbstractElasticSearchSupport
     public final void passivateService()
             throws Exception
     {
+        if( bulkPipeline != null )
+        {
+            // Send pending changes before disconnecting
+            bulkPipeline.close();
+            bulkPipeline = null;
+        }
         client.close();
         client = null;
         index = null;
@@ -122,4 +195,16 @@ public abstract class AbstractElasticSearchSupport
         return indexNonAggregatedAssociations;
     }
 
+    @Override
+    public final RefreshPolicy refreshPolicy()
+    {
+        return refreshPolicy;
+    }
+
+    @Override
+    public final BulkIndexingPipeline bulkPipeline()
+    {
+        return bulkPipeline;
+    }
+
 }
@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.elasticsearch.internal;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.qi4j.api.metrics.MetricsGauge;
+import org.qi4j.api.metrics.MetricsGaugeFactory;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.metrics.MetricsTimer;
+import org.qi4j.api.metrics.MetricsTimerFactory;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration.RefreshPolicy;
+import org.qi4j.index.elasticsearch.ElasticSearchIndexException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous bulk indexing.
+ * <p>
+ * Actions are queued by the committing UnitOfWorks and sent by a single thread in bulk requests of at most
+ * {@code bulkActions} actions, or after {@code flushInterval} milliseconds. Successive actions on the same document
+ * are coalesced, only the last one is sent. When the queue is full, committing UnitOfWorks wait.
+ * </p>
+ * <p>
+ * Queue depth and bulk request latency are reported to the MetricsProvider, if any.
+ * </p>
+ */
+public final class BulkIndexingPipeline
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( BulkIndexingPipeline.class );
+
+    private final Client client;
+    private final String index;
+    private final RefreshPolicy refreshPolicy;
+    private final int bulkActions;
+    private final long flushInterval;
+    private final BlockingQueue<ActionRequest> queue;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object drained = new Object();
+    private final MetricsTimer latencyTimer;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public BulkIndexingPipeline( Client client, String index, RefreshPolicy refreshPolicy,
+                                 int bulkActions, long flushInterval, int queueCapacity,
+                                 MetricsProvider metrics )
+    {
+        this.client = client;
+        this.index = index;
+        this.refreshPolicy = refreshPolicy;
+        this.bulkActions = bulkActions;
+        this.flushInterval = flushInterval;
+        this.queue = new ArrayBlockingQueue<>( queueCapacity );
+        if( metrics == null )
+        {
+            latencyTimer = null;
+        }
+        else
+        {
+            MetricsGaugeFactory gauges = metrics.createFactory( MetricsGaugeFactory.class );
+            gauges.registerGauge( BulkIndexingPipeline.class, index + " queue depth", new MetricsGauge<Integer>()
+            {
+                @Override
+                public Integer value()
+                {
+                    return queueDepth();
+                }
+            } );
+            MetricsTimerFactory timers = metrics.createFactory( MetricsTimerFactory.class );
+            latencyTimer = timers.createTimer( BulkIndexingPipeline.class, index + " bulk latency",
+                                               TimeUnit.MILLISECONDS, TimeUnit.SECONDS );
+        }
+        this.worker = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                work();
+            }
+        }, "es-indexing-" + index );
+        this.worker.setDaemon( true );
+        this.worker.start();
+    }
+
+    /**
+     * Queue actions, waiting if the queue is full.
+     *
+     * @param requests index and delete requests
+     */
+    public void add( List<ActionRequest> requests )
+    {
+        try
+        {
+            for( ActionRequest request : requests )
+            {
+                pending.incrementAndGet();
+                queue.put( request );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ElasticSearchIndexException( "Interrupted while queuing changes for indexing", e );
+        }
+    }
+
+    /**
+     * @return number of actions queued or being sent
+     */
+    public int queueDepth()
+    {
+        return pending.get();
+    }
+
+    /**
+     * Wait until all the queued actions have been sent.
+     */
+    public void flush()
+    {
+        synchronized( drained )
+        {
+            while( pending.get() > 0 && worker.isAlive() )
+            {
+                try
+                {
+                    drained.wait( flushInterval );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the queued actions and stop.
+     */
+    public void close()
+        throws InterruptedException
+    {
+        running = false;
+        worker.join();
+    }
+
+    private void work()
+    {
+        while( running || !queue.isEmpty() )
+        {
+            try
+            {
+                ActionRequest first = queue.poll( flushInterval, TimeUnit.MILLISECONDS );
+                if( first == null )
+                {
+                    continue;
+                }
+                int taken = 1;
+                Map<String, ActionRequest> batch = new LinkedHashMap<>();
+                coalesce( batch, first );
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while( batch.size() < bulkActions )
+                {
+                    ActionRequest next = queue.poll( deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS );
+                    if( next == null )
+                    {
+                        break;
+                    }
+                    taken++;
+                    coalesce( batch, next );
+                }
+                try
+                {
+                    send( batch );
+                }
+                finally
+                {
+                    pending.addAndGet( -taken );
+                    synchronized( drained )
+                    {
+                        drained.notifyAll();
+                    }
+                }
+            }
+            catch( InterruptedException e )
+            {
+                // Keep on sending until the queue is empty
+            }
+        }
+    }
+
+    private void coalesce( Map<String, ActionRequest> batch, ActionRequest request )
+    {
+        String id = request instanceof IndexRequest
+                    ? ( (IndexRequest) request ).id()
+                    : ( (DeleteRequest) request ).id();
+        // Remove first so that the last action on a document keeps its place in the bulk request
+        batch.remove( id );
+        batch.put( id, request );
+    }
+
+    private void send( Map<String, ActionRequest> batch )
+    {
+        BulkRequestBuilder bulkBuilder = client.prepareBulk();
+        for( ActionRequest request : batch.values() )
+        {
+            if( request instanceof IndexRequest )
+            {
+                bulkBuilder.add( (IndexRequest) request );
+            }
+            else
+            {
+                bulkBuilder.add( (DeleteRequest) request );
+            }
+        }
+        MetricsTimer.Context timing = latencyTimer == null ? null : latencyTimer.start();
+        try
+        {
+            BulkResponse bulkResponse = bulkBuilder.execute().actionGet();
+            if( bulkResponse.hasFailures() )
+            {
+                // Nobody to throw to, the UnitOfWorks have already been committed
+                LOGGER.error( "Asynchronous indexing failed: {}", bulkResponse.buildFailureMessage() );
+            }
+            LOGGER.debug( "Indexing {} changed Entity states took {}ms", batch.size(), bulkResponse.getTookInMillis() );
+            if( refreshPolicy == RefreshPolicy.IMMEDIATE )
+            {
+                client.admin().indices().prepareRefresh( index ).execute().actionGet();
+            }
+        }
+        catch( RuntimeException e )
+        {
+            LOGGER.error( "Asynchronous indexing failed", e );
+        }
+        finally
+        {
+            if( timing != null )
+            {
+                timing.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.elasticsearch.internal;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+/**
+ * Hits of a search, fetched page by page through a scroll as they are iterated.
+ * <p>
+ * Used for searches without a maximum number of results, bounded searches use {@code from} and {@code size}.
+ * Each iteration runs the search again. The scroll is cleared once iterated, abandoned scrolls expire after
+ * {@code keepAlive}. Skipped hits are still fetched from ElasticSearch and discarded, so a large
+ * {@code firstResult} costs as much as reading that many hits.
+ * </p>
+ */
+public final class SearchHitsScroll
+    implements Iterable<SearchHit>
+{
+    private final Client client;
+    private final SearchRequestBuilder request;
+    private final TimeValue keepAlive;
+    private final Integer firstResult;
+
+    /**
+     * @param client      ElasticSearch client
+     * @param request     search request, without from and size
+     * @param pageSize    number of hits per page
+     * @param keepAlive   time the scroll is kept between pages
+     * @param firstResult number of hits to skip, may be null
+     */
+    public SearchHitsScroll( Client client, SearchRequestBuilder request, int pageSize, TimeValue keepAlive,
+                             Integer firstResult )
+    {
+        this.client = client;
+        this.request = request.setScroll( keepAlive ).setSize( pageSize );
+        this.keepAlive = keepAlive;
+        this.firstResult = firstResult;
+    }
+
+    @Override
+    public Iterator<SearchHit> iterator()
+    {
+        return new Iterator<SearchHit>()
+        {
+            private long skip = firstResult == null ? 0 : firstResult;
+            private String scrollId;
+            private SearchHit[] page;
+            private int index;
+            private boolean done;
+
+            @Override
+            public boolean hasNext()
+            {
+                while( !done )
+                {
+                    if( page != null && index < page.length )
+                    {
+                        if( skip == 0 )
+                        {
+                            return true;
+                        }
+                        int skipped = (int) Math.min( skip, page.length - index );
+                        index += skipped;
+                        skip -= skipped;
+                    }
+                    else
+                    {
+                        fetch();
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public SearchHit next()
+            {
+                if( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                return page[ index++ ];
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            private void fetch()
+            {
+                SearchResponse response = scrollId == null
+                                          ? request.execute().actionGet()
+                                          : client.prepareSearchScroll( scrollId ).setScroll( keepAlive )
+                                              .execute().actionGet();
+                scrollId = response.getScrollId();
+                page = response.getHits().getHits();
+                index = 0;
+                if( page.length == 0 )
+                {
+                    close();
+                }
+            }
+
+            private void close()
+            {
+                if( !done )
+                {
+                    done = true;
+                    if( scrollId != null )
+                    {
+                        // Don't wait, the scroll would expire anyway
+                        client.prepareClearScroll().addScrollId( scrollId ).execute();
+                    }
+                }
+            }
+        };
+    }
+}
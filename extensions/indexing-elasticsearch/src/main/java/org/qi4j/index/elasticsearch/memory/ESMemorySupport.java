@@ -53,8 +53,7 @@ public class ESMemorySupport
         ElasticSearchConfiguration config = configuration.get();
 
         String clusterName = config.clusterName().get() == null ? DEFAULT_CLUSTER_NAME : config.clusterName().get();
-        index = config.index().get() == null ? DEFAULT_INDEX_NAME : config.index().get();
-        indexNonAggregatedAssociations = config.indexNonAggregatedAssociations().get();
+        configureIndexing( config );
 
         String identity = hasIdentity.identity().get();
         Settings settings = ImmutableSettings.settingsBuilder().
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.elasticsearch;
+
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.index.elasticsearch.ElasticSearchConfiguration.RefreshPolicy;
+
+/**
+ * Run the Query tests with asynchronous bulk indexing, refreshing the index explicitly once test data is created.
+ */
+public class ElasticSearchAsyncQueryTest
+    extends ElasticSearchQueryTest
+{
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        super.assemble( module );
+
+        ModuleAssembly config = module.layer().module( "config" );
+        ElasticSearchConfiguration esConfig = config.forMixin( ElasticSearchConfiguration.class ).declareDefaults();
+        esConfig.asyncIndexing().set( Boolean.TRUE );
+        esConfig.refreshPolicy().set( RefreshPolicy.NONE );
+        esConfig.bulkActions().set( 10 );
+        esConfig.bulkFlushInterval().set( 100L );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        module.findService( ElasticSearchIndexer.class ).get().refresh();
+    }
+}
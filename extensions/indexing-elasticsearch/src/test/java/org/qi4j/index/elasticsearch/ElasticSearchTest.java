@@ -18,6 +18,7 @@
 package org.qi4j.index.elasticsearch;
 
 import java.io.File;
+import java.util.List;
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
@@ -35,6 +36,7 @@ import org.qi4j.api.unitofwork.UnitOfWork;
 import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.functional.Iterables;
 import org.qi4j.index.elasticsearch.assembly.ESFilesystemIndexQueryAssembler;
 import org.qi4j.library.fileconfig.FileConfigurationOverride;
 import org.qi4j.library.fileconfig.FileConfigurationService;
@@ -47,6 +49,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.qi4j.api.query.QueryExpressions.eq;
 import static org.qi4j.api.query.QueryExpressions.ne;
 import static org.qi4j.api.query.QueryExpressions.not;
+import static org.qi4j.api.query.QueryExpressions.orderBy;
 import static org.qi4j.api.query.QueryExpressions.templateFor;
 import static org.qi4j.test.util.Assume.assumeNoIbmJdk;
 
@@ -244,4 +247,39 @@ public class ElasticSearchTest
         uow.discard();
     }
 
+    @Test
+    public void testScrolledResults()
+        throws UnitOfWorkCompletionException
+    {
+        // More than one scroll page, and much more than the ElasticSearch default page size
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int idx = 0; idx < 1500; idx++ )
+        {
+            EntityBuilder<Comment> commentBuilder = uow.newEntityBuilder( Comment.class );
+            commentBuilder.instance().content().set( String.format( "Comment %04d", idx ) );
+            commentBuilder.newInstance();
+        }
+        uow.complete();
+
+        uow = module.newUnitOfWork();
+        Comment comment = templateFor( Comment.class );
+        Query<Comment> query = uow.newQuery( module.newQueryBuilder( Comment.class ) )
+            .orderBy( orderBy( comment.content() ) );
+        assertEquals( 1500, query.count() );
+        assertEquals( 1500, Iterables.count( query ) );
+
+        query.firstResult( 1200 );
+        List<Comment> comments = Iterables.toList( query );
+        assertEquals( 300, comments.size() );
+        assertEquals( "Comment 1200", comments.get( 0 ).content().get() );
+        assertEquals( "Comment 1499", comments.get( 299 ).content().get() );
+
+        query.firstResult( 100 ).maxResults( 1100 );
+        comments = Iterables.toList( query );
+        assertEquals( 1100, comments.size() );
+        assertEquals( "Comment 0100", comments.get( 0 ).content().get() );
+        assertEquals( "Comment 1199", comments.get( 1099 ).content().get() );
+        uow.discard();
+    }
+
 }
@@ -0,0 +1,230 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory;
+
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.functional.Iterables;
+import org.qi4j.functional.Specifications;
+import org.qi4j.index.memory.internal.IndexedEntity;
+import org.qi4j.index.memory.internal.MemoryIndex;
+import org.qi4j.index.memory.internal.PredicateEvaluator;
+import org.qi4j.index.memory.internal.SortedEntity;
+import org.qi4j.index.memory.internal.SortedEntityComparator;
+import org.qi4j.spi.query.EntityFinder;
+import org.qi4j.spi.query.EntityFinderException;
+
+/**
+ * EntityFinder backed by the in-memory index.
+ * <p>
+ * The where clause is first used to look up candidates in the property and association indexes, candidates are then
+ * evaluated against their snapshot. Queries ordered by a single indexed property of the result type walk the sorted
+ * index and stop as soon as the requested page is filled.
+ * </p>
+ */
+@Mixins( MemoryFinder.Mixin.class )
+public interface MemoryFinder
+    extends EntityFinder
+{
+    class Mixin
+        implements EntityFinder
+    {
+        @This
+        private MemoryIndexSupport support;
+
+        @Override
+        public Iterable<EntityReference> findEntities( Class<?> resultType,
+                                                       Predicate<Composite> whereClause,
+                                                       OrderBy[] orderBySegments,
+                                                       Integer firstResult, Integer maxResults,
+                                                       Map<String, Object> variables )
+            throws EntityFinderException
+        {
+            MemoryIndex index = support.index();
+            PredicateEvaluator evaluator = new PredicateEvaluator( index, variables );
+            int skip = firstResult == null ? 0 : firstResult;
+            int max = maxResults == null ? Integer.MAX_VALUE : maxResults;
+            List<EntityReference> references = new ArrayList<>();
+            try
+            {
+                Iterable<String> candidates = index.candidates( whereClause, evaluator );
+                Predicate<IndexedEntity> compiled = whereClause == null ? null : evaluator.compile( whereClause );
+                if( orderBySegments == null || orderBySegments.length == 0 )
+                {
+                    for( IndexedEntity entity : matching( index, candidates, resultType, compiled ) )
+                    {
+                        if( references.size() >= max )
+                        {
+                            break;
+                        }
+                        if( skip > 0 )
+                        {
+                            skip--;
+                        }
+                        else
+                        {
+                            references.add( EntityReference.parseEntityReference( entity.identity() ) );
+                        }
+                    }
+                    return references;
+                }
+
+                Iterable<String> ordered = candidates == null ? ordered( index, resultType, orderBySegments ) : null;
+                if( ordered != null )
+                {
+                    for( IndexedEntity entity : matching( index, ordered, resultType, compiled ) )
+                    {
+                        if( references.size() >= max )
+                        {
+                            break;
+                        }
+                        if( skip > 0 )
+                        {
+                            skip--;
+                        }
+                        else
+                        {
+                            references.add( EntityReference.parseEntityReference( entity.identity() ) );
+                        }
+                    }
+                    return references;
+                }
+
+                List<SortedEntity> sorted = new ArrayList<>();
+                for( IndexedEntity entity : matching( index, candidates, resultType, compiled ) )
+                {
+                    sorted.add( new SortedEntity( entity, orderBySegments, evaluator ) );
+                }
+                Collections.sort( sorted, new SortedEntityComparator( orderBySegments ) );
+                for( int idx = skip; idx < sorted.size() && references.size() < max; idx++ )
+                {
+                    references.add( EntityReference.parseEntityReference( sorted.get( idx ).entity().identity() ) );
+                }
+                return references;
+            }
+            catch( UnsupportedOperationException ex )
+            {
+                throw new EntityFinderException( ex );
+            }
+        }
+
+        @Override
+        public EntityReference findEntity( Class<?> resultType,
+                                           Predicate<Composite> whereClause,
+                                           Map<String, Object> variables )
+            throws EntityFinderException
+        {
+            MemoryIndex index = support.index();
+            PredicateEvaluator evaluator = new PredicateEvaluator( index, variables );
+            try
+            {
+                Iterable<String> candidates = index.candidates( whereClause, evaluator );
+                Predicate<IndexedEntity> compiled = whereClause == null ? null : evaluator.compile( whereClause );
+                for( IndexedEntity entity : matching( index, candidates, resultType, compiled ) )
+                {
+                    return EntityReference.parseEntityReference( entity.identity() );
+                }
+                return null;
+            }
+            catch( UnsupportedOperationException ex )
+            {
+                throw new EntityFinderException( ex );
+            }
+        }
+
+        @Override
+        public long countEntities( Class<?> resultType,
+                                   Predicate<Composite> whereClause,
+                                   Map<String, Object> variables )
+            throws EntityFinderException
+        {
+            MemoryIndex index = support.index();
+            PredicateEvaluator evaluator = new PredicateEvaluator( index, variables );
+            try
+            {
+                Iterable<String> candidates = index.candidates( whereClause, evaluator );
+                Predicate<IndexedEntity> compiled = whereClause == null ? null : evaluator.compile( whereClause );
+                long count = 0;
+                for( IndexedEntity entity : matching( index, candidates, resultType, compiled ) )
+                {
+                    count++;
+                }
+                return count;
+            }
+            catch( UnsupportedOperationException ex )
+            {
+                throw new EntityFinderException( ex );
+            }
+        }
+
+        private static Iterable<IndexedEntity> matching( final MemoryIndex index,
+                                                         Iterable<String> identities,
+                                                         final Class<?> resultType,
+                                                         final Predicate<IndexedEntity> whereClause )
+        {
+            Iterable<IndexedEntity> entities;
+            if( identities == null )
+            {
+                entities = index.entities();
+            }
+            else
+            {
+                // Candidates may have been removed since the lookup
+                entities = Iterables.filter( Specifications.notNull(), Iterables.map(
+                    new Function<String, IndexedEntity>()
+                    {
+                        @Override
+                        public IndexedEntity apply( String identity )
+                        {
+                            return index.get( identity );
+                        }
+                    }, identities ) );
+            }
+            // Lazy, so that ordered walks stop as soon as the page is filled
+            return Iterables.filter( new Predicate<IndexedEntity>()
+            {
+                @Override
+                public boolean test( IndexedEntity entity )
+                {
+                    return entity.descriptor().isAssignableTo( resultType )
+                           && ( whereClause == null || whereClause.test( entity ) );
+                }
+            }, entities );
+        }
+
+        private static Iterable<String> ordered( MemoryIndex index, Class<?> resultType, OrderBy[] orderBySegments )
+        {
+            if( orderBySegments.length != 1 || !PredicateEvaluator.isDirect( orderBySegments[ 0 ].property() ) )
+            {
+                return null;
+            }
+            // Every Entity of the result type must have the property for the sorted index to hold all of them
+            if( !( (Member) orderBySegments[ 0 ].property().accessor() ).getDeclaringClass().isAssignableFrom( resultType ) )
+            {
+                return null;
+            }
+            QualifiedName name = PredicateEvaluator.nameOf( orderBySegments[ 0 ].property().accessor() );
+            return index.ordered( name, orderBySegments[ 0 ].order() == OrderBy.Order.DESCENDING );
+        }
+    }
+}
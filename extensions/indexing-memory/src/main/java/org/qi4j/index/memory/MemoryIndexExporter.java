@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.index.memory.internal.IndexedEntity;
+import org.qi4j.spi.query.IndexExporter;
+
+@Mixins( MemoryIndexExporter.Mixin.class )
+public interface MemoryIndexExporter
+    extends IndexExporter
+{
+    class Mixin
+        implements IndexExporter
+    {
+        @This
+        private MemoryIndexSupport support;
+
+        @Override
+        public void exportReadableToStream( PrintStream out )
+            throws IOException, UnsupportedOperationException
+        {
+            for( IndexedEntity entity : support.index().entities() )
+            {
+                out.println( entity );
+            }
+        }
+
+        @Override
+        public void exportFormalToWriter( PrintWriter out )
+            throws IOException, UnsupportedOperationException
+        {
+            throw new UnsupportedOperationException( "The in-memory index has no formal export format" );
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory;
+
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.index.memory.internal.IndexedEntity;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entity.EntityStatus;
+import org.qi4j.spi.entitystore.StateChangeListener;
+
+/**
+ * Keep the in-memory index in sync with the EntityStore.
+ * <p>
+ * Snapshots are taken before updating the index so that the index is locked only while swapping them.
+ * </p>
+ */
+@Mixins( MemoryIndexer.Mixin.class )
+public interface MemoryIndexer
+    extends StateChangeListener
+{
+    class Mixin
+        implements StateChangeListener
+    {
+        @This
+        private MemoryIndexSupport support;
+
+        @Override
+        public void notifyChanges( Iterable<EntityState> changedStates )
+        {
+            for( EntityState state : changedStates )
+            {
+                EntityDescriptor descriptor = state.entityDescriptor();
+                if( !descriptor.queryable() )
+                {
+                    continue;
+                }
+                if( state.status() == EntityStatus.REMOVED )
+                {
+                    support.index().remove( state.identity().identity() );
+                }
+                else if( state.status() == EntityStatus.NEW || state.status() == EntityStatus.UPDATED )
+                {
+                    support.index().index( new IndexedEntity( state ) );
+                }
+            }
+        }
+    }
+}
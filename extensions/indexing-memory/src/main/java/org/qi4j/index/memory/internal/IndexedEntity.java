@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.qi4j.api.association.AssociationDescriptor;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.property.PropertyDescriptor;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entity.NamedAssociationState;
+
+/**
+ * Immutable snapshot of the queryable state of an Entity.
+ */
+public final class IndexedEntity
+{
+    private final String identity;
+    private final EntityDescriptor descriptor;
+    private final Map<QualifiedName, Object> properties;
+    private final Map<QualifiedName, String> associations;
+    private final Map<QualifiedName, List<String>> manyAssociations;
+    private final Map<QualifiedName, Map<String, String>> namedAssociations;
+
+    public IndexedEntity( EntityState state )
+    {
+        this.identity = state.identity().identity();
+        this.descriptor = state.entityDescriptor();
+
+        Map<QualifiedName, Object> properties = new HashMap<>();
+        for( PropertyDescriptor property : descriptor.state().properties() )
+        {
+            if( property.queryable() )
+            {
+                properties.put( property.qualifiedName(), state.propertyValueOf( property.qualifiedName() ) );
+            }
+        }
+        this.properties = properties;
+
+        Map<QualifiedName, String> associations = new HashMap<>();
+        for( AssociationDescriptor association : descriptor.state().associations() )
+        {
+            if( association.queryable() )
+            {
+                EntityReference associated = state.associationValueOf( association.qualifiedName() );
+                associations.put( association.qualifiedName(), associated == null ? null : associated.identity() );
+            }
+        }
+        this.associations = associations;
+
+        Map<QualifiedName, List<String>> manyAssociations = new HashMap<>();
+        for( AssociationDescriptor association : descriptor.state().manyAssociations() )
+        {
+            if( association.queryable() )
+            {
+                List<String> associated = new ArrayList<>();
+                for( EntityReference reference : state.manyAssociationValueOf( association.qualifiedName() ) )
+                {
+                    associated.add( reference.identity() );
+                }
+                manyAssociations.put( association.qualifiedName(), Collections.unmodifiableList( associated ) );
+            }
+        }
+        this.manyAssociations = manyAssociations;
+
+        Map<QualifiedName, Map<String, String>> namedAssociations = new HashMap<>();
+        for( AssociationDescriptor association : descriptor.state().namedAssociations() )
+        {
+            if( association.queryable() )
+            {
+                NamedAssociationState named = state.namedAssociationValueOf( association.qualifiedName() );
+                Map<String, String> associated = new LinkedHashMap<>();
+                for( String name : named )
+                {
+                    associated.put( name, named.get( name ).identity() );
+                }
+                namedAssociations.put( association.qualifiedName(), Collections.unmodifiableMap( associated ) );
+            }
+        }
+        this.namedAssociations = namedAssociations;
+    }
+
+    public String identity()
+    {
+        return identity;
+    }
+
+    public EntityDescriptor descriptor()
+    {
+        return descriptor;
+    }
+
+    public Map<QualifiedName, Object> properties()
+    {
+        return Collections.unmodifiableMap( properties );
+    }
+
+    /**
+     * @param name property name
+     *
+     * @return the property value, or null if the Entity has no such queryable property or its value is null
+     */
+    public Object propertyValueOf( QualifiedName name )
+    {
+        return properties.get( name );
+    }
+
+    /**
+     * @param name association name
+     *
+     * @return identity of the associated Entity, may be null
+     */
+    public String associationValueOf( QualifiedName name )
+    {
+        return associations.get( name );
+    }
+
+    /**
+     * @param name many-association name
+     *
+     * @return identities of the associated Entities, never null
+     */
+    public List<String> manyAssociationValueOf( QualifiedName name )
+    {
+        List<String> associated = manyAssociations.get( name );
+        return associated == null ? Collections.<String>emptyList() : associated;
+    }
+
+    /**
+     * @param name named-association name
+     *
+     * @return identities of the associated Entities by name, never null
+     */
+    public Map<String, String> namedAssociationValueOf( QualifiedName name )
+    {
+        Map<String, String> associated = namedAssociations.get( name );
+        return associated == null ? Collections.<String, String>emptyMap() : associated;
+    }
+
+    Map<QualifiedName, String> associations()
+    {
+        return associations;
+    }
+
+    Map<QualifiedName, List<String>> manyAssociations()
+    {
+        return manyAssociations;
+    }
+
+    @Override
+    public String toString()
+    {
+        return identity + " " + properties + " " + associations + " " + manyAssociations + " " + namedAssociations;
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory.internal;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import org.qi4j.api.association.AssociationDescriptor;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.property.PropertyDescriptor;
+import org.qi4j.api.query.grammar.AndSpecification;
+import org.qi4j.api.query.grammar.ComparisonSpecification;
+import org.qi4j.api.query.grammar.EqSpecification;
+import org.qi4j.api.query.grammar.GeSpecification;
+import org.qi4j.api.query.grammar.GtSpecification;
+import org.qi4j.api.query.grammar.LeSpecification;
+import org.qi4j.api.query.grammar.LtSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationContainsSpecification;
+import org.qi4j.api.query.grammar.OrSpecification;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.util.Classes;
+import org.qi4j.functional.Iterables;
+
+/**
+ * In-memory index of Entity snapshots.
+ * <p>
+ * Queryable properties of a Comparable, concrete type get a hash index for equality lookups and a sorted index
+ * for range lookups and ordering. Queryable associations and many-associations get a hash index on the
+ * associated identities.
+ * </p>
+ * <p>
+ * Updates are serialized, reads are not blocked by updates. Readers see each Entity snapshot atomically, and
+ * lookups only ever yield candidates: the where clause is always evaluated against the current snapshot of
+ * each candidate.
+ * </p>
+ */
+public final class MemoryIndex
+{
+    private final ConcurrentMap<String, IndexedEntity> entities = new ConcurrentHashMap<>();
+    private final ConcurrentMap<QualifiedName, ConcurrentMap<Object, Set<String>>> hashIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<QualifiedName, ConcurrentNavigableMap<Object, Set<String>>> sortedIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<QualifiedName, Set<String>> nullIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<QualifiedName, ConcurrentMap<Object, Set<String>>> associationIndexes = new ConcurrentHashMap<>();
+
+    public IndexedEntity get( String identity )
+    {
+        return entities.get( identity );
+    }
+
+    public Collection<IndexedEntity> entities()
+    {
+        return Collections.unmodifiableCollection( entities.values() );
+    }
+
+    public synchronized void index( IndexedEntity entity )
+    {
+        IndexedEntity previous = entities.put( entity.identity(), entity );
+        if( previous != null )
+        {
+            unindex( previous );
+        }
+
+        String identity = entity.identity();
+        for( PropertyDescriptor property : entity.descriptor().state().properties() )
+        {
+            QualifiedName name = property.qualifiedName();
+            if( property.queryable() && isOrderable( property ) )
+            {
+                Object value = entity.propertyValueOf( name );
+                if( value == null )
+                {
+                    add( nullIndexes, name, identity );
+                }
+                else
+                {
+                    add( hashIndexOf( hashIndexes, name ), value, identity );
+                    add( sortedIndexOf( name ), value, identity );
+                }
+            }
+        }
+        for( AssociationDescriptor association : entity.descriptor().state().associations() )
+        {
+            if( association.queryable() )
+            {
+                QualifiedName name = association.qualifiedName();
+                ConcurrentMap<Object, Set<String>> associationIndex = hashIndexOf( associationIndexes, name );
+                String associated = entity.associationValueOf( name );
+                if( associated != null )
+                {
+                    add( associationIndex, associated, identity );
+                }
+            }
+        }
+        for( AssociationDescriptor association : entity.descriptor().state().manyAssociations() )
+        {
+            if( association.queryable() )
+            {
+                QualifiedName name = association.qualifiedName();
+                ConcurrentMap<Object, Set<String>> associationIndex = hashIndexOf( associationIndexes, name );
+                for( String associated : entity.manyAssociationValueOf( name ) )
+                {
+                    add( associationIndex, associated, identity );
+                }
+            }
+        }
+    }
+
+    public synchronized void remove( String identity )
+    {
+        IndexedEntity previous = entities.remove( identity );
+        if( previous != null )
+        {
+            unindex( previous );
+        }
+    }
+
+    private void unindex( IndexedEntity entity )
+    {
+        String identity = entity.identity();
+        for( Map.Entry<QualifiedName, Object> property : entity.properties().entrySet() )
+        {
+            QualifiedName name = property.getKey();
+            Object value = property.getValue();
+            if( value == null )
+            {
+                Set<String> nulls = nullIndexes.get( name );
+                if( nulls != null )
+                {
+                    nulls.remove( identity );
+                }
+            }
+            else
+            {
+                remove( hashIndexes.get( name ), value, identity );
+                remove( sortedIndexes.get( name ), value, identity );
+            }
+        }
+        for( Map.Entry<QualifiedName, String> association : entity.associations().entrySet() )
+        {
+            if( association.getValue() != null )
+            {
+                remove( associationIndexes.get( association.getKey() ), association.getValue(), identity );
+            }
+        }
+        for( Map.Entry<QualifiedName, List<String>> association : entity.manyAssociations().entrySet() )
+        {
+            ConcurrentMap<Object, Set<String>> associationIndex = associationIndexes.get( association.getKey() );
+            for( String associated : association.getValue() )
+            {
+                remove( associationIndex, associated, identity );
+            }
+        }
+    }
+
+    /**
+     * Look up the identities of the Entities that may match a where clause.
+     *
+     * @param whereClause where clause, may be null
+     * @param evaluator   evaluator of the query
+     *
+     * @return candidate identities, or null if all Entities must be considered
+     */
+    @SuppressWarnings( "unchecked" )
+    public Set<String> candidates( Predicate<Composite> whereClause, PredicateEvaluator evaluator )
+    {
+        if( whereClause instanceof AndSpecification )
+        {
+            // Most selective operand
+            Set<String> candidates = null;
+            for( Predicate<Composite> operand : ( (AndSpecification) whereClause ).operands() )
+            {
+                Set<String> operandCandidates = candidates( operand, evaluator );
+                if( operandCandidates != null
+                    && ( candidates == null || operandCandidates.size() < candidates.size() ) )
+                {
+                    candidates = operandCandidates;
+                }
+            }
+            return candidates;
+        }
+        else if( whereClause instanceof OrSpecification )
+        {
+            Set<String> candidates = new HashSet<>();
+            for( Predicate<Composite> operand : ( (OrSpecification) whereClause ).operands() )
+            {
+                Set<String> operandCandidates = candidates( operand, evaluator );
+                if( operandCandidates == null )
+                {
+                    return null;
+                }
+                candidates.addAll( operandCandidates );
+            }
+            return candidates;
+        }
+        else if( whereClause instanceof ComparisonSpecification )
+        {
+            ComparisonSpecification<?> comparison = (ComparisonSpecification<?>) whereClause;
+            return candidates( comparison, evaluator.bind( comparison.value() ) );
+        }
+        else if( whereClause instanceof ManyAssociationContainsSpecification )
+        {
+            ManyAssociationContainsSpecification<?> contains = (ManyAssociationContainsSpecification<?>) whereClause;
+            if( contains.manyAssociation().traversedAssociation() == null
+                && contains.manyAssociation().traversedManyAssociation() == null
+                && contains.manyAssociation().traversedNamedAssociation() == null )
+            {
+                QualifiedName name = PredicateEvaluator.nameOf( contains.manyAssociation().accessor() );
+                return lookup( associationIndexes.get( name ), evaluator.identityOf( contains.value() ) );
+            }
+        }
+        return null;
+    }
+
+    private Set<String> candidates( ComparisonSpecification<?> comparison, Object value )
+    {
+        PropertyFunction<?> property = comparison.property();
+        if( value == null )
+        {
+            return null;
+        }
+        if( comparison.getClass() == EqSpecification.class
+            && property.traversedAssociation() != null
+            && property.traversedAssociation().traversedAssociation() == null
+            && property.traversedAssociation().traversedManyAssociation() == null
+            && property.traversedAssociation().traversedNamedAssociation() == null
+            && property.traversedProperty() == null
+            && PredicateEvaluator.IDENTITY.equals( PredicateEvaluator.nameOf( property.accessor() ) ) )
+        {
+            // Equality on an association
+            QualifiedName name = PredicateEvaluator.nameOf( property.traversedAssociation().accessor() );
+            return lookup( associationIndexes.get( name ), value.toString() );
+        }
+        if( !PredicateEvaluator.isDirect( property ) )
+        {
+            return null;
+        }
+
+        QualifiedName name = PredicateEvaluator.nameOf( property.accessor() );
+        Class<?> type = comparison.getClass();
+        if( type == EqSpecification.class )
+        {
+            return lookup( hashIndexes.get( name ), value );
+        }
+
+        ConcurrentNavigableMap<Object, Set<String>> sortedIndex = sortedIndexes.get( name );
+        if( sortedIndex == null )
+        {
+            return null;
+        }
+        try
+        {
+            NavigableMap<Object, Set<String>> range;
+            if( type == GtSpecification.class )
+            {
+                range = sortedIndex.tailMap( value, false );
+            }
+            else if( type == GeSpecification.class )
+            {
+                range = sortedIndex.tailMap( value, true );
+            }
+            else if( type == LtSpecification.class )
+            {
+                range = sortedIndex.headMap( value, false );
+            }
+            else if( type == LeSpecification.class )
+            {
+                range = sortedIndex.headMap( value, true );
+            }
+            else
+            {
+                return null;
+            }
+            Set<String> candidates = new HashSet<>();
+            for( Set<String> identities : range.values() )
+            {
+                candidates.addAll( identities );
+            }
+            return candidates;
+        }
+        catch( ClassCastException e )
+        {
+            // Value not comparable with the indexed ones
+            return null;
+        }
+    }
+
+    /**
+     * Identities of the Entities having a property, in the order of its values.
+     * <p>
+     * Entities with a null value come first, in both ascending and descending order.
+     * </p>
+     *
+     * @param name       property name
+     * @param descending true for descending order
+     *
+     * @return identities in order, or null if the property has no sorted index
+     */
+    public Iterable<String> ordered( QualifiedName name, boolean descending )
+    {
+        ConcurrentNavigableMap<Object, Set<String>> sortedIndex = sortedIndexes.get( name );
+        if( sortedIndex == null )
+        {
+            return null;
+        }
+        Set<String> nulls = nullIndexes.get( name );
+        Collection<Set<String>> values = descending ? sortedIndex.descendingMap().values() : sortedIndex.values();
+        List<Iterable<String>> ordered = new ArrayList<>( 2 );
+        if( nulls != null )
+        {
+            ordered.add( nulls );
+        }
+        ordered.add( Iterables.<String, Set<String>>flattenIterables( values ) );
+        return Iterables.flattenIterables( ordered );
+    }
+
+    private ConcurrentNavigableMap<Object, Set<String>> sortedIndexOf( QualifiedName name )
+    {
+        ConcurrentNavigableMap<Object, Set<String>> index = sortedIndexes.get( name );
+        if( index == null )
+        {
+            index = new ConcurrentSkipListMap<>();
+            sortedIndexes.put( name, index );
+        }
+        return index;
+    }
+
+    private static ConcurrentMap<Object, Set<String>> hashIndexOf(
+        ConcurrentMap<QualifiedName, ConcurrentMap<Object, Set<String>>> indexes,
+        QualifiedName name
+    )
+    {
+        ConcurrentMap<Object, Set<String>> index = indexes.get( name );
+        if( index == null )
+        {
+            index = new ConcurrentHashMap<>();
+            indexes.put( name, index );
+        }
+        return index;
+    }
+
+    private static <K> void add( Map<K, Set<String>> index, K key, String identity )
+    {
+        Set<String> identities = index.get( key );
+        if( identities == null )
+        {
+            identities = ConcurrentHashMap.newKeySet();
+            index.put( key, identities );
+        }
+        identities.add( identity );
+    }
+
+    private static void remove( Map<Object, Set<String>> index, Object key, String identity )
+    {
+        if( index == null )
+        {
+            return;
+        }
+        Set<String> identities = index.get( key );
+        if( identities != null )
+        {
+            identities.remove( identity );
+            if( identities.isEmpty() )
+            {
+                index.remove( key );
+            }
+        }
+    }
+
+    private static Set<String> lookup( Map<Object, Set<String>> index, Object key )
+    {
+        if( index == null )
+        {
+            return null;
+        }
+        Set<String> identities = index.get( key );
+        return identities == null ? Collections.<String>emptySet() : identities;
+    }
+
+    private static boolean isOrderable( PropertyDescriptor property )
+    {
+        Class<?> type = (Class<?>) Classes.wrapperClass( property.valueType().mainType() );
+        return Comparable.class.isAssignableFrom( type )
+               && !type.isInterface()
+               && ( type.isEnum() || !Modifier.isAbstract( type.getModifiers() ) );
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory.internal;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.composite.CompositeInstance;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.entity.Identity;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.AssociationFunction;
+import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
+import org.qi4j.api.query.grammar.AssociationNullSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationContainsSpecification;
+import org.qi4j.api.query.grammar.ManyAssociationFunction;
+import org.qi4j.api.query.grammar.NamedAssociationContainsNameSpecification;
+import org.qi4j.api.query.grammar.NamedAssociationContainsSpecification;
+import org.qi4j.api.query.grammar.NamedAssociationFunction;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.spi.query.AbstractPredicateCompiler;
+
+/**
+ * Compiles a where clause for evaluation against indexed Entity snapshots.
+ * <p>
+ * Semantics follow the in-memory evaluation of the where clause. Traversals of ManyAssociations and
+ * NamedAssociations match if any of the associated Entities match. Property and association values are looked up
+ * in the snapshots and in the index, association specifications are handled here.
+ * </p>
+ * <p>
+ * One instance is used per query execution as it binds the query variables.
+ * </p>
+ */
+public final class PredicateEvaluator
+    extends AbstractPredicateCompiler<IndexedEntity>
+{
+    static final QualifiedName IDENTITY = QualifiedName.fromClass( Identity.class, "identity" );
+    private static final Map<AccessibleObject, QualifiedName> NAMES = new ConcurrentHashMap<>();
+
+    private final MemoryIndex index;
+
+    public PredicateEvaluator( MemoryIndex index, Map<String, Object> variables )
+    {
+        super( variables );
+        this.index = index;
+    }
+
+    /**
+     * @param accessor property or association accessor
+     *
+     * @return the state name of the accessor
+     */
+    public static QualifiedName nameOf( AccessibleObject accessor )
+    {
+        QualifiedName name = NAMES.get( accessor );
+        if( name == null )
+        {
+            name = QualifiedName.fromAccessor( accessor );
+            NAMES.put( accessor, name );
+        }
+        return name;
+    }
+
+    /**
+     * @param function a PropertyFunction
+     *
+     * @return true if the function does not traverse properties or associations
+     */
+    public static boolean isDirect( PropertyFunction<?> function )
+    {
+        return function.traversedProperty() == null
+               && function.traversedAssociation() == null
+               && function.traversedManyAssociation() == null
+               && function.traversedNamedAssociation() == null;
+    }
+
+    /**
+     * @param value Entity, EntityReference, or identity
+     *
+     * @return the identity of the Entity
+     */
+    public String identityOf( Object value )
+    {
+        Object bound = bind( value );
+        if( bound instanceof EntityComposite )
+        {
+            return EntityReference.entityReferenceFor( bound ).identity();
+        }
+        else if( bound instanceof EntityReference )
+        {
+            return ( (EntityReference) bound ).identity();
+        }
+        return bound == null ? null : bound.toString();
+    }
+
+    @Override
+    protected Predicate<IndexedEntity> comparison( final PropertyFunction<?> property, final Operator operator,
+                                                   final Object value )
+    {
+        return new Predicate<IndexedEntity>()
+        {
+            @Override
+            public boolean test( IndexedEntity entity )
+            {
+                for( Object propertyValue : valuesOf( property, entity ) )
+                {
+                    try
+                    {
+                        if( propertyValue != null && compare( operator, propertyValue, value ) )
+                        {
+                            return true;
+                        }
+                    }
+                    catch( ClassCastException e )
+                    {
+                        // Not comparable, does not match
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<IndexedEntity> isNull( final PropertyFunction<?> property, final boolean isNull )
+    {
+        return new Predicate<IndexedEntity>()
+        {
+            @Override
+            public boolean test( IndexedEntity entity )
+            {
+                return hasValue( valuesOf( property, entity ) ) != isNull;
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<IndexedEntity> matches( final PropertyFunction<?> property, final Pattern pattern )
+    {
+        return new Predicate<IndexedEntity>()
+        {
+            @Override
+            public boolean test( IndexedEntity entity )
+            {
+                for( Object propertyValue : valuesOf( property, entity ) )
+                {
+                    if( propertyValue != null && pattern.matcher( propertyValue.toString() ).matches() )
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<IndexedEntity> contains( final PropertyFunction<?> collectionProperty,
+                                                 final List<Object> values )
+    {
+        return new Predicate<IndexedEntity>()
+        {
+            @Override
+            public boolean test( IndexedEntity entity )
+            {
+                for( Object collection : valuesOf( collectionProperty, entity ) )
+                {
+                    if( collection instanceof Collection && ( (Collection<?>) collection ).containsAll( values ) )
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    protected Predicate<IndexedEntity> other( Predicate<Composite> predicate )
+    {
+        if( predicate instanceof AssociationNullSpecification )
+        {
+            final AssociationFunction<?> association = ( (AssociationNullSpecification<?>) predicate ).association();
+            return new Predicate<IndexedEntity>()
+            {
+                @Override
+                public boolean test( IndexedEntity entity )
+                {
+                    return identitiesOf( association, entity ).isEmpty();
+                }
+            };
+        }
+        else if( predicate instanceof AssociationNotNullSpecification )
+        {
+            final AssociationFunction<?> association =
+                ( (AssociationNotNullSpecification<?>) predicate ).association();
+            return new Predicate<IndexedEntity>()
+            {
+                @Override
+                public boolean test( IndexedEntity entity )
+                {
+                    return !identitiesOf( association, entity ).isEmpty();
+                }
+            };
+        }
+        else if( predicate instanceof ManyAssociationContainsSpecification )
+        {
+            ManyAssociationContainsSpecification<?> contains = (ManyAssociationContainsSpecification<?>) predicate;
+            final ManyAssociationFunction<?> manyAssociation = contains.manyAssociation();
+            final String identity = identityOf( contains.value() );
+            return new Predicate<IndexedEntity>()
+            {
+                @Override
+                public boolean test( IndexedEntity entity )
+                {
+                    return identitiesOf( manyAssociation, entity ).contains( identity );
+                }
+            };
+        }
+        else if( predicate instanceof NamedAssociationContainsSpecification )
+        {
+            NamedAssociationContainsSpecification<?> contains = (NamedAssociationContainsSpecification<?>) predicate;
+            final NamedAssociationFunction<?> namedAssociation = contains.namedAssociation();
+            final String identity = identityOf( contains.value() );
+            return new Predicate<IndexedEntity>()
+            {
+                @Override
+                public boolean test( IndexedEntity entity )
+                {
+                    for( Map<String, String> named : namedOf( namedAssociation, entity ) )
+                    {
+                        if( named.containsValue( identity ) )
+                        {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+        else if( predicate instanceof NamedAssociationContainsNameSpecification )
+        {
+            NamedAssociationContainsNameSpecification<?> contains =
+                (NamedAssociationContainsNameSpecification<?>) predicate;
+            final NamedAssociationFunction<?> namedAssociation = contains.namedAssociation();
+            final String name = contains.name();
+            return new Predicate<IndexedEntity>()
+            {
+                @Override
+                public boolean test( IndexedEntity entity )
+                {
+                    for( Map<String, String> named : namedOf( namedAssociation, entity ) )
+                    {
+                        if( named.containsKey( name ) )
+                        {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+        throw new UnsupportedOperationException( "Query specification unsupported by Memory Index: "
+                                                 + predicate.getClass() + ": " + predicate );
+    }
+
+    /**
+     * @param function PropertyFunction
+     * @param entity   Entity snapshot
+     *
+     * @return values of the property, more than one if the function traverses ManyAssociations or
+     *         NamedAssociations, none if an association in the path is not set
+     */
+    public List<Object> valuesOf( PropertyFunction<?> function, IndexedEntity entity )
+    {
+        QualifiedName name = nameOf( function.accessor() );
+        if( isDirect( function ) )
+        {
+            return Collections.singletonList( entity.propertyValueOf( name ) );
+        }
+
+        List<Object> values = new ArrayList<>();
+        if( function.traversedProperty() != null )
+        {
+            for( Object composite : valuesOf( function.traversedProperty(), entity ) )
+            {
+                if( composite instanceof Composite )
+                {
+                    CompositeInstance handler = (CompositeInstance) Proxy.getInvocationHandler( composite );
+                    try
+                    {
+                        Property<?> property = handler.state().propertyFor( function.accessor() );
+                        values.add( property.get() );
+                    }
+                    catch( IllegalArgumentException e )
+                    {
+                        // Not a property of this composite
+                    }
+                }
+            }
+            return values;
+        }
+
+        List<String> identities;
+        if( function.traversedAssociation() != null )
+        {
+            identities = identitiesOf( function.traversedAssociation(), entity );
+        }
+        else if( function.traversedManyAssociation() != null )
+        {
+            identities = identitiesOf( function.traversedManyAssociation(), entity );
+        }
+        else
+        {
+            identities = new ArrayList<>();
+            for( Map<String, String> named : namedOf( function.traversedNamedAssociation(), entity ) )
+            {
+                identities.addAll( named.values() );
+            }
+        }
+        for( String identity : identities )
+        {
+            if( IDENTITY.equals( name ) )
+            {
+                // No need for the associated Entity to be indexed
+                values.add( identity );
+            }
+            else
+            {
+                IndexedEntity associated = index.get( identity );
+                if( associated != null )
+                {
+                    values.add( associated.propertyValueOf( name ) );
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return identities of the Entities associated through the given Association
+     */
+    public List<String> identitiesOf( AssociationFunction<?> function, IndexedEntity entity )
+    {
+        QualifiedName name = nameOf( function.accessor() );
+        List<String> identities = new ArrayList<>();
+        for( IndexedEntity source : sourcesOf( function.traversedAssociation(),
+                                               function.traversedManyAssociation(),
+                                               function.traversedNamedAssociation(),
+                                               entity ) )
+        {
+            String identity = source.associationValueOf( name );
+            if( identity != null )
+            {
+                identities.add( identity );
+            }
+        }
+        return identities;
+    }
+
+    /**
+     * @return identities of the Entities associated through the given ManyAssociation
+     */
+    public List<String> identitiesOf( ManyAssociationFunction<?> function, IndexedEntity entity )
+    {
+        QualifiedName name = nameOf( function.accessor() );
+        List<IndexedEntity> sources = sourcesOf( function.traversedAssociation(),
+                                                 function.traversedManyAssociation(),
+                                                 function.traversedNamedAssociation(),
+                                                 entity );
+        if( sources.size() == 1 )
+        {
+            return sources.get( 0 ).manyAssociationValueOf( name );
+        }
+        List<String> identities = new ArrayList<>();
+        for( IndexedEntity source : sources )
+        {
+            identities.addAll( source.manyAssociationValueOf( name ) );
+        }
+        return identities;
+    }
+
+    private List<Map<String, String>> namedOf( NamedAssociationFunction<?> function, IndexedEntity entity )
+    {
+        QualifiedName name = nameOf( function.accessor() );
+        List<Map<String, String>> named = new ArrayList<>();
+        for( IndexedEntity source : sourcesOf( function.traversedAssociation(),
+                                               function.traversedManyAssociation(),
+                                               function.traversedNamedAssociation(),
+                                               entity ) )
+        {
+            named.add( source.namedAssociationValueOf( name ) );
+        }
+        return named;
+    }
+
+    private List<IndexedEntity> sourcesOf( AssociationFunction<?> traversedAssociation,
+                                           ManyAssociationFunction<?> traversedManyAssociation,
+                                           NamedAssociationFunction<?> traversedNamedAssociation,
+                                           IndexedEntity entity
+    )
+    {
+        List<String> identities;
+        if( traversedAssociation != null )
+        {
+            identities = identitiesOf( traversedAssociation, entity );
+        }
+        else if( traversedManyAssociation != null )
+        {
+            identities = identitiesOf( traversedManyAssociation, entity );
+        }
+        else if( traversedNamedAssociation != null )
+        {
+            identities = new ArrayList<>();
+            for( Map<String, String> named : namedOf( traversedNamedAssociation, entity ) )
+            {
+                identities.addAll( named.values() );
+            }
+        }
+        else
+        {
+            return Collections.singletonList( entity );
+        }
+
+        List<IndexedEntity> sources = new ArrayList<>( identities.size() );
+        for( String identity : identities )
+        {
+            IndexedEntity source = index.get( identity );
+            if( source != null )
+            {
+                sources.add( source );
+            }
+        }
+        return sources;
+    }
+
+    private static boolean hasValue( List<Object> values )
+    {
+        for( Object value : values )
+        {
+            if( value != null )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory.internal;
+
+import java.util.List;
+import org.qi4j.api.query.grammar.OrderBy;
+
+/**
+ * Matching Entity with the values it is ordered by.
+ */
+public final class SortedEntity
+{
+    private final IndexedEntity entity;
+    private final Object[] keys;
+
+    public SortedEntity( IndexedEntity entity, OrderBy[] orderBySegments, PredicateEvaluator evaluator )
+    {
+        this.entity = entity;
+        this.keys = new Object[ orderBySegments.length ];
+        for( int idx = 0; idx < orderBySegments.length; idx++ )
+        {
+            List<Object> values = evaluator.valuesOf( orderBySegments[ idx ].property(), entity );
+            keys[ idx ] = values.isEmpty() ? null : values.get( 0 );
+        }
+    }
+
+    public IndexedEntity entity()
+    {
+        return entity;
+    }
+
+    Object key( int idx )
+    {
+        return keys[ idx ];
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory.internal;
+
+import java.util.Comparator;
+import org.qi4j.api.query.grammar.OrderBy;
+
+/**
+ * Orders SortedEntities by their values, nulls first whatever the order.
+ */
+public final class SortedEntityComparator
+    implements Comparator<SortedEntity>
+{
+    private final OrderBy[] orderBySegments;
+
+    public SortedEntityComparator( OrderBy[] orderBySegments )
+    {
+        this.orderBySegments = orderBySegments;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public int compare( SortedEntity left, SortedEntity right )
+    {
+        for( int idx = 0; idx < orderBySegments.length; idx++ )
+        {
+            Object leftKey = left.key( idx );
+            Object rightKey = right.key( idx );
+            int result;
+            if( leftKey == null || rightKey == null )
+            {
+                // Nulls first, whatever the order
+                result = leftKey == null ? ( rightKey == null ? 0 : -1 ) : 1;
+            }
+            else
+            {
+                result = ( (Comparable<Object>) leftKey ).compareTo( rightKey );
+                if( orderBySegments[ idx ].order() == OrderBy.Order.DESCENDING )
+                {
+                    result = -result;
+                }
+            }
+            if( result != 0 )
+            {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
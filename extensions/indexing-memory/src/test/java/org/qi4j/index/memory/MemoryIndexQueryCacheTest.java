@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.memory;
+
+import org.junit.Test;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.QueryBuilder;
+import org.qi4j.api.query.QueryCacheOptions;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.usecase.UsecaseBuilder;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.index.memory.assembly.MemoryIndexQueryAssembler;
+import org.qi4j.spi.query.QueryCache;
+import org.qi4j.spi.query.QueryCacheConcern;
+import org.qi4j.spi.query.QueryCacheInvalidationConcern;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+public class MemoryIndexQueryCacheTest
+    extends AbstractQi4jTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        // START SNIPPET: cache
+        new MemoryIndexQueryAssembler().assemble( module );
+        module.services( MemoryIndexQueryService.class )
+            .withTypes( QueryCache.class )
+            .withConcerns( QueryCacheConcern.class, QueryCacheInvalidationConcern.class );
+        // END SNIPPET: cache
+        module.entities( Thing.class );
+    }
+
+    @Test
+    public void givenCachedQueryWhenEntityChangesThenResultIsInvalidated()
+        throws Exception
+    {
+        QueryCache cache = module.findService( QueryCache.class ).get();
+        String identity;
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            identity = newThing( uow, "foo" );
+            newThing( uow, "bar" );
+            uow.complete();
+        }
+
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            assertThat( countFoos( uow ), equalTo( 1L ) );
+            assertThat( countFoos( uow ), equalTo( 1L ) );
+            assertThat( cache.hits(), equalTo( 1L ) );
+            assertThat( cache.misses(), equalTo( 1L ) );
+        }
+
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            uow.get( Thing.class, identity ).name().set( "baz" );
+            uow.complete();
+        }
+        assertThat( cache.size(), equalTo( 0 ) );
+
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            assertThat( countFoos( uow ), equalTo( 0L ) );
+            assertThat( cache.misses(), equalTo( 2L ) );
+        }
+    }
+
+    @Test
+    public void givenUsecaseOptingOutWhenQueryingThenCacheIsBypassed()
+        throws Exception
+    {
+        QueryCache cache = module.findService( QueryCache.class ).get();
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            newThing( uow, "foo" );
+            uow.complete();
+        }
+
+        try( UnitOfWork uow = module.newUnitOfWork( UsecaseBuilder.buildUsecase( "no-cache" )
+                                                        .withMetaInfo( QueryCacheOptions.NEVER )
+                                                        .newUsecase() ) )
+        {
+            assertThat( countFoos( uow ), equalTo( 1L ) );
+            assertThat( countFoos( uow ), equalTo( 1L ) );
+            assertThat( cache.hits() + cache.misses(), equalTo( 0L ) );
+            assertThat( cache.size(), equalTo( 0 ) );
+        }
+    }
+
+    private String newThing( UnitOfWork uow, String name )
+    {
+        EntityBuilder<Thing> builder = uow.newEntityBuilder( Thing.class );
+        builder.instance().name().set( name );
+        return builder.newInstance().identity().get();
+    }
+
+    private long countFoos( UnitOfWork uow )
+    {
+        QueryBuilder<Thing> builder = module.newQueryBuilder( Thing.class );
+        Thing thing = templateFor( Thing.class );
+        return uow.newQuery( builder.where( eq( thing.name(), "foo" ) ) ).count();
+    }
+
+    public interface Thing
+        extends EntityComposite
+    {
+        Property<String> name();
+    }
+}
@@ -18,7 +18,9 @@ import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.bootstrap.Assembler;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.ServiceDeclaration;
 import org.qi4j.index.rdf.RdfIndexingEngineService;
+import org.qi4j.index.rdf.indexing.AsynchronousRdfIndexing;
 import org.qi4j.index.rdf.query.RdfQueryParserFactory;
 import org.qi4j.library.rdf.entity.EntityStateSerializer;
 import org.qi4j.library.rdf.entity.EntityTypeSerializer;
@@ -30,6 +32,7 @@ public class RdfNativeSesameStoreAssembler
 {
     private Visibility indexingVisibility;
     private Visibility repositoryVisibility;
+    private AsynchronousRdfIndexing asynchronousIndexing;
 
     public RdfNativeSesameStoreAssembler()
     {
@@ -44,6 +47,19 @@ public class RdfNativeSesameStoreAssembler
         this.repositoryVisibility = repositoryVisibility;
     }
 
+    /**
+     * Index changed Entity states asynchronously.
+     *
+     * @param asynchronousIndexing batching and queuing options
+     *
+     * @return this Assembler
+     */
+    public RdfNativeSesameStoreAssembler withAsynchronousIndexing( AsynchronousRdfIndexing asynchronousIndexing )
+    {
+        this.asynchronousIndexing = asynchronousIndexing;
+        return this;
+    }
+
     @Override
     public void assemble( ModuleAssembly module )
         throws AssemblyException
@@ -52,9 +68,13 @@ public class RdfNativeSesameStoreAssembler
             .visibleIn( repositoryVisibility )
             .instantiateOnStartup()
             .identifiedBy( "rdf-indexing" );
-        module.services( RdfIndexingEngineService.class )
+        ServiceDeclaration indexing = module.services( RdfIndexingEngineService.class )
             .visibleIn( indexingVisibility )
             .instantiateOnStartup();
+        if( asynchronousIndexing != null )
+        {
+            indexing.setMetaInfo( asynchronousIndexing );
+        }
         module.services( RdfQueryParserFactory.class ).visibleIn( indexingVisibility );
         module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
         module.objects( EntityStateSerializer.class, EntityTypeSerializer.class );
@@ -18,7 +18,9 @@ import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.bootstrap.Assembler;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.ServiceDeclaration;
 import org.qi4j.index.rdf.RdfIndexingEngineService;
+import org.qi4j.index.rdf.indexing.AsynchronousRdfIndexing;
 import org.qi4j.index.rdf.query.RdfQueryParserFactory;
 import org.qi4j.library.rdf.entity.EntityStateSerializer;
 import org.qi4j.library.rdf.entity.EntityTypeSerializer;
@@ -30,6 +32,7 @@ public class RdfRdbmsSesameStoreAssembler
 {
     private Visibility indexingVisibility;
     private Visibility repositoryVisibility;
+    private AsynchronousRdfIndexing asynchronousIndexing;
 
     public RdfRdbmsSesameStoreAssembler()
     {
@@ -45,6 +48,19 @@ public class RdfRdbmsSesameStoreAssembler
         this.repositoryVisibility = repositoryVisibility;
     }
 
+    /**
+     * Index changed Entity states asynchronously.
+     *
+     * @param asynchronousIndexing batching and queuing options
+     *
+     * @return this Assembler
+     */
+    public RdfRdbmsSesameStoreAssembler withAsynchronousIndexing( AsynchronousRdfIndexing asynchronousIndexing )
+    {
+        this.asynchronousIndexing = asynchronousIndexing;
+        return this;
+    }
+
     @Override
     public void assemble( ModuleAssembly module )
         throws AssemblyException
@@ -53,9 +69,13 @@ public class RdfRdbmsSesameStoreAssembler
             .visibleIn( repositoryVisibility )
             .instantiateOnStartup()
             .identifiedBy( "rdf-indexing" );
-        module.services( RdfIndexingEngineService.class )
+        ServiceDeclaration indexing = module.services( RdfIndexingEngineService.class )
             .visibleIn( indexingVisibility )
             .instantiateOnStartup();
+        if( asynchronousIndexing != null )
+        {
+            indexing.setMetaInfo( asynchronousIndexing );
+        }
         module.services( RdfQueryParserFactory.class ).visibleIn( indexingVisibility );
         module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
         module.objects( EntityStateSerializer.class, EntityTypeSerializer.class );
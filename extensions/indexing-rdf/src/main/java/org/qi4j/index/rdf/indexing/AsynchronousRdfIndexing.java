@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.rdf.indexing;
+
+import java.io.Serializable;
+
+/**
+ * Asynchronous RDF indexing meta-info.
+ * <p>
+ * Set on the RdfIndexingService declaration to write changed Entity states to the Repository from a background
+ * thread instead of the thread committing the UnitOfWork. Successive changes to an Entity are coalesced and written
+ * in batches of at most {@link #batchSize()} Entities, one transaction per batch.
+ * </p>
+ * <p>
+ * Queries only see the changes of a UnitOfWork once its batch has been written, use
+ * {@link RdfIndexingService#flush()} to wait for it.
+ * </p>
+ */
+public final class AsynchronousRdfIndexing
+    implements Serializable
+{
+    private final int batchSize;
+    private final long flushInterval;
+    private final int queueCapacity;
+
+    public AsynchronousRdfIndexing()
+    {
+        this( 500, 1000, 10000 );
+    }
+
+    /**
+     * @param batchSize     maximum number of Entities written in one transaction
+     * @param flushInterval maximum time in milliseconds a change waits for its batch to fill up
+     * @param queueCapacity maximum number of queued changes, committing UnitOfWorks wait when it is reached
+     */
+    public AsynchronousRdfIndexing( int batchSize, long flushInterval, int queueCapacity )
+    {
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int batchSize()
+    {
+        return batchSize;
+    }
+
+    public long flushInterval()
+    {
+        return flushInterval;
+    }
+
+    public int queueCapacity()
+    {
+        return queueCapacity;
+    }
+}
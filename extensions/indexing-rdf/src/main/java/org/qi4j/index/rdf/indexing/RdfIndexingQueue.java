@@ -0,0 +1,218 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.rdf.indexing;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous, coalescing RDF indexing.
+ * <p>
+ * Changes are queued by the committing UnitOfWorks and written by a single thread in batches of at most
+ * {@code batchSize} Entities, or after {@code flushInterval} milliseconds. Successive changes to the same Entity are
+ * coalesced, only its last state is written. When the queue is full, committing UnitOfWorks wait.
+ * </p>
+ */
+abstract class RdfIndexingQueue
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( RdfIndexingQueue.class );
+
+    private final int batchSize;
+    private final long flushInterval;
+    private final BlockingQueue<Change> queue;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object drained = new Object();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    RdfIndexingQueue( AsynchronousRdfIndexing options )
+    {
+        this.batchSize = options.batchSize();
+        this.flushInterval = options.flushInterval();
+        this.queue = new ArrayBlockingQueue<>( options.queueCapacity() );
+        this.worker = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                work();
+            }
+        }, "rdf-indexing" );
+        this.worker.setDaemon( true );
+        this.worker.start();
+    }
+
+    /**
+     * Write a batch of coalesced changes in one transaction.
+     *
+     * @param changes at most one change per Entity, in queuing order
+     *
+     * @throws Exception if the batch could not be written
+     */
+    protected abstract void write( Collection<Change> changes )
+        throws Exception;
+
+    /**
+     * Queue changes, waiting if the queue is full.
+     *
+     * @param changes changed Entity states
+     */
+    void add( List<Change> changes )
+    {
+        try
+        {
+            for( Change change : changes )
+            {
+                pending.incrementAndGet();
+                queue.put( change );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            LOGGER.error( "Interrupted while queuing changes for indexing, some changes will not be indexed" );
+        }
+    }
+
+    /**
+     * Wait until all the queued changes have been written.
+     */
+    void flush()
+    {
+        synchronized( drained )
+        {
+            while( pending.get() > 0 && worker.isAlive() )
+            {
+                try
+                {
+                    drained.wait( flushInterval );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the queued changes and stop.
+     */
+    void close()
+        throws InterruptedException
+    {
+        running = false;
+        worker.join();
+    }
+
+    private void work()
+    {
+        while( running || !queue.isEmpty() )
+        {
+            try
+            {
+                Change first = queue.poll( flushInterval, TimeUnit.MILLISECONDS );
+                if( first == null )
+                {
+                    continue;
+                }
+                int taken = 1;
+                Map<String, Change> batch = new LinkedHashMap<>();
+                coalesce( batch, first );
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while( batch.size() < batchSize )
+                {
+                    Change next = queue.poll( deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS );
+                    if( next == null )
+                    {
+                        break;
+                    }
+                    taken++;
+                    coalesce( batch, next );
+                }
+                try
+                {
+                    write( batch.values() );
+                }
+                catch( Exception e )
+                {
+                    // Nobody to throw to, the UnitOfWorks have already been committed
+                    LOGGER.error( "Asynchronous indexing of " + batch.size() + " Entities failed", e );
+                }
+                finally
+                {
+                    pending.addAndGet( -taken );
+                    synchronized( drained )
+                    {
+                        drained.notifyAll();
+                    }
+                }
+            }
+            catch( InterruptedException e )
+            {
+                // Keep on writing until the queue is empty
+            }
+        }
+    }
+
+    private void coalesce( Map<String, Change> batch, Change change )
+    {
+        // Remove first so that the last change to an Entity keeps its place in the batch
+        Change previous = batch.remove( change.identity );
+        if( previous != null && previous.replace && !change.replace )
+        {
+            change = new Change( change.identity, change.entityURI, true, change.entityType, change.statements );
+        }
+        batch.put( change.identity, change );
+    }
+
+    /**
+     * Snapshot of a changed Entity state.
+     */
+    static final class Change
+    {
+        final String identity;
+        final URI entityURI;
+        final boolean replace;
+        final EntityDescriptor entityType;
+        final Collection<Statement> statements;
+
+        /**
+         * @param identity   Entity identity
+         * @param entityURI  Entity URI, also the context of its statements
+         * @param replace    whether statements previously indexed for the Entity must be removed
+         * @param entityType Entity type, null if the Entity was removed
+         * @param statements statements to index, null if the Entity was removed
+         */
+        Change( String identity, URI entityURI, boolean replace,
+                EntityDescriptor entityType, Collection<Statement> statements )
+        {
+            this.identity = identity;
+            this.entityURI = entityURI;
+            this.replace = replace;
+            this.entityType = entityType;
+            this.statements = statements;
+        }
+    }
+}
@@ -20,9 +20,12 @@ package org.qi4j.index.rdf.indexing;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.openrdf.model.*;
 import org.openrdf.model.impl.GraphImpl;
 import org.openrdf.repository.Repository;
@@ -34,6 +37,7 @@ import org.qi4j.api.entity.EntityDescriptor;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.injection.scope.Uses;
 import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.api.service.ServiceReference;
 import org.qi4j.api.util.Classes;
 import org.qi4j.library.rdf.entity.EntityStateSerializer;
@@ -41,6 +45,8 @@ import org.qi4j.library.rdf.entity.EntityTypeSerializer;
 import org.qi4j.spi.entity.EntityState;
 import org.qi4j.spi.entity.EntityStatus;
 import org.qi4j.spi.entitystore.StateChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.qi4j.functional.Iterables.first;
 
@@ -51,6 +57,17 @@ public interface RdfIndexingService
 {
     void initialize();
 
+    /**
+     * Wait until all the changes queued for asynchronous indexing have been written.
+     * Return immediately if indexing is synchronous.
+     */
+    void flush();
+
+    /**
+     * Write the changes queued for asynchronous indexing and stop indexing asynchronously.
+     */
+    void shutdown();
+
     File dataDir();
 
     class Activator extends ActivatorAdapter<ServiceReference<RdfIndexingService>>
@@ -63,14 +80,28 @@ public interface RdfIndexingService
             activated.get().initialize();
         }
 
+        @Override
+        public void beforePassivation( ServiceReference<RdfIndexingService> passivating )
+                throws Exception
+        {
+            passivating.get().shutdown();
+        }
+
     }
 
     /**
-     * JAVADOC Add JavaDoc
+     * Index Entity states in the Sesame Repository.
+     * <p>
+     * Each Entity state is stored in its own context. The changes of a UnitOfWork, or of a batch of UnitOfWorks when
+     * indexing asynchronously, are written in a single transaction. Statements are added to the connection as they
+     * are serialized. Entity types are indexed once per activation.
+     * </p>
      */
     abstract class RdfEntityIndexerMixin
         implements RdfIndexingService
     {
+        private static final Logger LOGGER = LoggerFactory.getLogger( RdfIndexingService.class );
+
         @Service
         private ServiceReference<Repository> repository;
 
@@ -80,13 +111,56 @@ public interface RdfIndexingService
         @Uses
         private EntityTypeSerializer typeSerializer;
 
+        @Uses
+        private ServiceDescriptor descriptor;
+
         private Set<EntityDescriptor> indexedEntityTypes;
         private ValueFactory valueFactory;
+        private RdfIndexingQueue queue;
 
         @Override
         public void initialize()
         {
-            indexedEntityTypes = new HashSet<EntityDescriptor>();
+            indexedEntityTypes = Collections.newSetFromMap( new ConcurrentHashMap<EntityDescriptor, Boolean>() );
+            AsynchronousRdfIndexing asynchronous = descriptor.metaInfo( AsynchronousRdfIndexing.class );
+            if( asynchronous != null )
+            {
+                queue = new RdfIndexingQueue( asynchronous )
+                {
+                    @Override
+                    protected void write( Collection<Change> changes )
+                        throws RepositoryException
+                    {
+                        writeChanges( changes );
+                    }
+                };
+            }
+        }
+
+        @Override
+        public void flush()
+        {
+            if( queue != null )
+            {
+                queue.flush();
+            }
+        }
+
+        @Override
+        public void shutdown()
+        {
+            if( queue != null )
+            {
+                try
+                {
+                    queue.close();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                queue = null;
+            }
         }
 
         @Override
@@ -98,6 +172,11 @@ public interface RdfIndexingService
                 {
                     return;
                 }
+                if( queue != null )
+                {
+                    queue.add( snapshot( entityStates ) );
+                    return;
+                }
                 final RepositoryConnection connection = repository.get().getConnection();
                 // The Repository is being initialized and not ready yet.
                 // This happens when the Repository is being initialized and it is accessing its own configuration.
@@ -105,39 +184,121 @@ public interface RdfIndexingService
                 {
                     return;
                 }
-                connection.setAutoCommit( false );
                 try
                 {
+                    connection.setAutoCommit( false );
                     removeEntityStates( entityStates, connection );
-                    connection.commit();
                     final Set<EntityDescriptor> entityTypes = indexUpdates( entityStates, connection );
-                    indexNewTypes( connection, entityTypes );
+                    final Set<EntityDescriptor> newTypes = indexNewTypes( connection, entityTypes );
+                    connection.commit();
+                    indexedEntityTypes.addAll( newTypes );
+                }
+                catch( Throwable e )
+                {
+                    connection.rollback();
+                    throw e;
                 }
                 finally
                 {
-                    connection.commit();
                     connection.close();
                 }
             }
             catch( Throwable e )
             {
-                e.printStackTrace();
+                LOGGER.error( "Indexing of changed Entity states failed", e );
                 //TODO What shall we do with the exception?
             }
         }
 
-        private void indexNewTypes( RepositoryConnection connection, Set<EntityDescriptor> entityTypes )
+        private List<RdfIndexingQueue.Change> snapshot( Iterable<EntityState> entityStates )
+        {
+            // Entity states can not be read once the UnitOfWork is gone, serialize them now
+            List<RdfIndexingQueue.Change> changes = new ArrayList<>();
+            for( EntityState entityState : entityStates )
+            {
+                String identity = entityState.identity().identity();
+                URI entityURI = stateSerializer.createEntityURI( getValueFactory(), entityState.identity() );
+                if( entityState.status().equals( EntityStatus.REMOVED ) )
+                {
+                    changes.add( new RdfIndexingQueue.Change( identity, entityURI, true, null, null ) );
+                }
+                else if( entityState.status().equals( EntityStatus.UPDATED )
+                         || entityState.status().equals( EntityStatus.NEW ) )
+                {
+                    Graph graph = new GraphImpl( getValueFactory() );
+                    if( entityState.entityDescriptor().queryable() )
+                    {
+                        stateSerializer.serialize( entityState, false, graph );
+                    }
+                    changes.add( new RdfIndexingQueue.Change( identity, entityURI,
+                                                              entityState.status().equals( EntityStatus.UPDATED ),
+                                                              entityState.entityDescriptor(), graph ) );
+                }
+            }
+            return changes;
+        }
+
+        private void writeChanges( Collection<RdfIndexingQueue.Change> changes )
+            throws RepositoryException
+        {
+            if( repository == null || !repository.isActive() )
+            {
+                return;
+            }
+            final RepositoryConnection connection = repository.get().getConnection();
+            try
+            {
+                connection.setAutoCommit( false );
+                List<Resource> removedStates = new ArrayList<>();
+                for( RdfIndexingQueue.Change change : changes )
+                {
+                    if( change.replace )
+                    {
+                        removedStates.add( change.entityURI );
+                    }
+                }
+                if( !removedStates.isEmpty() )
+                {
+                    connection.remove( null, null, null, removedStates.toArray( new Resource[ removedStates.size() ] ) );
+                }
+                final Set<EntityDescriptor> entityTypes = new HashSet<>();
+                for( RdfIndexingQueue.Change change : changes )
+                {
+                    if( change.statements != null )
+                    {
+                        connection.add( change.statements, change.entityURI );
+                        entityTypes.add( change.entityType );
+                    }
+                }
+                final Set<EntityDescriptor> newTypes = indexNewTypes( connection, entityTypes );
+                connection.commit();
+                indexedEntityTypes.addAll( newTypes );
+            }
+            catch( RepositoryException | RuntimeException e )
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.close();
+            }
+        }
+
+        private Set<EntityDescriptor> indexNewTypes( RepositoryConnection connection, Set<EntityDescriptor> entityTypes )
             throws RepositoryException
         {
-            // Index new types
+            // Index new types, they are marked as indexed once the transaction is committed
+            final Set<EntityDescriptor> newTypes = new HashSet<>();
             for( EntityDescriptor entityType : entityTypes )
             {
                 if( !indexedEntityTypes.contains( entityType ) )
                 {
                     indexEntityType( entityType, connection );
-                    indexedEntityTypes.add( entityType );
+                    newTypes.add( entityType );
                 }
             }
+            return newTypes;
         }
 
         private Set<EntityDescriptor> indexUpdates( Iterable<EntityState> entityStates, RepositoryConnection connection )
@@ -192,9 +353,14 @@ public interface RdfIndexingService
             if( entityState.entityDescriptor().queryable() )
             {
                 final URI entityURI = stateSerializer.createEntityURI( getValueFactory(), entityState.identity() );
-                Graph graph = new GraphImpl();
-                stateSerializer.serialize( entityState, false, graph );
-                connection.add( graph, entityURI );
+                try
+                {
+                    stateSerializer.serialize( entityState, false, new ConnectionGraph( connection, entityURI ) );
+                }
+                catch( IndexingFailure e )
+                {
+                    throw e.getCause();
+                }
             }
         }
 
@@ -228,5 +394,60 @@ public interface RdfIndexingService
         {
             return repository.get().getDataDir();
         }
+
+        /**
+         * Graph adding the statements straight to a connection, in the context of an Entity.
+         */
+        private class ConnectionGraph
+            extends GraphImpl
+        {
+            private final RepositoryConnection connection;
+            private final URI entityURI;
+
+            private ConnectionGraph( RepositoryConnection connection, URI entityURI )
+            {
+                super( getValueFactory() );
+                this.connection = connection;
+                this.entityURI = entityURI;
+            }
+
+            @Override
+            public boolean add( Resource subject, URI predicate, Value object, Resource... contexts )
+            {
+                try
+                {
+                    connection.add( subject, predicate, object, entityURI );
+                    return true;
+                }
+                catch( RepositoryException e )
+                {
+                    throw new IndexingFailure( e );
+                }
+            }
+
+            @Override
+            public boolean add( Statement statement )
+            {
+                return add( statement.getSubject(), statement.getPredicate(), statement.getObject() );
+            }
+        }
+
+        /**
+         * Carries a RepositoryException through the Graph interface.
+         */
+        private static final class IndexingFailure
+            extends RuntimeException
+        {
+            private IndexingFailure( RepositoryException cause )
+            {
+                super( cause );
+            }
+
+            @Override
+            public synchronized RepositoryException getCause()
+            {
+                return (RepositoryException) super.getCause();
+            }
+        }
     }
 }
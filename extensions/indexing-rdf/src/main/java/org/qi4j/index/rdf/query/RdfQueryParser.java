@@ -25,6 +25,22 @@ import org.qi4j.api.query.grammar.OrderBy;
 
 public interface RdfQueryParser
 {
+    /**
+     * Construct a query that can be executed again with other values of the same variables.
+     * <p>
+     * Variables compared to properties are left as SPARQL variables of the same name, bound on execution.
+     * </p>
+     *
+     * @return the query, or null if its text depends on the values of the variables
+     */
+    String constructPreparedQuery( Class<?> resultType,
+                                   Predicate<Composite> whereClause,
+                                   OrderBy[] orderBySegments,
+                                   Integer firstResult,
+                                   Integer maxResults,
+                                   Map<String, Object> variables
+    );
+
     String constructQuery( Class<?> resultType,
                            Predicate<Composite> whereClause,
                            OrderBy[] orderBySegments,
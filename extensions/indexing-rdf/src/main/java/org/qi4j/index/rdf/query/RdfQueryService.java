@@ -17,7 +17,10 @@
  */
 package org.qi4j.index.rdf.query;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import org.openrdf.query.QueryLanguage;
 import org.qi4j.api.composite.Composite;
@@ -30,19 +33,21 @@ import org.qi4j.api.query.grammar.QuerySpecification;
 import org.qi4j.api.service.ServiceComposite;
 import org.qi4j.spi.query.EntityFinder;
 import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.PreparedQuery;
+import org.qi4j.spi.query.PreparedQueryFinder;
 
 /**
  * JAVADOC Add JavaDoc
  */
 @Mixins( { RdfQueryService.RdfEntityFinderMixin.class } )
 public interface RdfQueryService
-    extends EntityFinder, RdfQueryParserFactory, ServiceComposite
+    extends EntityFinder, PreparedQueryFinder, RdfQueryParserFactory, ServiceComposite
 {
     /**
      * JAVADOC Add JavaDoc
      */
     public static class RdfEntityFinderMixin
-        implements EntityFinder
+        implements EntityFinder, PreparedQueryFinder
     {
 
         private static final QueryLanguage language = QueryLanguage.SPARQL;
@@ -117,5 +122,94 @@ public interface RdfQueryService
                 return tupleExecutor.performTupleQuery( language, query, variables, null );
             }
         }
+    
+        @Override
+        public PreparedQuery prepare( Class<?> resultType,
+                                      Predicate<Composite> whereClause,
+                                      OrderBy[] orderBySegments
+        )
+        {
+            if( QuerySpecification.isQueryLanguage( "SERQL", whereClause ) )
+            {
+                return null;
+            }
+            return new RdfPreparedQuery( resultType, whereClause, orderBySegments );
+        }
+
+        /**
+         * Prepared query, keeping the SPARQL text of each page once constructed. Variables are bound on execution.
+         */
+        private class RdfPreparedQuery
+            implements PreparedQuery
+        {
+            private final Class<?> resultType;
+            private final Predicate<Composite> whereClause;
+            private final OrderBy[] orderBySegments;
+            private final Map<List<Object>, String> queries = new ConcurrentHashMap<>();
+
+            private RdfPreparedQuery( Class<?> resultType,
+                                      Predicate<Composite> whereClause,
+                                      OrderBy[] orderBySegments
+            )
+            {
+                this.resultType = resultType;
+                this.whereClause = whereClause;
+                this.orderBySegments = orderBySegments;
+            }
+
+            @Override
+            public Iterable<EntityReference> findEntities( Integer firstResult,
+                                                           Integer maxResults,
+                                                           Map<String, Object> variables
+            )
+                throws EntityFinderException
+            {
+                CollectingQualifiedIdentityResultCallback collectingCallback = new CollectingQualifiedIdentityResultCallback();
+                String query = query( orderBySegments, firstResult, maxResults, variables );
+                tupleExecutor.performTupleQuery( language, query, variables, collectingCallback );
+                return collectingCallback.entities();
+            }
+
+            @Override
+            public EntityReference findEntity( Map<String, Object> variables )
+                throws EntityFinderException
+            {
+                final SingleQualifiedIdentityResultCallback singleCallback = new SingleQualifiedIdentityResultCallback();
+                String query = query( null, null, null, variables );
+                tupleExecutor.performTupleQuery( language, query, variables, singleCallback );
+                return singleCallback.qualifiedIdentity();
+            }
+
+            @Override
+            public long countEntities( Map<String, Object> variables )
+                throws EntityFinderException
+            {
+                String query = query( null, null, null, variables );
+                return tupleExecutor.performTupleQuery( language, query, variables, null );
+            }
+
+            private String query( OrderBy[] orderBy,
+                                  Integer firstResult,
+                                  Integer maxResults,
+                                  Map<String, Object> variables
+            )
+            {
+                List<Object> key = Arrays.<Object>asList( orderBy != null, firstResult, maxResults );
+                String query = queries.get( key );
+                if( query == null )
+                {
+                    query = queryParserFactory.newQueryParser( language )
+                        .constructPreparedQuery( resultType, whereClause, orderBy, firstResult, maxResults, variables );
+                    if( query == null )
+                    {
+                        // Depends on the values of the variables
+                        return queryParserFactory.newQueryParser( language )
+                            .constructQuery( resultType, whereClause, orderBy, firstResult, maxResults, variables );
+                    }
+                    queries.put( key, query );
+                }
+                return query;
+            }
+        }
     }
 }
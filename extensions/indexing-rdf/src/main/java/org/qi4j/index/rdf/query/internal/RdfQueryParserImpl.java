@@ -71,6 +71,8 @@ public class RdfQueryParserImpl
     private final Triples triples = new Triples( namespaces );
     private final ValueSerializer valueSerializer;
     private Map<String, Object> variables;
+    private boolean prepared;
+    private boolean reusable;
 
     static
     {
@@ -92,6 +94,21 @@ public class RdfQueryParserImpl
         this.valueSerializer = valueSerializer;
     }
 
+    @Override
+    public String constructPreparedQuery( final Class<?> resultType,
+                                          final Predicate<Composite> specification,
+                                          final OrderBy[] orderBySegments,
+                                          final Integer firstResult,
+                                          final Integer maxResults,
+                                          final Map<String, Object> variables
+    )
+    {
+        this.prepared = true;
+        this.reusable = true;
+        String query = constructQuery( resultType, specification, orderBySegments, firstResult, maxResults, variables );
+        return reusable ? query : null;
+    }
+
     @Override
     public String constructQuery( final Class<?> resultType,
                                   final Predicate<Composite> specification,
@@ -433,16 +450,16 @@ public class RdfQueryParserImpl
             // Don't use FILTER for equals-comparison. Do direct match instead
             if( predicate instanceof EqSpecification && allowInline )
             {
-                triple.setValue( "\"" + toString( comparisonSpecification.value() ) + "\"" );
+                triple.setValue( toLiteral( comparisonSpecification.value() ) );
             }
             else
             {
                 String valueVariable = triple.value();
                 builder.append( String.format(
-                    "(%s %s \"%s\")",
+                    "(%s %s %s)",
                     valueVariable,
                     getOperator( comparisonSpecification.getClass() ),
-                    toString( comparisonSpecification.value() ) ) );
+                    toLiteral( comparisonSpecification.value() ) ) );
             }
         }
         else
@@ -530,6 +547,21 @@ public class RdfQueryParserImpl
         return operator;
     }
 
+    private String toLiteral( Object value )
+    {
+        if( prepared && value instanceof Variable )
+        {
+            String variableName = ( (Variable) value ).variableName();
+            Object realValue = variables.get( variableName );
+            if( realValue != null && !( realValue instanceof EntityComposite ) )
+            {
+                // Bound as a plain literal on execution, see TupleQueryExecutor
+                return "?" + variableName;
+            }
+        }
+        return "\"" + toString( value ) + "\"";
+    }
+
     private String toString( Object value )
     {
         if( value == null )
@@ -543,6 +575,8 @@ public class RdfQueryParserImpl
         }
         else if( value instanceof Variable )
         {
+            // The query text now depends on the value of the Variable
+            reusable = false;
             Object realValue = variables.get( ( (Variable) value ).variableName() );
 
             if( realValue == null )
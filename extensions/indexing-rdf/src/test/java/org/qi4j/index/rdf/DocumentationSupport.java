@@ -19,6 +19,7 @@ import org.qi4j.bootstrap.ModuleAssembly;
 import org.qi4j.index.rdf.assembly.RdfMemoryStoreAssembler;
 import org.qi4j.index.rdf.assembly.RdfNativeSesameStoreAssembler;
 import org.qi4j.index.rdf.assembly.RdfRdbmsSesameStoreAssembler;
+import org.qi4j.index.rdf.indexing.AsynchronousRdfIndexing;
 
 public class DocumentationSupport
 {
@@ -68,4 +69,21 @@ public class DocumentationSupport
 
     }
 
+    class AsynchronousAssembler
+            implements Assembler
+    {
+
+        @Override
+        public void assemble( ModuleAssembly module )
+                throws AssemblyException
+        {
+            // START SNIPPET: async
+            new RdfNativeSesameStoreAssembler()
+                .withAsynchronousIndexing( new AsynchronousRdfIndexing( 500, 1000, 10000 ) )
+                .assemble( module );
+            // END SNIPPET: async
+        }
+
+    }
+
 }
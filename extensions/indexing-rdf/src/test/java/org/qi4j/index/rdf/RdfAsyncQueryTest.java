@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.rdf;
+
+import org.qi4j.bootstrap.ServiceDeclaration;
+import org.qi4j.index.rdf.indexing.AsynchronousRdfIndexing;
+import org.qi4j.index.rdf.indexing.RdfIndexingService;
+
+/**
+ * Run the query tests against asynchronously written indexes, with batches small enough to span UnitOfWorks.
+ */
+public class RdfAsyncQueryTest
+    extends RdfQueryTest
+{
+    @Override
+    protected void assembleIndexing( ServiceDeclaration indexing )
+    {
+        indexing.setMetaInfo( new AsynchronousRdfIndexing( 5, 100, 50 ) );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        module.findService( RdfIndexingService.class ).get().flush();
+    }
+}
@@ -26,6 +26,7 @@ import org.qi4j.api.common.Visibility;
 import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.ServiceDeclaration;
 import org.qi4j.index.rdf.query.RdfQueryParserFactory;
 import org.qi4j.library.fileconfig.FileConfigurationService;
 import org.qi4j.library.rdf.entity.EntityStateSerializer;
@@ -53,7 +54,7 @@ public class RdfQueryTest
         super.assemble( module );
         module.services( FileConfigurationService.class );
         module.services( NativeRepositoryService.class, RdfQueryParserFactory.class ).instantiateOnStartup();
-        module.services( RdfIndexingEngineService.class ).instantiateOnStartup();
+        assembleIndexing( module.services( RdfIndexingEngineService.class ).instantiateOnStartup() );
         module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
         module.objects( EntityStateSerializer.class, EntityTypeSerializer.class );
 
@@ -63,6 +64,10 @@ public class RdfQueryTest
         new EntityTestAssembler().assemble( config );
     }
 
+    protected void assembleIndexing( ServiceDeclaration indexing )
+    {
+    }
+
     @Test
     @Ignore( "oneOf() Query Expression not supported by RDF Indexing" )
     @Override
@@ -19,6 +19,7 @@ import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.bootstrap.Assembler;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.ServiceDeclaration;
 import org.qi4j.library.rdf.entity.EntityStateSerializer;
 import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationService;
 
@@ -28,15 +29,34 @@ import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationService;
 public class SolrAssembler
    implements Assembler
 {
+   private SolrCommitPolicy commitPolicy;
+
+   /**
+    * Commit changes within a delay instead of when each UnitOfWork completes.
+    *
+    * @param commitPolicy commit policy
+    *
+    * @return this Assembler
+    */
+   public SolrAssembler withCommitPolicy( SolrCommitPolicy commitPolicy )
+   {
+      this.commitPolicy = commitPolicy;
+      return this;
+   }
+
     @Override
    public void assemble( ModuleAssembly module ) throws AssemblyException
    {
       module.services( EmbeddedSolrService.class ).identifiedBy( "solr" ).instantiateOnStartup();
 
-      module.services( SolrQueryService.class ).
+      ServiceDeclaration query = module.services( SolrQueryService.class ).
             taggedWith( "solr", "search" ).
             identifiedBy( "solrquery" ).
             visibleIn( Visibility.application );
+      if( commitPolicy != null )
+      {
+         query.setMetaInfo( commitPolicy );
+      }
       module.services( OrgJsonValueSerializationService.class ).taggedWith( ValueSerialization.Formats.JSON );
       module.objects( EntityStateSerializer.class );
    }
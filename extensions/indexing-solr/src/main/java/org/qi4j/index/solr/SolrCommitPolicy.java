@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.solr;
+
+import java.io.Serializable;
+
+/**
+ * Solr commit policy meta-info.
+ * <p>
+ * Without it, the changes of each UnitOfWork are sent to Solr and committed when the UnitOfWork completes, which
+ * opens a new searcher every time. With it, changes are held and coalesced by document id, then sent and committed
+ * together at most {@link #commitWithin()} milliseconds after the first of them. Searches see changes once they are
+ * committed.
+ * </p>
+ */
+public final class SolrCommitPolicy
+    implements Serializable
+{
+    private final long commitWithin;
+
+    /**
+     * @param commitWithin maximum time in milliseconds a change waits to be committed
+     */
+    public SolrCommitPolicy( long commitWithin )
+    {
+        this.commitWithin = commitWithin;
+    }
+
+    public long commitWithin()
+    {
+        return commitWithin;
+    }
+}
@@ -18,8 +18,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.SolrInputDocument;
@@ -40,7 +44,9 @@ import org.openrdf.model.impl.URIImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.index.solr.EmbeddedSolrService;
+import org.qi4j.index.solr.SolrCommitPolicy;
 import org.qi4j.index.solr.SolrQueryService;
 import org.qi4j.library.rdf.entity.EntityStateSerializer;
 import org.qi4j.spi.entity.EntityState;
@@ -51,7 +57,11 @@ import org.slf4j.LoggerFactory;
 import static org.qi4j.functional.Iterables.first;
 
 /**
- * JAVADOC
+ * Index Entity states as Solr documents.
+ * <p>
+ * Changes are committed when each UnitOfWork completes, or within a delay when a {@link SolrCommitPolicy} is set on
+ * the service, coalescing the changes to the same document.
+ * </p>
  */
 public abstract class SolrEntityIndexerMixin
         implements SolrQueryService
@@ -62,11 +72,19 @@ public abstract class SolrEntityIndexerMixin
     @Uses
     private EntityStateSerializer stateSerializer;
 
+    @Uses
+    private ServiceDescriptor descriptor;
+
     private ValueFactory valueFactory = new ValueFactoryImpl();
 
     private SolrServer server;
     private Map<String, SchemaField> indexedFields;
 
+    private SolrCommitPolicy commitPolicy;
+    private ScheduledThreadPoolExecutor committer;
+    private final Map<String, SolrInputDocument> pending = new LinkedHashMap<String, SolrInputDocument>();
+    private boolean commitScheduled;
+
     Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Override
@@ -81,11 +99,40 @@ public abstract class SolrEntityIndexerMixin
         {
             solrCore.close();
         }
+        commitPolicy = descriptor.metaInfo( SolrCommitPolicy.class );
+        if( commitPolicy != null )
+        {
+            committer = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable, "solr-commit-" + descriptor.identity() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
     }
 
     @Override
     public void releaseSolrSchema()
     {
+        if( committer != null )
+        {
+            // Commit what is pending now rather than waiting for the scheduled commit
+            committer.setExecuteExistingDelayedTasksAfterShutdownPolicy( false );
+            committer.shutdown();
+            try
+            {
+                committer.awaitTermination( 1, TimeUnit.MINUTES );
+            } catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            committer = null;
+            commitPending();
+        }
         server = null;
         indexedFields = null;
     }
@@ -95,40 +142,50 @@ public abstract class SolrEntityIndexerMixin
     {
         try
         {
-            try
+            // Figure out what to update, a null document stands for a deletion
+            Map<String, SolrInputDocument> changes = new LinkedHashMap<String, SolrInputDocument>();
+            for( EntityState entityState : entityStates )
             {
-                // Figure out what to update
-                List<String> deleted = null;
-                List<SolrInputDocument> added = new ArrayList<SolrInputDocument>();
-                for( EntityState entityState : entityStates )
+                if( entityState.entityDescriptor().queryable() )
                 {
-                    if( entityState.entityDescriptor().queryable() )
+                    if( entityState.status().equals( EntityStatus.REMOVED ) )
                     {
-                        if( entityState.status().equals( EntityStatus.REMOVED ) )
-                        {
-                            if( deleted == null )
-                                deleted = new ArrayList<String>();
-                            deleted.add( entityState.identity().identity() );
-                        } else if( entityState.status().equals( EntityStatus.UPDATED ) )
-                        {
-                            added.add( indexEntityState( entityState, server ) );
-                        } else if( entityState.status().equals( EntityStatus.NEW ) )
-                        {
-                            added.add( indexEntityState( entityState, server ) );
-                        }
+                        changes.put( entityState.identity().identity(), null );
+                    } else if( entityState.status().equals( EntityStatus.UPDATED ) )
+                    {
+                        changes.put( entityState.identity().identity(), indexEntityState( entityState, server ) );
+                    } else if( entityState.status().equals( EntityStatus.NEW ) )
+                    {
+                        changes.put( entityState.identity().identity(), indexEntityState( entityState, server ) );
                     }
                 }
+            }
 
-                // Send changes to Solr
-                if( deleted != null )
-                    server.deleteById( deleted );
-                if( !added.isEmpty() )
-                    server.add( added );
-            } finally
+            if( committer == null )
+            {
+                send( changes );
+            } else
             {
-                if( server != null )
+                synchronized( pending )
                 {
-                    server.commit( false, false );
+                    for( Map.Entry<String, SolrInputDocument> change : changes.entrySet() )
+                    {
+                        // Remove first so that the last change to a document keeps its place
+                        pending.remove( change.getKey() );
+                        pending.put( change.getKey(), change.getValue() );
+                    }
+                    if( !commitScheduled && !pending.isEmpty() )
+                    {
+                        committer.schedule( new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                commitPending();
+                            }
+                        }, commitPolicy.commitWithin(), TimeUnit.MILLISECONDS );
+                        commitScheduled = true;
+                    }
                 }
             }
         } catch( Throwable e )
@@ -138,6 +195,56 @@ public abstract class SolrEntityIndexerMixin
         }
     }
 
+    private void commitPending()
+    {
+        Map<String, SolrInputDocument> changes;
+        synchronized( pending )
+        {
+            changes = new LinkedHashMap<String, SolrInputDocument>( pending );
+            pending.clear();
+            commitScheduled = false;
+        }
+        try
+        {
+            send( changes );
+        } catch( Throwable e )
+        {
+            // Nobody to throw to, the UnitOfWorks have already been committed
+            logger.error( "Could not update Solr, " + changes.size() + " changes lost", e );
+        }
+    }
+
+    private void send( Map<String, SolrInputDocument> changes )
+            throws IOException, SolrServerException
+    {
+        if( server == null || changes.isEmpty() )
+        {
+            return;
+        }
+        List<String> deleted = new ArrayList<String>();
+        List<SolrInputDocument> added = new ArrayList<SolrInputDocument>();
+        for( Map.Entry<String, SolrInputDocument> change : changes.entrySet() )
+        {
+            if( change.getValue() == null )
+                deleted.add( change.getKey() );
+            else
+                added.add( change.getValue() );
+        }
+
+        // Send changes to Solr
+        try
+        {
+            if( !deleted.isEmpty() )
+                server.deleteById( deleted );
+            if( !added.isEmpty() )
+                server.add( added );
+        } finally
+        {
+            server.commit( false, false );
+        }
+        logger.debug( "Committed {} deletions and {} additions", deleted.size(), added.size() );
+    }
+
     private SolrInputDocument indexEntityState( final EntityState entityState,
                                                 final SolrServer server )
             throws IOException, SolrServerException, JSONException
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.function.Predicate;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -31,6 +32,7 @@ import org.qi4j.api.common.Optional;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.query.QueryExecutionException;
 import org.qi4j.api.query.grammar.OrderBy;
 import org.qi4j.api.query.grammar.QuerySpecification;
 import org.qi4j.functional.Iterables;
@@ -42,7 +44,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * JAVADOC
+ * Find Entities with native Solr queries.
+ * <p>
+ * Queries without a maximum number of results are streamed, their results are fetched page by page while iterating.
+ * </p>
  */
 public class SolrEntityQueryMixin
         implements EntityFinder, SolrSearch
@@ -50,40 +55,33 @@ public class SolrEntityQueryMixin
     @Service
     private EmbeddedSolrService solr;
 
+    private static final int FETCH_SIZE = 500;
+
     private Logger logger = LoggerFactory.getLogger( SolrEntityQueryMixin.class );
 
     @Override
     public Iterable<EntityReference> findEntities( Class<?> resultType, @Optional Predicate<Composite> whereClause, @Optional OrderBy[] orderBySegments, @Optional Integer firstResult, @Optional Integer maxResults, Map<String, Object> variables ) throws EntityFinderException
     {
-        try
-        {
-            QuerySpecification expr = (QuerySpecification) whereClause;
-
-            SolrServer server = solr.solrServer();
+        final QuerySpecification expr = (QuerySpecification) whereClause;
+        final String sort = sort( orderBySegments );
+        final int start = firstResult == null ? 0 : firstResult;
 
-            NamedList<Object> list = new NamedList<Object>();
-
-            list.add( "q", expr.query() );
-            list.add( "rows", maxResults != 0 ? maxResults : 10000 );
-            list.add( "start", firstResult );
-
-            if( orderBySegments != null && orderBySegments.length > 0 )
+        if( maxResults == null )
+        {
+            // Stream the results page by page, only when iterated
+            return new Iterable<EntityReference>()
             {
-                for( OrderBy orderBySegment : orderBySegments )
+                @Override
+                public Iterator<EntityReference> iterator()
                 {
-                    String propName = ((Member)orderBySegment.property().accessor()).getName() + "_for_sort";
-                    String order = orderBySegment.order() == OrderBy.Order.ASCENDING ? "asc" : "desc";
-                    list.add( "sort", propName + " " + order );
-
+                    return new CursorIterator( expr.query(), sort, start );
                 }
-            }
-
-            SolrParams solrParams = SolrParams.toSolrParams( list );
-            logger.debug( "Search:" + list.toString() );
-
-            QueryResponse query = server.query( solrParams );
+            };
+        }
 
-            SolrDocumentList results = query.getResults();
+        try
+        {
+            SolrDocumentList results = query( expr.query(), sort, null, start, maxResults != 0 ? maxResults : 10000 );
 
             List<EntityReference> references = new ArrayList<EntityReference>( results.size() );
             for( SolrDocument result : results )
@@ -127,4 +125,116 @@ public class SolrEntityQueryMixin
         QueryResponse query = server.query( SolrParams.toSolrParams( list ) );
         return query.getResults();
     }
+
+    private String sort( OrderBy[] orderBySegments )
+    {
+        StringBuilder sort = new StringBuilder();
+        if( orderBySegments != null )
+        {
+            for( OrderBy orderBySegment : orderBySegments )
+            {
+                String propName = ((Member)orderBySegment.property().accessor()).getName() + "_for_sort";
+                String order = orderBySegment.order() == OrderBy.Order.ASCENDING ? "asc" : "desc";
+                sort.append( propName ).append( ' ' ).append( order ).append( ", " );
+            }
+        }
+        // Documents with equal sort values keep a stable order across pages
+        return sort.append( "id asc" ).toString();
+    }
+
+    private SolrDocumentList query( String queryString, String sort, String filter, int start, int rows )
+            throws SolrServerException
+    {
+        NamedList<Object> list = new NamedList<Object>();
+
+        list.add( "q", queryString );
+        list.add( "rows", rows );
+        list.add( "start", start );
+        list.add( "sort", sort );
+        list.add( "fl", "id" );
+        if( filter != null )
+        {
+            list.add( "fq", filter );
+        }
+
+        SolrParams solrParams = SolrParams.toSolrParams( list );
+        logger.debug( "Search:" + list.toString() );
+
+        QueryResponse query = solr.solrServer().query( solrParams );
+        return query.getResults();
+    }
+
+    /**
+     * Iterate over all the results of a query, fetching them page by page.
+     * <p>
+     * Solr 1.4 has no cursors. When the results are only sorted by id, the next page is sought with a filter on the
+     * last id read, so deep pages cost no more than the first one. Otherwise the next page is read with an offset.
+     * </p>
+     */
+    private class CursorIterator
+            implements Iterator<EntityReference>
+    {
+        private final String queryString;
+        private final String sort;
+        private final boolean seek;
+        private int start;
+        private String lastId;
+        private Iterator<SolrDocument> page;
+        private boolean lastPage;
+
+        private CursorIterator( String queryString, String sort, int start )
+        {
+            this.queryString = queryString;
+            this.sort = sort;
+            this.seek = "id asc".equals( sort );
+            this.start = start;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if( page != null && page.hasNext() )
+            {
+                return true;
+            }
+            if( lastPage )
+            {
+                return false;
+            }
+            try
+            {
+                String filter = seek && lastId != null ? "id:{" + quote( lastId ) + " TO *}" : null;
+                SolrDocumentList results = query( queryString, sort, filter, start, FETCH_SIZE );
+                lastPage = results.size() < FETCH_SIZE;
+                start = seek ? 0 : start + results.size();
+                page = results.iterator();
+                return page.hasNext();
+            } catch( SolrServerException e )
+            {
+                throw new QueryExecutionException( "Could not search Solr", e );
+            }
+        }
+
+        @Override
+        public EntityReference next()
+        {
+            if( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            lastId = page.next().getFirstValue( "id" ).toString();
+            return EntityReference.parseEntityReference( lastId );
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        private String quote( String id )
+        {
+            return '"' + id.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + '"';
+        }
+    }
 }
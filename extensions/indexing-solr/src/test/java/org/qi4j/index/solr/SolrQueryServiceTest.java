@@ -34,7 +34,9 @@ import org.qi4j.test.AbstractQi4jTest;
 import org.qi4j.test.EntityTestAssembler;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.junit.Rule;
 import org.qi4j.library.fileconfig.FileConfigurationOverride;
 import org.qi4j.test.util.DelTreeAfter;
@@ -112,6 +114,30 @@ public class SolrQueryServiceTest
         Assert.assertThat( lookAhead.toString(), equalTo( "[Hello World]" ) );
     }
 
+    @Test
+    public void testStreamingQuery()
+        throws UnitOfWorkCompletionException
+    {
+        // More results than fit in a page
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int idx = 0; idx < 1234; idx++ )
+        {
+            uow.newEntity( TestEntity.class ).name().set( "Streaming " + idx );
+        }
+        uow.complete();
+
+        uow = module.newUnitOfWork();
+        Query<TestEntity> query = uow.newQuery( module.newQueryBuilder( TestEntity.class ).where( SolrExpressions.search( "streaming" ) ) );
+        Set<String> names = new HashSet<String>();
+        for( TestEntity test : query )
+        {
+            Assert.assertTrue( test.name().get(), names.add( test.name().get() ) );
+        }
+        Assert.assertThat( names.size(), equalTo( 1234 ) );
+
+        uow.discard();
+    }
+
     public interface TestEntity
         extends EntityComposite
     {
@@ -22,7 +22,9 @@ import org.qi4j.api.service.ServiceComposite;
 import org.qi4j.index.sql.internal.SQLEntityFinder;
 import org.qi4j.index.sql.internal.SQLStateChangeListener;
 import org.qi4j.spi.entitystore.StateChangeListener;
+import org.qi4j.spi.query.AggregationFinder;
 import org.qi4j.spi.query.EntityFinder;
+import org.qi4j.spi.query.ProjectionFinder;
 
 /**
  * This is actual service responsible of managing indexing and queries and creating database structure.
@@ -38,6 +40,6 @@ import org.qi4j.spi.query.EntityFinder;
     SQLStateChangeListener.class
 } )
 public interface SQLIndexingEngineService
-        extends StateChangeListener, EntityFinder, ServiceComposite
+        extends StateChangeListener, EntityFinder, ProjectionFinder, AggregationFinder, ServiceComposite
 {
 }
@@ -18,34 +18,114 @@
  */
 package org.qi4j.index.sql.internal;
 
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Member;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.sql.ResultSetMetaData;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import javax.sql.DataSource;
 import org.qi4j.api.common.Optional;
 import org.qi4j.api.composite.Composite;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.Structure;
+import org.qi4j.api.query.AggregationResult;
+import org.qi4j.api.query.Projection;
+import org.qi4j.api.query.QueryExecutionException;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.AssociationFunction;
+import org.qi4j.api.query.grammar.PropertyFunction;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkCallback;
+import org.qi4j.api.value.ValueComposite;
+import org.qi4j.index.sql.support.api.SQLQueryValues;
 import org.qi4j.index.sql.support.api.SQLQuerying;
 import org.qi4j.library.sql.common.SQLUtil;
+import org.qi4j.spi.query.AggregationFinder;
+import org.qi4j.spi.query.Aggregations;
 import org.qi4j.spi.query.EntityFinder;
 import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.PreparedQuery;
+import org.qi4j.spi.query.PreparedQueryFinder;
+import org.qi4j.spi.query.ProjectionFinder;
+import org.qi4j.spi.query.Projections;
+import org.qi4j.spi.query.QueryCacheKey;
 
+/**
+ * EntityFinder running the SQL queries constructed by {@link SQLQuerying}.
+ * <p>
+ * Pages of ordered queries remember the seek key of their last row. When the following page is asked for, the rows
+ * after that key are sought instead of skipping all the preceding rows with an offset. Seek keys are only remembered
+ * and used while the index does not change, as notified through {@link IndexChanges}; pages asked for after a change
+ * skip to their exact offset again. Changes made to the index by other applications are not noticed. Only queries
+ * ordered by properties that can not be NULL are sought, so that seeking does not depend on how the database orders
+ * NULL values.
+ * </p>
+ * <p>
+ * Unpaged results are streamed from the database while iterated, holding a connection until the end of the iteration
+ * or of the current UnitOfWork, whichever comes first. Outside of a UnitOfWork, all rows are read at once.
+ * </p>
+ */
 public class SQLEntityFinder
-    implements EntityFinder
+    implements EntityFinder, ProjectionFinder, AggregationFinder, PreparedQueryFinder, IndexChanges
 {
+    /**
+     * Maximum amount of identities in one projection query.
+     */
+    private static final int PROJECTION_BATCH_SIZE = 500;
+
+    /**
+     * Amount of rows fetched at a time when streaming unpaged results.
+     */
+    private static final int FETCH_SIZE = 500;
+
+    /**
+     * Maximum amount of remembered seek keys.
+     */
+    private static final int MAX_SEEK_KEYS = 1000;
+
+    private final Map<QueryCacheKey, SeekKey> seekKeys = Collections.synchronizedMap(
+        new LinkedHashMap<QueryCacheKey, SeekKey>( 16, 0.75F, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<QueryCacheKey, SeekKey> eldest )
+            {
+                return size() > MAX_SEEK_KEYS;
+            }
+        } );
+
+    /**
+     * Amount of index changes started and ended, the index being unchanged while both are equal.
+     */
+    private final AtomicLong changesStarted = new AtomicLong();
+    private final AtomicLong changesEnded = new AtomicLong();
+
     @Service
     private SQLQuerying parser;
 
     @Service
     private DataSource _dataSource;
 
+    @Structure
+    private Module module;
+
     /**
      * Helper interface to perform some SQL query. Using this simplifies the structure of some of the methods.
      *
@@ -57,6 +137,20 @@ public class SQLEntityFinder
             throws SQLException;
     }
 
+    @Override
+    public void indexChanging()
+    {
+        this.changesStarted.incrementAndGet();
+        this.seekKeys.clear();
+    }
+
+    @Override
+    public void indexChanged()
+    {
+        this.changesEnded.incrementAndGet();
+        this.seekKeys.clear();
+    }
+
     @Override
     public long countEntities( Class<?> resultType, @Optional Predicate<Composite> whereClause, Map<String, Object> variables )
         throws EntityFinderException
@@ -66,6 +160,236 @@ public class SQLEntityFinder
         final String query = this.parser.constructQuery( resultType, whereClause, null, null, null, variables, values,
                                                          valueSQLTypes, true );
 
+        return this.count( query, values, valueSQLTypes );
+    }
+
+    @Override
+    public Iterable<EntityReference> findEntities( Class<?> resultType,
+                                                   @Optional Predicate<Composite> whereClause,
+                                                   @Optional OrderBy[] orderBySegments,
+                                                   @Optional Integer firstResult,
+                                                   @Optional Integer maxResults,
+                                                   Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        // TODO what is Qi4j's policy on negative firstResult and/or maxResults? JDBC has its own way of interpreting
+        // these values - does it match with Qi4j's way?
+        Iterable<EntityReference> result;
+        if( maxResults == null || maxResults > 0 )
+        {
+            final List<Object> values = new ArrayList<>();
+            final List<Integer> valueSQLTypes = new ArrayList<>();
+            Page page = orderBySegments == null || maxResults == null || !isNotNull( resultType, orderBySegments )
+                        ? null
+                        : new Page( resultType, whereClause, orderBySegments, firstResult, variables, generation() );
+            QueryCacheKey pageKey = page == null || page.firstResult == 0 ? null : page.key( 0 );
+            SeekKey after = pageKey == null ? null : this.seekKeys.get( pageKey );
+            if( after == null || after.generation != page.generation )
+            {
+                final String query = this.parser.constructQuery( resultType, whereClause, orderBySegments, firstResult,
+                                                                 maxResults, variables, values, valueSQLTypes, false );
+                result = this.find( query, values, valueSQLTypes, firstResult, maxResults, page );
+            }
+            else
+            {
+                final String query = this.parser.constructSeekQuery( resultType, whereClause, orderBySegments,
+                                                                     after.values, after.valueSQLTypes, maxResults,
+                                                                     variables, values, valueSQLTypes );
+                result = this.find( query, values, valueSQLTypes, null, maxResults, page );
+            }
+        }
+        else
+        {
+            result = new ArrayList<>( 0 );
+        }
+
+        return result;
+    }
+
+    @Override
+    public Iterable<Projection> findProjections( Class<?> resultType,
+                                                @Optional Predicate<Composite> whereClause,
+                                                @Optional OrderBy[] orderBySegments,
+                                                @Optional Integer firstResult,
+                                                @Optional Integer maxResults,
+                                                Map<String, Object> variables,
+                                                PropertyFunction<?>[] properties )
+        throws EntityFinderException
+    {
+        final Class<?>[] types = new Class<?>[ properties.length ];
+        for( int idx = 0; idx < properties.length; idx++ )
+        {
+            if( this.parser.constructProjectionQuery( properties[ idx ], 1 ) == null )
+            {
+                return null;
+            }
+            types[ idx ] = Projections.propertyType( properties[ idx ] );
+        }
+
+        // Find the entities first, for ordering and paging, then read each property from its table
+        final List<EntityReference> identities = new ArrayList<>();
+        for( EntityReference identity : this.findEntities( resultType, whereClause, orderBySegments,
+                                                           firstResult, maxResults, variables ) )
+        {
+            identities.add( identity );
+        }
+
+        final Map<EntityReference, Object[]> rows = new HashMap<>( identities.size() );
+        for( EntityReference identity : identities )
+        {
+            rows.put( identity, new Object[ properties.length ] );
+        }
+        for( int start = 0; start < identities.size(); start += PROJECTION_BATCH_SIZE )
+        {
+            final List<EntityReference> batch =
+                identities.subList( start, Math.min( start + PROJECTION_BATCH_SIZE, identities.size() ) );
+            for( int idx = 0; idx < properties.length; idx++ )
+            {
+                final int column = idx;
+                final String query = this.parser.constructProjectionQuery( properties[ idx ], batch.size() );
+                this.performQuery( new DoQuery<Void>()
+                {
+                    @Override
+                    public Void doIt( Connection connection )
+                        throws SQLException
+                    {
+                        PreparedStatement ps = null;
+                        ResultSet rs = null;
+                        try
+                        {
+                            ps = connection.prepareStatement( query );
+                            for( int i = 0; i < batch.size(); ++i )
+                            {
+                                ps.setString( i + 1, batch.get( i ).identity() );
+                            }
+                            rs = ps.executeQuery();
+                            while( rs.next() )
+                            {
+                                Object[] row = rows.get( new EntityReference( rs.getString( 1 ) ) );
+                                if( row != null )
+                                {
+                                    row[ column ] = Projections.coerce( rs.getObject( 2 ), types[ column ] );
+                                }
+                            }
+                        }
+                        finally
+                        {
+                            SQLUtil.closeQuietly( rs );
+                            SQLUtil.closeQuietly( ps );
+                        }
+                        return null;
+                    }
+                } );
+            }
+        }
+
+        List<PropertyFunction<?>> projected = Arrays.asList( properties );
+        List<Projection> result = new ArrayList<>( identities.size() );
+        for( EntityReference identity : identities )
+        {
+            result.add( new Projection( identity, projected, rows.get( identity ) ) );
+        }
+        return result;
+    }
+
+    @Override
+    public Iterable<AggregationResult> findAggregations( Class<?> resultType,
+                                                        @Optional Predicate<Composite> whereClause,
+                                                        Map<String, Object> variables,
+                                                        final PropertyFunction<?>[] groupBy,
+                                                        final Aggregation<?>[] aggregations )
+        throws EntityFinderException
+    {
+        final List<Object> values = new ArrayList<>();
+        final List<Integer> valueSQLTypes = new ArrayList<>();
+        final String query = this.parser.constructAggregateQuery( resultType, whereClause, variables, values,
+                                                                  valueSQLTypes, groupBy, aggregations );
+        if( query == null )
+        {
+            return null;
+        }
+
+        final Class<?>[] groupTypes = new Class<?>[ groupBy.length ];
+        for( int idx = 0; idx < groupBy.length; idx++ )
+        {
+            groupTypes[ idx ] = Projections.propertyType( groupBy[ idx ] );
+        }
+        final List<PropertyFunction<?>> groupByList = Arrays.<PropertyFunction<?>>asList( groupBy );
+        final List<Aggregation<?>> aggregationList = Arrays.<Aggregation<?>>asList( aggregations );
+
+        return this.performQuery( new DoQuery<Iterable<AggregationResult>>()
+        {
+            @Override
+            public Iterable<AggregationResult> doIt( Connection connection )
+                throws SQLException
+            {
+                PreparedStatement ps = null;
+                ResultSet rs = null;
+                Map<List<Object>, Object[]> groups = new HashMap<>();
+                try
+                {
+                    ps = createPS( connection, query, values, valueSQLTypes );
+                    rs = ps.executeQuery();
+                    while( rs.next() )
+                    {
+                        List<Object> group = new ArrayList<>( groupBy.length );
+                        for( int idx = 0; idx < groupBy.length; idx++ )
+                        {
+                            group.add( Projections.coerce( rs.getObject( idx + 1 ), groupTypes[ idx ] ) );
+                        }
+                        Object[] row = new Object[ aggregations.length ];
+                        for( int idx = 0; idx < aggregations.length; idx++ )
+                        {
+                            row[ idx ] = Aggregations.coerce( aggregations[ idx ],
+                                                              rs.getObject( groupBy.length + idx + 1 ) );
+                        }
+                        groups.put( group, row );
+                    }
+                }
+                finally
+                {
+                    SQLUtil.closeQuietly( rs );
+                    SQLUtil.closeQuietly( ps );
+                }
+
+                // Sort here, as databases differ in where they put NULL groups
+                List<List<Object>> keys = new ArrayList<>( groups.keySet() );
+                keys.sort( Aggregations.GROUP_ORDER );
+                List<AggregationResult> result = new ArrayList<>( keys.size() );
+                for( List<Object> key : keys )
+                {
+                    result.add( new AggregationResult( groupByList, key.toArray(), aggregationList, groups.get( key ) ) );
+                }
+                return result;
+            }
+        } );
+    }
+
+    @Override
+    public EntityReference findEntity( Class<?> resultType,
+                                       @Optional Predicate<Composite> whereClause,
+                                       Map<String, Object> variables )
+        throws EntityFinderException
+    {
+        final List<Object> values = new ArrayList<>();
+        final List<Integer> valueSQLTypes = new ArrayList<>();
+        final String query = this.parser.constructQuery( resultType, whereClause, null, null, null, variables, values,
+                                                         valueSQLTypes, false );
+
+        return this.findFirst( query, values, valueSQLTypes );
+    }
+
+    @Override
+    public PreparedQuery prepare( Class<?> resultType,
+                                  @Optional Predicate<Composite> whereClause,
+                                  @Optional OrderBy[] orderBySegments )
+    {
+        return new SQLTextCachingQuery( resultType, whereClause, orderBySegments );
+    }
+
+    private long count( final String query, final List<Object> values, final List<Integer> valueSQLTypes )
+        throws EntityFinderException
+    {
         return this.performQuery( new DoQuery<Long>()
         {
 
@@ -91,85 +415,219 @@ public class SQLEntityFinder
         } );
     }
 
-    @Override
-    public Iterable<EntityReference> findEntities( Class<?> resultType,
-                                                   @Optional Predicate<Composite> whereClause,
-                                                   @Optional OrderBy[] orderBySegments,
-                                                   @Optional final Integer firstResult,
-                                                   @Optional final Integer maxResults,
-                                                   Map<String, Object> variables )
+    /**
+     * @param page The page to remember the seek key of the last row of, if any.
+     */
+    private Iterable<EntityReference> find( final String query,
+                                            final List<Object> values,
+                                            final List<Integer> valueSQLTypes,
+                                            final Integer firstResult,
+                                            final Integer maxResults,
+                                            final Page page )
         throws EntityFinderException
     {
-        // TODO what is Qi4j's policy on negative firstResult and/or maxResults? JDBC has its own way of interpreting
-        // these values - does it match with Qi4j's way?
-        Iterable<EntityReference> result;
-        if( maxResults == null || maxResults > 0 )
+        if( maxResults == null )
         {
-            final List<Object> values = new ArrayList<>();
-            final List<Integer> valueSQLTypes = new ArrayList<>();
-            final String query = this.parser.constructQuery( resultType, whereClause, orderBySegments, firstResult,
-                                                             maxResults, variables, values, valueSQLTypes, false );
-
-            result = this.performQuery( new DoQuery<Iterable<EntityReference>>()
+            return new Iterable<EntityReference>()
             {
                 @Override
-                public Iterable<EntityReference> doIt( Connection connection )
-                    throws SQLException
+                public Iterator<EntityReference> iterator()
+                {
+                    return stream( query, values, valueSQLTypes, firstResult );
+                }
+            };
+        }
+        return this.performQuery( new DoQuery<Iterable<EntityReference>>()
+        {
+            @Override
+            public Iterable<EntityReference> doIt( Connection connection )
+                throws SQLException
+            {
+                PreparedStatement ps = null;
+                ResultSet rs = null;
+                List<EntityReference> resultList = new ArrayList<>( maxResults );
+                try
                 {
-                    PreparedStatement ps = null;
-                    ResultSet rs = null;
-                    List<EntityReference> resultList = new ArrayList<>( maxResults == null ? 100 : maxResults );
-                    try
+                    Integer rsType = parser.getResultSetType( firstResult, maxResults );
+                    ps = createPS( connection, query, values, valueSQLTypes,
+                                   rsType, ResultSet.CLOSE_CURSORS_AT_COMMIT );
+                    ps.setFetchSize( Math.min( maxResults, FETCH_SIZE ) );
+                    rs = ps.executeQuery();
+                    if( firstResult != null
+                        && !parser.isFirstResultSettingSupported()
+                        && rsType != ResultSet.TYPE_FORWARD_ONLY )
                     {
-                        // TODO possibility to further optimize by setting fetch size (not too small not too little).
-                        Integer rsType = parser.getResultSetType( firstResult, maxResults );
-                        ps = createPS( connection, query, values, valueSQLTypes,
-                                       rsType, ResultSet.CLOSE_CURSORS_AT_COMMIT );
-                        rs = ps.executeQuery();
-                        if( firstResult != null
-                            && !parser.isFirstResultSettingSupported()
-                            && rsType != ResultSet.TYPE_FORWARD_ONLY )
-                        {
-                            rs.absolute( firstResult );
-                        }
-                        Integer i = 0;
-                        while( rs.next() && ( maxResults == null || i < maxResults ) )
-                        {
-                            resultList.add( new EntityReference( rs.getString( 1 ) ) );
-                            ++i;
-                        }
+                        rs.absolute( firstResult );
                     }
-                    finally
+                    Integer i = 0;
+                    while( i < maxResults && rs.next() )
                     {
-                        SQLUtil.closeQuietly( rs );
-                        SQLUtil.closeQuietly( ps );
+                        resultList.add( new EntityReference( rs.getString( 1 ) ) );
+                        ++i;
+                    }
+                    if( page != null && i.equals( maxResults ) )
+                    {
+                        rememberSeekKey( page, page.key( i ), rs );
                     }
-
-                    return resultList;
                 }
+                finally
+                {
+                    SQLUtil.closeQuietly( rs );
+                    SQLUtil.closeQuietly( ps );
+                }
+
+                return resultList;
+            }
 
-            } );
+        } );
+    }
 
+    /**
+     * @return the amount of index changes, or -1 while the index is changing
+     */
+    private long generation()
+    {
+        long started = this.changesStarted.get();
+        return started == this.changesEnded.get() ? started : -1;
+    }
+
+    /**
+     * Remember the seek key of the current row, which the page starting at the following row can seek to, unless the
+     * index changed while the page was read.
+     */
+    private void rememberSeekKey( Page page, QueryCacheKey key, ResultSet rs )
+        throws SQLException
+    {
+        if( key == null || page.generation < 0 || page.generation != this.changesStarted.get() )
+        {
+            return;
         }
-        else
+        ResultSetMetaData metaData = rs.getMetaData();
+        List<Object> values = new ArrayList<>();
+        List<Integer> valueSQLTypes = new ArrayList<>();
+        for( int column = 2; column <= metaData.getColumnCount(); ++column )
         {
-            result = new ArrayList<>( 0 );
+            Object value = rs.getObject( column );
+            if( value == null )
+            {
+                return;
+            }
+            values.add( value );
+            valueSQLTypes.add( metaData.getColumnType( column ) );
         }
+        this.seekKeys.put( key, new SeekKey( values, valueSQLTypes, page.generation ) );
+    }
 
-        return result;
+    /**
+     * Execute the query and iterate its rows as they are fetched.
+     */
+    private Iterator<EntityReference> stream( String query,
+                                              List<Object> values,
+                                              List<Integer> valueSQLTypes,
+                                              Integer firstResult )
+    {
+        Connection connection = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try
+        {
+            connection = this._dataSource.getConnection();
+            connection.setReadOnly( true );
+            // Rows are fetched by FETCH_SIZE only inside a transaction, otherwise PostgreSQL returns them all at once
+            connection.setAutoCommit( false );
+            Integer rsType = this.parser.getResultSetType( firstResult, null );
+            ps = this.createPS( connection, query, values, valueSQLTypes, rsType, ResultSet.CLOSE_CURSORS_AT_COMMIT );
+            ps.setFetchSize( FETCH_SIZE );
+            rs = ps.executeQuery();
+            if( firstResult != null
+                && !this.parser.isFirstResultSettingSupported()
+                && rsType != ResultSet.TYPE_FORWARD_ONLY )
+            {
+                rs.absolute( firstResult );
+            }
+            if( !this.module.isUnitOfWorkActive() )
+            {
+                // Nothing would release the connection of an abandoned iteration
+                List<EntityReference> result = new ArrayList<>();
+                while( rs.next() )
+                {
+                    result.add( new EntityReference( rs.getString( 1 ) ) );
+                }
+                closeQuietly( connection, ps, rs );
+                return result.iterator();
+            }
+            UnitOfWork unitOfWork = this.module.currentUnitOfWork();
+            StreamingIterator iterator = new StreamingIterator( unitOfWork, connection, ps, rs );
+            unitOfWork.addUnitOfWorkCallback( iterator );
+            return iterator;
+        }
+        catch( SQLException sqle )
+        {
+            closeQuietly( connection, ps, rs );
+            throw new QueryExecutionException( "Could not execute SQL query: " + query, sqle );
+        }
     }
 
-    @Override
-    public EntityReference findEntity( Class<?> resultType,
-                                       @Optional Predicate<Composite> whereClause,
-                                       Map<String, Object> variables )
-        throws EntityFinderException
+    /**
+     * @return true if none of the ordering properties of the result type can be NULL
+     */
+    private static boolean isNotNull( Class<?> resultType, OrderBy[] orderBySegments )
     {
-        final List<Object> values = new ArrayList<>();
-        final List<Integer> valueSQLTypes = new ArrayList<>();
-        final String query = this.parser.constructQuery( resultType, whereClause, null, null, null, variables, values,
-                                                         valueSQLTypes, false );
+        for( OrderBy segment : orderBySegments )
+        {
+            if( segment == null )
+            {
+                continue;
+            }
+            PropertyFunction<?> property = segment.property();
+            AccessibleObject root = property.accessor();
+            while( property != null )
+            {
+                if( property.traversedManyAssociation() != null || property.traversedNamedAssociation() != null
+                    || property.accessor().isAnnotationPresent( Optional.class ) )
+                {
+                    return false;
+                }
+                root = property.accessor();
+                AssociationFunction<?> association = property.traversedAssociation();
+                while( association != null )
+                {
+                    if( association.traversedManyAssociation() != null
+                        || association.traversedNamedAssociation() != null
+                        || association.accessor().isAnnotationPresent( Optional.class ) )
+                    {
+                        return false;
+                    }
+                    root = association.accessor();
+                    association = association.traversedAssociation();
+                }
+                property = property.traversedProperty();
+            }
+            // Entities of other types than the declaring one have no value
+            if( !( (Member) root ).getDeclaringClass().isAssignableFrom( resultType ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    private static void closeQuietly( Connection connection, PreparedStatement ps, ResultSet rs )
+    {
+        SQLUtil.closeQuietly( rs );
+        SQLUtil.closeQuietly( ps );
+        if( connection != null )
+        {
+            SQLUtil.rollbackQuietly( connection );
+            SQLUtil.closeQuietly( connection );
+        }
+    }
+
+    private EntityReference findFirst( final String query,
+                                       final List<Object> values,
+                                       final List<Integer> valueSQLTypes )
+        throws EntityFinderException
+    {
         return this.performQuery( new DoQuery<EntityReference>()
         {
             @Override
@@ -256,4 +714,260 @@ public class SQLEntityFinder
         return result;
     }
 
+    /**
+     * Prepared query caching the SQL text of each page and kind of query once constructed, and binding only the
+     * variables on the following executions.
+     * <p>
+     * Only the SQL text is cached: each execution borrows a connection from the DataSource and still calls
+     * {@code prepareStatement}, as statements can't outlive the connection they were prepared on. Enable the
+     * prepared statement cache of the connection pool to reuse the statements themselves, the stable SQL text makes
+     * them hit that cache.
+     * </p>
+     */
+    private final class SQLTextCachingQuery
+        implements PreparedQuery
+    {
+        private final Class<?> resultType;
+        private final Predicate<Composite> whereClause;
+        private final OrderBy[] orderBySegments;
+        private final Map<List<Object>, CompiledQuery> compiled = new ConcurrentHashMap<>();
+
+        private SQLTextCachingQuery( Class<?> resultType, Predicate<Composite> whereClause, OrderBy[] orderBySegments )
+        {
+            this.resultType = resultType;
+            this.whereClause = whereClause;
+            this.orderBySegments = orderBySegments;
+        }
+
+        @Override
+        public Iterable<EntityReference> findEntities( @Optional Integer firstResult,
+                                                       @Optional Integer maxResults,
+                                                       Map<String, Object> variables )
+            throws EntityFinderException
+        {
+            if( maxResults != null && maxResults <= 0 )
+            {
+                return new ArrayList<>( 0 );
+            }
+            List<Object> values = new ArrayList<>();
+            List<Integer> valueSQLTypes = new ArrayList<>();
+            String query = bind( orderBySegments, firstResult, maxResults, false, variables, values, valueSQLTypes );
+            return find( query, values, valueSQLTypes, firstResult, maxResults, null );
+        }
+
+        @Override
+        public EntityReference findEntity( Map<String, Object> variables )
+            throws EntityFinderException
+        {
+            List<Object> values = new ArrayList<>();
+            List<Integer> valueSQLTypes = new ArrayList<>();
+            String query = bind( null, null, null, false, variables, values, valueSQLTypes );
+            return findFirst( query, values, valueSQLTypes );
+        }
+
+        @Override
+        public long countEntities( Map<String, Object> variables )
+            throws EntityFinderException
+        {
+            List<Object> values = new ArrayList<>();
+            List<Integer> valueSQLTypes = new ArrayList<>();
+            String query = bind( null, null, null, true, variables, values, valueSQLTypes );
+            return count( query, values, valueSQLTypes );
+        }
+
+        private String bind( OrderBy[] orderBy, Integer firstResult, Integer maxResults, boolean countOnly,
+                             Map<String, Object> variables, List<Object> values, List<Integer> valueSQLTypes )
+            throws EntityFinderException
+        {
+            List<Object> key = Arrays.<Object>asList( orderBy != null, firstResult, maxResults, countOnly );
+            CompiledQuery query = compiled.get( key );
+            if( query != null
+                && parser.bindVariables( query.values, query.valueSQLTypes, variables, values, valueSQLTypes ) )
+            {
+                return query.sql;
+            }
+            values.clear();
+            valueSQLTypes.clear();
+
+            SQLQueryValues template = new SQLQueryValues();
+            List<Integer> templateSQLTypes = new ArrayList<>();
+            String sql = parser.constructQuery( resultType, whereClause, orderBy, firstResult, maxResults,
+                                                variables, template, templateSQLTypes, countOnly );
+            if( isScalar( variables ) )
+            {
+                // Other variables change the SQL text, which can then not be reused
+                compiled.put( key, new CompiledQuery( sql, template, templateSQLTypes ) );
+            }
+            values.addAll( template );
+            valueSQLTypes.addAll( templateSQLTypes );
+            return sql;
+        }
+
+        private boolean isScalar( Map<String, Object> variables )
+        {
+            if( variables == null )
+            {
+                return true;
+            }
+            for( Object value : variables.values() )
+            {
+                if( value == null || value instanceof Collection<?> || value instanceof ValueComposite )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Iterator over the rows of a streamed result, releasing the connection when all rows have been read or when the
+     * UnitOfWork it was created in is completed or discarded.
+     */
+    private static final class StreamingIterator
+        implements Iterator<EntityReference>, UnitOfWorkCallback
+    {
+        private final UnitOfWork unitOfWork;
+        private final Connection connection;
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private EntityReference next;
+        private boolean done;
+
+        private StreamingIterator( UnitOfWork unitOfWork, Connection connection, PreparedStatement ps, ResultSet rs )
+        {
+            this.unitOfWork = unitOfWork;
+            this.connection = connection;
+            this.ps = ps;
+            this.rs = rs;
+        }
+
+        @Override
+        public synchronized boolean hasNext()
+        {
+            if( next == null && !done )
+            {
+                try
+                {
+                    if( rs.next() )
+                    {
+                        next = new EntityReference( rs.getString( 1 ) );
+                    }
+                    else
+                    {
+                        close();
+                        unitOfWork.removeUnitOfWorkCallback( this );
+                    }
+                }
+                catch( SQLException sqle )
+                {
+                    close();
+                    unitOfWork.removeUnitOfWorkCallback( this );
+                    throw new QueryExecutionException( "Could not read SQL query results", sqle );
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public EntityReference next()
+        {
+            if( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            EntityReference result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void beforeCompletion()
+        {
+        }
+
+        @Override
+        public synchronized void afterCompletion( UnitOfWorkStatus status )
+        {
+            close();
+        }
+
+        private void close()
+        {
+            if( !done )
+            {
+                done = true;
+                closeQuietly( connection, ps, rs );
+            }
+        }
+    }
+
+    /**
+     * Position of a page of an ordered query, to find the seek keys of.
+     */
+    private static final class Page
+    {
+        private final Class<?> resultType;
+        private final Predicate<Composite> whereClause;
+        private final OrderBy[] orderBySegments;
+        private final int firstResult;
+        private final Map<String, Object> variables;
+        private final long generation;
+
+        private Page( Class<?> resultType, Predicate<Composite> whereClause, OrderBy[] orderBySegments,
+                      Integer firstResult, Map<String, Object> variables, long generation )
+        {
+            this.resultType = resultType;
+            this.whereClause = whereClause;
+            this.orderBySegments = orderBySegments;
+            this.firstResult = firstResult == null ? 0 : firstResult;
+            this.variables = variables;
+            this.generation = generation;
+        }
+
+        /**
+         * @return the key of the seek key of the row preceding the given row of the page, or null if the where clause
+         *         has no structural signature
+         */
+        private QueryCacheKey key( int row )
+        {
+            return QueryCacheKey.forEntities( resultType, whereClause, orderBySegments, firstResult + row, null,
+                                              variables );
+        }
+    }
+
+    private static final class SeekKey
+    {
+        private final List<Object> values;
+        private final List<Integer> valueSQLTypes;
+        private final long generation;
+
+        private SeekKey( List<Object> values, List<Integer> valueSQLTypes, long generation )
+        {
+            this.values = values;
+            this.valueSQLTypes = valueSQLTypes;
+            this.generation = generation;
+        }
+    }
+
+    private static final class CompiledQuery
+    {
+        private final String sql;
+        private final SQLQueryValues values;
+        private final List<Integer> valueSQLTypes;
+
+        private CompiledQuery( String sql, SQLQueryValues values, List<Integer> valueSQLTypes )
+        {
+            this.sql = sql;
+            this.values = values;
+            this.valueSQLTypes = valueSQLTypes;
+        }
+    }
+
 }
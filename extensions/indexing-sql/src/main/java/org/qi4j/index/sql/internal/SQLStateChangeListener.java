@@ -20,6 +20,7 @@ package org.qi4j.index.sql.internal;
 
 import java.sql.SQLException;
 import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
 import org.qi4j.api.unitofwork.UnitOfWorkException;
 import org.qi4j.index.sql.support.api.SQLIndexing;
 import org.qi4j.spi.entity.EntityState;
@@ -36,9 +37,13 @@ public class SQLStateChangeListener
     @Service
     private SQLIndexing _indexing;
 
+    @This
+    private IndexChanges _changes;
+
     @Override
     public void notifyChanges( Iterable<EntityState> changedStates )
     {
+        this._changes.indexChanging();
         try
         {
             this._indexing.indexEntities( changedStates );
@@ -55,6 +60,10 @@ public class SQLStateChangeListener
             // TODO is UoWException right one for this?
             throw new UnitOfWorkException( lastException );
         }
+        finally
+        {
+            this._changes.indexChanged();
+        }
     }
 
 }
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.sql.support.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Values of a {@link java.sql.PreparedStatement} that remember which ones were bound from query variables.
+ * <p>
+ * Pass an instance as the {@code values} of {@link SQLQuerying#constructQuery} to get a template that
+ * {@link SQLQuerying#bindVariables} can fill with other variables without constructing the query again.
+ * </p>
+ */
+public final class SQLQueryValues
+    extends ArrayList<Object>
+{
+    private final Map<Integer, String> variables = new HashMap<>();
+    private final Set<Integer> regexps = new HashSet<>();
+
+    /**
+     * Record that the last added value was bound from a variable.
+     *
+     * @param variableName name of the variable
+     * @param regexp       true if the value is a regular expression, translated to the SQL vendor syntax
+     */
+    public void boundFromVariable( String variableName, boolean regexp )
+    {
+        variables.put( size() - 1, variableName );
+        if( regexp )
+        {
+            regexps.add( size() - 1 );
+        }
+    }
+
+    /**
+     * @param index index of a value
+     *
+     * @return the name of the variable the value was bound from, or null if it is a constant
+     */
+    public String variableAt( int index )
+    {
+        return variables.get( index );
+    }
+
+    /**
+     * @param index index of a value
+     *
+     * @return true if the value is a regular expression
+     */
+    public boolean isRegexp( int index )
+    {
+        return regexps.contains( index );
+    }
+}
@@ -23,7 +23,9 @@ import java.util.Map;
 import java.util.function.Predicate;
 import org.qi4j.api.common.Optional;
 import org.qi4j.api.composite.Composite;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.query.grammar.PropertyFunction;
 import org.qi4j.spi.query.EntityFinderException;
 
 /**
@@ -48,7 +50,10 @@ public interface SQLQuerying
      * @param valueSqlTypes The SQL types of the objects in {@code values}. Each SQL type at index {@code x} is
      *            interpreted as type of value at index {@code x} of the {@code values} -list.
      * @param countOnly True if this query should return only the number of matching entities, false otherwise.
-     * @return The SQL query, which may be used with {@link PreparedStatement}.
+     * @return The SQL query, which may be used with {@link PreparedStatement}. When {@code orderBySegments} are
+     *         given, the query returns after the entity identity the value of each ordering property and the entity
+     *         PK, which together are the seek key of the row, see
+     *         {@link #constructSeekQuery(Class, Predicate, OrderBy[], List, List, Integer, Map, List, List)}.
      * @throws EntityFinderException If SQLException or something else bad happens.
      */
     public String constructQuery( //
@@ -64,6 +69,100 @@ public interface SQLQuerying
     )
         throws EntityFinderException;
 
+    /**
+     * This method will be called when the page following an already read page of an ordered Qi4j query is needed.
+     * Instead of skipping the preceding rows with an offset, the returned query seeks to the rows ordered after the
+     * last row of the previous page. Its cost then does not depend on how deep the page is. The ordering properties
+     * must not have NULL values.
+     *
+     * @param resultType The result type of Qi4j query.
+     * @param whereClause The where clause of Qi4j query.
+     * @param orderBySegments The order by segments of Qi4j query.
+     * @param after The seek key of the last row of the previous page, as returned by the query of
+     *            {@link #constructQuery(Class, Predicate, OrderBy[], Integer, Integer, Map, List, List, Boolean)}.
+     * @param afterSqlTypes The SQL types of the objects in {@code after}.
+     * @param maxResults The max amount of returned results.
+     * @param values Values to put into {@link PreparedStatement}, see
+     *            {@link #constructQuery(Class, Predicate, OrderBy[], Integer, Integer, Map, List, List, Boolean)}.
+     * @param valueSqlTypes The SQL types of the objects in {@code values}.
+     * @return The SQL query, returning the same columns as the query of
+     *         {@link #constructQuery(Class, Predicate, OrderBy[], Integer, Integer, Map, List, List, Boolean)}.
+     * @throws EntityFinderException If SQLException or something else bad happens.
+     */
+    public String constructSeekQuery( //
+        Class<?> resultType, //
+        @Optional Predicate<Composite> whereClause, //
+        OrderBy[] orderBySegments, //
+        List<Object> after, //
+        List<Integer> afterSqlTypes, //
+        @Optional Integer maxResults, //
+        Map<String, Object> variables, //
+        List<Object> values, //
+        List<Integer> valueSqlTypes //
+    )
+        throws EntityFinderException;
+
+    /**
+     * This method will be called when the values of a property are needed for a number of already found entities,
+     * for projection queries. The returned query has one parameter for each entity identity, and returns rows of
+     * entity identity and property value.
+     *
+     * @param property The projected property.
+     * @param identityCount The amount of entity identities to put into {@link PreparedStatement}.
+     * @return The SQL query, or {@code null} if the property is not stored in a form which can be returned as-is.
+     */
+    public String constructProjectionQuery( //
+        PropertyFunction<?> property, //
+        Integer identityCount //
+    );
+
+    /**
+     * This method will be called when aggregates are computed over the entities matching a Qi4j query. The returned
+     * query has one row per group, with the values of the grouping properties followed by the aggregated values.
+     *
+     * @param resultType The result type of Qi4j query.
+     * @param whereClause The where clause of Qi4j query.
+     * @param values Values to put into {@link PreparedStatement}, see
+     *            {@link #constructQuery(Class, Predicate, OrderBy[], Integer, Integer, Map, List, List, Boolean)}.
+     * @param valueSqlTypes The SQL types of the objects in {@code values}.
+     * @param groupBy The grouping properties.
+     * @param aggregations The aggregates.
+     * @return The SQL query, or {@code null} if some property is not stored in a form which can be aggregated as-is.
+     * @throws EntityFinderException If SQLException or something else bad happens.
+     */
+    public String constructAggregateQuery( //
+        Class<?> resultType, //
+        @Optional Predicate<Composite> whereClause, //
+        Map<String, Object> variables, //
+        List<Object> values, //
+        List<Integer> valueSqlTypes, //
+        PropertyFunction<?>[] groupBy, //
+        Aggregation<?>[] aggregations //
+    )
+        throws EntityFinderException;
+
+    /**
+     * This method will be called when a prepared query is executed again. It fills {@code values} and
+     * {@code valueSqlTypes} from a template recorded by a previous call to
+     * {@link #constructQuery(Class, Predicate, OrderBy[], Integer, Integer, Map, List, List, Boolean)}, binding the
+     * values that came from variables to their new values.
+     *
+     * @param template The values recorded when the query was constructed.
+     * @param templateSqlTypes The SQL types recorded when the query was constructed.
+     * @param variables The new variables.
+     * @param values Values to put into {@link PreparedStatement}.
+     * @param valueSqlTypes The SQL types of the objects in {@code values}.
+     * @return {@code false} if some variable changes the shape of the SQL query, e.g. it is now {@code null}, a
+     *         collection or a value composite, in which case the query must be constructed again.
+     */
+    public Boolean bindVariables( //
+        SQLQueryValues template, //
+        List<Integer> templateSqlTypes, //
+        Map<String, Object> variables, //
+        List<Object> values, //
+        List<Integer> valueSqlTypes //
+    );
+
     public Boolean isFirstResultSettingSupported();
 
     public Integer getResultSetType( //
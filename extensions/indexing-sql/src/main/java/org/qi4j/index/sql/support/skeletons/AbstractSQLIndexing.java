@@ -26,6 +26,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,14 +39,20 @@ import org.qi4j.api.association.AssociationDescriptor;
 import org.qi4j.api.common.QualifiedName;
 import org.qi4j.api.entity.EntityReference;
 import org.qi4j.api.entity.Identity;
+import org.qi4j.api.common.Optional;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.injection.scope.Structure;
 import org.qi4j.api.injection.scope.This;
 import org.qi4j.api.injection.scope.Uses;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsProvider;
 import org.qi4j.api.property.PropertyDescriptor;
 import org.qi4j.api.property.StateHolder;
 import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.api.structure.Application;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.usecase.UsecaseBuilder;
 import org.qi4j.api.value.ValueComposite;
 import org.qi4j.api.value.ValueDescriptor;
 import org.qi4j.functional.Iterables;
@@ -60,6 +67,9 @@ import org.qi4j.library.sql.common.SQLUtil;
 import org.qi4j.spi.Qi4jSPI;
 import org.qi4j.spi.entity.EntityState;
 import org.qi4j.spi.entity.EntityStatus;
+import org.qi4j.spi.entitystore.EntityStore;
+import org.qi4j.spi.entitystore.EntityStoreException;
+import org.qi4j.spi.entitystore.EntityStoreUnitOfWork;
 import org.sql.generation.api.grammar.builders.modification.ColumnSourceByValuesBuilder;
 import org.sql.generation.api.grammar.builders.modification.DeleteBySearchBuilder;
 import org.sql.generation.api.grammar.builders.modification.UpdateBySearchBuilder;
@@ -76,6 +86,8 @@ import org.sql.generation.api.grammar.modification.UpdateSourceByExpression;
 import org.sql.generation.api.grammar.modification.UpdateStatement;
 import org.sql.generation.api.grammar.query.QueryExpression;
 import org.sql.generation.api.vendor.SQLVendor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.qi4j.index.sql.support.common.DBNames.ENTITY_TABLE_NAME;
 import static org.qi4j.index.sql.support.common.DBNames.ENTITY_TYPES_JOIN_TABLE_NAME;
@@ -83,6 +95,12 @@ import static org.qi4j.index.sql.support.common.DBNames.ENTITY_TYPES_JOIN_TABLE_
 /**
  * TODO SQL-Generator now has support for auto-generated columns. Use it in indexing ( should make
  * some things quite faster and simpler ).
+ * <p>
+ * Updated entities are indexed by difference: if the previous state of the entity can be read from the
+ * {@link EntityStore}, only the rows of the QNames that changed are deleted and inserted again. Otherwise, e.g. when
+ * reindexing, all rows of the entity are rewritten. Amounts of written and unchanged rows are logged at debug level
+ * and reported to the {@link MetricsProvider}, if any.
+ * </p>
  */
 public abstract class AbstractSQLIndexing
     implements SQLIndexing
@@ -96,9 +114,14 @@ public abstract class AbstractSQLIndexing
 
     public static final Integer AMOUNT_OF_COLUMNS_IN_MANY_ASSO_TABLE = 3;
 
+    private static final Logger LOGGER = LoggerFactory.getLogger( AbstractSQLIndexing.class.getName() );
+
     @Structure
     private Application _app;
 
+    @Structure
+    private Module _module;
+
     @Structure
     private Qi4jSPI _qi4SPI;
 
@@ -114,6 +137,18 @@ public abstract class AbstractSQLIndexing
     @Service
     private DataSource _dataSource;
 
+    @Service
+    @Optional
+    private EntityStore _entityStore;
+
+    @Service
+    @Optional
+    private MetricsProvider _metrics;
+
+    private MetricsCounter _rowsWritten;
+
+    private MetricsCounter _rowsUnchanged;
+
     @Override
     public void indexEntities( Iterable<EntityState> changedStates )
         throws SQLException
@@ -139,6 +174,28 @@ public abstract class AbstractSQLIndexing
         PreparedStatement removeEntityPS = null;
         PreparedStatement insertToPropertyQNamesPS = null;
         PreparedStatement clearEntityDataPS = null;
+        Lazy<PreparedStatement, SQLException> clearQNamePS = new Lazy<>(
+            new LazyInit<PreparedStatement, SQLException>()
+            {
+                @Override
+                public PreparedStatement create()
+                throws SQLException
+                {
+                    return connection.prepareStatement(
+                        createClearQNameStatement( schemaName, vendor ).toString() );
+                }
+            } );
+        Lazy<EntityStoreUnitOfWork, SQLException> previousStatesUoW = new Lazy<>(
+            new LazyInit<EntityStoreUnitOfWork, SQLException>()
+            {
+                @Override
+                public EntityStoreUnitOfWork create()
+                {
+                    return _entityStore.newUnitOfWork( UsecaseBuilder.newUsecase( "Load previously indexed states" ),
+                                                       _module, Instant.now() );
+                }
+            } );
+        RowCounts rowCounts = new RowCounts();
         Lazy<PreparedStatement, SQLException> queryEntityPKPS = new Lazy<>(
             new LazyInit<PreparedStatement, SQLException>()
             {
@@ -215,7 +272,8 @@ public abstract class AbstractSQLIndexing
                 {
                     if( status.equals( EntityStatus.UPDATED ) )
                     {
-                        pk = this.findEntityPK( eState, queryEntityPKPS );
+                        IndexedEntity indexed = this.findIndexedEntity( eState, queryEntityPKPS );
+                        pk = indexed == null ? null : indexed.pk;
                         if( pk == null )
                         {
                             // Happens when reindexing
@@ -225,12 +283,15 @@ public abstract class AbstractSQLIndexing
                         {
                             // TODO if multiple applications with different application model use
                             // indexing, need to sync type-table.
-                            this.updateEntityInfoAndProperties( connection, qNameInsertPSs,
-                                                                insertToPropertyQNamesPS,
-                                                                clearEntityDataPS,
-                                                                updateEntityTablePS,
-                                                                eState,
-                                                                pk, qNamePKs );
+                            this.updateEntityInfo( updateEntityTablePS, eState, pk );
+                            EntityState previous = connectionFromStartupWasNull
+                                                   ? this.findPreviousState( eState, indexed.version, previousStatesUoW )
+                                                   : null;
+                            this.updateEntityRows( connection, qNameInsertPSs,
+                                                   insertToPropertyQNamesPS,
+                                                   clearEntityDataPS, clearQNamePS,
+                                                   previous, eState,
+                                                   pk, rowCounts );
                         }
                     }
                     else if( status.equals( EntityStatus.REMOVED ) )
@@ -257,9 +318,6 @@ public abstract class AbstractSQLIndexing
                                              eState, pk );
                     this.insertProperties( connection, qNameInsertPSs,
                                            insertToPropertyQNamesPS, eState, pk, qNamePKs );
-                }
-                if( pk != null )
-                {
                     statesByPK.put( pk, eState );
                 }
             }
@@ -267,6 +325,10 @@ public abstract class AbstractSQLIndexing
             removeEntityPS.executeBatch();
             updateEntityTablePS.executeBatch();
             clearEntityDataPS.executeBatch();
+            if( clearQNamePS.hasValue() )
+            {
+                clearQNamePS.getValue().executeBatch();
+            }
             if( insertToEntityTypeTablePS.hasValue() )
             {
                 insertToEntityTypeTablePS.getValue().executeBatch();
@@ -276,9 +338,9 @@ public abstract class AbstractSQLIndexing
             {
                 EntityState eState = entry.getValue();
                 Long pk = entry.getKey();
-                this.insertAssoAndManyAssoQNames( qNameInsertPSs, insertToPropertyQNamesPS,
-                                                  eState,
-                                                  qNamePKs.get( pk ), pk );
+                rowCounts.written += this.insertAssoAndManyAssoQNames( qNameInsertPSs, insertToPropertyQNamesPS,
+                                                                       eState,
+                                                                       qNamePKs.get( pk ), pk );
             }
 
             insertToPropertyQNamesPS.executeBatch();
@@ -289,6 +351,7 @@ public abstract class AbstractSQLIndexing
             }
 
             connection.commit();
+            this.reportRowCounts( rowCounts );
         }
         catch( SQLException sqle )
         {
@@ -297,8 +360,16 @@ public abstract class AbstractSQLIndexing
         }
         finally
         {
+            if( previousStatesUoW.hasValue() )
+            {
+                previousStatesUoW.getValue().discard();
+            }
             try
             {
+                if( clearQNamePS.hasValue() )
+                {
+                    SQLUtil.closeQuietly( clearQNamePS.getValue() );
+                }
                 if( queryEntityPKPS.hasValue() )
                 {
                     SQLUtil.closeQuietly( queryEntityPKPS.getValue() );
@@ -366,9 +437,17 @@ public abstract class AbstractSQLIndexing
     protected Long findEntityPK( EntityState state,
                                  Lazy<PreparedStatement, SQLException> queryPKPS )
         throws SQLException
+    {
+        IndexedEntity indexed = this.findIndexedEntity( state, queryPKPS );
+        return indexed == null ? null : indexed.pk;
+    }
+
+    private IndexedEntity findIndexedEntity( EntityState state,
+                                             Lazy<PreparedStatement, SQLException> queryPKPS )
+        throws SQLException
     {
         // TODO build cache: Qi4j Identity -> PK
-        Long entityPK = null;
+        IndexedEntity indexed = null;
         PreparedStatement ps = queryPKPS.getValue();
         ps.setString( 1, state.identity().identity() );
         ResultSet rs = null;
@@ -378,7 +457,7 @@ public abstract class AbstractSQLIndexing
 
             if( rs.next() )
             {
-                entityPK = rs.getLong( 1 );
+                indexed = new IndexedEntity( rs.getLong( 1 ), rs.getString( 2 ) );
             }
         }
         finally
@@ -386,7 +465,7 @@ public abstract class AbstractSQLIndexing
             SQLUtil.closeQuietly( rs );
         }
 
-        return entityPK;
+        return indexed;
     }
 
     protected abstract long getPKFromAutoGeneratedIDInsert(
@@ -434,12 +513,13 @@ public abstract class AbstractSQLIndexing
         TableReferenceFactory t = vendor.getTableReferenceFactory();
         QueryFactory q = vendor.getQueryFactory();
 
-        // "SELECT " + ENTITY_TABLE_PK_COLUMN_NAME + "\n" + //
+        // "SELECT " + ENTITY_TABLE_PK_COLUMN_NAME + ", " + ENTITY_TABLE_VERSION_COLUMN_NAME + "\n" + //
         // "FROM " + "%s" + "." + ENTITY_TABLE_NAME + "\n" + //
         // "WHERE " + ENTITY_TABLE_IDENTITY_COLUMN_NAME + " = ?" + "\n" + //
         // ";" //
         QuerySpecificationBuilder query = q.querySpecificationBuilder();
-        query.getSelect().addUnnamedColumns( c.colName( DBNames.ENTITY_TABLE_PK_COLUMN_NAME ) );
+        query.getSelect().addUnnamedColumns( c.colName( DBNames.ENTITY_TABLE_PK_COLUMN_NAME ),
+                                             c.colName( DBNames.ENTITY_TABLE_VERSION_COLUMN_NAME ) );
         query.getFrom().addTableReferences(
             t.tableBuilder( t.table( t.tableName( schemaName, DBNames.ENTITY_TABLE_NAME ) ) ) );
         query.getWhere().reset(
@@ -462,6 +542,26 @@ public abstract class AbstractSQLIndexing
                                                     DBNames.ENTITY_TABLE_PK_COLUMN_NAME, vendor );
     }
 
+    protected DeleteStatement createClearQNameStatement( String schemaName, SQLVendor vendor )
+    {
+        ModificationFactory m = vendor.getModificationFactory();
+        BooleanFactory b = vendor.getBooleanFactory();
+        LiteralFactory l = vendor.getLiteralFactory();
+        ColumnsFactory c = vendor.getColumnsFactory();
+        TableReferenceFactory t = vendor.getTableReferenceFactory();
+
+        // "DELETE FROM " + "%s" + "." + ALL_QNAMES_TABLE_NAME + "\n" + //
+        // "WHERE " + ALL_QNAMES_TABLE_PK_COLUMN_NAME + " = ? AND " + ENTITY_TABLE_PK_COLUMN_NAME + " = ?" + "\n" + //
+        // ";" //
+        DeleteBySearchBuilder delete = m.deleteBySearch();
+        delete.setTargetTable( m.createTargetTable( t.tableName( schemaName, DBNames.ALL_QNAMES_TABLE_NAME ) ) )
+            .getWhere()
+            .reset( b.eq( c.colName( DBNames.ALL_QNAMES_TABLE_PK_COLUMN_NAME ), l.param() ) )
+            .and( b.eq( c.colName( DBNames.ENTITY_TABLE_PK_COLUMN_NAME ), l.param() ) );
+
+        return delete.createExpression();
+    }
+
     protected DeleteStatement createDeleteFromTableStatement( String schemaName, String tableName,
                                                               String columnName,
                                                               SQLVendor vendor
@@ -643,7 +743,7 @@ public abstract class AbstractSQLIndexing
         return propertyPK;
     }
 
-    private void insertAssoAndManyAssoQNames( Map<QualifiedName, PreparedStatement> qNameInsertPSs,
+    private Integer insertAssoAndManyAssoQNames( Map<QualifiedName, PreparedStatement> qNameInsertPSs,
                                               PreparedStatement insertToAllQNamesPS,
                                               EntityState state,
                                               Integer qNamePK,
@@ -700,6 +800,8 @@ public abstract class AbstractSQLIndexing
                 }
             }
         }
+
+        return qNamePK;
     }
 
     private Integer insertProperty(
@@ -988,31 +1090,123 @@ public abstract class AbstractSQLIndexing
         }
     }
 
-    private void updateEntityInfoAndProperties( Connection connection,
-                                                Map<QualifiedName, PreparedStatement> qNameInsertPSs,
-                                                PreparedStatement insertAllQNamesPS,
-                                                PreparedStatement clearPropertiesPS,
-                                                PreparedStatement ps,
-                                                EntityState state,
-                                                Long entityPK,
-                                                Map<Long, Integer> qNamePKs
-    )
+    private void updateEntityInfo( PreparedStatement ps, EntityState state, Long entityPK )
         throws SQLException
     {
-
-        this.clearAllEntitysQNames( clearPropertiesPS, entityPK );
-
-        // Update state
         ps.setString( 1, state.identity().identity() );
         ps.setTimestamp( 2, new Timestamp( state.lastModified().toEpochMilli() ) );
         ps.setString( 3, state.version() );
         ps.setString( 4, this._app.version() );
         ps.setLong( 5, entityPK );
         ps.addBatch();
+    }
 
-        Integer nextUsableQNamePK = this.insertPropertyQNames( connection, qNameInsertPSs, insertAllQNamesPS,
-                                                               state, entityPK );
-        qNamePKs.put( entityPK, nextUsableQNamePK );
+    /**
+     * Rewrite the rows of an updated entity. Rows are compared to the rows of the previous state, if known, and only
+     * the changed ones are deleted and inserted again. Deleting a row from all QNames table deletes it from the QName
+     * table and deletes its children too.
+     */
+    private void updateEntityRows( Connection connection,
+                                   Map<QualifiedName, PreparedStatement> qNameInsertPSs,
+                                   PreparedStatement insertAllQNamesPS,
+                                   PreparedStatement clearPropertiesPS,
+                                   Lazy<PreparedStatement, SQLException> clearQNamePS,
+                                   EntityState previous,
+                                   EntityState state,
+                                   Long entityPK,
+                                   RowCounts rowCounts
+    )
+        throws SQLException
+    {
+        Set<QualifiedName> qNames = this._state.entityUsedQNames().get().get( state.entityDescriptor() );
+        this.syncQNamesInsertPSs( connection, qNameInsertPSs, qNames );
+        IndexRows rows = this.indexRows( connection, state, entityPK );
+        if( previous == null )
+        {
+            this.clearAllEntitysQNames( clearPropertiesPS, entityPK );
+            rowCounts.written += rows.insertInto( insertAllQNamesPS, qNameInsertPSs, rows.qNamePKs() );
+        }
+        else
+        {
+            IndexRows previousRows = this.indexRows( connection, previous, entityPK );
+            Set<Integer> changed = rows.changedSince( previousRows );
+            for( Integer qNamePK : changed )
+            {
+                if( previousRows.contains( qNamePK ) )
+                {
+                    PreparedStatement ps = clearQNamePS.getValue();
+                    ps.setInt( 1, qNamePK );
+                    ps.setLong( 2, entityPK );
+                    ps.addBatch();
+                }
+            }
+            int written = rows.insertInto( insertAllQNamesPS, qNameInsertPSs, changed );
+            rowCounts.written += written;
+            rowCounts.unchanged += rows.size() - written;
+        }
+    }
+
+    private IndexRows indexRows( Connection connection, EntityState state, Long entityPK )
+        throws SQLException
+    {
+        Set<QualifiedName> qNames = this._state.entityUsedQNames().get().get( state.entityDescriptor() );
+        IndexRows rows = new IndexRows( this._state.qNameInfos().get(), qNames );
+        Integer qNamePK = this.insertPropertyQNames( connection, rows.qNamePSs(), rows.allQNamesPS(),
+                                                     state, entityPK );
+        this.insertAssoAndManyAssoQNames( rows.qNamePSs(), rows.allQNamesPS(), state, qNamePK, entityPK );
+        return rows;
+    }
+
+    /**
+     * The previous state is only trusted when the index row was written from another version than the one being
+     * indexed now. An index row that already carries {@code state.version()} was indexed by a UnitOfWork whose
+     * commit failed afterwards, so its rows may hold changes the store never got; such entities, and rows without
+     * a version, get all of their rows deleted and reinserted.
+     *
+     * @param indexedVersion version stored in the entity table row of the entity, before this update
+     * @return previous state of the entity, as it was when it was last indexed, or null if it can not be known
+     */
+    private EntityState findPreviousState( EntityState state, String indexedVersion,
+                                           Lazy<EntityStoreUnitOfWork, SQLException> uow )
+        throws SQLException
+    {
+        if( this._entityStore == null || indexedVersion == null || indexedVersion.equals( state.version() ) )
+        {
+            return null;
+        }
+        try
+        {
+            EntityState previous = uow.getValue().entityStateOf( state.identity() );
+            // Some stores write before listeners are notified, their stored state can not be used
+            if( previous.version().equals( state.version() ) )
+            {
+                return SQLCompatEntityStateWrapper.WRAP.apply( previous );
+            }
+        }
+        catch( EntityStoreException ese )
+        {
+            LOGGER.debug( "Could not load previous state of {}, rewriting all of its rows", state.identity(), ese );
+        }
+        return null;
+    }
+
+    private void reportRowCounts( RowCounts rowCounts )
+    {
+        LOGGER.debug( "Wrote {} index rows, {} rows unchanged", rowCounts.written, rowCounts.unchanged );
+        if( this._metrics != null )
+        {
+            synchronized( this )
+            {
+                if( this._rowsWritten == null )
+                {
+                    MetricsCounterFactory counters = this._metrics.createFactory( MetricsCounterFactory.class );
+                    this._rowsWritten = counters.createCounter( AbstractSQLIndexing.class, "index rows written" );
+                    this._rowsUnchanged = counters.createCounter( AbstractSQLIndexing.class, "index rows unchanged" );
+                }
+            }
+            this._rowsWritten.increment( rowCounts.written );
+            this._rowsUnchanged.increment( rowCounts.unchanged );
+        }
     }
 
     private void insertProperties( Connection connection,
@@ -1055,4 +1249,22 @@ public abstract class AbstractSQLIndexing
             insertPropertyTypePS.addBatch();
         }
     }
+
+    private static final class IndexedEntity
+    {
+        private final Long pk;
+        private final String version;
+
+        private IndexedEntity( Long pk, String version )
+        {
+            this.pk = pk;
+            this.version = version;
+        }
+    }
+
+    private static final class RowCounts
+    {
+        private int written;
+        private int unchanged;
+    }
 }
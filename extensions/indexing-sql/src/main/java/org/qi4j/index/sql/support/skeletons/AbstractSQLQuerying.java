@@ -22,6 +22,7 @@ import java.lang.reflect.Member;
 import java.sql.ResultSet;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -38,6 +39,7 @@ import org.qi4j.api.injection.scope.Structure;
 import org.qi4j.api.injection.scope.This;
 import org.qi4j.api.injection.scope.Uses;
 import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.Aggregation;
 import org.qi4j.api.query.grammar.AndSpecification;
 import org.qi4j.api.query.grammar.AssociationFunction;
 import org.qi4j.api.query.grammar.AssociationNotNullSpecification;
@@ -66,12 +68,14 @@ import org.qi4j.api.service.ServiceDescriptor;
 import org.qi4j.api.structure.Module;
 import org.qi4j.api.value.ValueComposite;
 import org.qi4j.functional.Iterables;
+import org.qi4j.index.sql.support.api.SQLQueryValues;
 import org.qi4j.index.sql.support.api.SQLQuerying;
 import org.qi4j.index.sql.support.common.DBNames;
 import org.qi4j.index.sql.support.common.QNameInfo;
 import org.qi4j.index.sql.support.postgresql.PostgreSQLTypeHelper;
 import org.qi4j.spi.Qi4jSPI;
 import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.spi.query.Projections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sql.generation.api.grammar.booleans.BooleanExpression;
@@ -754,6 +758,41 @@ public abstract class AbstractSQLQuerying
                                   Boolean countOnly //
     )
         throws EntityFinderException
+    {
+        return this.constructQuery( resultType, whereClause, orderBySegments, null, null, firstResult, maxResults,
+                                    variables, values, valueSQLTypes, countOnly );
+    }
+
+    @Override
+    public String constructSeekQuery( Class<?> resultType, //
+                                      Predicate<Composite> whereClause, //
+                                      OrderBy[] orderBySegments, //
+                                      List<Object> after, //
+                                      List<Integer> afterSQLTypes, //
+                                      Integer maxResults, //
+                                      Map<String, Object> variables, //
+                                      List<Object> values, //
+                                      List<Integer> valueSQLTypes //
+    )
+        throws EntityFinderException
+    {
+        return this.constructQuery( resultType, whereClause, orderBySegments, after, afterSQLTypes, null, maxResults,
+                                    variables, values, valueSQLTypes, false );
+    }
+
+    private String constructQuery( Class<?> resultType,
+                                   Predicate<Composite> whereClause,
+                                   OrderBy[] orderBySegments,
+                                   List<Object> after,
+                                   List<Integer> afterSQLTypes,
+                                   Integer firstResult,
+                                   Integer maxResults,
+                                   Map<String, Object> variables,
+                                   List<Object> values,
+                                   List<Integer> valueSQLTypes,
+                                   Boolean countOnly
+    )
+        throws EntityFinderException
     {
         SQLVendor vendor = this.descriptor.metaInfo( SQLVendor.class );
 
@@ -778,7 +817,24 @@ public abstract class AbstractSQLQuerying
             t.tableBuilder( t.table( q.createQuery( innerBuilder.createExpression() ),
                                      t.tableAlias( TABLE_NAME_PREFIX + "0" ) ) ) );
 
-        this.processOrderBySegments( orderBySegments, vendor, mainQuery );
+        List<ColumnReference> sortColumns = this.processOrderBySegments( orderBySegments, vendor, mainQuery );
+        if( !countOnly && orderBySegments != null )
+        {
+            // Seek key of each row: the ordering values, made unique by the entity PK
+            ColumnReference pkColumn = c.colName( TABLE_NAME_PREFIX + "0", DBNames.ENTITY_TABLE_PK_COLUMN_NAME );
+            for( ColumnReference sortColumn : sortColumns )
+            {
+                mainQuery.getSelect().addUnnamedColumns( sortColumn );
+            }
+            mainQuery.getSelect().addUnnamedColumns( pkColumn );
+            mainQuery.getOrderBy().addSortSpecs( q.sortSpec( pkColumn, Ordering.ASCENDING ) );
+            if( after != null )
+            {
+                mainQuery.getWhere().reset( this.createSeekCondition( vendor, orderBySegments, sortColumns, pkColumn,
+                                                                      after, afterSQLTypes, values,
+                                                                      valueSQLTypes ) );
+            }
+        }
 
         QueryExpression finalMainQuery = this.finalizeQuery(
             vendor, mainQuery, resultType, whereClause,
@@ -791,6 +847,180 @@ public abstract class AbstractSQLQuerying
         return result;
     }
 
+    @Override
+    public String constructProjectionQuery( PropertyFunction<?> property, Integer identityCount )
+    {
+        QNameInfo info = this.valueQNameInfo( property );
+        if( info == null )
+        {
+            return null;
+        }
+
+        SQLVendor vendor = this.descriptor.metaInfo( SQLVendor.class );
+
+        QueryFactory q = vendor.getQueryFactory();
+        TableReferenceFactory t = vendor.getTableReferenceFactory();
+        BooleanFactory b = vendor.getBooleanFactory();
+        LiteralFactory l = vendor.getLiteralFactory();
+        ColumnsFactory c = vendor.getColumnsFactory();
+
+        String schemaName = this._state.schemaName().get();
+        String entityTableAlias = TABLE_NAME_PREFIX + "0";
+        String valueTableAlias = TABLE_NAME_PREFIX + "1";
+
+        QuerySpecificationBuilder query = q.querySpecificationBuilder();
+        query.getSelect().addUnnamedColumns(
+            c.colName( entityTableAlias, DBNames.ENTITY_TABLE_IDENTITY_COLUMN_NAME ),
+            c.colName( valueTableAlias, DBNames.QNAME_TABLE_VALUE_COLUMN_NAME ) );
+        // @formatter:off
+        query.getFrom().addTableReferences(
+            t.tableBuilder( t.table( t.tableName( schemaName, DBNames.ENTITY_TABLE_NAME ), t.tableAlias( entityTableAlias ) ) )
+            .addQualifiedJoin(
+                JoinType.INNER,
+                t.table( t.tableName( schemaName, info.getTableName() ), t.tableAlias( valueTableAlias ) ),
+                t.jc(
+                    b.booleanBuilder(
+                        b.eq(
+                            c.colName( entityTableAlias, DBNames.ENTITY_TABLE_PK_COLUMN_NAME ),
+                            c.colName( valueTableAlias, DBNames.ENTITY_TABLE_PK_COLUMN_NAME )
+                        )
+                    )
+                    .and(
+                        b.isNull( c.colName( valueTableAlias, DBNames.QNAME_TABLE_PARENT_QNAME_COLUMN_NAME ) )
+                    )
+                    .createExpression()
+                )
+            )
+        );
+        // @formatter:on
+
+        InBuilder in = b.inBuilder( c.colName( entityTableAlias, DBNames.ENTITY_TABLE_IDENTITY_COLUMN_NAME ) );
+        for( int i = 0; i < identityCount; ++i )
+        {
+            in.addValues( l.param() );
+        }
+        query.getWhere().reset( in.createExpression() );
+
+        String result = vendor.toString( q.createQuery( query.createExpression() ) );
+
+        LOGGER.debug( "SQL projection query:\n" + result );
+        return result;
+    }
+
+    @Override
+    public String constructAggregateQuery( Class<?> resultType,
+                                           Predicate<Composite> whereClause,
+                                           Map<String, Object> variables,
+                                           List<Object> values,
+                                           List<Integer> valueSQLTypes,
+                                           PropertyFunction<?>[] groupBy,
+                                           Aggregation<?>[] aggregations )
+        throws EntityFinderException
+    {
+        // Grouping and aggregated properties are read from the QName tables of the matching entities
+        List<PropertyFunction<?>> properties = new ArrayList<>( Arrays.asList( groupBy ) );
+        for( Aggregation<?> aggregation : aggregations )
+        {
+            if( aggregation.property() != null )
+            {
+                properties.add( aggregation.property() );
+            }
+        }
+        List<QNameInfo> infos = new ArrayList<>( properties.size() );
+        for( PropertyFunction<?> property : properties )
+        {
+            QNameInfo info = this.valueQNameInfo( property );
+            if( info == null )
+            {
+                return null;
+            }
+            infos.add( info );
+        }
+
+        SQLVendor vendor = this.descriptor.metaInfo( SQLVendor.class );
+
+        QueryFactory q = vendor.getQueryFactory();
+        TableReferenceFactory t = vendor.getTableReferenceFactory();
+        BooleanFactory b = vendor.getBooleanFactory();
+        LiteralFactory l = vendor.getLiteralFactory();
+        ColumnsFactory c = vendor.getColumnsFactory();
+
+        String schemaName = this._state.schemaName().get();
+        String entitiesAlias = TABLE_NAME_PREFIX + "0";
+
+        QueryBuilder innerBuilder = this.processBooleanExpression(
+            whereClause, false, vendor,
+            this.createTypeCondition( resultType, vendor ), variables, values, valueSQLTypes );
+
+        TableReferenceBuilder from = t.tableBuilder( t.table( q.createQuery( innerBuilder.createExpression() ),
+                                                              t.tableAlias( entitiesAlias ) ) );
+        List<ColumnReference> valueColumns = new ArrayList<>( infos.size() );
+        for( int idx = 0; idx < infos.size(); ++idx )
+        {
+            String valueAlias = TABLE_NAME_PREFIX + ( idx + 1 );
+            // @formatter:off
+            from.addQualifiedJoin(
+                JoinType.LEFT_OUTER,
+                t.table( t.tableName( schemaName, infos.get( idx ).getTableName() ), t.tableAlias( valueAlias ) ),
+                t.jc(
+                    b.booleanBuilder(
+                        b.eq(
+                            c.colName( entitiesAlias, DBNames.ENTITY_TABLE_PK_COLUMN_NAME ),
+                            c.colName( valueAlias, DBNames.ENTITY_TABLE_PK_COLUMN_NAME )
+                        )
+                    )
+                    .and(
+                        b.isNull( c.colName( valueAlias, DBNames.QNAME_TABLE_PARENT_QNAME_COLUMN_NAME ) )
+                    )
+                    .createExpression()
+                )
+            );
+            // @formatter:on
+            valueColumns.add( c.colName( valueAlias, DBNames.QNAME_TABLE_VALUE_COLUMN_NAME ) );
+        }
+
+        QuerySpecificationBuilder mainQuery = q.querySpecificationBuilder();
+        mainQuery.getFrom().addTableReferences( from );
+        for( int idx = 0; idx < groupBy.length; ++idx )
+        {
+            mainQuery.getSelect().addUnnamedColumns( valueColumns.get( idx ) );
+            mainQuery.getGroupBy().addGroupingElements( q.groupingElement( valueColumns.get( idx ) ) );
+        }
+        int valueIdx = groupBy.length;
+        for( Aggregation<?> aggregation : aggregations )
+        {
+            ColumnReference column = aggregation.property() == null
+                                     ? c.colName( entitiesAlias, DBNames.ENTITY_TABLE_PK_COLUMN_NAME )
+                                     : valueColumns.get( valueIdx++ );
+            mainQuery.getSelect().addUnnamedColumns(
+                c.colExp( l.func( aggregation.function().name(), column ) ) );
+        }
+
+        String result = vendor.toString( q.createQuery( mainQuery.createExpression() ) );
+
+        LOGGER.debug( "SQL aggregate query:\n" + result );
+        return result;
+    }
+
+    /**
+     * Only scalar top-level properties are stored as plain values in their QName table.
+     *
+     * @return the QName table info of the property, or null if its values cannot be read as-is
+     */
+    private QNameInfo valueQNameInfo( PropertyFunction<?> property )
+    {
+        if( !Projections.isDirect( property ) || !Projections.isScalar( Projections.propertyType( property ) ) )
+        {
+            return null;
+        }
+        QNameInfo info = this._state.qNameInfos().get().get( QualifiedName.fromAccessor( property.accessor() ) );
+        if( info == null || info.getCollectionDepth() > 0 || !info.isFinalTypePrimitive() )
+        {
+            return null;
+        }
+        return info;
+    }
+
     protected org.sql.generation.api.grammar.booleans.BooleanExpression createTypeCondition(
         Class<?> resultType,
         SQLVendor vendor )
@@ -911,12 +1141,15 @@ public abstract class AbstractSQLQuerying
                         l.param() ) );
 
                 Object value = predicate.value();
+                String variableName = null;
                 if( value instanceof Variable )
                 {
-                    value = variables.get( ( (Variable) value ).variableName() );
+                    variableName = ( (Variable) value ).variableName();
+                    value = variables.get( variableName );
                 }
                 values.add( translateJavaRegexpToPGSQLRegexp( value.toString() ) );
                 valueSQLTypes.add( Types.VARCHAR );
+                boundFromVariable( values, variableName, true );
             }
             } //
         );
@@ -1394,6 +1627,54 @@ public abstract class AbstractSQLQuerying
         return result;
     }
 
+    @Override
+    public Boolean bindVariables( SQLQueryValues template, List<Integer> templateSqlTypes,
+                                  Map<String, Object> variables,
+                                  List<Object> values, List<Integer> valueSqlTypes )
+    {
+        for( int idx = 0; idx < template.size(); idx++ )
+        {
+            String variableName = template.variableAt( idx );
+            if( variableName == null )
+            {
+                values.add( template.get( idx ) );
+                valueSqlTypes.add( templateSqlTypes.get( idx ) );
+                continue;
+            }
+
+            Object value = variables.get( variableName );
+            if( value == null || value instanceof Collection<?> || value instanceof ValueComposite )
+            {
+                // Such values are not bound as a single parameter
+                return false;
+            }
+            if( template.isRegexp( idx ) )
+            {
+                values.add( translateJavaRegexpToPGSQLRegexp( value.toString() ) );
+                valueSqlTypes.add( Types.VARCHAR );
+            }
+            else
+            {
+                Object dbValue = value;
+                if( Enum.class.isAssignableFrom( value.getClass() ) )
+                {
+                    dbValue = this._state.enumPKs().get().get( value.getClass().getName() );
+                }
+                values.add( dbValue );
+                valueSqlTypes.add( _typeHelper.getSQLType( value ) );
+            }
+        }
+        return true;
+    }
+
+    private static void boundFromVariable( List<Object> values, String variableName, boolean regexp )
+    {
+        if( variableName != null && values instanceof SQLQueryValues )
+        {
+            ( (SQLQueryValues) values ).boundFromVariable( variableName, regexp );
+        }
+    }
+
     protected String translateJavaRegexpToPGSQLRegexp( String javaRegexp )
     {
         // TODO
@@ -1404,9 +1685,13 @@ public abstract class AbstractSQLQuerying
         return javaRegexp;
     }
 
-    protected void processOrderBySegments( OrderBy[] orderBy, SQLVendor vendor,
-                                           QuerySpecificationBuilder builder )
+    /**
+     * @return the column of each ordering segment, in order
+     */
+    protected List<ColumnReference> processOrderBySegments( OrderBy[] orderBy, SQLVendor vendor,
+                                                            QuerySpecificationBuilder builder )
     {
+        List<ColumnReference> sortColumns = new ArrayList<>();
         if( orderBy != null )
         {
             QNameInfo[] qNames = new QNameInfo[ orderBy.length ];
@@ -1449,12 +1734,72 @@ public abstract class AbstractSQLQuerying
                     {
                         ordering = Ordering.DESCENDING;
                     }
-                    builder.getOrderBy().addSortSpecs(
-                        q.sortSpec( c.colName( TABLE_NAME_PREFIX + tableIdx, colName ), ordering ) );
+                    ColumnReference sortColumn = c.colName( TABLE_NAME_PREFIX + tableIdx, colName );
+                    builder.getOrderBy().addSortSpecs( q.sortSpec( sortColumn, ordering ) );
+                    sortColumns.add( sortColumn );
                 }
             }
         }
 
+        return sortColumns;
+    }
+
+    /**
+     * Condition of the rows ordered after the given seek key. The ordering columns are expected not to contain NULL
+     * values, whose position in the order differs between databases.
+     */
+    protected org.sql.generation.api.grammar.booleans.BooleanExpression createSeekCondition(
+        SQLVendor vendor,
+        OrderBy[] orderBy,
+        List<ColumnReference> sortColumns,
+        ColumnReference pkColumn,
+        List<Object> after,
+        List<Integer> afterSQLTypes,
+        List<Object> values,
+        List<Integer> valueSQLTypes
+    )
+    {
+        BooleanFactory b = vendor.getBooleanFactory();
+        LiteralFactory l = vendor.getLiteralFactory();
+
+        List<Boolean> descending = new ArrayList<>();
+        for( OrderBy segment : orderBy )
+        {
+            if( segment != null )
+            {
+                descending.add( segment.order() == Order.DESCENDING );
+            }
+        }
+
+        // (c0 > ?) OR (c0 = ? AND c1 > ?) OR ... OR (c0 = ? AND ... AND pk > ?)
+        BooleanBuilder condition = b.booleanBuilder();
+        for( int idx = 0; idx <= sortColumns.size(); ++idx )
+        {
+            BooleanBuilder term = b.booleanBuilder();
+            for( int prev = 0; prev < idx; ++prev )
+            {
+                term.and( b.eq( sortColumns.get( prev ), l.param() ) );
+                values.add( after.get( prev ) );
+                valueSQLTypes.add( afterSQLTypes.get( prev ) );
+            }
+            if( idx == sortColumns.size() )
+            {
+                term.and( b.gt( pkColumn, l.param() ) );
+            }
+            else if( descending.get( idx ) )
+            {
+                term.and( b.lt( sortColumns.get( idx ), l.param() ) );
+            }
+            else
+            {
+                term.and( b.gt( sortColumns.get( idx ), l.param() ) );
+            }
+            values.add( after.get( idx ) );
+            valueSQLTypes.add( afterSQLTypes.get( idx ) );
+            condition.or( term.createExpression() );
+        }
+
+        return condition.createExpression();
     }
 
     protected Integer traversePropertyPath( PropertyFunction<?> reference, Integer lastTableIndex,
@@ -1655,9 +2000,11 @@ public abstract class AbstractSQLQuerying
         final List<QNameJoin> qNameJoins, Map<String, Object> variables,
         final List<Object> values, final List<Integer> valueSQLTypes )
     {
+        String variableName = null;
         if( value instanceof Variable )
         {
-            value = variables.get( ( (Variable) value ).variableName() );
+            variableName = ( (Variable) value ).variableName();
+            value = variables.get( variableName );
         }
 
         final String schemaName = this._state.schemaName().get();
@@ -1821,6 +2168,7 @@ public abstract class AbstractSQLQuerying
                                         this.getOperator( predicate ).getExpression( b, valueCol, l.param() ) ) );
                 values.add( dbValue );
                 valueSQLTypes.add( _typeHelper.getSQLType( value ) );
+                boundFromVariable( values, variableName, false );
                 LOGGER.info( TABLE_NAME_PREFIX + currentTableIndex + "." + columnName + " is " + dbValue );
             }
         }
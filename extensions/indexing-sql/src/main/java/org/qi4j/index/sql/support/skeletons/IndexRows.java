@@ -0,0 +1,293 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.index.sql.support.skeletons;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.index.sql.support.common.QNameInfo;
+import org.qi4j.index.sql.support.common.QNameInfo.QNameType;
+
+/**
+ * Index rows of one entity, recorded instead of being sent to the database so that the rows of two states of the
+ * entity can be compared.
+ * <p>
+ * Rows are recorded through {@link PreparedStatement}s that only accept parameters and batches, and are identified by
+ * their QName PK, which is the same for the same property or association as long as the preceding ones have the same
+ * amount of rows.
+ * </p>
+ * <p>
+ * Rows of collections and many-associations are identified by position, and many-association rows also store their
+ * position. Inserting or removing an element in the middle therefore changes all the rows after it, as does any change
+ * in the amount of elements for the rows of the properties and associations that follow, so these are all deleted and
+ * inserted again.
+ * </p>
+ */
+/* package */ final class IndexRows
+{
+    private final Map<QualifiedName, QNameInfo> qNameInfos;
+    private final Map<Integer, Row> rows = new TreeMap<>();
+    private final PreparedStatement allQNamesPS;
+    private final Map<QualifiedName, PreparedStatement> qNamePSs = new HashMap<>();
+
+    /* package */ IndexRows( Map<QualifiedName, QNameInfo> qNameInfos, Set<QualifiedName> qNames )
+    {
+        this.qNameInfos = qNameInfos;
+        this.allQNamesPS = this.recorder( null );
+        for( QualifiedName qName : qNames )
+        {
+            this.qNamePSs.put( qName, this.recorder( qName ) );
+        }
+    }
+
+    /* package */ PreparedStatement allQNamesPS()
+    {
+        return this.allQNamesPS;
+    }
+
+    /* package */ Map<QualifiedName, PreparedStatement> qNamePSs()
+    {
+        return this.qNamePSs;
+    }
+
+    /* package */ int size()
+    {
+        return this.rows.size();
+    }
+
+    /* package */ Set<Integer> qNamePKs()
+    {
+        return this.rows.keySet();
+    }
+
+    /**
+     * @param previous rows of the previous state of the same entity
+     *
+     * @return QName PKs of the rows that are not the same in both states. Deleting a row deletes its children too, so
+     *         children of changed rows are changed as well.
+     */
+    /* package */ Set<Integer> changedSince( IndexRows previous )
+    {
+        Set<Integer> changed = new HashSet<>();
+        Set<Integer> ids = new HashSet<>( this.rows.keySet() );
+        ids.addAll( previous.rows.keySet() );
+        for( Integer id : ids )
+        {
+            Row row = this.rows.get( id );
+            if( row == null || !row.equals( previous.rows.get( id ) ) )
+            {
+                changed.add( id );
+            }
+        }
+        boolean grown = true;
+        while( grown )
+        {
+            grown = false;
+            for( Map.Entry<Integer, Row> entry : this.rows.entrySet() )
+            {
+                Integer parent = entry.getValue().parent();
+                if( parent != null && changed.contains( parent ) && changed.add( entry.getKey() ) )
+                {
+                    grown = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /* package */ boolean contains( Integer qNamePK )
+    {
+        return this.rows.containsKey( qNamePK );
+    }
+
+    /**
+     * Add the recorded rows with the given QName PKs to the batches of the actual statements.
+     *
+     * @return amount of rows added
+     */
+    /* package */ int insertInto( PreparedStatement allQNamesPS, Map<QualifiedName, PreparedStatement> qNamePSs,
+                                  Set<Integer> qNamePKs )
+        throws SQLException
+    {
+        int count = 0;
+        for( Map.Entry<Integer, Row> entry : this.rows.entrySet() )
+        {
+            if( qNamePKs.contains( entry.getKey() ) )
+            {
+                Row row = entry.getValue();
+                replay( allQNamesPS, row.allQNamesCalls );
+                replay( qNamePSs.get( row.qName ), row.qNameCalls );
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static void replay( PreparedStatement ps, List<Call> calls )
+        throws SQLException
+    {
+        try
+        {
+            for( Call call : calls )
+            {
+                call.method.invoke( ps, call.args );
+            }
+        }
+        catch( IllegalAccessException ex )
+        {
+            throw new InternalError( ex.getMessage() );
+        }
+        catch( InvocationTargetException ex )
+        {
+            if( ex.getCause() instanceof SQLException )
+            {
+                throw (SQLException) ex.getCause();
+            }
+            throw new SQLException( ex.getCause() );
+        }
+        ps.addBatch();
+    }
+
+    private PreparedStatement recorder( final QualifiedName qName )
+    {
+        return (PreparedStatement) Proxy.newProxyInstance(
+            IndexRows.class.getClassLoader(),
+            new Class<?>[]{ PreparedStatement.class },
+            new InvocationHandler()
+            {
+                private List<Call> calls = new ArrayList<>();
+
+                @Override
+                public Object invoke( Object proxy, Method method, Object[] args )
+                {
+                    if( method.getName().startsWith( "set" ) && args != null && args[ 0 ] instanceof Integer )
+                    {
+                        this.calls.add( new Call( method, args ) );
+                        return null;
+                    }
+                    if( method.getName().equals( "addBatch" ) && args == null )
+                    {
+                        record( qName, this.calls );
+                        this.calls = new ArrayList<>();
+                        return null;
+                    }
+                    throw new UnsupportedOperationException( "Only records parameters and batches: " + method );
+                }
+            } );
+    }
+
+    private void record( QualifiedName qName, List<Call> calls )
+    {
+        // First parameter is always the QName PK
+        Integer qNamePK = (Integer) parameter( calls, 1 );
+        Row row = this.rows.get( qNamePK );
+        if( row == null )
+        {
+            row = new Row();
+            this.rows.put( qNamePK, row );
+        }
+        if( qName == null )
+        {
+            row.allQNamesCalls = calls;
+        }
+        else
+        {
+            row.qName = qName;
+            row.qNameCalls = calls;
+            if( this.qNameInfos.get( qName ).getQNameType().equals( QNameType.PROPERTY ) )
+            {
+                row.parent = (Integer) parameter( calls, 3 );
+            }
+        }
+    }
+
+    private static Object parameter( List<Call> calls, int index )
+    {
+        for( Call call : calls )
+        {
+            if( call.args[ 0 ].equals( index ) )
+            {
+                return call.method.getName().equals( "setNull" ) ? null : call.args[ 1 ];
+            }
+        }
+        return null;
+    }
+
+    private static final class Row
+    {
+        private QualifiedName qName;
+        private Integer parent;
+        private List<Call> allQNamesCalls = new ArrayList<>();
+        private List<Call> qNameCalls = new ArrayList<>();
+
+        private Integer parent()
+        {
+            return this.parent;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if( !( obj instanceof Row ) )
+            {
+                return false;
+            }
+            Row other = (Row) obj;
+            return ( this.qName == null ? other.qName == null : this.qName.equals( other.qName ) )
+                   && this.qNameCalls.equals( other.qNameCalls );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.qNameCalls.hashCode();
+        }
+    }
+
+    private static final class Call
+    {
+        private final Method method;
+        private final Object[] args;
+
+        private Call( Method method, Object[] args )
+        {
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            return obj instanceof Call
+                   && this.method.equals( ( (Call) obj ).method )
+                   && Arrays.deepEquals( this.args, ( (Call) obj ).args );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.method.hashCode() * 31 + Arrays.deepHashCode( this.args );
+        }
+    }
+}
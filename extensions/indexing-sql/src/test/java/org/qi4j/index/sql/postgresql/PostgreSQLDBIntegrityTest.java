@@ -22,6 +22,7 @@ import org.junit.Test;
 import org.qi4j.api.common.UseDefaults;
 import org.qi4j.api.entity.EntityComposite;
 import org.qi4j.api.property.Property;
+import org.qi4j.api.query.QueryBuilder;
 import org.qi4j.api.unitofwork.UnitOfWork;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
@@ -36,6 +37,9 @@ import org.qi4j.test.AbstractQi4jTest;
 import org.sql.generation.api.vendor.PostgreSQLVendor;
 import org.sql.generation.api.vendor.SQLVendorProvider;
 
+import static org.qi4j.api.query.QueryExpressions.and;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
 import static org.qi4j.test.util.Assume.assumeConnectivity;
 
 public class PostgreSQLDBIntegrityTest
@@ -142,4 +146,37 @@ public class PostgreSQLDBIntegrityTest
             .testString().get() );
         uow.discard();
     }
+
+    @Test
+    public void modifyOnePropertyAndQueryAllProperties()
+        throws Exception
+    {
+        UnitOfWork uow = this.module.newUnitOfWork();
+        TestEntity entity = uow.newEntity( TestEntity.class );
+        entity.testString().set( "Unchanged" );
+        entity.testInt().set( 1 );
+        uow.complete();
+
+        uow = this.module.newUnitOfWork();
+        entity = uow.get( entity );
+        entity.testInt().set( 2 );
+        uow.complete();
+
+        uow = this.module.newUnitOfWork();
+        try
+        {
+            QueryBuilder<TestEntity> builder = this.module.newQueryBuilder( TestEntity.class );
+            TestEntity template = templateFor( TestEntity.class );
+            Assert.assertEquals( "Unchanged and changed properties did not index.", 1,
+                                 uow.newQuery( builder.where( and( eq( template.testString(), "Unchanged" ),
+                                                                   eq( template.testInt(), 2 ) ) ) ).count() );
+            Assert.assertEquals( "Previous value still in indexing.", 0,
+                                 uow.newQuery( this.module.newQueryBuilder( TestEntity.class )
+                                     .where( eq( template.testInt(), 1 ) ) ).count() );
+        }
+        finally
+        {
+            uow.discard();
+        }
+    }
 }
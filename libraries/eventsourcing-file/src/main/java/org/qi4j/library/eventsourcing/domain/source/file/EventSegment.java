@@ -0,0 +1,310 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.source.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only segment of an event log.
+ * <p>
+ * The "log" file holds the serialized events of each UnitOfWork, each preceded by its length as an int. The "index"
+ * file is memory-mapped and holds, for each of them, the position in the log where it ends. Segments are named
+ * after the offset of their first UnitOfWork events.
+ * </p>
+ * <p>
+ * The log is read through a single read-only memory mapping, mapped again only once the log grew past it. Segments
+ * are reference counted, so that a segment being read is only closed, or deleted, once read.
+ * </p>
+ */
+final class EventSegment
+{
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".index";
+
+    private final long base;
+    private final File log;
+    private final File index;
+    private final FileChannel channel;
+    private final MappedByteBuffer positions;
+    private final int capacity;
+    private volatile int count;
+    private long size;
+    private final AtomicInteger references = new AtomicInteger( 1 );
+    private volatile boolean deleted;
+    private volatile MappedByteBuffer mapped;
+
+    static EventSegment open( File directory, long base, int capacity )
+        throws IOException
+    {
+        String name = String.format( "%020d", base );
+        File index = new File( directory, name + INDEX_SUFFIX );
+        if( index.exists() )
+        {
+            // Keep the capacity the segment was created with
+            capacity = (int) ( index.length() / 8 );
+        }
+        return new EventSegment( base, new File( directory, name + LOG_SUFFIX ), index, capacity );
+    }
+
+    private EventSegment( long base, File log, File index, int capacity )
+        throws IOException
+    {
+        this.base = base;
+        this.log = log;
+        this.index = index;
+        this.capacity = capacity;
+        channel = FileChannel.open( log.toPath(), StandardOpenOption.CREATE,
+                                    StandardOpenOption.READ, StandardOpenOption.WRITE );
+        try( FileChannel indexChannel = FileChannel.open( index.toPath(), StandardOpenOption.CREATE,
+                                                          StandardOpenOption.READ, StandardOpenOption.WRITE ) )
+        {
+            positions = indexChannel.map( FileChannel.MapMode.READ_WRITE, 0, capacity * 8L );
+        }
+        recover();
+    }
+
+    /**
+     * Drop what was written after the last complete UnitOfWork events, if anything.
+     */
+    private void recover()
+        throws IOException
+    {
+        // Index entries are written in order, find the first empty one
+        int low = 0;
+        int high = capacity;
+        while( low < high )
+        {
+            int middle = ( low + high ) >>> 1;
+            if( positions.getLong( middle * 8 ) == 0 )
+            {
+                high = middle;
+            }
+            else
+            {
+                low = middle + 1;
+            }
+        }
+        int recovered = low;
+        long logSize = channel.size();
+        while( recovered > 0 && positions.getLong( ( recovered - 1 ) * 8 ) > logSize )
+        {
+            recovered--;
+            positions.putLong( recovered * 8, 0 );
+        }
+        count = recovered;
+        size = recovered == 0 ? 0 : positions.getLong( ( recovered - 1 ) * 8 );
+        if( logSize > size )
+        {
+            channel.truncate( size );
+        }
+    }
+
+    long base()
+    {
+        return base;
+    }
+
+    int count()
+    {
+        return count;
+    }
+
+    long size()
+    {
+        return size;
+    }
+
+    boolean isFull()
+    {
+        return count == capacity;
+    }
+
+    /**
+     * Append serialized events, the caller must hold the store lock.
+     */
+    void append( ByteBuffer events )
+        throws IOException
+    {
+        ByteBuffer length = ByteBuffer.allocate( 4 );
+        length.putInt( 0, events.remaining() );
+        long end = size + 4 + events.remaining();
+        channel.position( size );
+        while( length.hasRemaining() || events.hasRemaining() )
+        {
+            channel.write( new ByteBuffer[]{ length, events } );
+        }
+        positions.putLong( count * 8, end );
+        size = end;
+        // Publish the new entry
+        count++;
+    }
+
+    /**
+     * Drop UnitOfWork events appended after the given count, the caller must hold the store lock.
+     */
+    void truncate( int newCount )
+        throws IOException
+    {
+        for( int idx = newCount; idx < count; idx++ )
+        {
+            positions.putLong( idx * 8, 0 );
+        }
+        count = newCount;
+        size = newCount == 0 ? 0 : positions.getLong( ( newCount - 1 ) * 8 );
+        mapped = null;
+        channel.truncate( size );
+    }
+
+    void force()
+        throws IOException
+    {
+        channel.force( false );
+        positions.force();
+    }
+
+    /**
+     * Keep the segment open while reading it, until {@link #release()}.
+     *
+     * @return false if the segment was closed already
+     */
+    boolean retain()
+    {
+        int current;
+        do
+        {
+            current = references.get();
+            if( current == 0 )
+            {
+                return false;
+            }
+        }
+        while( !references.compareAndSet( current, current + 1 ) );
+        return true;
+    }
+
+    void release()
+        throws IOException
+    {
+        if( references.decrementAndGet() == 0 )
+        {
+            mapped = null;
+            channel.close();
+            if( deleted )
+            {
+                Files.deleteIfExists( log.toPath() );
+                Files.deleteIfExists( index.toPath() );
+            }
+        }
+    }
+
+    /**
+     * Read the serialized events of a range of UnitOfWorks, without copying them. The segment must be retained.
+     *
+     * @param from index of the first UnitOfWork events in this segment
+     * @param to   index after the last UnitOfWork events in this segment
+     *
+     * @return A read-only buffer of length-prefixed serialized events
+     */
+    ByteBuffer read( int from, int to )
+        throws IOException
+    {
+        long start = from == 0 ? 0 : positions.getLong( ( from - 1 ) * 8 );
+        long end = positions.getLong( ( to - 1 ) * 8 );
+        ByteBuffer buffer = mapping( end );
+        if( buffer == null )
+        {
+            return channel.map( FileChannel.MapMode.READ_ONLY, start, end - start );
+        }
+        buffer = buffer.duplicate();
+        buffer.limit( (int) end );
+        buffer.position( (int) start );
+        return buffer.slice();
+    }
+
+    /**
+     * @return the mapping of the log up to at least the given position, or null if the log is too large to be mapped
+     *         at once
+     */
+    private synchronized ByteBuffer mapping( long end )
+        throws IOException
+    {
+        MappedByteBuffer current = mapped;
+        if( current == null || current.capacity() < end )
+        {
+            long length = channel.size();
+            if( length > Integer.MAX_VALUE )
+            {
+                return null;
+            }
+            current = channel.map( FileChannel.MapMode.READ_ONLY, 0, length );
+            mapped = current;
+        }
+        return current;
+    }
+
+    static InputStream inputStream( final ByteBuffer buffer )
+    {
+        return new InputStream()
+        {
+            @Override
+            public int read()
+            {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read( byte[] bytes, int offset, int length )
+            {
+                if( !buffer.hasRemaining() )
+                {
+                    return -1;
+                }
+                int read = Math.min( length, buffer.remaining() );
+                buffer.get( bytes, offset, read );
+                return read;
+            }
+
+            @Override
+            public int available()
+            {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    /**
+     * Release the reference of the store, closing the segment once it is not read anymore.
+     */
+    void close()
+        throws IOException
+    {
+        release();
+    }
+
+    /**
+     * Release the reference of the store, deleting the segment once it is not read anymore.
+     */
+    void delete()
+        throws IOException
+    {
+        deleted = true;
+        release();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.source.file;
+
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.configuration.ConfigurationComposite;
+import org.qi4j.api.property.Property;
+
+/**
+ * Configuration of the {@link FileEventStoreService}.
+ */
+// START SNIPPET: config
+public interface FileEventStoreConfiguration
+    extends ConfigurationComposite
+{
+    /**
+     * Size in bytes a segment file can reach before a new one is started.
+     * Defaulted to 64MB.
+     * @return Segment size configuration property
+     */
+    @Optional
+    Property<Long> segmentSize();
+
+    /**
+     * How many UnitOfWork events a segment can hold before a new one is started, this sizes its offset index.
+     * Defaulted to 65536.
+     * @return Segment events configuration property
+     */
+    @Optional
+    Property<Integer> segmentEvents();
+
+    /**
+     * How many segments are kept, oldest ones are deleted when a new one is started.
+     * Defaulted to 0, all segments are kept.
+     * @return Retained segments configuration property
+     */
+    @Optional
+    Property<Integer> retainedSegments();
+
+    /**
+     * Every how many written batches segments are forced to disk.
+     * Defaulted to 1, every batch is. Set to 0 to leave it to the operating system.
+     * @return Sync configuration property
+     */
+    @Optional
+    Property<Integer> syncEvery();
+}
+// END SNIPPET: config
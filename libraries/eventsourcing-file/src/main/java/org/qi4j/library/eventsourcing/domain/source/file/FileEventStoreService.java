@@ -0,0 +1,331 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.source.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import org.qi4j.api.activation.Activators;
+import org.qi4j.api.configuration.Configuration;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.This;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.api.service.qualifier.Tagged;
+import org.qi4j.api.value.ValueSerialization;
+import org.qi4j.io.Input;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
+import org.qi4j.io.Transforms;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.library.eventsourcing.domain.source.AbstractEventStoreMixin;
+import org.qi4j.library.eventsourcing.domain.source.EventManagement;
+import org.qi4j.library.eventsourcing.domain.source.EventSource;
+import org.qi4j.library.eventsourcing.domain.source.EventStore;
+import org.qi4j.library.eventsourcing.domain.source.EventStoreActivation;
+import org.qi4j.library.eventsourcing.domain.source.EventStream;
+import org.qi4j.library.fileconfig.FileConfiguration;
+
+/**
+ * EventStore appending events to segment files.
+ * <p>
+ * Events of each UnitOfWork are serialized to JSON and appended to the current segment, whose memory-mapped index
+ * gives where they are in the segment. Reading events from an offset looks its segment and position up directly,
+ * then reads the segment through its memory mapping, without locking the store.
+ * </p>
+ * <p>
+ * Segments are rolled over when they reach their configured size or number of UnitOfWorks, oldest ones can be
+ * deleted then. See {@link FileEventStoreConfiguration}.
+ * </p>
+ */
+@Mixins( FileEventStoreService.FileEventStoreMixin.class )
+@Activators( EventStoreActivation.Activator.class )
+public interface FileEventStoreService
+    extends EventSource, EventStore, EventStream, EventManagement, EventStoreActivation, ServiceComposite
+{
+    class FileEventStoreMixin
+        extends AbstractEventStoreMixin
+        implements EventManagement, EventSource
+    {
+        @Service
+        private FileConfiguration fileConfig;
+
+        @Service
+        @Tagged( ValueSerialization.Formats.JSON )
+        private ValueSerialization valueSerialization;
+
+        @This
+        private Configuration<FileEventStoreConfiguration> configuration;
+
+        private final ConcurrentSkipListMap<Long, EventSegment> segments = new ConcurrentSkipListMap<>();
+        private final SerializedEvents serialized = new SerializedEvents();
+        private File directory;
+        private EventSegment current;
+        private long segmentSize;
+        private int segmentEvents;
+        private int retainedSegments;
+        private int syncEvery;
+        private int unsyncedBatches;
+
+        private volatile long currentCount;
+
+        @Override
+        public void activateEventStore()
+            throws Exception
+        {
+            super.activateEventStore();
+            FileEventStoreConfiguration config = configuration.get();
+            segmentSize = config.segmentSize().get() == null ? 64L * 1024 * 1024 : config.segmentSize().get();
+            segmentEvents = config.segmentEvents().get() == null ? 65536 : config.segmentEvents().get();
+            retainedSegments = config.retainedSegments().get() == null ? 0 : config.retainedSegments().get();
+            syncEvery = config.syncEvery().get() == null ? 1 : config.syncEvery().get();
+
+            directory = new File( fileConfig.dataDirectory(), identity.identity().get() + "/events" );
+            if( !directory.isDirectory() && !directory.mkdirs() )
+            {
+                throw new IOException( "Could not create " + directory );
+            }
+            File[] logs = directory.listFiles();
+            if( logs != null )
+            {
+                for( File log : logs )
+                {
+                    String name = log.getName();
+                    if( name.endsWith( EventSegment.LOG_SUFFIX ) )
+                    {
+                        long base = Long.parseLong( name.substring( 0, name.length() - EventSegment.LOG_SUFFIX.length() ) );
+                        segments.put( base, EventSegment.open( directory, base, segmentEvents ) );
+                    }
+                }
+            }
+            if( segments.isEmpty() )
+            {
+                segments.put( 0L, EventSegment.open( directory, 0, segmentEvents ) );
+            }
+            current = segments.lastEntry().getValue();
+            currentCount = current.base() + current.count();
+        }
+
+        @Override
+        public void passivateEventStore()
+            throws Exception
+        {
+            super.passivateEventStore();
+            lock();
+            try
+            {
+                current.force();
+                for( EventSegment segment : segments.values() )
+                {
+                    segment.close();
+                }
+                segments.clear();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Output<String, IOException> restore()
+        {
+            // Events are forced to disk once restored, not for every UnitOfWork
+            return Transforms.lock( FileEventStoreMixin.this.lock, Transforms.map( new Function<String, UnitOfWorkDomainEventsValue>()
+            {
+                @Override
+                public UnitOfWorkDomainEventsValue apply( String item )
+                {
+                    return valueSerialization.<UnitOfWorkDomainEventsValue>deserialize( eventsType, item );
+                }
+            }, storeEvents0() ) );
+        }
+
+        // EventSource implementation
+        @Override
+        public Input<UnitOfWorkDomainEventsValue, IOException> events( final long offset, final long limit )
+        {
+            final long count = currentCount;
+            if( offset < 0 || offset > count )
+            {
+                throw new IllegalArgumentException( "Offset must be between 0 and current number of events in the store" );
+            }
+            if( limit <= 0 )
+            {
+                throw new IllegalArgumentException( "Limit must be above 0" );
+            }
+            if( offset < segments.firstKey() )
+            {
+                throw new IllegalArgumentException( "Events before offset " + segments.firstKey() + " were deleted" );
+            }
+
+            return new Input<UnitOfWorkDomainEventsValue, IOException>()
+            {
+                @Override
+                public <ReceiverThrowableType extends Throwable> void transferTo( Output<? super UnitOfWorkDomainEventsValue, ReceiverThrowableType> output )
+                    throws IOException, ReceiverThrowableType
+                {
+                    output.receiveFrom( new Sender<UnitOfWorkDomainEventsValue, IOException>()
+                    {
+                        @Override
+                        public <ReceiverThrowableType extends Throwable> void sendTo( Receiver<? super UnitOfWorkDomainEventsValue, ReceiverThrowableType> receiver )
+                            throws ReceiverThrowableType, IOException
+                        {
+                            // Events stored after the call to events() are not sent
+                            long end = limit > count - offset ? count : offset + limit;
+                            long position = offset;
+                            while( position < end )
+                            {
+                                Map.Entry<Long, EventSegment> entry = segments.floorEntry( position );
+                                if( entry == null )
+                                {
+                                    throw new IOException( "Events before offset " + segments.firstKey() + " were deleted" );
+                                }
+                                EventSegment segment = entry.getValue();
+                                if( !segment.retain() )
+                                {
+                                    // Deleted, or the store passivated, since looked up
+                                    throw new IOException( "Events at offset " + position + " were deleted" );
+                                }
+                                try
+                                {
+                                    int from = (int) ( position - segment.base() );
+                                    int to = (int) Math.min( segment.count(), end - segment.base() );
+                                    ByteBuffer buffer = segment.read( from, to );
+                                    for( int idx = from; idx < to; idx++ )
+                                    {
+                                        int length = buffer.getInt();
+                                        ByteBuffer events = buffer.slice();
+                                        events.limit( length );
+                                        buffer.position( buffer.position() + length );
+                                        receiver.receive( valueSerialization.<UnitOfWorkDomainEventsValue>deserialize(
+                                            eventsType, EventSegment.inputStream( events ) ) );
+                                    }
+                                    position = segment.base() + to;
+                                }
+                                finally
+                                {
+                                    segment.release();
+                                }
+                            }
+                        }
+                    } );
+                }
+            };
+        }
+
+        @Override
+        public long count()
+        {
+            return currentCount;
+        }
+
+        @Override
+        protected Output<UnitOfWorkDomainEventsValue, IOException> storeEvents0()
+        {
+            return new Output<UnitOfWorkDomainEventsValue, IOException>()
+            {
+                @Override
+                public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends UnitOfWorkDomainEventsValue, SenderThrowableType> sender )
+                    throws IOException, SenderThrowableType
+                {
+                    final EventSegment first = current;
+                    int firstCount = first.count();
+                    boolean stored = false;
+                    try
+                    {
+                        sender.sendTo( new Receiver<UnitOfWorkDomainEventsValue, IOException>()
+                        {
+                            @Override
+                            public void receive( UnitOfWorkDomainEventsValue item )
+                                throws IOException
+                            {
+                                serialized.reset();
+                                valueSerialization.serialize( item, serialized );
+                                ByteBuffer events = serialized.buffer();
+                                if( current.isFull() || ( current.size() > 0 && current.size() + 4 + events.remaining() > segmentSize ) )
+                                {
+                                    rollover();
+                                }
+                                current.append( events );
+                            }
+                        } );
+                        if( syncEvery > 0 && ++unsyncedBatches >= syncEvery )
+                        {
+                            current.force();
+                            unsyncedBatches = 0;
+                        }
+                        stored = true;
+                    }
+                    finally
+                    {
+                        // Whatever failed, the sender or the store, its exception propagates as is
+                        if( !stored )
+                        {
+                            rollback( first, firstCount );
+                        }
+                    }
+                    currentCount = current.base() + current.count();
+                    // Only once stored, so that a failed batch can be rolled back
+                    deleteOldestSegments();
+                }
+            };
+        }
+
+        private void rollover()
+            throws IOException
+        {
+            current.force();
+            long base = current.base() + current.count();
+            current = EventSegment.open( directory, base, segmentEvents );
+            segments.put( base, current );
+        }
+
+        private void rollback( EventSegment first, int firstCount )
+            throws IOException
+        {
+            while( current != first )
+            {
+                segments.remove( current.base() );
+                current.delete();
+                current = segments.lastEntry().getValue();
+            }
+            first.truncate( firstCount );
+        }
+
+        private void deleteOldestSegments()
+            throws IOException
+        {
+            while( retainedSegments > 0 && segments.size() > retainedSegments )
+            {
+                segments.pollFirstEntry().getValue().delete();
+            }
+        }
+
+        /**
+         * Reused serialization buffer.
+         */
+        private static final class SerializedEvents
+            extends ByteArrayOutputStream
+        {
+            private ByteBuffer buffer()
+            {
+                return ByteBuffer.wrap( buf, 0, count );
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.source.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
+import org.qi4j.api.usecase.UsecaseBuilder;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ImportedServiceDeclaration;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Outputs;
+import org.qi4j.library.eventsourcing.domain.api.DomainEvent;
+import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.library.eventsourcing.domain.factory.CurrentUserUoWPrincipal;
+import org.qi4j.library.eventsourcing.domain.factory.DomainEventCreationConcern;
+import org.qi4j.library.eventsourcing.domain.factory.DomainEventFactoryService;
+import org.qi4j.library.eventsourcing.domain.source.EventSource;
+import org.qi4j.library.fileconfig.FileConfigurationOverride;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class FileEventStoreServiceTest
+    extends AbstractQi4jTest
+{
+    private static final File DATA_DIR = new File( "build/tmp/file-eventstore-test/" + System.currentTimeMillis() );
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+
+        module.values( DomainEventValue.class, UnitOfWorkDomainEventsValue.class );
+        // START SNIPPET: assembly
+        module.services( FileConfigurationService.class )
+            .setMetaInfo( new FileConfigurationOverride().withData( DATA_DIR ) );
+        new OrgJsonValueSerializationAssembler().assemble( module );
+        module.services( FileEventStoreService.class ).identifiedBy( "test-events" );
+        module.entities( FileEventStoreConfiguration.class );
+        // END SNIPPET: assembly
+        module.forMixin( FileEventStoreConfiguration.class ).declareDefaults().segmentEvents().set( 4 );
+
+        module.services( DomainEventFactoryService.class );
+        module.importedServices( CurrentUserUoWPrincipal.class ).importedBy( ImportedServiceDeclaration.NEW_OBJECT );
+        module.objects( CurrentUserUoWPrincipal.class );
+
+        module.entities( TestEntity.class ).withConcerns( DomainEventCreationConcern.class );
+    }
+
+    @Test
+    public void givenStoredEventsWhenReadingFromOffsetsThenEventsAreReadAcrossSegments()
+        throws UnitOfWorkCompletionException, IOException
+    {
+        String identity;
+        try( UnitOfWork uow = module.newUnitOfWork( UsecaseBuilder.newUsecase( "Create entity" ) ) )
+        {
+            identity = uow.newEntity( TestEntity.class ).identity().get();
+            uow.complete();
+        }
+        for( int idx = 0; idx < 10; idx++ )
+        {
+            try( UnitOfWork uow = module.newUnitOfWork( UsecaseBuilder.newUsecase( "Change description " + idx ) ) )
+            {
+                uow.get( TestEntity.class, identity ).changeDescription( "Description " + idx );
+                uow.complete();
+            }
+        }
+
+        EventSource source = module.findService( EventSource.class ).get();
+        assertThat( source.count(), equalTo( 10L ) );
+        assertThat( usecases( source, 0, Long.MAX_VALUE ).size(), equalTo( 10 ) );
+        assertThat( usecases( source, 3, 3 ).toString(),
+                    equalTo( "[Change description 3, Change description 4, Change description 5]" ) );
+        assertThat( usecases( source, 9, 10 ).toString(), equalTo( "[Change description 9]" ) );
+
+        // 4 UnitOfWorks per segment, each has a log and an index file
+        File[] logs = new File( DATA_DIR, "test-events/events" ).listFiles();
+        assertThat( logs == null ? 0 : logs.length, equalTo( 6 ) );
+    }
+
+    private static List<String> usecases( EventSource source, long offset, long limit )
+        throws IOException
+    {
+        List<UnitOfWorkDomainEventsValue> events = new ArrayList<>();
+        source.events( offset, limit ).transferTo( Outputs.collection( events ) );
+        List<String> usecases = new ArrayList<>();
+        for( UnitOfWorkDomainEventsValue event : events )
+        {
+            usecases.add( event.usecase().get() );
+        }
+        return usecases;
+    }
+
+    @Mixins( TestEntity.Mixin.class )
+    public interface TestEntity
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> description();
+
+        @DomainEvent
+        void changeDescription( String newName );
+
+        abstract class Mixin
+            implements TestEntity
+        {
+            @Override
+            public void changeDescription( String newName )
+            {
+                description().set( newName );
+            }
+        }
+    }
+}
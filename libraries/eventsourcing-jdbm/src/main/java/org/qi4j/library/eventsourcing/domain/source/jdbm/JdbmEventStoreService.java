@@ -77,7 +77,7 @@ public interface JdbmEventStoreService
         private Serializer serializer;
         private File dataFile;
 
-        private long currentCount;
+        private volatile long currentCount;
 
         @Override
         public void activateEventStore()
@@ -135,7 +135,7 @@ public interface JdbmEventStoreService
 
         // EventStore implementation
         @Override
-        public Input<UnitOfWorkDomainEventsValue, IOException> events( final long offset, long limit )
+        public Input<UnitOfWorkDomainEventsValue, IOException> events( final long offset, final long limit )
         {
             return new Input<UnitOfWorkDomainEventsValue, IOException>()
             {
@@ -158,8 +158,10 @@ public interface JdbmEventStoreService
 
                                 Tuple tuple = new Tuple();
 
-                                while( browser.getNext( tuple ) )
+                                long count = 0;
+                                while( count < limit && browser.getNext( tuple ) )
                                 {
+                                    count++;
                                     // Get next transaction
                                     UnitOfWorkDomainEventsValue domainEvents = readTransactionEvents( tuple );
 
@@ -195,6 +197,7 @@ public interface JdbmEventStoreService
                 public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends UnitOfWorkDomainEventsValue, SenderThrowableType> sender )
                     throws IOException, SenderThrowableType
                 {
+                    final long countBefore = currentCount;
                     try
                     {
                         sender.sendTo( new Receiver<UnitOfWorkDomainEventsValue, IOException>()
@@ -212,18 +215,27 @@ public interface JdbmEventStoreService
                     }
                     catch( IOException e )
                     {
-                        recordManager.rollback();
+                        rollback( countBefore );
                         throw e;
                     }
                     catch( Throwable e )
                     {
-                        recordManager.rollback();
+                        rollback( countBefore );
                         throw (SenderThrowableType) e;
                     }
                 }
             };
         }
 
+        private void rollback( long count )
+            throws IOException
+        {
+            recordManager.rollback();
+            // The index keeps its root in memory, reload it as committed
+            index = BTree.load( recordManager, recordManager.getNamedObject( "index" ) );
+            currentCount = count;
+        }
+
         private void initialize( String name, Properties properties )
             throws IOException
         {
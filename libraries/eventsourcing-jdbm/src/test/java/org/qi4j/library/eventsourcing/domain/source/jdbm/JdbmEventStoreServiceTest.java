@@ -16,6 +16,10 @@ package org.qi4j.library.eventsourcing.domain.source.jdbm;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 import org.junit.Test;
 import org.qi4j.api.common.UseDefaults;
@@ -25,9 +29,12 @@ import org.qi4j.api.property.Property;
 import org.qi4j.api.unitofwork.UnitOfWork;
 import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
 import org.qi4j.api.usecase.UsecaseBuilder;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.api.value.ValueSerialization;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ImportedServiceDeclaration;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Inputs;
 import org.qi4j.io.Outputs;
 import org.qi4j.io.Transforms;
 import org.qi4j.library.eventsourcing.domain.api.DomainEvent;
@@ -36,12 +43,17 @@ import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
 import org.qi4j.library.eventsourcing.domain.factory.CurrentUserUoWPrincipal;
 import org.qi4j.library.eventsourcing.domain.factory.DomainEventCreationConcern;
 import org.qi4j.library.eventsourcing.domain.factory.DomainEventFactoryService;
+import org.qi4j.library.eventsourcing.domain.source.EventManagement;
 import org.qi4j.library.eventsourcing.domain.source.EventSource;
 import org.qi4j.library.fileconfig.FileConfigurationService;
 import org.qi4j.test.AbstractQi4jTest;
 import org.qi4j.test.EntityTestAssembler;
 import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
 
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
 public class JdbmEventStoreServiceTest
         extends AbstractQi4jTest
     {
@@ -98,6 +110,59 @@ public class JdbmEventStoreServiceTest
                     }, Outputs.systemOut() ));
         }
 
+        @Test
+        public void givenBatchWhoseSecondItemFailsWhenRestoringThenNothingIsStored()
+            throws IOException
+        {
+            EventSource source = module.findService( EventSource.class ).get();
+            EventManagement management = module.findService( EventManagement.class ).get();
+            long before = source.count();
+
+            try
+            {
+                Inputs.iterable( Arrays.asList( serialized( "first" ), "not events" ) ).transferTo( management.restore() );
+                fail( "Restoring invalid events should fail" );
+            }
+            catch( Exception e )
+            {
+                // Expected
+            }
+            assertThat( source.count(), equalTo( before ) );
+
+            // Following events are stored right after the previous ones
+            Inputs.iterable( Arrays.asList( serialized( "second" ) ) ).transferTo( management.restore() );
+            assertThat( source.count(), equalTo( before + 1 ) );
+            List<UnitOfWorkDomainEventsValue> events = new ArrayList<>();
+            source.events( before, Long.MAX_VALUE ).transferTo( Outputs.collection( events ) );
+            assertThat( events.size(), equalTo( 1 ) );
+            assertThat( events.get( 0 ).usecase().get(), equalTo( "second" ) );
+        }
+
+        @Test
+        public void givenStoredEventsWhenReadingWithLimitThenOnlyLimitEventsAreRead()
+            throws IOException
+        {
+            EventSource source = module.findService( EventSource.class ).get();
+            EventManagement management = module.findService( EventManagement.class ).get();
+            long before = source.count();
+            Inputs.iterable( Arrays.asList( serialized( "first" ), serialized( "second" ), serialized( "third" ) ) )
+                .transferTo( management.restore() );
+
+            List<UnitOfWorkDomainEventsValue> events = new ArrayList<>();
+            source.events( before, 2 ).transferTo( Outputs.collection( events ) );
+            assertThat( events.size(), equalTo( 2 ) );
+            assertThat( events.get( 1 ).usecase().get(), equalTo( "second" ) );
+        }
+
+        private String serialized( String usecase )
+        {
+            ValueBuilder<UnitOfWorkDomainEventsValue> builder = module.newValueBuilder( UnitOfWorkDomainEventsValue.class );
+            builder.prototype().version().set( "1.0" );
+            builder.prototype().usecase().set( usecase );
+            builder.prototype().timestamp().set( Instant.now() );
+            return module.findService( ValueSerialization.class ).get().serialize( builder.newInstance() );
+        }
+
         @Mixins( TestEntity.Mixin.class )
         public interface TestEntity
             extends EntityComposite
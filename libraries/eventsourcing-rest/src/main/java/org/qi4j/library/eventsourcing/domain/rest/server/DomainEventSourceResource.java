@@ -18,24 +18,33 @@
 package org.qi4j.library.eventsourcing.domain.rest.server;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.service.qualifier.Tagged;
 import org.qi4j.functional.Iterables;
-import org.qi4j.io.Outputs;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
 import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
 import org.qi4j.library.eventsourcing.domain.source.EventSource;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
 import org.restlet.data.CharacterSet;
 import org.restlet.data.MediaType;
-import org.restlet.data.Reference;
 import org.restlet.data.Status;
-import org.restlet.ext.atom.*;
+import org.restlet.data.Tag;
+import org.restlet.representation.EmptyRepresentation;
+import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.representation.WriterRepresentation;
 import org.restlet.resource.ResourceException;
@@ -54,12 +63,47 @@ import static org.qi4j.functional.Iterables.iterable;
  * /n,m = events from index n to index m. These are archive pages.
  * /n = working set page, where n is the first event index to be presented
  * </code></pre>
+ * <p>
+ * Pages have strong ETags derived from the range of events they hold, so conditional requests are answered without
+ * reading events, by a 304 carrying the ETag. Full archive pages never change: they are served with long-lived cache
+ * headers, and recent ones are kept rendered in memory. Other pages must be revalidated. Large pages are streamed
+ * from the EventSource.
+ * </p>
  */
 public class DomainEventSourceResource
         extends Restlet
 {
+    /**
+     * How many events a page holds, unless an archive page range says otherwise.
+     */
+    private static final long PAGE_SIZE = 10;
+
+    /**
+     * Full archive pages with more events than this are streamed instead of kept in memory.
+     */
+    private static final long MAX_CACHED_PAGE_EVENTS = 1000;
+
+    /**
+     * How many rendered full archive pages are kept in memory.
+     */
+    private static final int MAX_CACHED_PAGES = 256;
+
+    /**
+     * How long clients and proxies may cache full archive pages, in seconds.
+     */
+    private static final int ARCHIVE_MAX_AGE = 365 * 24 * 3600;
+
     EventSource source;
 
+    private final Map<String, String> cachedPages = Collections.synchronizedMap( new LinkedHashMap<String, String>( 16, 0.75f, true )
+    {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, String> eldest )
+        {
+            return size() > MAX_CACHED_PAGES;
+        }
+    } );
+
     public DomainEventSourceResource( @Service @Tagged("domain") EventSource source )
     {
         this.source = source;
@@ -68,186 +112,273 @@ public class DomainEventSourceResource
     @Override
     public void handle( Request request, Response response )
     {
-        long eventCount = source.count();
-        long pageSize = 10;
-        long startEvent = -1;
-        long endEvent = -1;
-        long limit = pageSize;
-
-        final List<UnitOfWorkDomainEventsValue> eventsValues = new ArrayList<UnitOfWorkDomainEventsValue>();
-
-        final Feed feed = new Feed();
-        feed.setBaseReference( request.getResourceRef().getParentRef() );
-        List<Link> links = feed.getLinks();
+        final Page page = page( request.getResourceRef().getRemainingPart(), source.count() );
+        final String base = request.getResourceRef().getParentRef().toString();
 
-        String remainingPart = request.getResourceRef().getRemainingPart();
-        if (remainingPart.equals( "/" ))
+        MediaType mediaType = request.getClientInfo().getPreferredMediaType( Iterables.toList( iterable( MediaType.TEXT_HTML, MediaType.APPLICATION_ATOM ) ));
+        final boolean atom = MediaType.APPLICATION_ATOM.equals( mediaType );
+        if (!atom)
         {
-            // Current set - always contains the last "pageSize" events
-            startEvent = Math.max( 0, eventCount - pageSize - 1 );
-
-            feed.setTitle( new Text( "Current set" ) );
-
-            if (startEvent > 0)
-            {
-                long previousStart = Math.max(0, startEvent-pageSize);
-                long previousEnd = startEvent-1;
-
-                Link link = new Link( new Reference( previousStart+","+previousEnd ), new Relation( "previous" ), MediaType.APPLICATION_ATOM );
-                link.setTitle( "Previous page" );
-                links.add( link );
-            }
+            mediaType = MediaType.TEXT_HTML;
+        }
 
+        // The events of a range never change, neither do the links of a page
+        Tag tag = new Tag( page.start + "-" + page.end + "-" + ( atom ? "atom" : "html" ) );
+        if (page.full)
+        {
+            response.getCacheDirectives().add( CacheDirective.publicInfo() );
+            response.getCacheDirectives().add( CacheDirective.maxAge( ARCHIVE_MAX_AGE ) );
         } else
         {
-            // Archive
-            String[] indices = remainingPart.substring(1).split( "," );
-
-            if (indices.length == 1)
-            {
-                // Working set
-                startEvent = Long.parseLong( indices[0] );
-                endEvent = startEvent + pageSize - 1;
-                limit = pageSize;
-                feed.setTitle( new Text("Working set") );
-            } else if (indices.length == 2)
-            {
-                feed.setTitle( new Text("Archive page") );
-                startEvent = Long.parseLong( indices[0] );
-                endEvent = Long.parseLong( indices[1] );
-                limit = 1+endEvent-startEvent;
-
-            } else
-                throw new ResourceException( Status.CLIENT_ERROR_NOT_FOUND );
+            response.getCacheDirectives().add( CacheDirective.noCache() );
+        }
 
-            if (startEvent > 0)
+        for (Tag noneMatch : request.getConditions().getNoneMatch())
+        {
+            if (noneMatch.equals( Tag.ALL ) || noneMatch.getName().equals( tag.getName() ))
             {
-                long previousStart = Math.max(0, startEvent-pageSize);
-                long previousEnd = startEvent-1;
-
-                Link link = new Link( new Reference( previousStart+","+previousEnd ), new Relation( "previous" ), MediaType.APPLICATION_ATOM );
-                link.setTitle( "Previous page" );
-                links.add( link );
-            }
-
-            long nextStart = endEvent+1;
-            long nextEnd = nextStart+pageSize-1;
-
-            if (nextStart < eventCount)
-                if (nextEnd >= eventCount)
-                {
-                    Link next = new Link( new Reference( nextStart+"" ), new Relation( "next" ), MediaType.APPLICATION_ATOM );
-                    next.setTitle( "Working set" );
-                    links.add( next );
-                } else
+                // Without content, but with the ETag and expiration a full response would have
+                Representation notModified = new EmptyRepresentation();
+                notModified.setTag( tag );
+                if (page.full)
                 {
-                    Link next = new Link( new Reference( nextStart+","+nextEnd ), new Relation( "next" ), MediaType.APPLICATION_ATOM );
-                    next.setTitle( "Next page" );
-                    links.add( next );
+                    notModified.setExpirationDate( archiveExpirationDate() );
                 }
+                response.setEntity( notModified );
+                response.setStatus( Status.REDIRECTION_NOT_MODIFIED );
+                return;
+            }
         }
 
-        try
+        Representation representation;
+        if (page.full && page.end - page.start <= MAX_CACHED_PAGE_EVENTS)
         {
-            source.events( startEvent, limit ).transferTo( Outputs.collection( eventsValues ) );
-        } catch (Throwable throwable)
+            String key = base + " " + tag.getName();
+            String content = cachedPages.get( key );
+            if (content == null)
+            {
+                StringWriter writer = new StringWriter();
+                try
+                {
+                    write( page, base, atom, writer );
+                } catch (IOException e)
+                {
+                    throw new ResourceException( Status.SERVER_ERROR_INTERNAL, e );
+                }
+                content = writer.toString();
+                cachedPages.put( key, content );
+            }
+            representation = new StringRepresentation( content, mediaType );
+            representation.setExpirationDate( archiveExpirationDate() );
+        } else
         {
-            throw new ResourceException( Status.SERVER_ERROR_INTERNAL, throwable );
+            representation = new WriterRepresentation( mediaType )
+            {
+                @Override
+                public void write( Writer writer ) throws IOException
+                {
+                    DomainEventSourceResource.this.write( page, base, atom, writer );
+                }
+            };
         }
+        representation.setCharacterSet( CharacterSet.UTF_8 );
+        representation.setTag( tag );
+        response.setEntity( representation );
+    }
 
-        Link last = new Link( new Reference( "0,"+(pageSize-1) ), new Relation( "last" ), MediaType.APPLICATION_ATOM );
-        last.setTitle( "Last archive page" );
-        links.add( last );
-
-        Link first = new Link( new Reference( "." ), new Relation( "first" ), MediaType.APPLICATION_ATOM );
-        first.setTitle( "Current set" );
-        links.add( first );
+    private static Date archiveExpirationDate()
+    {
+        return new Date( System.currentTimeMillis() + ARCHIVE_MAX_AGE * 1000L );
+    }
 
-/*
-        if (previousPage != -1)
-        {
-            Link link = new Link( new Reference( ""+previousPage ), new Relation( "prev-archive" ), MediaType.APPLICATION_ATOM );
-            link.setTitle( "Previous archive page" );
-            links.add( link );
-        }
-        if (nextPage != -1)
+    private Page page( String remainingPart, long eventCount )
+    {
+        Page page = new Page();
+        if (remainingPart.isEmpty() || remainingPart.equals( "/" ))
         {
-            Link link = new Link( new Reference( "" + nextPage ), new Relation( "next-archive" ), MediaType.APPLICATION_ATOM );
-            link.setTitle( "Next archive page" );
-            links.add( link );
-        }
-        else if (startEvent != workingSetOffset)
+            // Current set - always contains the last "pageSize" events
+            page.title = "Current set";
+            page.start = Math.max( 0, eventCount - PAGE_SIZE );
+            page.end = eventCount;
+        } else
         {
-            Link next = new Link( new Reference( "" ), new Relation( "next" ), MediaType.APPLICATION_ATOM );
-            next.setTitle( "Next page" );
-            links.add( next );
+            long endEvent;
+            String[] indices = remainingPart.substring(1).split( "," );
+            try
+            {
+                if (indices.length == 1)
+                {
+                    // Working set
+                    page.title = "Working set";
+                    page.start = Long.parseLong( indices[0] );
+                    endEvent = page.start + PAGE_SIZE - 1;
+                } else if (indices.length == 2)
+                {
+                    page.title = "Archive page";
+                    page.start = Long.parseLong( indices[0] );
+                    endEvent = Long.parseLong( indices[1] );
+                    page.full = endEvent < eventCount;
+                } else
+                    throw new ResourceException( Status.CLIENT_ERROR_NOT_FOUND );
+            } catch (NumberFormatException e)
+            {
+                throw new ResourceException( Status.CLIENT_ERROR_NOT_FOUND );
+            }
+            if (page.start < 0 || endEvent < page.start || page.start > eventCount)
+                throw new ResourceException( Status.CLIENT_ERROR_NOT_FOUND );
+            page.end = Math.min( endEvent + 1, eventCount );
+
+            // Next pages are always linked as archive pages, so that full pages never change
+            long nextStart = endEvent+1;
+            long nextEnd = nextStart+PAGE_SIZE-1;
+            page.links.add( new String[]{ nextStart + "," + nextEnd, "next", "Next page" } );
         }
-*/
 
-        Date lastModified = null;
-        for (UnitOfWorkDomainEventsValue eventsValue : eventsValues)
+        if (page.start > 0)
         {
-            Entry entry = new Entry();
-            entry.setTitle( new Text( eventsValue.usecase().get() + "(" + eventsValue.user().get() + ")" ) );
-            entry.setPublished( new Date( eventsValue.timestamp().get().toEpochMilli() ) );
-            entry.setModificationDate( lastModified = new Date( eventsValue.timestamp().get().toEpochMilli() ) );
-            entry.setId( Long.toString( startEvent + 1 ) );
-            startEvent++;
-            Content content = new Content();
-            content.setInlineContent( new StringRepresentation( eventsValue.toString(), MediaType.APPLICATION_JSON ) );
-            entry.setContent( content );
-            feed.getEntries().add( entry );
+            long previousStart = Math.max(0, page.start-PAGE_SIZE);
+            long previousEnd = page.start-1;
+            page.links.add( 0, new String[]{ previousStart + "," + previousEnd, "previous", "Previous page" } );
         }
+        page.links.add( new String[]{ "0," + ( PAGE_SIZE - 1 ), "last", "Last archive page" } );
+        page.links.add( new String[]{ ".", "first", "Current set" } );
+        return page;
+    }
 
-        feed.setModificationDate( lastModified );
-
-        MediaType mediaType = request.getClientInfo().getPreferredMediaType( Iterables.toList( iterable( MediaType.TEXT_HTML, MediaType.APPLICATION_ATOM ) ));
-
-        if (MediaType.APPLICATION_ATOM.equals( mediaType ))
+    /**
+     * Write a page while reading its events, so that large pages are not held in memory.
+     */
+    private void write( Page page, String base, boolean atom, final Writer writer )
+        throws IOException
+    {
+        if (atom)
         {
-            WriterRepresentation representation = new WriterRepresentation( MediaType.APPLICATION_ATOM )
+            writer.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" );
+            writer.append( "<feed xmlns=\"http://www.w3.org/2005/Atom\" xml:base=\"" ).append( escape( base ) ).append( "\">" );
+            for (String[] link : page.links)
+            {
+                writer.append( "<link href=\"" ).append( escape( link[0] ) ).append( "\" rel=\"" ).append( link[1] )
+                      .append( "\" type=\"" ).append( MediaType.APPLICATION_ATOM.getName() )
+                      .append( "\" title=\"" ).append( escape( link[2] ) ).append( "\"/>" );
+            }
+            writer.append( "<title type=\"text\">" ).append( escape( page.title ) ).append( "</title>" );
+            if (page.end > page.start)
+            {
+                // The feed is as recent as its last event
+                final Instant[] updated = new Instant[1];
+                transferEvents( page.end - 1, 1, new Receiver<UnitOfWorkDomainEventsValue, IOException>()
+                {
+                    @Override
+                    public void receive( UnitOfWorkDomainEventsValue eventsValue )
+                    {
+                        updated[0] = eventsValue.timestamp().get();
+                    }
+                } );
+                writer.append( "<updated>" ).append( updated[0].toString() ).append( "</updated>" );
+            }
+
+            final long[] id = { page.start };
+            transferEvents( page.start, page.end - page.start, new Receiver<UnitOfWorkDomainEventsValue, IOException>()
             {
                 @Override
-                public void write( final Writer writer ) throws IOException
+                public void receive( UnitOfWorkDomainEventsValue eventsValue ) throws IOException
                 {
-                    feed.write( writer );
+                    String timestamp = eventsValue.timestamp().get().toString();
+                    writer.append( "<entry>" );
+                    writer.append( "<id>" ).append( Long.toString( ++id[0] ) ).append( "</id>" );
+                    writer.append( "<title type=\"text\">" ).append( escape( title( eventsValue ) ) ).append( "</title>" );
+                    writer.append( "<published>" ).append( timestamp ).append( "</published>" );
+                    writer.append( "<updated>" ).append( timestamp ).append( "</updated>" );
+                    writer.append( "<content type=\"" ).append( MediaType.APPLICATION_JSON.getName() ).append( "\">" );
+                    writer.append( escape( eventsValue.toString() ) );
+                    writer.append( "</content>" );
+                    writer.append( "</entry>" );
                 }
-            };
-            representation.setCharacterSet( CharacterSet.UTF_8 );
-            response.setEntity( representation );
+            } );
+            writer.append( "</feed>" );
         } else
         {
-            WriterRepresentation representation = new WriterRepresentation(MediaType.TEXT_HTML)
+            writer.append( "<html><head><title>Events</title></head><body>" );
+
+            for( String[] link : page.links )
+            {
+                writer.append( "<a href=\"").append( escape( link[0] ) ).append( "\">" );
+                writer.append( escape( link[2] ) );
+                writer.append( "</a><br/>" );
+            }
+
+            writer.append( "<ol>" );
+            transferEvents( page.start, page.end - page.start, new Receiver<UnitOfWorkDomainEventsValue, IOException>()
             {
                 @Override
-                public void write( Writer writer ) throws IOException
+                public void receive( UnitOfWorkDomainEventsValue eventsValue ) throws IOException
                 {
-                    writer.append( "<html><head><title>Events</title></head><body>" );
-
-                    for( Link link : feed.getLinks() )
-                    {
-                        writer.append( "<a href=\"").append( link.getHref().getPath()).append( "\">" );
-                        writer.append( link.getTitle() );
-                        writer.append( "</a><br/>" );
-                    }
-
-                    writer.append( "<ol>" );
-                    for( Entry entry : feed.getEntries() )
-                    {
-                        writer.append( "<li>" ).append( entry.getTitle().toString() ).append( "</li>" );
-                    }
-                    writer.append( "</ol></body>" );
+                    writer.append( "<li>" ).append( escape( title( eventsValue ) ) ).append( "</li>" );
                 }
-            };
-            representation.setCharacterSet( CharacterSet.UTF_8 );
-            response.setEntity( representation );
+            } );
+            writer.append( "</ol></body>" );
         }
+        writer.flush();
+    }
 
-/*
-        } else
+    private void transferEvents( long offset, long limit, final Receiver<UnitOfWorkDomainEventsValue, IOException> receiver )
+        throws IOException
+    {
+        if (limit <= 0)
+            return;
+
+        source.events( offset, limit ).transferTo( new Output<UnitOfWorkDomainEventsValue, IOException>()
         {
-            throw new ResourceException( Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE );
+            @Override
+            public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends UnitOfWorkDomainEventsValue, SenderThrowableType> sender )
+                throws IOException, SenderThrowableType
+            {
+                sender.sendTo( receiver );
+            }
+        } );
+    }
+
+    private static String title( UnitOfWorkDomainEventsValue eventsValue )
+    {
+        return eventsValue.usecase().get() + "(" + eventsValue.user().get() + ")";
+    }
+
+    private static String escape( String text )
+    {
+        StringBuilder escaped = new StringBuilder( text.length() );
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt( i );
+            switch (c)
+            {
+                case '<':
+                    escaped.append( "&lt;" );
+                    break;
+                case '>':
+                    escaped.append( "&gt;" );
+                    break;
+                case '&':
+                    escaped.append( "&amp;" );
+                    break;
+                case '"':
+                    escaped.append( "&quot;" );
+                    break;
+                default:
+                    escaped.append( c );
+            }
         }
-*/
+        return escaped.toString();
+    }
+
+    /**
+     * Range of events of a page, from start included to end excluded, and its links as href, rel and title.
+     */
+    private static final class Page
+    {
+        private String title;
+        private long start;
+        private long end;
+        private boolean full;
+        private final List<String[]> links = new ArrayList<String[]>();
     }
 }
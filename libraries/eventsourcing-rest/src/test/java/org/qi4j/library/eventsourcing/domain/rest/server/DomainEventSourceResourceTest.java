@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.rest.server;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
+import org.qi4j.api.usecase.UsecaseBuilder;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ImportedServiceDeclaration;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.library.eventsourcing.domain.factory.CurrentUserUoWPrincipal;
+import org.qi4j.library.eventsourcing.domain.factory.DomainEventCreationConcern;
+import org.qi4j.library.eventsourcing.domain.factory.DomainEventFactoryService;
+import org.qi4j.library.eventsourcing.domain.rest.server.DomainEventSourceResourceSample.TestEntity;
+import org.qi4j.library.eventsourcing.domain.source.memory.MemoryEventStoreService;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class DomainEventSourceResourceTest
+    extends AbstractQi4jTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+
+        module.values( DomainEventValue.class, UnitOfWorkDomainEventsValue.class );
+        module.services( MemoryEventStoreService.class ).taggedWith( "domain" );
+        module.services( DomainEventFactoryService.class );
+        module.importedServices( CurrentUserUoWPrincipal.class ).importedBy( ImportedServiceDeclaration.NEW_OBJECT );
+        module.objects( CurrentUserUoWPrincipal.class );
+
+        module.objects( DomainEventSourceResource.class );
+
+        module.entities( TestEntity.class ).withConcerns( DomainEventCreationConcern.class );
+    }
+
+    @Test
+    public void givenFullArchivePageWhenGettingThenCacheableWithETag()
+        throws Exception
+    {
+        generateEvents( 12 );
+        DomainEventSourceResource resource = module.newObject( DomainEventSourceResource.class );
+
+        Response response = get( resource, "/0,9", null );
+
+        assertThat( response.getStatus(), equalTo( Status.SUCCESS_OK ) );
+        assertNotNull( response.getEntity().getTag() );
+        assertNotNull( response.getEntity().getExpirationDate() );
+        assertTrue( cacheDirectives( response ).contains( CacheDirective.maxAge( 0 ).getName() ) );
+        assertFalse( cacheDirectives( response ).contains( CacheDirective.noCache().getName() ) );
+        assertTrue( response.getEntityAsText().contains( "Change description 10" ) );
+    }
+
+    @Test
+    public void givenMatchingETagWhenGettingThenNotModifiedWithETag()
+        throws Exception
+    {
+        generateEvents( 12 );
+        DomainEventSourceResource resource = module.newObject( DomainEventSourceResource.class );
+        Tag tag = get( resource, "/0,9", null ).getEntity().getTag();
+
+        Response response = get( resource, "/0,9", tag );
+
+        assertThat( response.getStatus(), equalTo( Status.REDIRECTION_NOT_MODIFIED ) );
+        assertThat( response.getEntity().getTag(), equalTo( tag ) );
+        assertThat( response.getEntity().getSize(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void givenOpenHeadPageWhenGettingThenNotCacheable()
+        throws Exception
+    {
+        generateEvents( 12 );
+        DomainEventSourceResource resource = module.newObject( DomainEventSourceResource.class );
+
+        Response response = get( resource, "/", null );
+        Tag tag = response.getEntity().getTag();
+
+        assertThat( response.getStatus(), equalTo( Status.SUCCESS_OK ) );
+        assertTrue( cacheDirectives( response ).contains( CacheDirective.noCache().getName() ) );
+        assertFalse( cacheDirectives( response ).contains( CacheDirective.maxAge( 0 ).getName() ) );
+
+        // The head page moves on with new events, a stale ETag must not match
+        generateEvents( 1 );
+        response = get( resource, "/", tag );
+        assertThat( response.getStatus(), equalTo( Status.SUCCESS_OK ) );
+        assertThat( response.getEntity().getTag(), not( equalTo( tag ) ) );
+    }
+
+    private static Response get( DomainEventSourceResource resource, String page, Tag noneMatch )
+    {
+        Request request = new Request( Method.GET, "http://localhost/events" + page );
+        request.getResourceRef().setBaseRef( "http://localhost/events" );
+        if( noneMatch != null )
+        {
+            request.getConditions().getNoneMatch().add( noneMatch );
+        }
+        Response response = new Response( request );
+        resource.handle( request, response );
+        return response;
+    }
+
+    private static List<String> cacheDirectives( Response response )
+    {
+        List<String> names = new ArrayList<>();
+        for( CacheDirective directive : response.getCacheDirectives() )
+        {
+            names.add( directive.getName() );
+        }
+        return names;
+    }
+
+    private void generateEvents( int count )
+        throws UnitOfWorkCompletionException
+    {
+        Principal administrator = new Principal()
+        {
+            @Override
+            public String getName()
+            {
+                return "administrator";
+            }
+        };
+        for( int idx = 0; idx < count; idx++ )
+        {
+            UnitOfWork uow = module.newUnitOfWork( UsecaseBuilder.newUsecase( "Change description " + ( idx + 1 ) ) );
+            uow.setMetaInfo( administrator );
+            TestEntity entity = uow.newEntity( TestEntity.class );
+            entity.changedDescription( "New description" );
+            uow.complete();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.qi4j.library.eventsourcing.domain.replay;
 
+import org.qi4j.io.Output;
 import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
 import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
 
@@ -28,6 +29,35 @@ public interface DomainEventPlayer
     public void playTransaction( UnitOfWorkDomainEventsValue unitOfWorkDomainValue )
             throws EventReplayException;
 
+    /**
+     * Replay transactions in parallel. Events are partitioned by entity identity, so events of an entity are
+     * replayed in order, by the same thread, while events of other entities are replayed concurrently. Entities
+     * replayed this way must not depend on each other's state.
+     * <p>
+     * Do not use this when events reference other entities, eg. through interface typed parameters: these are
+     * loaded in the UnitOfWork of the partition replaying the event, while another partition may still be replaying
+     * their events, or may conflict with it when completing its UnitOfWork.
+     * </p>
+     * <p>
+     * Events of an entity modified after their transaction are skipped, without skipping the events of other
+     * entities in the same transaction.
+     * </p>
+     * <p>
+     * Each partition replays the events of up to {@code batchSize} transactions in a single UnitOfWork.
+     * </p>
+     * <p>
+     * When {@link org.qi4j.library.eventsourcing.domain.snapshot.EntitySnapshots} is available, missing entities are
+     * restored from their latest snapshot and entities with a
+     * {@link org.qi4j.library.eventsourcing.domain.snapshot.SnapshotPolicy} are snapshotted while replaying.
+     * </p>
+     *
+     * @param offset offset in the EventSource of the first transaction received
+     * @param partitions number of partitions replayed concurrently
+     * @param batchSize number of transactions replayed per UnitOfWork
+     * @return Output replaying the transactions it receives
+     */
+    public Output<UnitOfWorkDomainEventsValue, EventReplayException> playTransactions( long offset, int partitions, int batchSize );
+
     /**
      * Invoke a domain event on a particular object. The object could
      * be the original object, but could also be a service that wants
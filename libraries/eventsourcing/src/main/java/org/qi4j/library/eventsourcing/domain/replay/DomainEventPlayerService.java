@@ -17,6 +17,9 @@
 
 package org.qi4j.library.eventsourcing.domain.replay;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.time.Duration;
 import java.time.Instant;
@@ -32,9 +35,24 @@ import java.time.YearMonth;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.json.JSONObject;
 import org.json.JSONTokener;
+import org.qi4j.api.common.Optional;
 import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.injection.scope.Service;
 import org.qi4j.api.injection.scope.Structure;
 import org.qi4j.api.mixin.Mixins;
 import org.qi4j.api.service.ServiceComposite;
@@ -44,15 +62,24 @@ import org.qi4j.api.unitofwork.UnitOfWork;
 import org.qi4j.api.unitofwork.UnitOfWorkFactory;
 import org.qi4j.api.usecase.UsecaseBuilder;
 import org.qi4j.api.value.ValueComposite;
+import org.qi4j.io.Output;
+import org.qi4j.io.Receiver;
+import org.qi4j.io.Sender;
 import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
 import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.library.eventsourcing.domain.snapshot.EntitySnapshots;
+import org.qi4j.library.eventsourcing.domain.snapshot.SnapshotPolicy;
 import org.qi4j.spi.Qi4jSPI;
 import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entity.EntityStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * DomainEventValue player
+ * DomainEventValue player.
+ * <p>
+ * Entity types and event methods are resolved once, event methods are invoked through method handles.
+ * </p>
  */
 @Mixins( DomainEventPlayerService.Mixin.class )
 public interface DomainEventPlayerService
@@ -72,21 +99,151 @@ public interface DomainEventPlayerService
         @Structure
         Qi4jSPI spi;
 
+        @Service
+        @Optional
+        EntitySnapshots snapshots;
+
+        private final Map<String, Class<?>> entityTypes = new ConcurrentHashMap<>();
+
+        private final ClassValue<Map<String, EventMethod>> eventMethods = new ClassValue<Map<String, EventMethod>>()
+        {
+            @Override
+            protected Map<String, EventMethod> computeValue( Class<?> type )
+            {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
         @Override
         public void playTransaction( UnitOfWorkDomainEventsValue unitOfWorkDomainValue )
             throws EventReplayException
         {
             UnitOfWork uow = uowf.newUnitOfWork( UsecaseBuilder.newUsecase( "Event replay" ) );
-            DomainEventValue currentEventValue = null;
             try
             {
-                for( DomainEventValue domainEventValue : unitOfWorkDomainValue.events().get() )
+                playEvents( unitOfWorkDomainValue.events().get(), unitOfWorkDomainValue.timestamp().get() );
+                uow.complete();
+            }
+            catch( EventReplayException e )
+            {
+                uow.discard();
+                throw e;
+            }
+            catch( Exception e )
+            {
+                uow.discard();
+                throw new EventReplayException( last( unitOfWorkDomainValue.events().get() ), e );
+            }
+        }
+
+        @Override
+        public Output<UnitOfWorkDomainEventsValue, EventReplayException> playTransactions( final long offset,
+                                                                                    final int partitions,
+                                                                                    final int batchSize )
+        {
+            return new Output<UnitOfWorkDomainEventsValue, EventReplayException>()
+            {
+                @Override
+                public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends UnitOfWorkDomainEventsValue, SenderThrowableType> sender )
+                    throws EventReplayException, SenderThrowableType
+                {
+                    final long[] transactionOffset = { offset };
+                    final AtomicReference<EventReplayException> failure = new AtomicReference<>();
+                    final List<ReplayPartition> replayPartitions = new ArrayList<>( partitions );
+                    ExecutorService executor = Executors.newFixedThreadPool( partitions );
+                    try
+                    {
+                        for( int idx = 0; idx < partitions; idx++ )
+                        {
+                            ReplayPartition partition = new ReplayPartition( batchSize, failure );
+                            replayPartitions.add( partition );
+                            executor.execute( partition );
+                        }
+                        try
+                        {
+                            sender.sendTo( new Receiver<UnitOfWorkDomainEventsValue, EventReplayException>()
+                            {
+                                @Override
+                                public void receive( UnitOfWorkDomainEventsValue transaction )
+                                    throws EventReplayException
+                                {
+                                    if( failure.get() != null )
+                                    {
+                                        throw failure.get();
+                                    }
+                                    // Split the transaction events by partition, keeping their order
+                                    Map<Integer, List<DomainEventValue>> partitioned = new HashMap<>();
+                                    for( DomainEventValue event : transaction.events().get() )
+                                    {
+                                        int partition = Math.floorMod( event.entityId().get().hashCode(), partitions );
+                                        List<DomainEventValue> events = partitioned.get( partition );
+                                        if( events == null )
+                                        {
+                                            events = new ArrayList<>();
+                                            partitioned.put( partition, events );
+                                        }
+                                        events.add( event );
+                                    }
+                                    for( Map.Entry<Integer, List<DomainEventValue>> entry : partitioned.entrySet() )
+                                    {
+                                        replayPartitions.get( entry.getKey() ).add( new ReplayTransaction(
+                                            entry.getValue(), transaction.timestamp().get(), transactionOffset[ 0 ] ) );
+                                    }
+                                    transactionOffset[ 0 ]++;
+                                }
+                            } );
+                        }
+                        finally
+                        {
+                            for( ReplayPartition partition : replayPartitions )
+                            {
+                                partition.add( ReplayTransaction.END );
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        executor.shutdown();
+                        boolean interrupted = false;
+                        while( !executor.isTerminated() )
+                        {
+                            try
+                            {
+                                executor.awaitTermination( 1, TimeUnit.SECONDS );
+                            }
+                            catch( InterruptedException e )
+                            {
+                                interrupted = true;
+                            }
+                        }
+                        if( interrupted )
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    if( failure.get() != null )
+                    {
+                        throw failure.get();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Play events of a transaction in the current UnitOfWork, unless their entity was modified after it.
+         */
+        private void playEvents( Iterable<DomainEventValue> events, Instant timestamp )
+            throws EventReplayException
+        {
+            UnitOfWork uow = uowf.currentUnitOfWork();
+            for( DomainEventValue domainEventValue : events )
+            {
+                Object entity;
+                try
                 {
-                    currentEventValue = domainEventValue;
                     // Get the entity
-                    Class entityType = module.classLoader().loadClass( domainEventValue.entityType().get() );
+                    Class<?> entityType = entityType( domainEventValue.entityType().get() );
                     String id = domainEventValue.entityId().get();
-                    Object entity = null;
                     try
                     {
                         entity = uow.get( entityType, id );
@@ -99,26 +256,17 @@ public interface DomainEventPlayerService
 
                     // check if the event has already occured
                     EntityState state = spi.entityStateOf( (EntityComposite) entity );
-                    if( state.lastModified().isAfter( unitOfWorkDomainValue.timestamp().get() ) )
+                    if( state.status() != EntityStatus.NEW && state.lastModified().isAfter( timestamp ) )
                     {
                         break; // don't rerun event in this unitOfWorkDomainValue
                     }
-
-                    playEvent( domainEventValue, entity );
                 }
-                uow.complete();
-            }
-            catch( Exception e )
-            {
-                uow.discard();
-                if( e instanceof EventReplayException )
+                catch( Exception e )
                 {
-                    throw ( (EventReplayException) e );
-                }
-                else
-                {
-                    throw new EventReplayException( currentEventValue, e );
+                    throw new EventReplayException( domainEventValue, e );
                 }
+
+                playEvent( domainEventValue, entity );
             }
         }
 
@@ -130,9 +278,9 @@ public interface DomainEventPlayerService
             Class entityType = object.getClass();
 
             // Get method
-            Method eventMethod = getEventMethod( entityType, domainEventValue.name().get() );
+            EventMethod eventMethod = eventMethod( entityType, domainEventValue.name().get() );
 
-            if( eventMethod == null )
+            if( eventMethod == EventMethod.NONE )
             {
                 logger.warn( "Could not find event method " + domainEventValue.name()
                     .get() + " in entity of type " + entityType.getName() );
@@ -144,10 +292,10 @@ public interface DomainEventPlayerService
             {
                 String jsonParameters = domainEventValue.parameters().get();
                 JSONObject parameters = (JSONObject) new JSONTokener( jsonParameters ).nextValue();
-                Object[] args = new Object[ eventMethod.getParameterTypes().length ];
-                for( int i = 1; i < eventMethod.getParameterTypes().length; i++ )
+                Object[] args = new Object[ eventMethod.parameterTypes.length ];
+                for( int i = 1; i < eventMethod.parameterTypes.length; i++ )
                 {
-                    Class<?> parameterType = eventMethod.getParameterTypes()[ i ];
+                    Class<?> parameterType = eventMethod.parameterTypes[ i ];
 
                     String paramName = "param" + i;
 
@@ -161,9 +309,14 @@ public interface DomainEventPlayerService
                 // Invoke method
                 logger.debug( "Replay:" + domainEventValue + " on:" + object );
 
-                eventMethod.invoke( object, args );
+                // invokeExact needs the exact ( Object, Object[] ) -> Object call site
+                Object ignored = eventMethod.handle.invokeExact( object, args );
             }
-            catch( Exception e )
+            catch( Error e )
+            {
+                throw e;
+            }
+            catch( Throwable e )
             {
                 throw new EventReplayException( domainEventValue, e );
             }
@@ -266,6 +419,31 @@ public interface DomainEventPlayerService
             }
         }
 
+        private Class<?> entityType( String name )
+            throws ClassNotFoundException
+        {
+            Class<?> entityType = entityTypes.get( name );
+            if( entityType == null )
+            {
+                entityType = module.classLoader().loadClass( name );
+                entityTypes.put( name, entityType );
+            }
+            return entityType;
+        }
+
+        private EventMethod eventMethod( Class<?> aClass, String eventName )
+        {
+            Map<String, EventMethod> methods = eventMethods.get( aClass );
+            EventMethod eventMethod = methods.get( eventName );
+            if( eventMethod == null )
+            {
+                Method method = getEventMethod( aClass, eventName );
+                eventMethod = method == null ? EventMethod.NONE : new EventMethod( method );
+                methods.put( eventName, eventMethod );
+            }
+            return eventMethod;
+        }
+
         private Method getEventMethod( Class<?> aClass, String eventName )
         {
             for( Method method : aClass.getMethods() )
@@ -281,5 +459,278 @@ public interface DomainEventPlayerService
             }
             return null;
         }
+
+        private static DomainEventValue last( List<DomainEventValue> events )
+        {
+            return events.isEmpty() ? null : events.get( events.size() - 1 );
+        }
+
+        /**
+         * Event method resolved once per entity type and event name.
+         */
+        private static final class EventMethod
+        {
+            private static final EventMethod NONE = new EventMethod();
+
+            private final MethodHandle handle;
+            private final Class<?>[] parameterTypes;
+
+            private EventMethod()
+            {
+                handle = null;
+                parameterTypes = null;
+            }
+
+            private EventMethod( Method method )
+            {
+                parameterTypes = method.getParameterTypes();
+                MethodHandle methodHandle;
+                try
+                {
+                    methodHandle = MethodHandles.publicLookup().unreflect( method );
+                }
+                catch( IllegalAccessException e )
+                {
+                    method.setAccessible( true );
+                    try
+                    {
+                        methodHandle = MethodHandles.lookup().unreflect( method );
+                    }
+                    catch( IllegalAccessException ex )
+                    {
+                        throw new IllegalStateException( "Could not access event method " + method, ex );
+                    }
+                }
+                // Invoked as ( Object target, Object[] arguments ) -> Object
+                handle = methodHandle.asSpreader( Object[].class, parameterTypes.length )
+                    .asType( MethodType.methodType( Object.class, Object.class, Object[].class ) );
+            }
+        }
+
+        /**
+         * Events of a transaction for a single partition.
+         */
+        private static final class ReplayTransaction
+        {
+            private static final ReplayTransaction END = new ReplayTransaction( null, null, -1 );
+
+            private final List<DomainEventValue> events;
+            private final Instant timestamp;
+            private final long offset;
+
+            private ReplayTransaction( List<DomainEventValue> events, Instant timestamp, long offset )
+            {
+                this.events = events;
+                this.timestamp = timestamp;
+                this.offset = offset;
+            }
+        }
+
+        /**
+         * Replay the events of a partition in order, committing every batchSize transactions.
+         * <p>
+         * Entities missing from the EntityStore are restored from their latest snapshot, if any, and their events
+         * before the snapshot offset are skipped. Entities with a {@link SnapshotPolicy} are snapshotted once every
+         * {@link SnapshotPolicy#every()} of their replayed events, after the transaction of the last one.
+         * </p>
+         * <p>
+         * Entities other than the one of an event, eg. interface typed event parameters, are loaded with
+         * {@link UnitOfWork#get(Class, String)} in the UnitOfWork of this partition, while the partition owning them
+         * may be replaying their events concurrently.
+         * </p>
+         */
+        private final class ReplayPartition
+            implements Runnable
+        {
+            private final BlockingQueue<ReplayTransaction> transactions = new ArrayBlockingQueue<>( 1024 );
+            private final int batchSize;
+            private final AtomicReference<EventReplayException> failure;
+
+            // Offset from which events of the entities seen by this replay are played
+            private final Map<String, Long> replayedFrom = new HashMap<>();
+
+            // Events played since the last snapshot of entities with a SnapshotPolicy
+            private final Map<String, Integer> sinceSnapshot = new HashMap<>();
+
+            private ReplayPartition( int batchSize, AtomicReference<EventReplayException> failure )
+            {
+                this.batchSize = batchSize;
+                this.failure = failure;
+            }
+
+            private void add( ReplayTransaction transaction )
+            {
+                boolean interrupted = false;
+                while( true )
+                {
+                    try
+                    {
+                        transactions.put( transaction );
+                        break;
+                    }
+                    catch( InterruptedException e )
+                    {
+                        interrupted = true;
+                    }
+                }
+                if( interrupted )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void run()
+            {
+                UnitOfWork uow = null;
+                int batched = 0;
+                ReplayTransaction transaction = null;
+                try
+                {
+                    while( ( transaction = transactions.take() ) != ReplayTransaction.END )
+                    {
+                        if( failure.get() != null )
+                        {
+                            // Keep taking transactions so that the sender is not blocked
+                            continue;
+                        }
+                        if( uow == null )
+                        {
+                            uow = uowf.newUnitOfWork( UsecaseBuilder.newUsecase( "Event replay" ) );
+                        }
+                        play( transaction );
+                        if( ++batched >= batchSize )
+                        {
+                            uow.complete();
+                            uow = null;
+                            batched = 0;
+                        }
+                    }
+                    if( uow != null )
+                    {
+                        uow.complete();
+                        uow = null;
+                    }
+                }
+                catch( EventReplayException e )
+                {
+                    failure.compareAndSet( null, e );
+                }
+                catch( Throwable e )
+                {
+                    // Errors too, they would be lost with this thread and leave the sender blocked
+                    failure.compareAndSet( null, new EventReplayException(
+                        transaction == null || transaction.events == null ? null : last( transaction.events ), e ) );
+                }
+                finally
+                {
+                    if( uow != null )
+                    {
+                        uow.discard();
+                    }
+                    if( failure.get() != null && transaction != ReplayTransaction.END )
+                    {
+                        // Drain until the end so that the sender is not blocked
+                        drain();
+                    }
+                }
+            }
+
+            private void play( ReplayTransaction transaction )
+                throws EventReplayException
+            {
+                UnitOfWork uow = uowf.currentUnitOfWork();
+                Set<Object> snapshotted = new LinkedHashSet<>();
+                for( DomainEventValue domainEventValue : transaction.events )
+                {
+                    Object entity;
+                    String id = domainEventValue.entityId().get();
+                    try
+                    {
+                        Class<?> entityType = entityType( domainEventValue.entityType().get() );
+                        Long from = replayedFrom.get( id );
+                        if( from == null )
+                        {
+                            from = transaction.offset;
+                            try
+                            {
+                                entity = uow.get( entityType, id );
+
+                                // check if the event has already occured
+                                EntityState state = spi.entityStateOf( (EntityComposite) entity );
+                                if( state.lastModified().isAfter( transaction.timestamp ) )
+                                {
+                                    // Already played, skip the events of this entity only, the other entities of
+                                    // the partition may not have been
+                                    continue;
+                                }
+                            }
+                            catch( NoSuchEntityException e )
+                            {
+                                long snapshotOffset = snapshots == null ? -1 : snapshots.restoreSnapshot( entityType, id );
+                                if( snapshotOffset < 0 )
+                                {
+                                    uow.newEntity( entityType, id );
+                                }
+                                else if( snapshotOffset > from )
+                                {
+                                    from = snapshotOffset;
+                                }
+                            }
+                            replayedFrom.put( id, from );
+                        }
+                        if( transaction.offset < from )
+                        {
+                            continue; // already in the snapshot the entity was restored from
+                        }
+                        entity = uow.get( entityType, id );
+                    }
+                    catch( Exception e )
+                    {
+                        throw new EventReplayException( domainEventValue, e );
+                    }
+
+                    playEvent( domainEventValue, entity );
+
+                    if( snapshots != null )
+                    {
+                        SnapshotPolicy policy = spi.entityDescriptorFor( entity ).metaInfo( SnapshotPolicy.class );
+                        if( policy != null )
+                        {
+                            Integer count = sinceSnapshot.get( id );
+                            count = count == null ? 1 : count + 1;
+                            if( count >= policy.every() )
+                            {
+                                snapshotted.add( entity );
+                                count = 0;
+                            }
+                            sinceSnapshot.put( id, count );
+                        }
+                    }
+                }
+                for( Object entity : snapshotted )
+                {
+                    snapshots.takeSnapshot( (EntityComposite) entity, transaction.offset + 1 );
+                }
+            }
+
+            private void drain()
+            {
+                while( true )
+                {
+                    try
+                    {
+                        if( transactions.take() == ReplayTransaction.END )
+                        {
+                            return;
+                        }
+                    }
+                    catch( InterruptedException e )
+                    {
+                        return;
+                    }
+                }
+            }
+        }
     }
 }
\ No newline at end of file
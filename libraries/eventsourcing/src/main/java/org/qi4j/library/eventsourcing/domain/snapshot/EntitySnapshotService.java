@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.snapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.qi4j.api.association.AssociationDescriptor;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityDescriptor;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.injection.scope.Structure;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.property.PropertyDescriptor;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.api.service.qualifier.Tagged;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWorkFactory;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.api.value.ValueSerialization;
+import org.qi4j.spi.Qi4jSPI;
+import org.qi4j.spi.entity.EntityState;
+import org.qi4j.spi.entity.ManyAssociationState;
+import org.qi4j.spi.entity.NamedAssociationState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * EntitySnapshots capturing the raw state of entities, properties serialized as JSON, and storing it in the
+ * {@link SnapshotStore}.
+ * <p>
+ * Snapshot state whose qualified name the entity type no longer declares is skipped on restore, so snapshots
+ * taken before a property or association was removed or renamed remain usable.
+ * </p>
+ */
+@Mixins( EntitySnapshotService.Mixin.class )
+public interface EntitySnapshotService
+    extends EntitySnapshots, ServiceComposite
+{
+    class Mixin
+        implements EntitySnapshots
+    {
+        Logger logger = LoggerFactory.getLogger( EntitySnapshots.class );
+
+        @Structure
+        Qi4jSPI spi;
+
+        @Structure
+        UnitOfWorkFactory uowf;
+
+        @Structure
+        Module module;
+
+        @Service
+        SnapshotStore snapshotStore;
+
+        @Service
+        @Tagged( ValueSerialization.Formats.JSON )
+        ValueSerialization valueSerialization;
+
+        @Override
+        public void takeSnapshot( EntityComposite entity, long offset )
+        {
+            EntityState state = spi.entityStateOf( entity );
+            EntityDescriptor descriptor = state.entityDescriptor();
+
+            Map<String, String> properties = new HashMap<>();
+            for( PropertyDescriptor property : descriptor.state().properties() )
+            {
+                Object value = state.propertyValueOf( property.qualifiedName() );
+                if( value != null )
+                {
+                    properties.put( property.qualifiedName().toString(), valueSerialization.serialize( value ) );
+                }
+            }
+
+            Map<String, String> associations = new HashMap<>();
+            for( AssociationDescriptor association : descriptor.state().associations() )
+            {
+                EntityReference reference = state.associationValueOf( association.qualifiedName() );
+                if( reference != null )
+                {
+                    associations.put( association.qualifiedName().toString(), reference.identity() );
+                }
+            }
+
+            Map<String, List<String>> manyAssociations = new HashMap<>();
+            for( AssociationDescriptor association : descriptor.state().manyAssociations() )
+            {
+                List<String> references = new ArrayList<>();
+                for( EntityReference reference : state.manyAssociationValueOf( association.qualifiedName() ) )
+                {
+                    references.add( reference.identity() );
+                }
+                manyAssociations.put( association.qualifiedName().toString(), references );
+            }
+
+            Map<String, Map<String, String>> namedAssociations = new HashMap<>();
+            for( AssociationDescriptor association : descriptor.state().namedAssociations() )
+            {
+                NamedAssociationState namedState = state.namedAssociationValueOf( association.qualifiedName() );
+                Map<String, String> references = new HashMap<>();
+                for( String name : namedState )
+                {
+                    references.put( name, namedState.get( name ).identity() );
+                }
+                namedAssociations.put( association.qualifiedName().toString(), references );
+            }
+
+            ValueBuilder<EntitySnapshotValue> builder = module.newValueBuilder( EntitySnapshotValue.class );
+            EntitySnapshotValue prototype = builder.prototype();
+            prototype.entityType().set( descriptor.types().iterator().next().getName() );
+            prototype.entityId().set( state.identity().identity() );
+            prototype.offset().set( offset );
+            prototype.properties().set( properties );
+            prototype.associations().set( associations );
+            prototype.manyAssociations().set( manyAssociations );
+            prototype.namedAssociations().set( namedAssociations );
+            snapshotStore.storeSnapshot( builder.newInstance() );
+        }
+
+        @Override
+        public long restoreSnapshot( Class<?> type, String entityId )
+        {
+            EntitySnapshotValue snapshot = snapshotStore.latestSnapshot( entityId );
+            if( snapshot == null )
+            {
+                return -1;
+            }
+
+            EntityBuilder<?> builder = uowf.currentUnitOfWork().newEntityBuilder( type, entityId );
+            EntityState state = spi.entityStateOf( (EntityComposite) builder.instance() );
+            EntityDescriptor descriptor = state.entityDescriptor();
+
+            // State the entity type no longer declares, eg. removed or renamed properties, is skipped
+            for( Map.Entry<String, String> property : snapshot.properties().get().entrySet() )
+            {
+                PropertyDescriptor propertyDescriptor = findProperty( descriptor.state().properties(), property.getKey() );
+                if( propertyDescriptor == null )
+                {
+                    skipped( snapshot, "property", property.getKey() );
+                    continue;
+                }
+                state.setPropertyValue( propertyDescriptor.qualifiedName(),
+                                        valueSerialization.deserialize( propertyDescriptor.valueType(), property.getValue() ) );
+            }
+            for( Map.Entry<String, String> association : snapshot.associations().get().entrySet() )
+            {
+                AssociationDescriptor associationDescriptor = findAssociation( descriptor.state().associations(), association.getKey() );
+                if( associationDescriptor == null )
+                {
+                    skipped( snapshot, "association", association.getKey() );
+                    continue;
+                }
+                state.setAssociationValue( associationDescriptor.qualifiedName(),
+                                           EntityReference.parseEntityReference( association.getValue() ) );
+            }
+            for( Map.Entry<String, List<String>> association : snapshot.manyAssociations().get().entrySet() )
+            {
+                AssociationDescriptor associationDescriptor = findAssociation( descriptor.state().manyAssociations(), association.getKey() );
+                if( associationDescriptor == null )
+                {
+                    skipped( snapshot, "many-association", association.getKey() );
+                    continue;
+                }
+                ManyAssociationState manyState = state.manyAssociationValueOf( associationDescriptor.qualifiedName() );
+                for( String reference : association.getValue() )
+                {
+                    manyState.add( manyState.count(), EntityReference.parseEntityReference( reference ) );
+                }
+            }
+            for( Map.Entry<String, Map<String, String>> association : snapshot.namedAssociations().get().entrySet() )
+            {
+                AssociationDescriptor associationDescriptor = findAssociation( descriptor.state().namedAssociations(), association.getKey() );
+                if( associationDescriptor == null )
+                {
+                    skipped( snapshot, "named-association", association.getKey() );
+                    continue;
+                }
+                NamedAssociationState namedState = state.namedAssociationValueOf( associationDescriptor.qualifiedName() );
+                for( Map.Entry<String, String> reference : association.getValue().entrySet() )
+                {
+                    namedState.put( reference.getKey(), EntityReference.parseEntityReference( reference.getValue() ) );
+                }
+            }
+            builder.newInstance();
+            return snapshot.offset().get();
+        }
+
+        private static PropertyDescriptor findProperty( Iterable<? extends PropertyDescriptor> properties, String name )
+        {
+            QualifiedName qualifiedName = QualifiedName.fromFQN( name );
+            for( PropertyDescriptor property : properties )
+            {
+                if( property.qualifiedName().equals( qualifiedName ) )
+                {
+                    return property;
+                }
+            }
+            return null;
+        }
+
+        private static AssociationDescriptor findAssociation( Iterable<? extends AssociationDescriptor> associations, String name )
+        {
+            QualifiedName qualifiedName = QualifiedName.fromFQN( name );
+            for( AssociationDescriptor association : associations )
+            {
+                if( association.qualifiedName().equals( qualifiedName ) )
+                {
+                    return association;
+                }
+            }
+            return null;
+        }
+
+        private void skipped( EntitySnapshotValue snapshot, String kind, String name )
+        {
+            logger.debug( "Skipped unknown {} {} in snapshot of {} at offset {}",
+                          kind, name, snapshot.entityId().get(), snapshot.offset().get() );
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.snapshot;
+
+import org.qi4j.api.entity.EntityBuilder;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.injection.scope.Structure;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.service.ServiceComposite;
+import org.qi4j.api.unitofwork.NoSuchEntityException;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkFactory;
+
+/**
+ * SnapshotStore storing snapshots in the EntityStore, in the current UnitOfWork.
+ * <p>
+ * Snapshots are stored as {@link EntitySnapshotEntity} that must be assembled along with {@link EntitySnapshotValue}.
+ * </p>
+ */
+@Mixins( EntitySnapshotStoreService.Mixin.class )
+public interface EntitySnapshotStoreService
+    extends SnapshotStore, ServiceComposite
+{
+    public interface EntitySnapshotEntity
+        extends EntityComposite
+    {
+        Property<EntitySnapshotValue> snapshot();
+    }
+
+    class Mixin
+        implements SnapshotStore
+    {
+        @Structure
+        UnitOfWorkFactory uowf;
+
+        @Override
+        public EntitySnapshotValue latestSnapshot( String entityId )
+        {
+            try
+            {
+                return uowf.currentUnitOfWork().get( EntitySnapshotEntity.class, snapshotId( entityId ) ).snapshot().get();
+            }
+            catch( NoSuchEntityException e )
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public void storeSnapshot( EntitySnapshotValue snapshot )
+        {
+            UnitOfWork uow = uowf.currentUnitOfWork();
+            String id = snapshotId( snapshot.entityId().get() );
+            try
+            {
+                uow.get( EntitySnapshotEntity.class, id ).snapshot().set( snapshot );
+            }
+            catch( NoSuchEntityException e )
+            {
+                EntityBuilder<EntitySnapshotEntity> builder = uow.newEntityBuilder( EntitySnapshotEntity.class, id );
+                builder.instance().snapshot().set( snapshot );
+                builder.newInstance();
+            }
+        }
+
+        private static String snapshotId( String entityId )
+        {
+            return "snapshot:" + entityId;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.snapshot;
+
+import java.util.List;
+import java.util.Map;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.value.ValueComposite;
+
+/**
+ * State of an entity after the events of all transactions before an offset of the EventSource.
+ */
+public interface EntitySnapshotValue
+    extends ValueComposite
+{
+    // Type of the entity
+    Property<String> entityType();
+
+    // Id of the entity
+    Property<String> entityId();
+
+    // Offset of the first transaction whose events are not in the snapshot
+    Property<Long> offset();
+
+    // Property values as JSON, by qualified name
+    @UseDefaults
+    Property<Map<String, String>> properties();
+
+    // Associated entity ids, by qualified name
+    @UseDefaults
+    Property<Map<String, String>> associations();
+
+    @UseDefaults
+    Property<Map<String, List<String>>> manyAssociations();
+
+    @UseDefaults
+    Property<Map<String, Map<String, String>>> namedAssociations();
+}
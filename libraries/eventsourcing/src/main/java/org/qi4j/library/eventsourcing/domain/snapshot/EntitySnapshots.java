@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.snapshot;
+
+import org.qi4j.api.entity.EntityComposite;
+
+/**
+ * Take and restore snapshots of event-sourced entities, in the current UnitOfWork.
+ */
+public interface EntitySnapshots
+{
+    /**
+     * Snapshot the current state of an entity.
+     *
+     * @param entity Entity to snapshot
+     * @param offset Offset of the first transaction whose events are not applied to the entity
+     */
+    void takeSnapshot( EntityComposite entity, long offset );
+
+    /**
+     * Create an entity from its latest snapshot.
+     *
+     * @param type Type of the entity
+     * @param entityId Id of the entity
+     * @return Offset of the first transaction whose events are not in the snapshot, or -1 if the entity has no
+     *         snapshot and was not created
+     */
+    long restoreSnapshot( Class<?> type, String entityId );
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.snapshot;
+
+/**
+ * Set an instance of this in the MetaInfo of an event-sourced entity type to snapshot its entities while replaying
+ * events, once every {@link #every()} of their events.
+ * <p>
+ * Without it, entities of the type are never snapshotted.
+ * </p>
+ */
+public final class SnapshotPolicy
+{
+    private final int every;
+
+    public SnapshotPolicy( int every )
+    {
+        if( every <= 0 )
+        {
+            throw new IllegalArgumentException( "Snapshot frequency must be above 0" );
+        }
+        this.every = every;
+    }
+
+    public int every()
+    {
+        return every;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.snapshot;
+
+/**
+ * Store of entity snapshots, keeping the latest snapshot of each entity.
+ */
+public interface SnapshotStore
+{
+    /**
+     * @param entityId Id of the entity
+     * @return The latest snapshot of the entity, or null if it has none
+     */
+    EntitySnapshotValue latestSnapshot( String entityId );
+
+    /**
+     * Store a snapshot, replacing the previous one of its entity.
+     *
+     * @param snapshot Snapshot to store
+     */
+    void storeSnapshot( EntitySnapshotValue snapshot );
+}
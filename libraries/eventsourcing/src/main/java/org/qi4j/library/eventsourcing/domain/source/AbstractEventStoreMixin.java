@@ -19,10 +19,19 @@ package org.qi4j.library.eventsourcing.domain.source;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.qi4j.api.entity.Identity;
@@ -30,7 +39,9 @@ import org.qi4j.api.injection.scope.Structure;
 import org.qi4j.api.injection.scope.This;
 import org.qi4j.api.structure.Module;
 import org.qi4j.api.type.ValueType;
+import org.qi4j.io.Inputs;
 import org.qi4j.io.Output;
+import org.qi4j.io.Outputs;
 import org.qi4j.io.Receiver;
 import org.qi4j.io.Sender;
 import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
@@ -38,14 +49,41 @@ import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static java.util.Collections.synchronizedList;
-
 /**
  * Base implementation for EventStores.
+ * <p>
+ * Events stored concurrently are group-committed: producers enqueue them and wait while a single writer thread
+ * hands all pending ones to {@link #storeEvents0()} at once, so that a store commits once per batch instead of once
+ * per UnitOfWork. Listeners are notified asynchronously in store order, each one independently of the others.
+ * </p>
+ * <p>
+ * Subscriptions get the stored events pushed to a bounded buffer. When it is full, stored events are dropped from it
+ * and the subscription reads them back from the {@link EventSource} instead.
+ * </p>
  */
 public abstract class AbstractEventStoreMixin
-        implements EventStore, EventStream, EventStoreActivation
+        implements EventStore, EventStream, EventSource, EventStoreActivation
 {
+    /**
+     * How many appends can wait for the writer, producers wait when it is reached.
+     */
+    private static final int MAX_PENDING_APPENDS = 1024;
+
+    /**
+     * How many appends the writer stores at once.
+     */
+    private static final int MAX_BATCH_APPENDS = 256;
+
+    /**
+     * How many stored batches a subscription buffers.
+     */
+    private static final int MAX_SUBSCRIPTION_PENDING = 1024;
+
+    /**
+     * How many transactions a subscription delivers at once, unless a single stored batch is larger.
+     */
+    private static final int MAX_SUBSCRIPTION_BATCH = 256;
+
     @This
     protected Identity identity;
 
@@ -60,7 +98,13 @@ public abstract class AbstractEventStoreMixin
 
     private ExecutorService transactionNotifier;
 
-    final private List<UnitOfWorkEventsListener> listeners = synchronizedList( new ArrayList<UnitOfWorkEventsListener>() );
+    private final BlockingQueue<Append> appends = new ArrayBlockingQueue<>( MAX_PENDING_APPENDS );
+    private volatile boolean writing;
+    private Thread writer;
+
+    final private List<ListenerDispatch> listeners = new CopyOnWriteArrayList<>();
+
+    final private List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
 
     @Override
     public void activateEventStore() throws Exception
@@ -70,12 +114,31 @@ public abstract class AbstractEventStoreMixin
         domainEventType = module.valueDescriptor( DomainEventValue.class.getName() ).valueType();
         eventsType = module.valueDescriptor( UnitOfWorkDomainEventsValue.class.getName() ).valueType();
 
-        transactionNotifier = Executors.newSingleThreadExecutor();
+        transactionNotifier = Executors.newCachedThreadPool();
+
+        writing = true;
+        writer = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writeAppends();
+            }
+        }, identity.identity().get() + " writer" );
+        writer.setDaemon( true );
+        writer.start();
     }
 
     @Override
     public void passivateEventStore() throws Exception
     {
+        // Pending appends are written before the writer stops
+        writing = false;
+        if( writer != null )
+        {
+            writer.join();
+        }
+
         transactionNotifier.shutdown();
         transactionNotifier.awaitTermination( 10000, TimeUnit.MILLISECONDS );
     }
@@ -87,60 +150,24 @@ public abstract class AbstractEventStoreMixin
     @Override
     public Output<UnitOfWorkDomainEventsValue, IOException> storeEvents()
     {
-        final Output<UnitOfWorkDomainEventsValue, IOException> storeOutput = storeEvents0();
-
         return new Output<UnitOfWorkDomainEventsValue, IOException>()
         {
             @Override
             public <SenderThrowableType extends Throwable> void receiveFrom( final Sender<? extends UnitOfWorkDomainEventsValue, SenderThrowableType> sender ) throws IOException, SenderThrowableType
             {
                 final List<UnitOfWorkDomainEventsValue> events = new ArrayList<UnitOfWorkDomainEventsValue>(  );
-                lock();
-                try
-                {
-                    storeOutput.receiveFrom(new Sender<UnitOfWorkDomainEventsValue, SenderThrowableType>()
-                    {
-                        @Override
-                        public <ReceiverThrowableType extends Throwable> void sendTo( final Receiver<? super UnitOfWorkDomainEventsValue, ReceiverThrowableType> receiver ) throws ReceiverThrowableType, SenderThrowableType
-                        {
-                            sender.sendTo( new Receiver<UnitOfWorkDomainEventsValue, ReceiverThrowableType>()
-                            {
-                                @Override
-                                public void receive( UnitOfWorkDomainEventsValue item ) throws ReceiverThrowableType
-                                {
-                                    receiver.receive( item );
-                                    events.add( item );
-                                }
-                            });
-                        }
-                    });
-
-                } finally
-                {
-                    lock.unlock();
-                }
-
-                // Notify listeners
-                transactionNotifier.submit( new Runnable()
+                sender.sendTo( new Receiver<UnitOfWorkDomainEventsValue, SenderThrowableType>()
                 {
                     @Override
-                    public void run()
+                    public void receive( UnitOfWorkDomainEventsValue item )
                     {
-                        synchronized(listeners)
-                        {
-                            for( UnitOfWorkEventsListener listener : listeners )
-                            {
-                                try
-                                {
-                                    listener.notifyTransactions( events );
-                                } catch( Exception e )
-                                {
-                                    logger.warn( "Could not notify event listener", e );
-                                }
-                            }
-                        }
+                        events.add( item );
                     }
                 } );
+                if( !events.isEmpty() )
+                {
+                    append( new Append( events ) );
+                }
             }
         };
     }
@@ -149,15 +176,35 @@ public abstract class AbstractEventStoreMixin
     @Override
     public void registerListener( UnitOfWorkEventsListener subscriber )
     {
-        listeners.add( subscriber );
+        listeners.add( new ListenerDispatch( subscriber ) );
     }
 
     @Override
     public void unregisterListener( UnitOfWorkEventsListener subscriber )
     {
-        listeners.remove( subscriber );
+        for( ListenerDispatch dispatch : listeners )
+        {
+            if( dispatch.listener.equals( subscriber ) )
+            {
+                listeners.remove( dispatch );
+                return;
+            }
+        }
+    }
+
+    @Override
+    public EventSubscription subscribe( long offset, Output<UnitOfWorkDomainEventsValue, ? extends Throwable> output )
+    {
+        Subscription subscription = new Subscription( offset, output );
+        subscriptions.add( subscription );
+        subscription.schedule();
+        return subscription;
     }
 
+    /**
+     * Called with the store locked. The events sent to the returned Output must be stored all or none, a failure
+     * leaving the store and its count as they were before.
+     */
     abstract protected Output<UnitOfWorkDomainEventsValue, IOException> storeEvents0();
 
     /**
@@ -166,16 +213,371 @@ public abstract class AbstractEventStoreMixin
      */
     protected void lock()
     {
+        boolean interrupted = false;
         while (true)
         {
             try
             {
-                lock.tryLock( 1000, TimeUnit.MILLISECONDS );
-                break;
+                if( lock.tryLock( 1000, TimeUnit.MILLISECONDS ) )
+                {
+                    break;
+                }
             } catch (InterruptedException e)
+            {
+                // Try again, the interrupt is restored once locked
+                interrupted = true;
+            }
+        }
+        if( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append( Append append )
+        throws IOException
+    {
+        boolean interrupted = false;
+        try
+        {
+            while( true )
+            {
+                try
+                {
+                    if( !writing )
+                    {
+                        // No writer, store it in this thread
+                        write( Collections.singletonList( append ) );
+                        break;
+                    }
+                    if( appends.offer( append, 100, TimeUnit.MILLISECONDS ) )
+                    {
+                        // The writer may have stopped before taking it
+                        while( !append.done.await( 100, TimeUnit.MILLISECONDS ) )
+                        {
+                            if( !writer.isAlive() && appends.remove( append ) )
+                            {
+                                write( Collections.singletonList( append ) );
+                            }
+                        }
+                        break;
+                    }
+                }
+                catch( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if( append.failure != null )
+        {
+            throw append.failure;
+        }
+    }
+
+    private void writeAppends()
+    {
+        List<Append> batch = new ArrayList<>( MAX_BATCH_APPENDS );
+        while( writing || !appends.isEmpty() )
+        {
+            try
+            {
+                Append first = appends.poll( 100, TimeUnit.MILLISECONDS );
+                if( first == null )
+                {
+                    continue;
+                }
+                batch.add( first );
+                appends.drainTo( batch, MAX_BATCH_APPENDS - 1 );
+                write( batch );
+            }
+            catch( InterruptedException e )
             {
                 // Try again
             }
+            catch( Throwable e )
+            {
+                logger.error( "Could not write events", e );
+            }
+            finally
+            {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write( List<Append> batch )
+    {
+        List<UnitOfWorkDomainEventsValue> stored = new ArrayList<>();
+        long storedOffset;
+        lock();
+        try
+        {
+            // Failed appends leave nothing stored, so the stored ones follow each other from here
+            storedOffset = count();
+            List<UnitOfWorkDomainEventsValue> events = new ArrayList<>();
+            for( Append append : batch )
+            {
+                events.addAll( append.events );
+            }
+            try
+            {
+                Inputs.iterable( events ).transferTo( storeEvents0() );
+                stored = events;
+            }
+            catch( Exception e )
+            {
+                if( batch.size() == 1 )
+                {
+                    batch.get( 0 ).failure = e instanceof IOException
+                                             ? (IOException) e
+                                             : new IOException( "Could not store events", e );
+                }
+                else
+                {
+                    // Store them one by one so that only the faulty ones fail
+                    for( Append append : batch )
+                    {
+                        try
+                        {
+                            Inputs.iterable( append.events ).transferTo( storeEvents0() );
+                            stored.addAll( append.events );
+                        }
+                        catch( Exception appendFailure )
+                        {
+                            append.failure = appendFailure instanceof IOException
+                                             ? (IOException) appendFailure
+                                             : new IOException( "Could not store events", appendFailure );
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+            for( Append append : batch )
+            {
+                append.done.countDown();
+            }
+        }
+
+        // Notify listeners
+        if( !stored.isEmpty() )
+        {
+            for( ListenerDispatch dispatch : listeners )
+            {
+                dispatch.dispatch( stored );
+            }
+            for( Subscription subscription : subscriptions )
+            {
+                subscription.dispatch( new StoredEvents( storedOffset, stored ) );
+            }
+        }
+    }
+
+    private static final class Append
+    {
+        private final List<UnitOfWorkDomainEventsValue> events;
+        private final CountDownLatch done = new CountDownLatch( 1 );
+        private volatile IOException failure;
+
+        private Append( List<UnitOfWorkDomainEventsValue> events )
+        {
+            this.events = events;
+        }
+    }
+
+    /**
+     * Notify a listener of stored events in order, one batch after the other, without waiting for other listeners.
+     */
+    private final class ListenerDispatch
+        implements Runnable
+    {
+        private final UnitOfWorkEventsListener listener;
+        private final Queue<List<UnitOfWorkDomainEventsValue>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private ListenerDispatch( UnitOfWorkEventsListener listener )
+        {
+            this.listener = listener;
+        }
+
+        private void dispatch( List<UnitOfWorkDomainEventsValue> events )
+        {
+            pending.add( events );
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if( scheduled.compareAndSet( false, true ) )
+            {
+                try
+                {
+                    transactionNotifier.execute( this );
+                }
+                catch( RejectedExecutionException e )
+                {
+                    scheduled.set( false );
+                    logger.warn( "Event store passivated, could not notify event listener" );
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            List<UnitOfWorkDomainEventsValue> events;
+            while( ( events = pending.poll() ) != null )
+            {
+                try
+                {
+                    listener.notifyTransactions( events );
+                } catch( Exception e )
+                {
+                    logger.warn( "Could not notify event listener", e );
+                }
+            }
+            scheduled.set( false );
+            // Events dispatched after the last poll but before the flag was reset
+            if( !pending.isEmpty() )
+            {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Events stored at once, with the offset of the first of them.
+     */
+    private static final class StoredEvents
+    {
+        private final long offset;
+        private final List<UnitOfWorkDomainEventsValue> events;
+
+        private StoredEvents( long offset, List<UnitOfWorkDomainEventsValue> events )
+        {
+            this.offset = offset;
+            this.events = events;
+        }
+    }
+
+    /**
+     * Deliver stored events to a subscriber in order, from its buffer or, for those not in it, from the store.
+     */
+    private final class Subscription
+        implements EventSubscription, Runnable
+    {
+        private final Output<UnitOfWorkDomainEventsValue, ? extends Throwable> output;
+        private final BlockingQueue<StoredEvents> pending = new ArrayBlockingQueue<>( MAX_SUBSCRIPTION_PENDING );
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long offset;
+        private volatile boolean cancelled;
+
+        private Subscription( long offset, Output<UnitOfWorkDomainEventsValue, ? extends Throwable> output )
+        {
+            this.offset = offset;
+            this.output = output;
+        }
+
+        @Override
+        public long offset()
+        {
+            return offset;
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            subscriptions.remove( this );
+        }
+
+        private void dispatch( StoredEvents events )
+        {
+            // When the buffer is full the events are dropped, and read back from the store
+            pending.offer( events );
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if( scheduled.compareAndSet( false, true ) )
+            {
+                try
+                {
+                    transactionNotifier.execute( this );
+                }
+                catch( RejectedExecutionException e )
+                {
+                    scheduled.set( false );
+                    logger.warn( "Event store passivated, could not deliver events to subscription" );
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            boolean failed = false;
+            try
+            {
+                List<UnitOfWorkDomainEventsValue> batch;
+                while( !cancelled && !( batch = nextBatch() ).isEmpty() )
+                {
+                    Inputs.iterable( batch ).transferTo( output );
+                    offset += batch.size();
+                }
+            }
+            catch( Throwable e )
+            {
+                // Delivered again when the next events are stored
+                failed = true;
+                logger.warn( "Could not deliver events to subscription", e );
+            }
+            scheduled.set( false );
+            // Events dispatched after the last batch but before the flag was reset
+            if( !failed && !cancelled && !pending.isEmpty() )
+            {
+                schedule();
+            }
+        }
+
+        private List<UnitOfWorkDomainEventsValue> nextBatch()
+            throws IOException
+        {
+            List<UnitOfWorkDomainEventsValue> batch = new ArrayList<>();
+            long next = offset;
+            StoredEvents stored;
+            while( batch.size() < MAX_SUBSCRIPTION_BATCH && ( stored = pending.peek() ) != null && stored.offset <= next )
+            {
+                pending.poll();
+                long end = stored.offset + stored.events.size();
+                if( end > next )
+                {
+                    batch.addAll( stored.events.subList( (int) ( next - stored.offset ), stored.events.size() ) );
+                    next = end;
+                }
+            }
+            if( batch.isEmpty() && next < count() )
+            {
+                // Events dropped from the buffer, or not dispatched yet
+                stored = pending.peek();
+                long limit = stored == null ? MAX_SUBSCRIPTION_BATCH : Math.min( MAX_SUBSCRIPTION_BATCH, stored.offset - next );
+                if( limit > 0 )
+                {
+                    events( next, limit ).transferTo( Outputs.collection( batch ) );
+                }
+            }
+            return batch;
         }
     }
 }
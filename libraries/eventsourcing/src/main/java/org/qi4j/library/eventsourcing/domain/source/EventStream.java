@@ -17,6 +17,9 @@
 
 package org.qi4j.library.eventsourcing.domain.source;
 
+import org.qi4j.io.Output;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+
 /**
  * Stream of event transactions. Registering with a stream will
  * allow the subscriber to get callbacks when new transactions
@@ -27,4 +30,18 @@ public interface EventStream
     void registerListener( UnitOfWorkEventsListener listener );
 
     void unregisterListener( UnitOfWorkEventsListener listener );
+
+    /**
+     * Deliver transactions to an Output, from an offset onwards and then as they are stored, in order and in batches.
+     * <p>
+     * Transactions are pushed as they are stored. A slow subscriber does not hold back the store: once its bounded
+     * buffer is full, it reads the transactions it missed from the store at its own pace. A batch the Output fails to
+     * receive is delivered again when the next transactions are stored.
+     * </p>
+     *
+     * @param offset Offset of the first transaction to deliver
+     * @param output Output receiving batches of transactions
+     * @return The subscription
+     */
+    EventSubscription subscribe( long offset, Output<UnitOfWorkDomainEventsValue, ? extends Throwable> output );
 }
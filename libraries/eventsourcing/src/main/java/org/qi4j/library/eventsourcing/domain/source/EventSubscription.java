@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.source;
+
+/**
+ * Subscription to the transactions of an {@link EventStream}.
+ */
+public interface EventSubscription
+{
+    /**
+     * @return Offset of the next transaction to deliver, all transactions before it were delivered
+     */
+    long offset();
+
+    /**
+     * Stop delivering transactions. A batch being delivered is completed.
+     */
+    void cancel();
+}
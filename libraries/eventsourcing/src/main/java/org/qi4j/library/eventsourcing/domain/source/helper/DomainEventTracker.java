@@ -17,13 +17,17 @@
 
 package org.qi4j.library.eventsourcing.domain.source.helper;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.qi4j.api.configuration.Configuration;
 import org.qi4j.io.Output;
+import org.qi4j.io.Sender;
 import org.qi4j.io.Transforms;
 import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
-import org.qi4j.library.eventsourcing.domain.source.EventSource;
 import org.qi4j.library.eventsourcing.domain.source.EventStream;
-import org.qi4j.library.eventsourcing.domain.source.UnitOfWorkEventsListener;
+import org.qi4j.library.eventsourcing.domain.source.EventSubscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,34 +35,41 @@ import org.slf4j.LoggerFactory;
  * Helper that enables a service to easily track transactions.
  * <p>
  * Upon startup
- * the tracker will get all the transactions from the store since the last
- * check, and delegate them to the given Output. It will also register itself
- * with the store so that it can get continuous updates.
+ * the tracker will subscribe to the stream from the last
+ * handled transaction, and the stream will push to the given Output
+ * all the transactions since then, and then new ones as they are stored.
  * </p>
  * <p>
- * Then, as transactions come in from the store, they will be processed in real-time.
- * If a transaction is successfully handled the configuration of the service, which must
- * extend DomainEventTrackerConfiguration, will update the marker for the last successfully handled transaction.
+ * The configuration of the service, which must extend DomainEventTrackerConfiguration, keeps the marker for the last
+ * successfully handled transaction. It is saved every checkpoint interval if it moved, and when the tracker stops,
+ * so after a crash the transactions handled since the last checkpoint are handled again. At each checkpoint the
+ * tracker also subscribes or unsubscribes as the configuration is enabled or not.
  * </p>
  */
 public class DomainEventTracker
-        implements Runnable, UnitOfWorkEventsListener
+        implements Runnable
 {
+    /**
+     * Milliseconds between checkpoints of the last handled transaction, unless configured.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
     private Configuration<? extends DomainEventTrackerConfiguration> configuration;
     private final Output<UnitOfWorkDomainEventsValue, ? extends Throwable> output;
     private EventStream stream;
-    private EventSource source;
     private boolean started = false;
+    private ScheduledExecutorService checkpoints;
+    private Tracking tracking;
+    private long handledOffset;
     private Logger logger;
 
-    public DomainEventTracker( EventStream stream, EventSource source,
+    public DomainEventTracker( EventStream stream,
                                Configuration<? extends DomainEventTrackerConfiguration> configuration,
                                Output<UnitOfWorkDomainEventsValue, ? extends Throwable> output )
     {
         this.stream = stream;
         this.configuration = configuration;
         this.output = output;
-        this.source = source;
 
         logger = LoggerFactory.getLogger( configuration.get().identity().get() );
     }
@@ -68,10 +79,23 @@ public class DomainEventTracker
         if (!started)
         {
             started = true;
+            handledOffset = configuration.get().lastOffset().get();
 
-            run();
+            Long checkpointInterval = configuration.get().checkpointInterval().get();
+            long interval = checkpointInterval == null ? DEFAULT_CHECKPOINT_INTERVAL : checkpointInterval;
+            checkpoints = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+            {
+                @Override
+                public Thread newThread( Runnable runnable )
+                {
+                    Thread thread = new Thread( runnable, logger.getName() + " checkpoints" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+            checkpoints.scheduleWithFixedDelay( this, interval, interval, TimeUnit.MILLISECONDS );
 
-            stream.registerListener( this );
+            follow();
         }
     }
 
@@ -80,35 +104,84 @@ public class DomainEventTracker
         if (started)
         {
             started = false;
-            stream.unregisterListener( this );
+            checkpoints.shutdown();
+            checkpoints = null;
+            if (tracking != null)
+            {
+                tracking.subscription.cancel();
+                tracking = null;
+            }
+            checkpoint();
         }
     }
 
+    /**
+     * Checkpoint the marker for the last handled transaction, then follow the enabled configuration.
+     */
     @Override
     public synchronized void run()
     {
-        // TODO This should optionally use a CircuitBreaker
-        if (started && configuration.get().enabled().get())
+        if (started)
+        {
+            checkpoint();
+            follow();
+        }
+    }
+
+    private void checkpoint()
+    {
+        if (handledOffset != configuration.get().lastOffset().get())
         {
-            Transforms.Counter counter = new Transforms.Counter();
             try
             {
-                long currentOffset = configuration.get().lastOffset().get();
-                source.events( currentOffset, Long.MAX_VALUE ).transferTo( Transforms.map( counter, output ) );
-
-                // Save new offset, to be used in next round
-                configuration.get().lastOffset().set( currentOffset+counter.count() );
+                configuration.get().lastOffset().set( handledOffset );
                 configuration.save();
             } catch (Throwable throwable)
             {
-                logger.warn( "Event handling failed", throwable );
+                logger.warn( "Could not save last handled transaction", throwable );
             }
         }
     }
 
-    @Override
-    public void notifyTransactions( Iterable<UnitOfWorkDomainEventsValue> transactions )
+    private void follow()
     {
-        run();
+        boolean enabled = configuration.get().enabled().get();
+        if (enabled && tracking == null)
+        {
+            tracking = new Tracking();
+            tracking.subscription = stream.subscribe( handledOffset, tracking );
+        }
+        else if (!enabled && tracking != null)
+        {
+            tracking.subscription.cancel();
+            tracking = null;
+        }
+    }
+
+    private synchronized void handled( Tracking from, long count )
+    {
+        // Batches of a cancelled subscription are delivered again by the next one
+        if (from == tracking)
+        {
+            handledOffset += count;
+        }
+    }
+
+    /**
+     * Output of one subscription, counting the handled transactions.
+     */
+    private class Tracking
+        implements Output<UnitOfWorkDomainEventsValue, Throwable>
+    {
+        private EventSubscription subscription;
+
+        @Override
+        public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends UnitOfWorkDomainEventsValue, SenderThrowableType> sender )
+            throws Throwable, SenderThrowableType
+        {
+            Transforms.Counter<UnitOfWorkDomainEventsValue> counter = new Transforms.Counter<>();
+            Transforms.map( counter, output ).receiveFrom( sender );
+            handled( this, counter.count() );
+        }
     }
 }
@@ -17,6 +17,7 @@
 
 package org.qi4j.library.eventsourcing.domain.source.helper;
 
+import org.qi4j.api.common.Optional;
 import org.qi4j.api.common.UseDefaults;
 import org.qi4j.api.configuration.ConfigurationComposite;
 import org.qi4j.api.configuration.Enabled;
@@ -37,4 +38,13 @@ public interface DomainEventTrackerConfiguration
      */
     @UseDefaults
     Property<Long> lastOffset();
+
+    /**
+     * Milliseconds between saves of lastOffset while tracking, and checks of enabled, defaults to
+     * {@link DomainEventTracker#DEFAULT_CHECKPOINT_INTERVAL}.
+     *
+     * @return milliseconds between saves of lastOffset.
+     */
+    @Optional
+    Property<Long> checkpointInterval();
 }
@@ -48,7 +48,7 @@ public interface MemoryEventStoreService
         // This list holds all transactions
         private LinkedList<UnitOfWorkDomainEventsValue> store = new LinkedList<UnitOfWorkDomainEventsValue>();
 
-        private long currentCount = 0;
+        private volatile long currentCount = 0;
 
         public Input<UnitOfWorkDomainEventsValue, IOException> events( final long offset, final long limit )
         {
@@ -115,6 +115,7 @@ public interface MemoryEventStoreService
                             newEvents.add( item );
                         }
                     });
+                    // Only once all were received, so that a failure stores none
                     store.addAll( newEvents );
                     currentCount += newEvents.size();
                 }
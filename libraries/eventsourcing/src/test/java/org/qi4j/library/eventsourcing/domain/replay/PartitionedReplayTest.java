@@ -0,0 +1,220 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.replay;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Inputs;
+import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PartitionedReplayTest
+    extends AbstractQi4jTest
+{
+    private static final int PARTITIONS = 4;
+
+    // Many more transactions than the queues of the partitions hold, so that the sender blocks if partitions stop
+    // taking them, and cannot have sent them all by the time the failure is noticed
+    private static final int TRANSACTIONS = 30000;
+
+    private static final AtomicInteger PLAYED = new AtomicInteger();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        module.values( DomainEventValue.class, UnitOfWorkDomainEventsValue.class );
+        module.services( DomainEventPlayerService.class );
+        module.entities( Journal.class );
+    }
+
+    @Test( timeout = 60000 )
+    public void givenEventsOfManyEntitiesWhenReplayingInPartitionsThenEventsOfEachEntityAreReplayedInOrder()
+        throws Exception
+    {
+        DomainEventPlayer player = module.findService( DomainEventPlayer.class ).get();
+        Map<String, StringBuilder> expected = new LinkedHashMap<>();
+        List<UnitOfWorkDomainEventsValue> transactions = new ArrayList<>();
+        for( int idx = 0; idx < 2000; idx++ )
+        {
+            // Events of a transaction span entities of several partitions
+            List<String[]> events = new ArrayList<>();
+            for( int event = 0; event < 3; event++ )
+            {
+                String id = "journal-" + ( idx * 7 + event * 3 ) % 20;
+                String entry = idx + "." + event;
+                events.add( new String[]{ id, entry } );
+                StringBuilder entries = expected.get( id );
+                if( entries == null )
+                {
+                    entries = new StringBuilder();
+                    expected.put( id, entries );
+                }
+                entries.append( entry ).append( ' ' );
+            }
+            transactions.add( transaction( events ) );
+        }
+
+        Inputs.iterable( transactions ).transferTo( player.playTransactions( 0, PARTITIONS, 10 ) );
+
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            for( Map.Entry<String, StringBuilder> entries : expected.entrySet() )
+            {
+                assertThat( uow.get( Journal.class, entries.getKey() ).entries().get(),
+                            equalTo( entries.getValue().toString() ) );
+            }
+        }
+    }
+
+    @Test( timeout = 60000 )
+    public void givenEntityModifiedAfterTransactionWhenReplayingInPartitionsThenOnlyItsEventsAreSkipped()
+        throws Exception
+    {
+        DomainEventPlayer player = module.findService( DomainEventPlayer.class ).get();
+        List<String[]> events = new ArrayList<>();
+        events.add( new String[]{ "modified", "replayed" } );
+        events.add( new String[]{ "unmodified", "replayed" } );
+        UnitOfWorkDomainEventsValue transaction = transaction( events );
+
+        Thread.sleep( 10 );
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            uow.newEntity( Journal.class, "modified" ).entries().set( "current " );
+            uow.complete();
+        }
+
+        // A single partition, so that both entities are in the same slice of the transaction
+        Inputs.iterable( Collections.singletonList( transaction ) ).transferTo( player.playTransactions( 0, 1, 1 ) );
+
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            assertThat( uow.get( Journal.class, "modified" ).entries().get(), equalTo( "current " ) );
+            assertThat( uow.get( Journal.class, "unmodified" ).entries().get(), equalTo( "replayed " ) );
+        }
+    }
+
+    @Test( timeout = 60000 )
+    public void givenFailingHandlerWhenReplayingInPartitionsThenReplayStopsAndCallerGetsTheFailure()
+        throws Exception
+    {
+        EventReplayException failure = replayFailingAt( "fail" );
+
+        assertThat( failure.getCause(), instanceOf( IllegalStateException.class ) );
+        assertTrue( failure.getMessage(), failure.getMessage().contains( "Refused fail" ) );
+        // Other partitions stop too, at most the transactions queued when the failure happened are played
+        assertTrue( "Played " + PLAYED.get(), PLAYED.get() < TRANSACTIONS - 1 );
+    }
+
+    @Test( timeout = 60000 )
+    public void givenHandlerThrowingErrorWhenReplayingInPartitionsThenCallerGetsTheErrorWithoutDeadlock()
+        throws Exception
+    {
+        EventReplayException failure = replayFailingAt( "error" );
+
+        assertThat( failure.getCause(), instanceOf( AssertionError.class ) );
+    }
+
+    private EventReplayException replayFailingAt( String failingEntry )
+        throws Exception
+    {
+        DomainEventPlayer player = module.findService( DomainEventPlayer.class ).get();
+        List<UnitOfWorkDomainEventsValue> transactions = new ArrayList<>();
+        for( int idx = 0; idx < TRANSACTIONS; idx++ )
+        {
+            List<String[]> events = new ArrayList<>();
+            events.add( new String[]{ "journal-" + idx % 20, idx == 100 ? failingEntry : String.valueOf( idx ) } );
+            transactions.add( transaction( events ) );
+        }
+        PLAYED.set( 0 );
+        try
+        {
+            Inputs.iterable( transactions ).transferTo( player.playTransactions( 0, PARTITIONS, 10 ) );
+            fail( "Replay should have failed" );
+            return null;
+        }
+        catch( EventReplayException e )
+        {
+            return e;
+        }
+    }
+
+    private UnitOfWorkDomainEventsValue transaction( List<String[]> events )
+    {
+        ValueBuilder<UnitOfWorkDomainEventsValue> builder = module.newValueBuilder( UnitOfWorkDomainEventsValue.class );
+        builder.prototype().version().set( "1.0" );
+        builder.prototype().usecase().set( "Append" );
+        builder.prototype().timestamp().set( Instant.now() );
+        for( String[] idAndEntry : events )
+        {
+            ValueBuilder<DomainEventValue> event = module.newValueBuilder( DomainEventValue.class );
+            event.prototype().entityType().set( Journal.class.getName() );
+            event.prototype().entityId().set( idAndEntry[ 0 ] );
+            event.prototype().name().set( "appended" );
+            event.prototype().parameters().set( "{\"param1\":\"" + idAndEntry[ 1 ] + "\"}" );
+            builder.prototype().events().get().add( event.newInstance() );
+        }
+        return builder.newInstance();
+    }
+
+    @Mixins( Journal.Mixin.class )
+    public interface Journal
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<String> entries();
+
+        void appended( DomainEventValue event, String entry );
+
+        abstract class Mixin
+            implements Journal
+        {
+            @Override
+            public void appended( DomainEventValue event, String entry )
+            {
+                if( "fail".equals( entry ) )
+                {
+                    throw new IllegalStateException( "Refused " + entry );
+                }
+                if( "error".equals( entry ) )
+                {
+                    throw new AssertionError( "Broken " + entry );
+                }
+                PLAYED.incrementAndGet();
+                entries().set( entries().get() + entry + " " );
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.replay;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.qi4j.api.common.QualifiedName;
+import org.qi4j.api.common.UseDefaults;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Inputs;
+import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.library.eventsourcing.domain.snapshot.EntitySnapshotService;
+import org.qi4j.library.eventsourcing.domain.snapshot.EntitySnapshotStoreService;
+import org.qi4j.library.eventsourcing.domain.snapshot.EntitySnapshots;
+import org.qi4j.library.eventsourcing.domain.snapshot.EntitySnapshotValue;
+import org.qi4j.library.eventsourcing.domain.snapshot.SnapshotPolicy;
+import org.qi4j.library.eventsourcing.domain.snapshot.SnapshotStore;
+import org.qi4j.test.AbstractQi4jTest;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotReplayTest
+    extends AbstractQi4jTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        module.values( DomainEventValue.class, UnitOfWorkDomainEventsValue.class, EntitySnapshotValue.class );
+        module.services( DomainEventPlayerService.class, EntitySnapshotService.class, EntitySnapshotStoreService.class );
+        module.entities( EntitySnapshotStoreService.EntitySnapshotEntity.class );
+        module.entities( Counter.class ).setMetaInfo( new SnapshotPolicy( 2 ) );
+    }
+
+    @Test
+    public void givenSnapshotWhenReplayingMissingEntityThenOnlyLaterEventsAreReplayed()
+        throws Exception
+    {
+        DomainEventPlayer player = module.findService( DomainEventPlayer.class ).get();
+        SnapshotStore snapshotStore = module.findService( SnapshotStore.class ).get();
+        List<UnitOfWorkDomainEventsValue> transactions = new ArrayList<>();
+        for( int idx = 0; idx < 5; idx++ )
+        {
+            transactions.add( incremented( "counter" ) );
+        }
+
+        // Full replay, snapshotted after the 2nd and 4th events
+        Inputs.iterable( transactions ).transferTo( player.playTransactions( 0, 2, 1 ) );
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            assertThat( uow.get( Counter.class, "counter" ).count().get(), equalTo( 5 ) );
+            assertThat( snapshotStore.latestSnapshot( "counter" ).offset().get(), equalTo( 4L ) );
+            uow.remove( uow.get( Counter.class, "counter" ) );
+            uow.complete();
+        }
+
+        // Replay from the start again, the entity is restored from its snapshot
+        Inputs.iterable( transactions ).transferTo( player.playTransactions( 0, 2, 1 ) );
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            assertThat( uow.get( Counter.class, "counter" ).count().get(), equalTo( 5 ) );
+            uow.remove( uow.get( Counter.class, "counter" ) );
+            uow.complete();
+        }
+
+        // Replay only the last transaction, the entity is restored from its snapshot
+        Inputs.iterable( transactions.subList( 4, 5 ) ).transferTo( player.playTransactions( 4, 2, 1 ) );
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            assertThat( uow.get( Counter.class, "counter" ).count().get(), equalTo( 5 ) );
+        }
+    }
+
+    @Test
+    public void givenSnapshotWithRemovedStateWhenRestoringThenRemovedStateIsSkipped()
+        throws Exception
+    {
+        EntitySnapshots snapshots = module.findService( EntitySnapshots.class ).get();
+        SnapshotStore snapshotStore = module.findService( SnapshotStore.class ).get();
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put( QualifiedName.fromClass( Counter.class, "count" ).toString(), "3" );
+        properties.put( QualifiedName.fromClass( Counter.class, "removed" ).toString(), "\"gone\"" );
+        Map<String, String> associations = new HashMap<>();
+        associations.put( QualifiedName.fromClass( Counter.class, "removedAssociation" ).toString(), "other" );
+        Map<String, List<String>> manyAssociations = new HashMap<>();
+        manyAssociations.put( QualifiedName.fromClass( Counter.class, "removedMany" ).toString(),
+                              Collections.singletonList( "other" ) );
+        Map<String, Map<String, String>> namedAssociations = new HashMap<>();
+        namedAssociations.put( QualifiedName.fromClass( Counter.class, "removedNamed" ).toString(),
+                               Collections.singletonMap( "name", "other" ) );
+
+        ValueBuilder<EntitySnapshotValue> builder = module.newValueBuilder( EntitySnapshotValue.class );
+        builder.prototype().entityType().set( Counter.class.getName() );
+        builder.prototype().entityId().set( "renamed-counter" );
+        builder.prototype().offset().set( 3L );
+        builder.prototype().properties().set( properties );
+        builder.prototype().associations().set( associations );
+        builder.prototype().manyAssociations().set( manyAssociations );
+        builder.prototype().namedAssociations().set( namedAssociations );
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            snapshotStore.storeSnapshot( builder.newInstance() );
+            assertThat( snapshots.restoreSnapshot( Counter.class, "renamed-counter" ), equalTo( 3L ) );
+            uow.complete();
+        }
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            assertThat( uow.get( Counter.class, "renamed-counter" ).count().get(), equalTo( 3 ) );
+        }
+    }
+
+    private UnitOfWorkDomainEventsValue incremented( String id )
+    {
+        ValueBuilder<DomainEventValue> event = module.newValueBuilder( DomainEventValue.class );
+        event.prototype().entityType().set( Counter.class.getName() );
+        event.prototype().entityId().set( id );
+        event.prototype().name().set( "incremented" );
+        event.prototype().parameters().set( "{}" );
+
+        ValueBuilder<UnitOfWorkDomainEventsValue> builder = module.newValueBuilder( UnitOfWorkDomainEventsValue.class );
+        builder.prototype().version().set( "1.0" );
+        builder.prototype().usecase().set( "Increment" );
+        builder.prototype().timestamp().set( Instant.now() );
+        builder.prototype().events().get().add( event.newInstance() );
+        return builder.newInstance();
+    }
+
+    @Mixins( Counter.Mixin.class )
+    public interface Counter
+        extends EntityComposite
+    {
+        @UseDefaults
+        Property<Integer> count();
+
+        void incremented( DomainEventValue event );
+
+        abstract class Mixin
+            implements Counter
+        {
+            @Override
+            public void incremented( DomainEventValue event )
+            {
+                count().set( count().get() + 1 );
+            }
+        }
+    }
+}
@@ -44,7 +44,6 @@ import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
 import org.qi4j.library.eventsourcing.domain.factory.CurrentUserUoWPrincipal;
 import org.qi4j.library.eventsourcing.domain.factory.DomainEventCreationConcern;
 import org.qi4j.library.eventsourcing.domain.factory.DomainEventFactoryService;
-import org.qi4j.library.eventsourcing.domain.source.EventSource;
 import org.qi4j.library.eventsourcing.domain.source.EventStream;
 import org.qi4j.library.eventsourcing.domain.source.memory.MemoryEventStoreService;
 import org.qi4j.test.AbstractQi4jTest;
@@ -154,9 +153,6 @@ public class DomainEventTrackerTest
             @Service
             EventStream eventStream;
 
-            @Service
-            EventSource eventSource;
-
             public void startTracker()
             {
                 config.get().enabled().set( true );
@@ -168,7 +164,7 @@ public class DomainEventTrackerTest
                                return unitOfWorkDomainEventsValue.toString();
                            }
                        }, Outputs.systemOut() );
-               tracker = new DomainEventTracker(eventStream, eventSource, config, map);
+               tracker = new DomainEventTracker(eventStream, config, map);
 
                 tracker.start();
             }
@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.eventsourcing.domain.source.memory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.io.Inputs;
+import org.qi4j.io.Output;
+import org.qi4j.io.Outputs;
+import org.qi4j.io.Sender;
+import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.library.eventsourcing.domain.source.EventSource;
+import org.qi4j.library.eventsourcing.domain.source.EventStore;
+import org.qi4j.library.eventsourcing.domain.source.EventStream;
+import org.qi4j.library.eventsourcing.domain.source.EventSubscription;
+import org.qi4j.library.eventsourcing.domain.source.UnitOfWorkEventsListener;
+import org.qi4j.test.AbstractQi4jTest;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MemoryEventStoreServiceTest
+    extends AbstractQi4jTest
+{
+    private static final int PRODUCERS = 8;
+    private static final int APPENDS = 100;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.values( DomainEventValue.class, UnitOfWorkDomainEventsValue.class );
+        module.services( MemoryEventStoreService.class );
+    }
+
+    @Test
+    public void givenConcurrentProducersWhenStoringEventsThenAllAreStoredAndNotifiedInOrder()
+        throws Exception
+    {
+        final EventStore store = module.findService( EventStore.class ).get();
+        EventStream stream = module.findService( EventStream.class ).get();
+        RecordingListener fast = new RecordingListener( 0 );
+        RecordingListener slow = new RecordingListener( 1 );
+        stream.registerListener( fast );
+        stream.registerListener( slow );
+
+        ExecutorService executor = Executors.newFixedThreadPool( PRODUCERS );
+        try
+        {
+            List<Future<Void>> producers = new ArrayList<>();
+            for( int producer = 0; producer < PRODUCERS; producer++ )
+            {
+                final int id = producer;
+                producers.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws IOException
+                    {
+                        for( int idx = 0; idx < APPENDS; idx++ )
+                        {
+                            Inputs.iterable( events( id + "-" + idx ) ).transferTo( store.storeEvents() );
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for( Future<Void> producer : producers )
+            {
+                producer.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        EventSource source = module.findService( EventSource.class ).get();
+        assertThat( source.count(), equalTo( (long) PRODUCERS * APPENDS ) );
+        List<String> stored = new ArrayList<>();
+        List<UnitOfWorkDomainEventsValue> storedEvents = new ArrayList<>();
+        source.events( 0, Long.MAX_VALUE ).transferTo( Outputs.collection( storedEvents ) );
+        for( UnitOfWorkDomainEventsValue events : storedEvents )
+        {
+            stored.add( events.usecase().get() );
+        }
+        for( int producer = 0; producer < PRODUCERS; producer++ )
+        {
+            // Each producer appends are stored in order
+            int last = -1;
+            for( String usecase : stored )
+            {
+                if( usecase.startsWith( producer + "-" ) )
+                {
+                    int idx = Integer.parseInt( usecase.substring( usecase.indexOf( '-' ) + 1 ) );
+                    assertThat( idx, equalTo( last + 1 ) );
+                    last = idx;
+                }
+            }
+            assertThat( last, equalTo( APPENDS - 1 ) );
+        }
+
+        assertThat( fast.await( stored.size() ), equalTo( stored ) );
+        assertThat( slow.await( stored.size() ), equalTo( stored ) );
+    }
+
+    @Test
+    public void givenSubscriptionFromOffsetWhenStoringEventsThenStoredAndNewEventsAreDeliveredInOrder()
+        throws Exception
+    {
+        EventStore store = module.findService( EventStore.class ).get();
+        EventStream stream = module.findService( EventStream.class ).get();
+        List<String> expected = new ArrayList<>();
+        for( int idx = 0; idx < 10; idx++ )
+        {
+            Inputs.iterable( events( "before-" + idx ) ).transferTo( store.storeEvents() );
+            if( idx >= 5 )
+            {
+                expected.add( "before-" + idx );
+            }
+        }
+
+        final RecordingListener slow = new RecordingListener( 1 );
+        EventSubscription subscription = stream.subscribe( 5, new Output<UnitOfWorkDomainEventsValue, RuntimeException>()
+        {
+            @Override
+            public <SenderThrowableType extends Throwable> void receiveFrom( Sender<? extends UnitOfWorkDomainEventsValue, SenderThrowableType> sender )
+                throws SenderThrowableType
+            {
+                List<UnitOfWorkDomainEventsValue> transactions = new ArrayList<>();
+                Outputs.collection( transactions ).receiveFrom( sender );
+                slow.notifyTransactions( transactions );
+            }
+        } );
+        for( int idx = 0; idx < 10; idx++ )
+        {
+            Inputs.iterable( events( "after-" + idx ) ).transferTo( store.storeEvents() );
+            expected.add( "after-" + idx );
+        }
+
+        assertThat( slow.await( expected.size() ), equalTo( expected ) );
+        subscription.cancel();
+    }
+
+    private Iterable<UnitOfWorkDomainEventsValue> events( String usecase )
+    {
+        ValueBuilder<UnitOfWorkDomainEventsValue> builder = module.newValueBuilder( UnitOfWorkDomainEventsValue.class );
+        builder.prototype().version().set( "1.0" );
+        builder.prototype().usecase().set( usecase );
+        builder.prototype().timestamp().set( Instant.now() );
+        return Collections.singletonList( builder.newInstance() );
+    }
+
+    private static class RecordingListener
+        implements UnitOfWorkEventsListener
+    {
+        private final long delay;
+        private final List<String> notified = new ArrayList<>();
+
+        private RecordingListener( long delay )
+        {
+            this.delay = delay;
+        }
+
+        @Override
+        public void notifyTransactions( Iterable<UnitOfWorkDomainEventsValue> transactions )
+        {
+            try
+            {
+                Thread.sleep( delay );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            synchronized( notified )
+            {
+                for( UnitOfWorkDomainEventsValue transaction : transactions )
+                {
+                    notified.add( transaction.usecase().get() );
+                }
+                notified.notifyAll();
+            }
+        }
+
+        private List<String> await( int count )
+            throws InterruptedException
+        {
+            synchronized( notified )
+            {
+                long deadline = System.currentTimeMillis() + 10000;
+                while( notified.size() < count && System.currentTimeMillis() < deadline )
+                {
+                    notified.wait( 100 );
+                }
+                return new ArrayList<>( notified );
+            }
+        }
+    }
+}
@@ -18,9 +18,7 @@
 package org.qi4j.library.invocationcache;
 
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import org.qi4j.api.common.AppliesTo;
-import org.qi4j.api.injection.scope.Invocation;
 import org.qi4j.api.injection.scope.This;
 import org.qi4j.api.sideeffect.GenericSideEffect;
 
@@ -33,8 +31,6 @@ public class CacheInvocationResultSideEffect
 {
     @This
     private InvocationCache cache;
-    @Invocation
-    private Method method;
 
     @Override
     public Object invoke( Object proxy, Method method, Object[] args )
@@ -47,16 +43,8 @@ public class CacheInvocationResultSideEffect
         {
             res = Void.TYPE;
         }
-        String cacheName = method.getName();
-        if( args != null )
-        {
-            cacheName += Arrays.asList( args );
-        }
-        Object oldResult = cache.cachedValue( cacheName );
-        if( oldResult == null || !oldResult.equals( result ) )
-        {
-            cache.setCachedValue( cacheName, result );
-        }
-        return result;
+        // Only results missing from the cache are stored, storing hits again would extend their lifetime
+        cache.setCachedValueIfAbsent( new InvocationKey( method, args ), res );
+        return res;
     }
 }
@@ -23,9 +23,14 @@ import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Mark interfaces or methods whose results should be cached with this annotation.
+ * <p>
+ * Results of each method are bounded by {@link #maxEntries()} and expire after {@link #timeToLive()}, both
+ * unbounded by default.
+ * </p>
  */
 @Retention( RetentionPolicy.RUNTIME )
 @Target( { ElementType.METHOD, ElementType.TYPE } )
@@ -33,4 +38,18 @@ import java.lang.annotation.Target;
 @Inherited
 public @interface Cached
 {
+    /**
+     * @return Maximum number of cached results of the method, zero or less for no limit
+     */
+    int maxEntries() default 0;
+
+    /**
+     * @return Time to live of cached results of the method, zero or less for no expiration
+     */
+    long timeToLive() default 0;
+
+    /**
+     * @return Unit of {@link #timeToLive()}
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
 }
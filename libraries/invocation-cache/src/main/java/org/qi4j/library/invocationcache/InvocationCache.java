@@ -17,11 +17,22 @@
  */
 package org.qi4j.library.invocationcache;
 
+import org.qi4j.spi.cache.CacheStatistics;
+
 /**
  * Invocation Cache.
+ * <p>
+ * Results are held by each composite, unless a CachePool tagged {@link #CACHE_POOL_TAG} is visible, in which case
+ * they are delegated to one of its Caches and must suit it, eg. be Serializable.
+ * </p>
  */
 public interface InvocationCache
 {
+    /**
+     * Tag of the CachePool service results are delegated to.
+     */
+    String CACHE_POOL_TAG = "invocation-cache";
+
     Object setCachedValue( String name, Object aResult );
 
     Object cachedValue( String name );
@@ -31,4 +42,49 @@ public interface InvocationCache
     void clearCachedValues();
 
     int currentCacheSize();
+
+    Object cachedValue( InvocationKey key );
+
+    void setCachedValue( InvocationKey key, Object result );
+
+    /**
+     * Cache the result of an invocation unless one is already cached. Neither a hit nor a miss is counted, and an
+     * already cached result keeps its lifetime.
+     *
+     * @param key    The invocation key
+     * @param result The result, {@link Void#TYPE} for null
+     *
+     * @return true if the result was cached, false if one already was
+     */
+    boolean setCachedValueIfAbsent( InvocationKey key, Object result );
+
+    Object removeCachedValue( InvocationKey key );
+
+    /**
+     * Get the cached result of an invocation, or invoke it and cache its result.
+     * Concurrent callers missing the same key wait for a single invocation and share its result or failure.
+     *
+     * @param key        The invocation key
+     * @param invocation The invocation, must not return null
+     *
+     * @return The cached or computed result
+     *
+     * @throws Throwable if the invocation failed
+     */
+    Object cachedValue( InvocationKey key, Invocation invocation )
+        throws Throwable;
+
+    /**
+     * @return Hits, misses and evictions of this cache, its size is the one of {@link #currentCacheSize()}
+     */
+    CacheStatistics statistics();
+
+    /**
+     * Invocation whose result is cached.
+     */
+    interface Invocation
+    {
+        Object invoke()
+            throws Throwable;
+    }
 }
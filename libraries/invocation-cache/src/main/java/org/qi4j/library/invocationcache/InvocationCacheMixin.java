@@ -17,44 +17,437 @@
  */
 package org.qi4j.library.invocationcache;
 
-import java.util.Map;
+import java.lang.reflect.Method;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.qi4j.api.common.Optional;
+import org.qi4j.api.injection.scope.Service;
+import org.qi4j.api.metrics.MetricsCounter;
+import org.qi4j.api.metrics.MetricsCounterFactory;
+import org.qi4j.api.metrics.MetricsProvider;
+import org.qi4j.api.service.qualifier.Tagged;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CachePool;
+import org.qi4j.spi.cache.CacheStatistics;
 
 /**
  * Default implementation of InvocationCache.
+ * <p>
+ * Results of each method are held apart, bounded and expired according to its {@link Cached} annotation. Once a
+ * method holds too many results, the oldest ones are evicted, unless they were read since they were cached in which
+ * case they are given a second chance. Results cached by name are never evicted.
+ * </p>
+ * <p>
+ * When a CachePool tagged {@link InvocationCache#CACHE_POOL_TAG} is visible, results are put in one of its Caches
+ * instead, with the time to live of their method. Its own bounds apply then. Results of invocations whose arguments
+ * can not be told apart by their String form, see {@link InvocationKey}, are still held locally.
+ * </p>
+ * <p>
+ * Hits and misses of each method are reported to the MetricsProvider, if any.
+ * </p>
  */
 public class InvocationCacheMixin
     implements InvocationCache
 {
-    private final Map<String, Object> cachedValues = new ConcurrentHashMap<>();
+    private static final String CACHE_ID = "qi4j.invocation-cache";
+    private static final AtomicLong INSTANCES = new AtomicLong();
+    private static final Object NAMED = new Object();
+
+    @Service @Optional @Tagged( CACHE_POOL_TAG )
+    private CachePool cachePool;
+    @Service @Optional
+    private MetricsProvider metrics;
+
+    private final ConcurrentHashMap<Object, Segment> segments = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<InvocationKey, Flight> flights = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile Cache<Object> delegate;
+    private volatile String delegatePrefix;
+    private volatile long generation;
 
     @Override
     public Object setCachedValue( String name, Object aResult )
     {
-        return cachedValues.put( name, aResult );
+        Segment segment = segment( NAMED );
+        Object old = segment.get( name );
+        segment.put( name, aResult );
+        return old;
     }
 
     @Override
     public Object cachedValue( String name )
     {
-        return cachedValues.get( name );
+        return lookup( segment( NAMED ), name );
     }
 
     @Override
     public Object removeCachedValue( String name )
     {
-        return cachedValues.remove( name );
+        return segment( NAMED ).remove( name );
+    }
+
+    @Override
+    public Object cachedValue( InvocationKey key )
+    {
+        return lookup( segment( key.method() ), key );
+    }
+
+    @Override
+    public void setCachedValue( InvocationKey key, Object result )
+    {
+        segment( key.method() ).put( key, result );
+    }
+
+    @Override
+    public boolean setCachedValueIfAbsent( InvocationKey key, Object result )
+    {
+        return segment( key.method() ).putIfAbsent( key, result );
+    }
+
+    @Override
+    public Object removeCachedValue( InvocationKey key )
+    {
+        return segment( key.method() ).remove( key );
+    }
+
+    @Override
+    public Object cachedValue( InvocationKey key, Invocation invocation )
+        throws Throwable
+    {
+        Segment segment = segment( key.method() );
+        Object result = lookup( segment, key );
+        if( result != null )
+        {
+            return result;
+        }
+        Flight flight = new Flight();
+        Flight current = flights.putIfAbsent( key, flight );
+        if( current != null )
+        {
+            if( current.thread == Thread.currentThread() )
+            {
+                // Reentrant invocation, waiting would never end
+                return invocation.invoke();
+            }
+            return current.await();
+        }
+        try
+        {
+            // Another flight may have landed between the lookup and the takeoff
+            result = segment.get( key );
+            if( result == null )
+            {
+                result = invocation.invoke();
+                if( result != null )
+                {
+                    segment.put( key, result );
+                }
+            }
+            flight.land( result, null );
+            return result;
+        }
+        catch( Throwable e )
+        {
+            flight.land( null, e );
+            throw e;
+        }
+        finally
+        {
+            flights.remove( key, flight );
+        }
     }
 
     @Override
     public void clearCachedValues()
     {
-        cachedValues.clear();
+        for( Segment segment : segments.values() )
+        {
+            segment.clear();
+        }
+        synchronized( this )
+        {
+            if( delegate != null )
+            {
+                // Previous results can no longer be reached and are left to the CachePool eviction
+                generation++;
+            }
+        }
     }
 
     @Override
     public int currentCacheSize()
     {
-        return cachedValues.size();
+        int size = 0;
+        for( Segment segment : segments.values() )
+        {
+            size += segment.entries.size();
+        }
+        return size;
+    }
+
+    @Override
+    public CacheStatistics statistics()
+    {
+        return new CacheStatistics( hits.sum(), misses.sum(), evictions.sum(), currentCacheSize() );
+    }
+
+    private Object lookup( Segment segment, Object key )
+    {
+        Object result = segment.get( key );
+        if( result == null )
+        {
+            misses.increment();
+            if( segment.missCounter != null )
+            {
+                segment.missCounter.increment();
+            }
+        }
+        else
+        {
+            hits.increment();
+            if( segment.hitCounter != null )
+            {
+                segment.hitCounter.increment();
+            }
+        }
+        return result;
+    }
+
+    private Segment segment( Object method )
+    {
+        Segment segment = segments.get( method );
+        if( segment == null )
+        {
+            fetchDelegate();
+            Segment created = method == NAMED ? new Segment( null ) : new Segment( (Method) method );
+            segment = segments.putIfAbsent( method, created );
+            if( segment == null )
+            {
+                segment = created;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * @return key of the result in the delegate Cache, null if the result must be held locally
+     */
+    private String delegateKey( Object key )
+    {
+        if( delegate == null )
+        {
+            return null;
+        }
+        if( key instanceof InvocationKey )
+        {
+            String form = ( (InvocationKey) key ).stableForm();
+            // Arguments without a String form identifying them could share a key with others
+            return form == null ? null : delegatePrefix + generation + ".invocation:" + form;
+        }
+        return delegatePrefix + generation + ".name:" + key;
+    }
+
+    private synchronized void fetchDelegate()
+    {
+        if( delegate == null && cachePool != null )
+        {
+            // One Cache shared by all composites, never returned
+            delegatePrefix = INSTANCES.incrementAndGet() + ".";
+            delegate = cachePool.fetchCache( CACHE_ID, Object.class );
+        }
+    }
+
+    private final class Segment
+    {
+        private final int maxEntries;
+        private final long timeToLive;
+        private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<>();
+        private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+        private final MetricsCounter hitCounter;
+        private final MetricsCounter missCounter;
+
+        private Segment( Method method )
+        {
+            Cached cached = null;
+            if( method != null )
+            {
+                cached = method.getAnnotation( Cached.class );
+                if( cached == null )
+                {
+                    cached = method.getDeclaringClass().getAnnotation( Cached.class );
+                }
+            }
+            maxEntries = cached == null ? 0 : cached.maxEntries();
+            timeToLive = cached == null ? 0 : cached.timeUnit().toMillis( cached.timeToLive() );
+            if( metrics != null && method != null )
+            {
+                MetricsCounterFactory counters = metrics.createFactory( MetricsCounterFactory.class );
+                String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+                hitCounter = counters.createCounter( InvocationCache.class, name + " hits" );
+                missCounter = counters.createCounter( InvocationCache.class, name + " misses" );
+            }
+            else
+            {
+                hitCounter = null;
+                missCounter = null;
+            }
+        }
+
+        private Object get( Object key )
+        {
+            String delegateKey = delegateKey( key );
+            if( delegateKey != null )
+            {
+                return delegate.get( delegateKey );
+            }
+            Entry entry = entries.get( key );
+            if( entry == null )
+            {
+                return null;
+            }
+            if( entry.isExpired() )
+            {
+                entries.remove( key, entry );
+                return null;
+            }
+            entry.referenced = true;
+            return entry.value;
+        }
+
+        private void put( Object key, Object value )
+        {
+            String delegateKey = delegateKey( key );
+            if( delegateKey != null )
+            {
+                delegate.put( delegateKey, value, timeToLive, TimeUnit.MILLISECONDS );
+                return;
+            }
+            Entry entry = new Entry( key, value, timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0 );
+            entries.put( key, entry );
+            if( maxEntries > 0 )
+            {
+                order.add( entry );
+                evict();
+            }
+        }
+
+        private boolean putIfAbsent( Object key, Object value )
+        {
+            String delegateKey = delegateKey( key );
+            if( delegateKey != null )
+            {
+                if( delegate.exists( delegateKey ) )
+                {
+                    return false;
+                }
+            }
+            else
+            {
+                // Not get(), that would mark the entry as read
+                Entry entry = entries.get( key );
+                if( entry != null && !entry.isExpired() )
+                {
+                    return false;
+                }
+            }
+            put( key, value );
+            return true;
+        }
+
+        private Object remove( Object key )
+        {
+            String delegateKey = delegateKey( key );
+            if( delegateKey != null )
+            {
+                return delegate.remove( delegateKey );
+            }
+            Entry entry = entries.remove( key );
+            return entry == null || entry.isExpired() ? null : entry.value;
+        }
+
+        private void clear()
+        {
+            entries.clear();
+            order.clear();
+        }
+
+        private void evict()
+        {
+            int chances = maxEntries;
+            while( entries.size() > maxEntries )
+            {
+                Entry entry = order.poll();
+                if( entry == null )
+                {
+                    return;
+                }
+                if( entries.get( entry.key ) != entry )
+                {
+                    // Removed or replaced meanwhile
+                    continue;
+                }
+                if( entry.referenced && !entry.isExpired() && chances-- > 0 )
+                {
+                    entry.referenced = false;
+                    order.add( entry );
+                }
+                else if( entries.remove( entry.key, entry ) )
+                {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Entry
+    {
+        private final Object key;
+        private final Object value;
+        private final long expiresAt;
+        private volatile boolean referenced;
+
+        private Entry( Object key, Object value, long expiresAt )
+        {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired()
+        {
+            return expiresAt != 0 && System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private static final class Flight
+    {
+        private final Thread thread = Thread.currentThread();
+        private final CountDownLatch landed = new CountDownLatch( 1 );
+        private Object result;
+        private Throwable failure;
+
+        private void land( Object result, Throwable failure )
+        {
+            this.result = result;
+            this.failure = failure;
+            landed.countDown();
+        }
+
+        private Object await()
+            throws Throwable
+        {
+            landed.await();
+            if( failure != null )
+            {
+                throw failure;
+            }
+            return result;
+        }
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.invocationcache;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Key of a cached invocation result, made of the invoked method and its arguments.
+ * <p>
+ * Arguments are compared by value and are not copied, they must not be modified once the invocation is cached.
+ * </p>
+ */
+public final class InvocationKey
+{
+    private static final Object[] NO_ARGUMENTS = new Object[ 0 ];
+
+    private final Method method;
+    private final Object[] arguments;
+    private final int hashCode;
+
+    public InvocationKey( Method method, Object[] arguments )
+    {
+        this.method = method;
+        this.arguments = arguments == null ? NO_ARGUMENTS : arguments;
+        this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode( this.arguments );
+    }
+
+    public Method method()
+    {
+        return method;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if( this == o )
+        {
+            return true;
+        }
+        if( !( o instanceof InvocationKey ) )
+        {
+            return false;
+        }
+        InvocationKey other = (InvocationKey) o;
+        return hashCode == other.hashCode
+               && method.equals( other.method )
+               && Arrays.deepEquals( arguments, other.arguments );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    /**
+     * Arguments having a String form that identifies them are Strings, boxed primitives, BigIntegers, BigDecimals,
+     * Enums and nulls. Each argument is written with its type and length, so that neither 1 and "1" nor Strings
+     * containing separators are mistaken for each other.
+     *
+     * @return String form identifying the method, including its parameter types, and the arguments, or null if an
+     *         argument has no String form identifying it
+     */
+    /* package */ String stableForm()
+    {
+        StringBuilder form = new StringBuilder( method.getDeclaringClass().getName() );
+        form.append( '#' ).append( method.getName() ).append( '(' );
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for( int idx = 0; idx < parameterTypes.length; idx++ )
+        {
+            form.append( idx == 0 ? "" : "," ).append( parameterTypes[ idx ].getName() );
+        }
+        form.append( ')' );
+        for( Object argument : arguments )
+        {
+            form.append( '|' );
+            if( argument == null )
+            {
+                form.append( "null" );
+                continue;
+            }
+            Class<?> type;
+            String value;
+            if( argument instanceof Enum )
+            {
+                type = ( (Enum<?>) argument ).getDeclaringClass();
+                value = ( (Enum<?>) argument ).name();
+            }
+            else if( isStable( argument.getClass() ) )
+            {
+                type = argument.getClass();
+                value = argument.toString();
+            }
+            else
+            {
+                return null;
+            }
+            form.append( type.getName() ).append( ':' ).append( value.length() ).append( ':' ).append( value );
+        }
+        return form.toString();
+    }
+
+    private static boolean isStable( Class<?> type )
+    {
+        return type == String.class || type == Character.class || type == Boolean.class
+               || type == Byte.class || type == Short.class || type == Integer.class || type == Long.class
+               || type == Float.class || type == Double.class
+               || type == BigInteger.class || type == BigDecimal.class;
+    }
+
+    @Override
+    public String toString()
+    {
+        return method.getDeclaringClass().getName() + "." + method.getName() + Arrays.deepToString( arguments );
+    }
+}
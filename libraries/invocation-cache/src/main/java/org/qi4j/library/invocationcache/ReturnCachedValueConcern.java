@@ -19,14 +19,15 @@ package org.qi4j.library.invocationcache;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import org.qi4j.api.common.AppliesTo;
 import org.qi4j.api.concern.ConcernOf;
-import org.qi4j.api.injection.scope.Invocation;
 import org.qi4j.api.injection.scope.This;
 
 /**
  * Return value of @Cached calls if possible.
+ * <p>
+ * Concurrent calls missing the same value wait for a single call of the method and share its result.
+ * </p>
  */
 @AppliesTo( Cached.class )
 public class ReturnCachedValueConcern
@@ -35,32 +36,22 @@ public class ReturnCachedValueConcern
 {
     @This
     private InvocationCache cache;
-    @Invocation
-    private Method method;
 
     @Override
-    public Object invoke( Object proxy, Method method, Object[] args )
+    public Object invoke( final Object proxy, final Method method, final Object[] args )
         throws Throwable
     {
-        // Try cache
-        String cacheName = method.getName();
-        if( args != null )
+        Object result = cache.cachedValue( new InvocationKey( method, args ), new InvocationCache.Invocation()
         {
-            cacheName += Arrays.asList( args );
-        }
-        Object result = cache.cachedValue( cacheName );
-        if( result != null )
-        {
-            if( result == Void.TYPE )
-            {
-                return null;
-            }
-            else
+            @Override
+            public Object invoke()
+                throws Throwable
             {
-                return result;
+                // No cached value found - call method
+                Object result = next.invoke( proxy, method, args );
+                return result == null ? Void.TYPE : result;
             }
-        }
-        // No cached value found - call method
-        return next.invoke( proxy, method, args );
+        } );
+        return result == Void.TYPE ? null : result;
     }
 }
@@ -19,7 +19,6 @@ package org.qi4j.library.invocationcache;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import org.qi4j.api.common.AppliesTo;
 import org.qi4j.api.concern.ConcernOf;
 import org.qi4j.api.injection.scope.This;
@@ -50,12 +49,7 @@ public class ReturnCachedValueOnExceptionConcern
         catch( Exception e )
         {
             // Try cache
-            String cacheName = method.getName();
-            if( args != null )
-            {
-                cacheName += Arrays.asList( args );
-            }
-            Object result = cache.cachedValue( cacheName );
+            Object result = cache.cachedValue( new InvocationKey( method, args ) );
             if( result != null )
             {
                 if( result == Void.TYPE )
@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.invocationcache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.qi4j.api.composite.TransientComposite;
+import org.qi4j.api.concern.Concerns;
+import org.qi4j.api.mixin.Mixins;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.test.AbstractQi4jTest;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class InvocationCacheTest
+    extends AbstractQi4jTest
+{
+    private static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.transients( Computation.class );
+    }
+
+    @Test
+    public void givenConcurrentMissesWhenInvokingExpectSingleInvocation()
+        throws Exception
+    {
+        final Computation computation = module.newTransient( Computation.class );
+        INVOCATIONS.set( 0 );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<String>> results = new ArrayList<>();
+            for( int idx = 0; idx < 8; idx++ )
+            {
+                results.add( executor.submit( new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                    {
+                        return computation.slow( "foo" );
+                    }
+                } ) );
+            }
+            for( Future<String> result : results )
+            {
+                assertThat( result.get(), equalTo( "FOO" ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertThat( INVOCATIONS.get(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void givenMaxEntriesWhenInvokingWithMoreArgumentsExpectEvictions()
+    {
+        Computation computation = module.newTransient( Computation.class );
+        for( int idx = 0; idx < 10; idx++ )
+        {
+            computation.bounded( "arg" + idx );
+        }
+        assertTrue( computation.currentCacheSize() <= 2 );
+        assertThat( computation.statistics().evictions(), equalTo( 8L ) );
+        assertThat( computation.statistics().misses(), equalTo( 10L ) );
+    }
+
+    @Test
+    public void givenTimeToLiveWhenInvokingAfterItExpectNewInvocation()
+        throws InterruptedException
+    {
+        Computation computation = module.newTransient( Computation.class );
+        INVOCATIONS.set( 0 );
+        computation.expiring( "foo" );
+        computation.expiring( "foo" );
+        assertThat( INVOCATIONS.get(), equalTo( 1 ) );
+        Thread.sleep( 100 );
+        computation.expiring( "foo" );
+        assertThat( INVOCATIONS.get(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void givenNullResultWhenInvokingAgainExpectCachedNull()
+    {
+        Computation computation = module.newTransient( Computation.class );
+        INVOCATIONS.set( 0 );
+        assertNull( computation.nothing( "foo" ) );
+        assertNull( computation.nothing( "foo" ) );
+        assertThat( INVOCATIONS.get(), equalTo( 1 ) );
+    }
+
+    // START SNIPPET: cached
+    @Mixins( { Computation.Mixin.class, InvocationCacheMixin.class } )
+    @Concerns( ReturnCachedValueConcern.class )
+    public interface Computation
+        extends InvocationCache, TransientComposite
+    {
+        @Cached
+        String slow( String input );
+
+        @Cached( maxEntries = 2 )
+        String bounded( String input );
+
+        @Cached( timeToLive = 50, timeUnit = TimeUnit.MILLISECONDS )
+        String expiring( String input );
+        // END SNIPPET: cached
+
+        @Cached
+        String nothing( String input );
+
+        abstract class Mixin
+            implements Computation
+        {
+            @Override
+            public String slow( String input )
+            {
+                INVOCATIONS.incrementAndGet();
+                try
+                {
+                    Thread.sleep( 200 );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return input.toUpperCase();
+            }
+
+            @Override
+            public String bounded( String input )
+            {
+                return input.toUpperCase();
+            }
+
+            @Override
+            public String expiring( String input )
+            {
+                INVOCATIONS.incrementAndGet();
+                return input.toUpperCase();
+            }
+
+            @Override
+            public String nothing( String input )
+            {
+                INVOCATIONS.incrementAndGet();
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.library.invocationcache;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class InvocationKeyTest
+{
+    @Test
+    public void givenArgumentsWithEqualToStringWhenFormingKeysExpectDistinctForms()
+        throws Exception
+    {
+        Method valueOf = String.class.getMethod( "valueOf", Object.class );
+        assertThat( key( valueOf, 1 ), not( equalTo( key( valueOf, "1" ) ) ) );
+        assertThat( key( valueOf, "null" ), not( equalTo( key( valueOf, (Object) null ) ) ) );
+        assertThat( key( valueOf, TimeUnit.SECONDS ), not( equalTo( key( valueOf, "SECONDS" ) ) ) );
+        assertThat( key( valueOf, 1 ), equalTo( key( valueOf, 1 ) ) );
+    }
+
+    @Test
+    public void givenOverloadsWhenFormingKeysExpectDistinctForms()
+        throws Exception
+    {
+        Method valueOfInt = String.class.getMethod( "valueOf", int.class );
+        Method valueOfLong = String.class.getMethod( "valueOf", long.class );
+        assertThat( key( valueOfInt, 1 ), not( equalTo( key( valueOfLong, 1 ) ) ) );
+    }
+
+    @Test
+    public void givenSeparatorsInArgumentsWhenFormingKeysExpectDistinctForms()
+        throws Exception
+    {
+        Method format = String.class.getMethod( "format", String.class, Object[].class );
+        Method replace = String.class.getMethod( "replace", CharSequence.class, CharSequence.class );
+        assertThat( key( replace, "a|java.lang.String:1:b", "c" ), not( equalTo( key( replace, "a", "b|c" ) ) ) );
+        assertThat( key( format, "%s", new Object[]{ "a" } ), nullValue() );
+    }
+
+    @Test
+    public void givenArgumentWithoutStableFormWhenFormingKeyExpectNone()
+        throws Exception
+    {
+        Method valueOf = String.class.getMethod( "valueOf", Object.class );
+        assertThat( key( valueOf, new Object() ), nullValue() );
+    }
+
+    private static String key( Method method, Object... arguments )
+    {
+        return new InvocationKey( method, arguments ).stableForm();
+    }
+}
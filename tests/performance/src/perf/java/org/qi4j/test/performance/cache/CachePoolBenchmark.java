@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.test.performance.cache;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.cache.ehcache.EhCacheConfiguration;
+import org.qi4j.cache.ehcache.assembly.EhCacheAssembler;
+import org.qi4j.cache.memory.MemoryCacheAssembler;
+import org.qi4j.cache.memory.MemoryCacheConfiguration;
+import org.qi4j.spi.cache.Cache;
+import org.qi4j.spi.cache.CachePool;
+import org.qi4j.test.EntityTestAssembler;
+
+/**
+ * CachePool benchmark.
+ * <p>
+ * Replays a Zipfian trace of Entity identities against the In-Memory and Ehcache CachePools, both bounded to hold
+ * a tenth of the Entities, loading missing ones like an EntityStore would. Reports throughput and, as auxiliary
+ * counters, hits and misses. Run with the main method, or through the JMH runner.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+@Threads( 4 )
+public class CachePoolBenchmark
+{
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( CachePoolBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+    private static final int ENTITIES = 100000;
+    private static final int CAPACITY = ENTITIES / 10;
+    private static final int TRACE_LENGTH = 1 << 20;
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    @Param( { "memory", "ehcache" } )
+    public String pool;
+
+    private SingletonAssembler assembler;
+    private CachePool cachePool;
+    private Cache<String> cache;
+    private String[] trace;
+    private String state;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder value = new StringBuilder();
+        for( int idx = 0; idx < 1000; idx++ )
+        {
+            value.append( 'x' );
+        }
+        state = value.toString();
+        trace = zipfianTrace();
+        assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                ModuleAssembly config = module.layer().module( "config" );
+                new EntityTestAssembler().visibleIn( Visibility.layer ).assemble( config );
+                if( "memory".equals( pool ) )
+                {
+                    new MemoryCacheAssembler().withConfig( config, Visibility.layer ).assemble( module );
+                    // Serialized states weigh a bit more than 1000 bytes
+                    config.forMixin( MemoryCacheConfiguration.class ).declareDefaults()
+                        .maxWeight().set( CAPACITY * 1010L );
+                }
+                else
+                {
+                    new EhCacheAssembler().withConfig( config, Visibility.layer ).assemble( module );
+                    config.forMixin( EhCacheConfiguration.class ).declareDefaults()
+                        .maxElementsInMemory().set( CAPACITY );
+                }
+            }
+        };
+        cachePool = assembler.module().findService( CachePool.class ).get();
+        cache = cachePool.fetchCache( "benchmark", String.class, CAPACITY );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        cachePool.returnCache( cache );
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public String access( Accesses accesses )
+    {
+        String identity = trace[ accesses.next() ];
+        String cached = cache.get( identity );
+        if( cached != null )
+        {
+            accesses.hits++;
+            return cached;
+        }
+        accesses.misses++;
+        cache.put( identity, state );
+        return state;
+    }
+
+    private static String[] zipfianTrace()
+    {
+        // Cumulative distribution of the ranks, sampled by binary search
+        double[] cumulative = new double[ ENTITIES ];
+        double sum = 0;
+        for( int rank = 0; rank < ENTITIES; rank++ )
+        {
+            sum += 1 / Math.pow( rank + 1, ZIPF_EXPONENT );
+            cumulative[ rank ] = sum;
+        }
+        // Ranks are shuffled over identities so that popular ones are not the first loaded
+        int[] identities = new int[ ENTITIES ];
+        Random random = new Random( 42 );
+        for( int idx = 0; idx < ENTITIES; idx++ )
+        {
+            int other = random.nextInt( idx + 1 );
+            identities[ idx ] = identities[ other ];
+            identities[ other ] = idx;
+        }
+        String[] trace = new String[ TRACE_LENGTH ];
+        for( int idx = 0; idx < TRACE_LENGTH; idx++ )
+        {
+            double sample = random.nextDouble() * sum;
+            int low = 0;
+            int high = ENTITIES - 1;
+            while( low < high )
+            {
+                int middle = ( low + high ) >>> 1;
+                if( cumulative[ middle ] < sample )
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            trace[ idx ] = "entity-" + identities[ low ];
+        }
+        return trace;
+    }
+
+    /**
+     * Per thread position in the trace and hit/miss counters.
+     */
+    @State( Scope.Thread )
+    @AuxCounters
+    public static class Accesses
+    {
+        public long hits;
+        public long misses;
+        private int position;
+
+        @Setup
+        public void setup()
+        {
+            position = new Random().nextInt( TRACE_LENGTH );
+        }
+
+        @Setup( Level.Iteration )
+        public void reset()
+        {
+            hits = 0;
+            misses = 0;
+        }
+
+        private int next()
+        {
+            position = ( position + 1 ) & ( TRACE_LENGTH - 1 );
+            return position;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.test.performance.cache;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.cache.memory.MemoryCacheAssembler;
+import org.qi4j.cache.memory.MemoryCacheConfiguration;
+import org.qi4j.cache.memory.OffHeapCacheAssembler;
+import org.qi4j.cache.memory.OffHeapCacheConfiguration;
+import org.qi4j.entitystore.memory.MemoryEntityStoreAssembler;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+/**
+ * On-heap versus off-heap Entity state caching benchmark.
+ * <p>
+ * Reads random Entities of an in-memory EntityStore through the In-Memory or the Off-Heap CachePool, both sized to
+ * hold all of them. Run with the main method to get the garbage collection counts and times of each variant besides
+ * their throughput, or through the JMH runner with {@literal -prof gc}.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx2g", "-XX:MaxDirectMemorySize=2g" } )
+@Threads( 4 )
+public class OffHeapCacheBenchmark
+{
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        new Runner( new OptionsBuilder()
+                        .include( OffHeapCacheBenchmark.class.getSimpleName() )
+                        .addProfiler( GCProfiler.class )
+                        .build() ).run();
+    }
+
+    private static final long CACHE_SIZE = 1024L * 1024 * 1024;
+
+    @Param( { "heap", "offheap" } )
+    public String pool;
+
+    @Param( "200000" )
+    public int entities;
+
+    private SingletonAssembler assembler;
+    private Module module;
+
+    @Setup
+    public void setup()
+        throws UnitOfWorkCompletionException
+    {
+        assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                ModuleAssembly config = module.layer().module( "config" );
+                new EntityTestAssembler().visibleIn( Visibility.layer ).assemble( config );
+                new MemoryEntityStoreAssembler().assemble( module );
+                new OrgJsonValueSerializationAssembler().assemble( module );
+                if( "heap".equals( pool ) )
+                {
+                    new MemoryCacheAssembler().withConfig( config, Visibility.layer ).assemble( module );
+                    config.forMixin( MemoryCacheConfiguration.class ).declareDefaults().maxWeight().set( CACHE_SIZE );
+                }
+                else
+                {
+                    new OffHeapCacheAssembler().withConfig( config, Visibility.layer ).assemble( module );
+                    config.forMixin( OffHeapCacheConfiguration.class ).declareDefaults().maxSize().set( CACHE_SIZE );
+                }
+                module.entities( Document.class );
+            }
+        };
+        module = assembler.module();
+
+        StringBuilder text = new StringBuilder();
+        for( int idx = 0; idx < 50; idx++ )
+        {
+            text.append( "lorem ipsum " );
+        }
+        for( int batch = 0; batch < entities; batch += 10000 )
+        {
+            try( UnitOfWork uow = module.newUnitOfWork() )
+            {
+                for( int idx = batch; idx < Math.min( entities, batch + 10000 ); idx++ )
+                {
+                    Document document = uow.newEntity( Document.class, "document" + idx );
+                    document.title().set( "Document " + idx );
+                    document.author().set( "Author " + idx % 100 );
+                    document.text().set( text.toString() );
+                }
+                uow.complete();
+            }
+        }
+        // Load all of them in the cache
+        for( int idx = 0; idx < entities; idx++ )
+        {
+            title( idx );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public String read()
+    {
+        return title( new Random().nextInt( entities ) );
+    }
+
+    private String title( int idx )
+    {
+        try( UnitOfWork uow = module.newUnitOfWork() )
+        {
+            return uow.get( Document.class, "document" + idx ).title().get();
+        }
+    }
+
+    public interface Document
+        extends EntityComposite
+    {
+        Property<String> title();
+
+        Property<String> author();
+
+        Property<String> text();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.test.performance.eventsourcing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.io.Inputs;
+import org.qi4j.io.Outputs;
+import org.qi4j.io.Receiver;
+import org.qi4j.library.eventsourcing.domain.api.DomainEventValue;
+import org.qi4j.library.eventsourcing.domain.api.UnitOfWorkDomainEventsValue;
+import org.qi4j.library.eventsourcing.domain.source.EventSource;
+import org.qi4j.library.eventsourcing.domain.source.EventStore;
+import org.qi4j.library.eventsourcing.domain.source.file.FileEventStoreConfiguration;
+import org.qi4j.library.eventsourcing.domain.source.file.FileEventStoreService;
+import org.qi4j.library.eventsourcing.domain.source.jdbm.JdbmEventStoreService;
+import org.qi4j.library.fileconfig.FileConfigurationOverride;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.test.EntityTestAssembler;
+import org.qi4j.valueserialization.orgjson.OrgJsonValueSerializationAssembler;
+
+/**
+ * EventStores appends and replay throughput benchmark.
+ * <p>
+ * Producer threads store the events of one UnitOfWork each time in a JDBM or a File EventStore, which commit once
+ * per batch of concurrent appends. Replay reads all events of a store preloaded with {@link #preloaded} UnitOfWorks.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class EventStoreBenchmark
+{
+    @Param( { "jdbm", "file" } )
+    public String store;
+
+    @Param( "10000" )
+    public int preloaded;
+
+    private File directory;
+    private SingletonAssembler assembler;
+    private Module module;
+    private EventStore eventStore;
+    private EventSource eventSource;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        directory = Files.createTempDirectory( "qi4j-eventstore-benchmark" ).toFile();
+        assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                module.values( DomainEventValue.class, UnitOfWorkDomainEventsValue.class );
+                module.services( FileConfigurationService.class )
+                    .setMetaInfo( new FileConfigurationOverride().withData( directory ) );
+                new OrgJsonValueSerializationAssembler().assemble( module );
+                if( "jdbm".equals( store ) )
+                {
+                    module.services( JdbmEventStoreService.class );
+                }
+                else
+                {
+                    new EntityTestAssembler().assemble( module );
+                    module.services( FileEventStoreService.class );
+                    module.entities( FileEventStoreConfiguration.class );
+                }
+            }
+        };
+        module = assembler.module();
+        eventStore = module.findService( EventStore.class ).get();
+        eventSource = module.findService( EventSource.class ).get();
+        for( int idx = 0; idx < preloaded; idx++ )
+        {
+            append();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        assembler.application().passivate();
+        delete( directory );
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public void append1()
+        throws IOException
+    {
+        append();
+    }
+
+    @Benchmark
+    @Threads( 8 )
+    public void append8()
+        throws IOException
+    {
+        append();
+    }
+
+    @Benchmark
+    @Threads( 32 )
+    public void append32()
+        throws IOException
+    {
+        append();
+    }
+
+    @Benchmark
+    public long replay()
+        throws IOException
+    {
+        final long[] events = new long[ 1 ];
+        eventSource.events( 0, preloaded ).transferTo( Outputs.withReceiver( new Receiver<UnitOfWorkDomainEventsValue, RuntimeException>()
+        {
+            @Override
+            public void receive( UnitOfWorkDomainEventsValue item )
+            {
+                events[ 0 ] += item.events().get().size();
+            }
+        } ) );
+        return events[ 0 ];
+    }
+
+    private void append()
+        throws IOException
+    {
+        ValueBuilder<DomainEventValue> eventBuilder = module.newValueBuilder( DomainEventValue.class );
+        eventBuilder.prototype().entityType().set( "Account" );
+        eventBuilder.prototype().entityId().set( Thread.currentThread().getName() );
+        eventBuilder.prototype().name().set( "deposited" );
+        eventBuilder.prototype().parameters().set( "{\"amount\":42}" );
+
+        ValueBuilder<UnitOfWorkDomainEventsValue> builder = module.newValueBuilder( UnitOfWorkDomainEventsValue.class );
+        builder.prototype().version().set( "1.0" );
+        builder.prototype().usecase().set( "Deposit" );
+        builder.prototype().timestamp().set( Instant.now() );
+        builder.prototype().events().get().add( eventBuilder.newInstance() );
+        Inputs.iterable( Collections.singletonList( builder.newInstance() ) ).transferTo( eventStore.storeEvents() );
+    }
+
+    private static void delete( File file )
+    {
+        File[] children = file.listFiles();
+        if( children != null )
+        {
+            for( File child : children )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+}
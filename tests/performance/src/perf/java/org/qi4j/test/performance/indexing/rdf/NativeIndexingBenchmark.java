@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.test.performance.indexing.rdf;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.apache.derby.iapi.services.io.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.api.unitofwork.UnitOfWorkCompletionException;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.index.rdf.assembly.RdfNativeSesameStoreAssembler;
+import org.qi4j.index.rdf.indexing.AsynchronousRdfIndexing;
+import org.qi4j.index.rdf.indexing.RdfIndexingService;
+import org.qi4j.library.fileconfig.FileConfigurationService;
+import org.qi4j.library.rdf.repository.NativeConfiguration;
+import org.qi4j.test.EntityTestAssembler;
+
+/**
+ * Native Sesame store indexing benchmark.
+ * <p>
+ * Measures the latency of UnitOfWorks updating a few Entities with synchronous and asynchronous indexing, and the
+ * time needed to get all of them indexed. Run with the main method, or through the JMH runner.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class NativeIndexingBenchmark
+{
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( NativeIndexingBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+    private static final int UNITS_OF_WORK = 100;
+    private static final int ENTITIES_PER_UNIT_OF_WORK = 10;
+
+    @Param( { "false", "true" } )
+    public boolean asynchronous;
+
+    private File dataDir;
+    private SingletonAssembler assembler;
+    private Module module;
+    private RdfIndexingService indexing;
+    private int round;
+
+    @Setup
+    public void setup()
+        throws Exception
+    {
+        dataDir = new File( "build/tmp/rdf-indexing-benchmark" );
+        assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                module.services( FileConfigurationService.class );
+                ModuleAssembly config = module.layer().module( "config" );
+                config.entities( NativeConfiguration.class ).visibleIn( Visibility.layer );
+                config.forMixin( NativeConfiguration.class ).declareDefaults().dataDirectory().set( dataDir.getAbsolutePath() );
+                new EntityTestAssembler().assemble( config );
+
+                new EntityTestAssembler().assemble( module );
+                RdfNativeSesameStoreAssembler rdf = new RdfNativeSesameStoreAssembler();
+                if( asynchronous )
+                {
+                    rdf.withAsynchronousIndexing( new AsynchronousRdfIndexing() );
+                }
+                rdf.assemble( module );
+                module.entities( Item.class );
+            }
+        };
+        module = assembler.module();
+        indexing = module.findService( RdfIndexingService.class ).get();
+
+        UnitOfWork uow = module.newUnitOfWork();
+        for( int idx = 0; idx < UNITS_OF_WORK * ENTITIES_PER_UNIT_OF_WORK; idx++ )
+        {
+            uow.newEntity( Item.class, "item" + idx ).name().set( "Item " + idx );
+        }
+        uow.complete();
+        indexing.flush();
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        try
+        {
+            assembler.application().passivate();
+        }
+        finally
+        {
+            FileUtil.removeDirectory( dataDir );
+        }
+    }
+
+    /**
+     * @return UnitOfWorks completed, each waits for its changes to be indexed only when indexing synchronously
+     */
+    @Benchmark
+    public int commit()
+        throws UnitOfWorkCompletionException
+    {
+        return update();
+    }
+
+    /**
+     * @return UnitOfWorks completed and indexed
+     */
+    @Benchmark
+    public int commitAndIndex()
+        throws UnitOfWorkCompletionException
+    {
+        int completed = update();
+        indexing.flush();
+        return completed;
+    }
+
+    private int update()
+        throws UnitOfWorkCompletionException
+    {
+        round++;
+        for( int unit = 0; unit < UNITS_OF_WORK; unit++ )
+        {
+            UnitOfWork uow = module.newUnitOfWork();
+            for( int entity = 0; entity < ENTITIES_PER_UNIT_OF_WORK; entity++ )
+            {
+                // Half of the Entities are updated by every UnitOfWork, and coalesced when indexing asynchronously
+                int idx = entity % 2 == 0 ? entity : unit * ENTITIES_PER_UNIT_OF_WORK + entity;
+                uow.get( Item.class, "item" + idx ).name().set( "Item " + idx + " " + round );
+            }
+            uow.complete();
+        }
+        return UNITS_OF_WORK;
+    }
+
+    public interface Item
+        extends EntityComposite
+    {
+        Property<String> name();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.test.performance.indexing.sql;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qi4j.api.common.Visibility;
+import org.qi4j.api.entity.EntityComposite;
+import org.qi4j.api.entity.EntityReference;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.query.grammar.OrderBy;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.unitofwork.UnitOfWork;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+import org.qi4j.index.reindexer.ReindexerConfiguration;
+import org.qi4j.index.sql.assembly.PostgreSQLIndexQueryAssembler;
+import org.qi4j.index.sql.support.common.RebuildingStrategy;
+import org.qi4j.index.sql.support.common.ReindexingStrategy;
+import org.qi4j.library.sql.assembly.DataSourceAssembler;
+import org.qi4j.library.sql.dbcp.DBCPDataSourceServiceAssembler;
+import org.qi4j.spi.query.EntityFinder;
+import org.qi4j.spi.query.EntityFinderException;
+import org.qi4j.test.EntityTestAssembler;
+
+import static org.qi4j.api.query.QueryExpressions.orderBy;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+/**
+ * SQL Index/Query paging benchmark.
+ * <p>
+ * Compares reading a deep page of an ordered query with an offset, and reading it by seeking after the last row of
+ * the previous page. Also measures iterating a whole unpaged result, which is streamed. Needs a local PostgreSQL
+ * database configured as in postgresql-datasource.properties. Run with the main method, or through the JMH runner.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class PostgreSQLPagingBenchmark
+{
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( PostgreSQLPagingBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param( "100000" )
+    public int size;
+
+    private SingletonAssembler assembler;
+    private EntityFinder finder;
+    private OrderBy[] orderBy;
+
+    @Setup
+    public void setup()
+        throws Exception
+    {
+        assembler = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                ModuleAssembly config = module.layer().module( "config" );
+                new EntityTestAssembler().assemble( config );
+                config.entities( ReindexerConfiguration.class ).visibleIn( Visibility.layer );
+
+                new EntityTestAssembler().visibleIn( Visibility.application ).assemble( module );
+                new DBCPDataSourceServiceAssembler().
+                    identifiedBy( "postgresql-datasource-service" ).
+                    visibleIn( Visibility.module ).
+                    withConfig( config, Visibility.layer ).
+                    assemble( module );
+                new DataSourceAssembler().
+                    withDataSourceServiceIdentity( "postgresql-datasource-service" ).
+                    identifiedBy( "postgresql-datasource" ).
+                    visibleIn( Visibility.module ).
+                    assemble( module );
+                new PostgreSQLIndexQueryAssembler().
+                    visibleIn( Visibility.module ).
+                    withConfig( config, Visibility.layer ).
+                    assemble( module );
+                module.services( RebuildingStrategy.class ).
+                    withMixins( RebuildingStrategy.AlwaysNeed.class ).
+                    visibleIn( Visibility.module );
+                module.services( ReindexingStrategy.class ).
+                    withMixins( ReindexingStrategy.AlwaysNeed.class ).
+                    visibleIn( Visibility.module );
+                module.entities( Item.class );
+            }
+        };
+        Module module = assembler.module();
+
+        for( int idx = 0; idx < size; )
+        {
+            UnitOfWork uow = module.newUnitOfWork();
+            for( int batch = 0; batch < 1000 && idx < size; batch++, idx++ )
+            {
+                uow.newEntity( Item.class ).name().set( String.format( "Item %08d", idx ) );
+            }
+            uow.complete();
+        }
+
+        finder = module.findService( EntityFinder.class ).get();
+        orderBy = new OrderBy[]{ orderBy( templateFor( Item.class ).name() ) };
+
+        // Read the page preceding the sought page once, the page following it is then sought
+        page( size - 2 * PAGE_SIZE );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public int offsetPage()
+        throws EntityFinderException
+    {
+        return page( size - PAGE_SIZE - PAGE_SIZE / 2 );
+    }
+
+    @Benchmark
+    public int seekPage()
+        throws EntityFinderException
+    {
+        return page( size - PAGE_SIZE );
+    }
+
+    @Benchmark
+    public int streamAll()
+        throws EntityFinderException
+    {
+        int count = 0;
+        for( EntityReference ignored : finder.findEntities( Item.class, null, orderBy, null, null,
+                                                            Collections.<String, Object>emptyMap() ) )
+        {
+            count++;
+        }
+        return count;
+    }
+
+    private int page( int firstResult )
+        throws EntityFinderException
+    {
+        int count = 0;
+        for( EntityReference ignored : finder.findEntities( Item.class, null, orderBy, firstResult, PAGE_SIZE,
+                                                            Collections.<String, Object>emptyMap() ) )
+        {
+            count++;
+        }
+        return count;
+    }
+
+    public interface Item
+        extends EntityComposite
+    {
+        Property<String> name();
+    }
+}
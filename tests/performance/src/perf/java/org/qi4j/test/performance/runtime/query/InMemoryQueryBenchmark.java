@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.qi4j.test.performance.runtime.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qi4j.api.composite.Composite;
+import org.qi4j.api.property.Property;
+import org.qi4j.api.structure.Module;
+import org.qi4j.api.value.ValueBuilder;
+import org.qi4j.api.value.ValueComposite;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.qi4j.bootstrap.SingletonAssembler;
+
+import static org.qi4j.api.query.QueryExpressions.and;
+import static org.qi4j.api.query.QueryExpressions.eq;
+import static org.qi4j.api.query.QueryExpressions.ge;
+import static org.qi4j.api.query.QueryExpressions.matches;
+import static org.qi4j.api.query.QueryExpressions.or;
+import static org.qi4j.api.query.QueryExpressions.templateFor;
+
+/**
+ * In-memory query evaluation benchmark.
+ * <p>
+ * Compares evaluating a where clause as built by QueryExpressions with running the same where clause as a Query
+ * over an Iterable, which compiles it first. Run with the main method, or through the JMH runner.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class InMemoryQueryBenchmark
+{
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( InMemoryQueryBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+    @Param( "1000000" )
+    public int size;
+
+    private Module module;
+    private List<Product> products;
+    private Predicate<Composite> whereClause;
+
+    @Setup
+    public void setup()
+        throws AssemblyException
+    {
+        module = new SingletonAssembler()
+        {
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                module.values( Product.class );
+            }
+        }.module();
+
+        products = new ArrayList<>( size );
+        for( int idx = 0; idx < size; idx++ )
+        {
+            ValueBuilder<Product> builder = module.newValueBuilder( Product.class );
+            builder.prototype().name().set( "Product " + idx );
+            builder.prototype().category().set( "Category " + ( idx % 100 ) );
+            builder.prototype().price().set( idx % 1000 );
+            products.add( builder.newInstance() );
+        }
+
+        Product product = templateFor( Product.class );
+        whereClause = and( or( eq( product.category(), "Category 7" ),
+                               eq( product.category(), "Category 42" ) ),
+                           ge( product.price(), 500 ),
+                           matches( product.name(), "Product .*7" ) );
+    }
+
+    @Benchmark
+    public long interpreted()
+    {
+        long count = 0;
+        for( Product product : products )
+        {
+            if( whereClause.test( product ) )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long compiled()
+    {
+        return module.newQueryBuilder( Product.class ).where( whereClause ).newQuery( products ).count();
+    }
+
+    public interface Product
+        extends ValueComposite
+    {
+        Property<String> name();
+
+        Property<String> category();
+
+        Property<Integer> price();
+    }
+}